@@ -0,0 +1,9 @@
+package com.analytics_service.analytics_service.aggregation;
+
+public enum Dimension {
+    // Every event under the single key "all"
+    ALL,
+    EVENT_TYPE,
+    // The part of the email after the last '@', lower-cased
+    EMAIL_DOMAIN
+}
@@ -0,0 +1,175 @@
+package com.analytics_service.analytics_service.aggregation;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.analytics_service.analytics_service.dto.WindowCountsDTO;
+
+// In-memory event counts by dimension over minute, hour and day windows. Recording an
+// event is a couple of key lookups and one atomic increment per dimension and
+// granularity, with no allocation, so the consumer thread is never slowed by it.
+// Queries copy counters out and can run on any thread at any time. The key tables and
+// counters are held together and swapped in one step by replaceWith, so counts rebuilt
+// elsewhere can take over without readers seeing a mix.
+@Component
+public class EventAggregator {
+
+    // values() clones its array on every call
+    private static final Granularity[] GRANULARITIES = Granularity.values();
+
+    private record State(KeyTable all, KeyTable eventTypes, KeyTable emailDomains, int allKey,
+            RollingCounters[][] counters) {
+
+        KeyTable keys(Dimension dimension) {
+            return switch (dimension) {
+                case ALL -> all;
+                case EVENT_TYPE -> eventTypes;
+                case EMAIL_DOMAIN -> emailDomains;
+            };
+        }
+    }
+
+    private final int maxEventTypes;
+    private final int maxEmailDomains;
+    private final LongSupplier clock;
+    private volatile State state;
+
+    @Autowired
+    public EventAggregator(@Value("${analytics.aggregation.max-event-types:64}") int maxEventTypes,
+            @Value("${analytics.aggregation.max-email-domains:1024}") int maxEmailDomains) {
+        this(maxEventTypes, maxEmailDomains, System::currentTimeMillis);
+    }
+
+    public EventAggregator(int maxEventTypes, int maxEmailDomains, LongSupplier clock) {
+        this.maxEventTypes = maxEventTypes;
+        this.maxEmailDomains = maxEmailDomains;
+        this.clock = clock;
+        KeyTable all = new KeyTable(1, false);
+        State empty = new State(all, new KeyTable(maxEventTypes, false), new KeyTable(maxEmailDomains, true),
+                all.indexOf("all", 0, 3), new RollingCounters[Dimension.values().length][GRANULARITIES.length]);
+        for (Dimension dimension : Dimension.values()) {
+            for (Granularity granularity : GRANULARITIES) {
+                empty.counters()[dimension.ordinal()][granularity.ordinal()] = new RollingCounters(
+                        granularity.millis(), granularity.retained(), empty.keys(dimension).width());
+            }
+        }
+        this.state = empty;
+    }
+
+    public void record(long timestampMillis, String eventType, String email) {
+        State current = state;
+        RollingCounters[][] counters = current.counters();
+        KeyTable emailDomains = current.emailDomains();
+        int allKey = current.allKey();
+        int typeKey = current.eventTypes().indexOf(eventType, 0, eventType.length());
+        int at = email.lastIndexOf('@');
+        int domainKey = at < 0 ? emailDomains.other() : emailDomains.indexOf(email, at + 1, email.length());
+        for (int g = 0; g < GRANULARITIES.length; g++) {
+            counters[Dimension.ALL.ordinal()][g].increment(timestampMillis, allKey);
+            counters[Dimension.EVENT_TYPE.ordinal()][g].increment(timestampMillis, typeKey);
+            counters[Dimension.EMAIL_DOMAIN.ordinal()][g].increment(timestampMillis, domainKey);
+        }
+    }
+
+    // Tumbling windows, newest first, starting with the current one (still filling)
+    public List<WindowCountsDTO> windows(Dimension dimension, Granularity granularity, int count) {
+        State snapshot = state;
+        RollingCounters rolling = snapshot.counters()[dimension.ordinal()][granularity.ordinal()];
+        KeyTable keys = snapshot.keys(dimension);
+        long current = rolling.window(clock.getAsLong());
+        long[] values = new long[keys.width()];
+        List<WindowCountsDTO> windows = new ArrayList<>(count);
+        for (long window = current; window > current - count; window--) {
+            rolling.read(window, values);
+            windows.add(toDTO(keys, values, window * granularity.millis(), (window + 1) * granularity.millis()));
+        }
+        return windows;
+    }
+
+    // Sliding window: the sum of the last `size` windows including the current one
+    public WindowCountsDTO sliding(Dimension dimension, Granularity granularity, int size) {
+        State snapshot = state;
+        RollingCounters rolling = snapshot.counters()[dimension.ordinal()][granularity.ordinal()];
+        KeyTable keys = snapshot.keys(dimension);
+        long current = rolling.window(clock.getAsLong());
+        long[] values = new long[keys.width()];
+        long[] sums = new long[keys.width()];
+        for (long window = current; window > current - size; window--) {
+            rolling.read(window, values);
+            for (int key = 0; key < values.length; key++) {
+                sums[key] += values[key];
+            }
+        }
+        return toDTO(keys, sums, (current - size + 1) * granularity.millis(), (current + 1) * granularity.millis());
+    }
+
+    // An empty aggregator with the same limits and clock, to rebuild counts into
+    public EventAggregator emptyCopy() {
+        return new EventAggregator(maxEventTypes, maxEmailDomains, clock);
+    }
+
+    // Adds other's counts to these, matching keys by name. Windows older than this
+    // aggregator's rings are dropped, as their events would have been.
+    public void merge(EventAggregator other) {
+        State from = other.state;
+        State into = state;
+        for (Dimension dimension : Dimension.values()) {
+            KeyTable fromKeys = from.keys(dimension);
+            KeyTable intoKeys = into.keys(dimension);
+            int[] keyMap = new int[fromKeys.width()];
+            for (int key = 0; key < keyMap.length; key++) {
+                String name = fromKeys.key(key);
+                keyMap[key] = key == fromKeys.other() || name == null ? intoKeys.other()
+                        : intoKeys.indexOf(name, 0, name.length());
+            }
+            long[] values = new long[fromKeys.width()];
+            for (Granularity granularity : GRANULARITIES) {
+                RollingCounters source = from.counters()[dimension.ordinal()][granularity.ordinal()];
+                RollingCounters target = into.counters()[dimension.ordinal()][granularity.ordinal()];
+                for (int bucket = 0; bucket < source.buckets(); bucket++) {
+                    long window = source.bucketWindow(bucket);
+                    if (window == Long.MIN_VALUE) {
+                        continue;
+                    }
+                    source.read(window, values);
+                    for (int key = 0; key < values.length; key++) {
+                        if (values[key] > 0) {
+                            target.add(window * source.bucketMillis(), keyMap[key], values[key]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // Takes over other's counts in one step; other must no longer be recorded into
+    public void replaceWith(EventAggregator other) {
+        this.state = other.state;
+    }
+
+    private static WindowCountsDTO toDTO(KeyTable keys, long[] values, long startMillis, long endMillis) {
+        List<Integer> present = new ArrayList<>();
+        long total = 0;
+        for (int key = 0; key < values.length; key++) {
+            if (values[key] > 0) {
+                present.add(key);
+                total += values[key];
+            }
+        }
+        present.sort(Comparator.comparingLong((Integer key) -> values[key]).reversed());
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int key : present) {
+            counts.put(keys.key(key), values[key]);
+        }
+        return new WindowCountsDTO(Instant.ofEpochMilli(startMillis), Instant.ofEpochMilli(endMillis), total, counts);
+    }
+}
@@ -0,0 +1,25 @@
+package com.analytics_service.analytics_service.aggregation;
+
+// Window length and how many past windows are kept. Windows are aligned to the epoch,
+// so days are UTC days.
+public enum Granularity {
+    MINUTE(60_000L, 120),
+    HOUR(3_600_000L, 168),
+    DAY(86_400_000L, 90);
+
+    private final long millis;
+    private final int retained;
+
+    Granularity(long millis, int retained) {
+        this.millis = millis;
+        this.retained = retained;
+    }
+
+    public long millis() {
+        return millis;
+    }
+
+    public int retained() {
+        return retained;
+    }
+}
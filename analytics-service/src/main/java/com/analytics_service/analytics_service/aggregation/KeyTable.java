@@ -0,0 +1,126 @@
+package com.analytics_service.analytics_service.aggregation;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Gives each distinct key a dense index 0..capacity-1 to address counter arrays with.
+// Lookups hash a range of a CharSequence in place and allocate nothing; only the first
+// sight of a key copies it. Once capacity keys are known, every new key maps to other().
+// Lookups are lock-free, and so are lookups of unknown keys once the table is full;
+// inserts are rare and take a lock.
+public class KeyTable {
+
+    public static final String OTHER = "(other)";
+
+    private final int capacity;
+    private final boolean ignoreCase;
+    // Open addressing, at most half full
+    private final AtomicReferenceArray<String> slots;
+    private final AtomicIntegerArray slotIndexes;
+    // Index -> key, entries below size are published
+    private final String[] keys;
+    private volatile int size;
+    private final ReentrantLock insertLock = new ReentrantLock();
+
+    public KeyTable(int capacity, boolean ignoreCase) {
+        this.capacity = capacity;
+        this.ignoreCase = ignoreCase;
+        int tableSize = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(tableSize);
+        this.slotIndexes = new AtomicIntegerArray(tableSize);
+        this.keys = new String[capacity];
+    }
+
+    // Counter arrays need this many columns: every key plus other()
+    public int width() {
+        return capacity + 1;
+    }
+
+    public int other() {
+        return capacity;
+    }
+
+    public int indexOf(CharSequence text, int start, int end) {
+        int hash = hash(text, start, end);
+        int mask = slots.length() - 1;
+        for (int slot = spread(hash) & mask;; slot = (slot + 1) & mask) {
+            String key = slots.get(slot);
+            if (key == null) {
+                // Once full, unknown keys go to other() here without contending on the lock
+                return size == capacity ? other() : insert(text, start, end, hash);
+            }
+            if (key.hashCode() == hash && matches(key, text, start, end)) {
+                return slotIndexes.get(slot);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String key(int index) {
+        return index == capacity ? OTHER : keys[index];
+    }
+
+    private int insert(CharSequence text, int start, int end, int hash) {
+        insertLock.lock();
+        try {
+            // Probe again, another thread may have inserted the key since
+            int mask = slots.length() - 1;
+            int slot = spread(hash) & mask;
+            for (String key = slots.get(slot); key != null; key = slots.get(slot)) {
+                if (key.hashCode() == hash && matches(key, text, start, end)) {
+                    return slotIndexes.get(slot);
+                }
+                slot = (slot + 1) & mask;
+            }
+            int index = size;
+            if (index == capacity) {
+                return other();
+            }
+            StringBuilder key = new StringBuilder(end - start);
+            for (int i = start; i < end; i++) {
+                key.append(fold(text.charAt(i)));
+            }
+            keys[index] = key.toString();
+            // The index is set before the key so a lookup that finds the key reads the right index
+            slotIndexes.set(slot, index);
+            slots.set(slot, keys[index]);
+            size = index + 1;
+            return index;
+        } finally {
+            insertLock.unlock();
+        }
+    }
+
+    // Same polynomial as String.hashCode, so it can be compared with the stored key's cached hash
+    private int hash(CharSequence text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + fold(text.charAt(i));
+        }
+        return hash;
+    }
+
+    private boolean matches(String key, CharSequence text, int start, int end) {
+        if (key.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) != fold(text.charAt(start + i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private char fold(char c) {
+        return ignoreCase && c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,82 @@
+package com.analytics_service.analytics_service.aggregation;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Per-key counts for the last `buckets` tumbling windows of bucketMillis each, kept in a
+// ring of primitive counters. A bucket is cleared and reused by the first write of a
+// newer window; an event older than the ring is dropped. Nothing is allocated after
+// construction, and writers never lock.
+public class RollingCounters {
+
+    private final long bucketMillis;
+    private final int buckets;
+    private final int width;
+    // [bucket][key] flattened
+    private final AtomicLongArray counters;
+    // Window number (millis / bucketMillis) each bucket currently counts
+    private final AtomicLongArray bucketWindows;
+
+    public RollingCounters(long bucketMillis, int buckets, int width) {
+        this.bucketMillis = bucketMillis;
+        this.buckets = buckets;
+        this.width = width;
+        this.counters = new AtomicLongArray(buckets * width);
+        this.bucketWindows = new AtomicLongArray(buckets);
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            bucketWindows.set(bucket, Long.MIN_VALUE);
+        }
+    }
+
+    // False when the event is older than every retained window
+    public boolean increment(long timestampMillis, int key) {
+        return add(timestampMillis, key, 1);
+    }
+
+    public boolean add(long timestampMillis, int key, long delta) {
+        long window = Math.floorDiv(timestampMillis, bucketMillis);
+        int bucket = (int) Math.floorMod(window, (long) buckets);
+        long seen = bucketWindows.get(bucket);
+        while (seen != window) {
+            if (seen > window) {
+                return false;
+            }
+            if (bucketWindows.compareAndSet(bucket, seen, window)) {
+                // Increments racing with the reset can be lost, at most a few per window boundary
+                int base = bucket * width;
+                for (int i = base; i < base + width; i++) {
+                    counters.set(i, 0);
+                }
+                break;
+            }
+            seen = bucketWindows.get(bucket);
+        }
+        counters.addAndGet(bucket * width + key, delta);
+        return true;
+    }
+
+    public int buckets() {
+        return buckets;
+    }
+
+    public long bucketMillis() {
+        return bucketMillis;
+    }
+
+    // The window a bucket counts, Long.MIN_VALUE until its first write
+    public long bucketWindow(int bucket) {
+        return bucketWindows.get(bucket);
+    }
+
+    public long window(long timestampMillis) {
+        return Math.floorDiv(timestampMillis, bucketMillis);
+    }
+
+    // Copies the counts of one window into into[0..width), zeros if it is not retained
+    public void read(long window, long[] into) {
+        int bucket = (int) Math.floorMod(window, (long) buckets);
+        boolean held = bucketWindows.get(bucket) == window;
+        for (int key = 0; key < width; key++) {
+            into[key] = held ? counters.get(bucket * width + key) : 0;
+        }
+    }
+}
@@ -1,52 +1,159 @@
 package com.analytics_service.analytics_service.config;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.core.MicrometerConsumerListener;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.ExponentialBackOff;
+
+import com.analytics_service.analytics_service.kafka.KafkaConsumer;
+import com.analytics_service.analytics_service.kafka.RetryRouter;
+
+import io.micrometer.core.instrument.MeterRegistry;
 
 @Configuration
 public class KafkaConsumerConfig {
 
+    private static final Logger log = LoggerFactory.getLogger(KafkaConsumerConfig.class);
+
     @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrapServers;
 
     @Value("${spring.kafka.consumer.group-id}")
     private String groupId;
 
+    @Value("${analytics.kafka.topic:patient}")
+    private String topic;
+
+    @Value("${analytics.kafka.concurrency:0}")
+    private int concurrency;
+
+    @Value("${analytics.kafka.max-poll-records:1000}")
+    private int maxPollRecords;
+
+    @Value("${analytics.kafka.fetch-min-bytes:65536}")
+    private int fetchMinBytes;
+
+    @Value("${analytics.kafka.fetch-max-wait-ms:100}")
+    private int fetchMaxWaitMs;
+
+    @Value("${analytics.kafka.max-partition-fetch-bytes:4194304}")
+    private int maxPartitionFetchBytes;
+
+    @Value("${analytics.retry.partitions:3}")
+    private int retryPartitions;
+
     /**
      * This bean defines the core properties for the Kafka consumer.
      * It explicitly sets the deserializers to handle keys as Strings and
-     * the message payload as raw byte arrays.
+     * the message payload as raw byte arrays. Fetches wait for up to
+     * fetch-min-bytes or fetch-max-wait-ms so a burst is read in large
+     * batches. Offsets are only committed once a batch has been processed,
+     * and Kafka client metrics, records-lag per partition included, are
+     * published to Micrometer as kafka.consumer.*.
      */
     @Bean
-    public ConsumerFactory<String, byte[]> consumerFactory() {
+    public ConsumerFactory<String, byte[]> consumerFactory(MeterRegistry meterRegistry) {
         Map<String, Object> props = new HashMap<>();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
         props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
         props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
-        return new DefaultKafkaConsumerFactory<>(props);
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+        props.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, fetchMinBytes);
+        props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, fetchMaxWaitMs);
+        props.put(ConsumerConfig.MAX_PARTITION_FETCH_BYTES_CONFIG, maxPartitionFetchBytes);
+        DefaultKafkaConsumerFactory<String, byte[]> factory = new DefaultKafkaConsumerFactory<>(props);
+        factory.addListener(new MicrometerConsumerListener<>(meterRegistry));
+        return factory;
     }
 
     /**
      * This bean creates the listener factory that Spring will use to
-     * manage the @KafkaListener. It's wired up with the consumerFactory
-     * we defined above.
+     * manage the @KafkaListener. Listeners get a whole poll at a time and
+     * acknowledge it themselves once processed. There is one consumer
+     * thread per partition: more would sit idle, fewer would leave
+     * partitions sharing a thread. A batch that fails is redelivered until
+     * it goes through, with no limit on attempts: the only failure is a
+     * record that could not be put on a retry topic, and giving up would
+     * lose it. The redelivered batch skips what it already counted, see
+     * KafkaConsumer.awaitHandOffs.
      */
-
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, byte[]> kafkaListenerContainerFactory() {
+    public ConcurrentKafkaListenerContainerFactory<String, byte[]> kafkaListenerContainerFactory(
+            ConsumerFactory<String, byte[]> consumerFactory, KafkaConsumer kafkaConsumer) {
         ConcurrentKafkaListenerContainerFactory<String, byte[]> factory = new ConcurrentKafkaListenerContainerFactory<>();
-        factory.setConsumerFactory(consumerFactory());
+        factory.setConsumerFactory(consumerFactory);
+        factory.setBatchListener(true);
+        factory.setConcurrency(concurrency > 0 ? concurrency : partitionCount(consumerFactory));
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        ExponentialBackOff backOff = new ExponentialBackOff(1000L, 2.0);
+        backOff.setMaxInterval(30000L);
+        factory.setCommonErrorHandler(new DefaultErrorHandler(backOff));
+        factory.getContainerProperties().setConsumerRebalanceListener(new ConsumerRebalanceListener() {
+            @Override
+            public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                kafkaConsumer.partitionsRevoked(partitions);
+            }
+
+            @Override
+            public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+            }
+        });
         return factory;
     }
-}
\ No newline at end of file
+
+    /**
+     * The retry tier and dead-letter topics, created by Spring's KafkaAdmin at
+     * startup if they do not exist yet.
+     */
+    @Bean
+    public KafkaAdmin.NewTopics retryTopics(RetryRouter retryRouter) {
+        List<NewTopic> topics = new ArrayList<>();
+        for (String tierTopic : retryRouter.tierTopics()) {
+            topics.add(TopicBuilder.name(tierTopic).partitions(retryPartitions).build());
+        }
+        topics.add(TopicBuilder.name(retryRouter.deadLetterTopic()).partitions(retryPartitions).build());
+        return new KafkaAdmin.NewTopics(topics.toArray(NewTopic[]::new));
+    }
+
+    // analytics.kafka.concurrency=0 matches the topic's partition count, read once at startup
+    private int partitionCount(ConsumerFactory<String, byte[]> consumerFactory) {
+        try (Consumer<String, byte[]> consumer = consumerFactory.createConsumer()) {
+            List<PartitionInfo> info = consumer.partitionsFor(topic, Duration.ofSeconds(5));
+            int partitions = info == null ? 0 : info.size();
+            log.info("Topic {} has {} partitions, consuming with as many threads", topic, partitions);
+            return Math.max(1, partitions);
+        } catch (KafkaException e) {
+            log.warn("Could not read the partition count of {}, consuming with one thread : {}", topic,
+                    e.getMessage());
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.analytics_service.analytics_service.controller;
+
+import java.util.List;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.analytics_service.analytics_service.aggregation.Dimension;
+import com.analytics_service.analytics_service.aggregation.EventAggregator;
+import com.analytics_service.analytics_service.aggregation.Granularity;
+import com.analytics_service.analytics_service.dto.WindowCountsDTO;
+
+// e.g. GET /analytics/windows/EVENT_TYPE?granularity=HOUR&count=24 for the last 24 hourly
+// windows, or GET /analytics/sliding/EMAIL_DOMAIN?granularity=MINUTE&size=5 for the last 5 minutes
+@RestController
+@RequestMapping("/analytics")
+public class AnalyticsController {
+
+    private final EventAggregator eventAggregator;
+
+    public AnalyticsController(EventAggregator eventAggregator) {
+        this.eventAggregator = eventAggregator;
+    }
+
+    @GetMapping("/windows/{dimension}")
+    public List<WindowCountsDTO> windows(@PathVariable Dimension dimension,
+            @RequestParam(defaultValue = "MINUTE") Granularity granularity,
+            @RequestParam(defaultValue = "1") int count) {
+        return eventAggregator.windows(dimension, granularity, retained(granularity, count));
+    }
+
+    @GetMapping("/sliding/{dimension}")
+    public WindowCountsDTO sliding(@PathVariable Dimension dimension,
+            @RequestParam(defaultValue = "MINUTE") Granularity granularity,
+            @RequestParam(defaultValue = "5") int size) {
+        return eventAggregator.sliding(dimension, granularity, retained(granularity, size));
+    }
+
+    private static int retained(Granularity granularity, int windows) {
+        if (windows < 1 || windows > granularity.retained()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Between 1 and " + granularity.retained() + " " + granularity + " windows are kept");
+        }
+        return windows;
+    }
+}
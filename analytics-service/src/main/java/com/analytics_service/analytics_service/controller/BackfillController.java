@@ -0,0 +1,61 @@
+package com.analytics_service.analytics_service.controller;
+
+import java.time.Instant;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.analytics_service.analytics_service.dto.BackfillStatusDTO;
+import com.analytics_service.analytics_service.kafka.BackfillService;
+
+// e.g. POST /analytics/backfill?from=2026-09-01T00:00:00Z or POST /analytics/backfill?fromOffset=0
+// to rebuild from everything Kafka still holds, then poll GET /analytics/backfill
+@RestController
+@RequestMapping("/analytics/backfill")
+public class BackfillController {
+
+    private final BackfillService backfillService;
+
+    public BackfillController(BackfillService backfillService) {
+        this.backfillService = backfillService;
+    }
+
+    @PostMapping
+    public ResponseEntity<BackfillStatusDTO> start(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) Long fromOffset) {
+        if ((from == null) == (fromOffset == null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Give either from or fromOffset");
+        }
+        if (fromOffset != null && fromOffset < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "fromOffset must not be negative");
+        }
+        try {
+            return ResponseEntity.accepted()
+                    .body(backfillService.start(from == null ? null : from.toEpochMilli(), fromOffset));
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
+    }
+
+    @GetMapping
+    public BackfillStatusDTO status() {
+        return backfillService.status();
+    }
+
+    @DeleteMapping
+    public ResponseEntity<Void> cancel() {
+        if (!backfillService.cancel()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "No backfill is running");
+        }
+        return ResponseEntity.accepted().build();
+    }
+}
@@ -0,0 +1,41 @@
+package com.analytics_service.analytics_service.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.analytics_service.analytics_service.dto.DeadLetterReplayDTO;
+import com.analytics_service.analytics_service.kafka.DeadLetterReplayer;
+import com.analytics_service.analytics_service.kafka.RetryRouter;
+
+// e.g. POST /analytics/dead-letters/replay?limit=500 once the cause of the failures is fixed
+@RestController
+@RequestMapping("/analytics/dead-letters")
+public class DeadLetterController {
+
+    private static final int MAX_REPLAY = 100_000;
+
+    private final DeadLetterReplayer replayer;
+    private final RetryRouter retryRouter;
+
+    public DeadLetterController(DeadLetterReplayer replayer, RetryRouter retryRouter) {
+        this.replayer = replayer;
+        this.retryRouter = retryRouter;
+    }
+
+    @PostMapping("/replay")
+    public DeadLetterReplayDTO replay(@RequestParam(defaultValue = "1000") int limit) {
+        if (limit < 1 || limit > MAX_REPLAY) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_REPLAY);
+        }
+        try {
+            return new DeadLetterReplayDTO(replayer.replay(limit), retryRouter.deadLetterTopic(),
+                    retryRouter.tierTopics().get(0));
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.analytics_service.analytics_service.controller;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.analytics_service.analytics_service.aggregation.Dimension;
+import com.analytics_service.analytics_service.aggregation.KeyTable;
+import com.analytics_service.analytics_service.dto.EventStoreStatsDTO;
+import com.analytics_service.analytics_service.dto.StoredEventDTO;
+import com.analytics_service.analytics_service.dto.WindowCountsDTO;
+import com.analytics_service.analytics_service.store.EventLog;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import patient.event.PatientEvent;
+
+// Queries over the stored events, for any range still retained rather than only the
+// windows kept in memory, e.g.
+// GET /analytics/store/counts/EVENT_TYPE?from=2026-01-01T00:00:00Z&to=2026-02-01T00:00:00Z
+@RestController
+@RequestMapping("/analytics/store")
+public class EventStoreController {
+
+    private static final int MAX_EVENTS = 10_000;
+
+    private final EventLog eventLog;
+
+    public EventStoreController(EventLog eventLog) {
+        this.eventLog = eventLog;
+    }
+
+    @GetMapping
+    public EventStoreStatsDTO stats() {
+        EventLog.Stats stats = eventLog.stats();
+        boolean empty = stats.lastSequence() < stats.firstSequence();
+        return new EventStoreStatsDTO(stats.segments(), stats.bytes(), stats.firstSequence(), stats.lastSequence(),
+                empty ? null : Instant.ofEpochMilli(stats.oldestTimestamp()),
+                empty ? null : Instant.ofEpochMilli(stats.newestTimestamp()));
+    }
+
+    // Events in [from, to) in the order they were stored
+    @GetMapping("/events")
+    public List<StoredEventDTO> events(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(defaultValue = "100") int limit) {
+        checkRange(from, to);
+        if (limit < 1 || limit > MAX_EVENTS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_EVENTS);
+        }
+        List<StoredEventDTO> events = new ArrayList<>(Math.min(limit, 1024));
+        eventLog.scan(from.toEpochMilli(), to.toEpochMilli(), (sequence, timestamp, partition, offset, payload) -> {
+            try {
+                PatientEvent event = PatientEvent.parseFrom(payload);
+                events.add(new StoredEventDTO(sequence, Instant.ofEpochMilli(timestamp), partition, offset,
+                        event.getPatientId(), event.getEventType()));
+            } catch (InvalidProtocolBufferException e) {
+                // Stored as consumed; the consumer already counted it as malformed
+            }
+            return events.size() < limit;
+        });
+        return events;
+    }
+
+    // Counts for [from, to) rebuilt from the stored events, largest first
+    @GetMapping("/counts/{dimension}")
+    public WindowCountsDTO counts(@PathVariable Dimension dimension,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        checkRange(from, to);
+        Map<String, Long> counts = new HashMap<>();
+        long[] total = new long[1];
+        eventLog.scan(from.toEpochMilli(), to.toEpochMilli(), (sequence, timestamp, partition, offset, payload) -> {
+            try {
+                counts.merge(key(dimension, PatientEvent.parseFrom(payload)), 1L, Long::sum);
+                total[0]++;
+            } catch (InvalidProtocolBufferException e) {
+                // Skipped, as the consumer skipped it
+            }
+            return true;
+        });
+        Map<String, Long> sorted = new LinkedHashMap<>();
+        counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+                .forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+        return new WindowCountsDTO(from, to, total[0], sorted);
+    }
+
+    private static String key(Dimension dimension, PatientEvent event) {
+        return switch (dimension) {
+            case ALL -> "all";
+            case EVENT_TYPE -> event.getEventType();
+            case EMAIL_DOMAIN -> {
+                String email = event.getEmail();
+                int at = email.lastIndexOf('@');
+                yield at < 0 ? KeyTable.OTHER : email.substring(at + 1).toLowerCase(Locale.ROOT);
+            }
+        };
+    }
+
+    private static void checkRange(Instant from, Instant to) {
+        if (!from.isBefore(to)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must be before to");
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.analytics_service.analytics_service.controller;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.analytics_service.analytics_service.dto.DistinctCountDTO;
+import com.analytics_service.analytics_service.dto.HeavyHittersDTO;
+import com.analytics_service.analytics_service.sketch.HyperLogLog;
+import com.analytics_service.analytics_service.sketch.PatientSketches;
+import com.analytics_service.analytics_service.sketch.TopK;
+
+@RestController
+@RequestMapping("/analytics")
+public class SketchController {
+
+    private final PatientSketches sketches;
+
+    public SketchController(PatientSketches sketches) {
+        this.sketches = sketches;
+    }
+
+    @GetMapping("/distinct-patients")
+    public DistinctCountDTO distinctPatients(@RequestParam(defaultValue = "1") int days) {
+        if (days < 1 || days > sketches.retainedDays()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Between 1 and " + sketches.retainedDays() + " days are kept");
+        }
+        HyperLogLog union = sketches.distinctPatients(days);
+        return new DistinctCountDTO(sketches.today().minusDays(days - 1L), sketches.today(), union.estimate(),
+                union.relativeStandardError());
+    }
+
+    @GetMapping("/top/email-domains")
+    public HeavyHittersDTO topEmailDomains(@RequestParam(defaultValue = "10") int limit) {
+        return heavyHitters(sketches.emailDomains(), limit);
+    }
+
+    @GetMapping("/top/updated-patients")
+    public HeavyHittersDTO topUpdatedPatients(@RequestParam(defaultValue = "10") int limit) {
+        return heavyHitters(sketches.updatedPatients(), limit);
+    }
+
+    // Another instance's state, e.g. curl .../sketches | curl --data-binary @- .../sketches/merge
+    @GetMapping(value = "/sketches", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public byte[] export() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sketches.writeTo(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    @PostMapping(value = "/sketches/merge", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Void> merge(@RequestBody byte[] state) {
+        try {
+            sketches.merge(new DataInputStream(new ByteArrayInputStream(state)));
+        } catch (IOException | IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Not a mergeable sketch state : "
+                    + e.getMessage());
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    private static HeavyHittersDTO heavyHitters(TopK topK, int limit) {
+        long total = topK.sketch().total();
+        return new HeavyHittersDTO(topK.top(limit), total, (long) Math.ceil(topK.sketch().epsilon() * total),
+                1 - topK.sketch().delta());
+    }
+}
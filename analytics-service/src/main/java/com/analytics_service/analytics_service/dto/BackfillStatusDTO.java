@@ -0,0 +1,9 @@
+package com.analytics_service.analytics_service.dto;
+
+import java.time.Instant;
+
+// state is IDLE, RUNNING, COMPLETED, CANCELLED or FAILED; recordsRemaining is how far the
+// backfill still is from the end offsets it started with
+public record BackfillStatusDTO(String state, String from, Instant startedAt, Instant finishedAt, long recordsRead,
+        long recordsRemaining, String error) {
+}
@@ -0,0 +1,5 @@
+package com.analytics_service.analytics_service.dto;
+
+// How many dead letters were moved from deadLetterTopic back into retryTopic
+public record DeadLetterReplayDTO(int replayed, String deadLetterTopic, String retryTopic) {
+}
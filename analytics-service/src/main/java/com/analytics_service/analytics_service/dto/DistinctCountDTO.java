@@ -0,0 +1,8 @@
+package com.analytics_service.analytics_service.dto;
+
+import java.time.LocalDate;
+
+// HyperLogLog estimate over the UTC days from..to; the true count lies within
+// estimate * (1 +/- relativeStandardError) about 68% of the time, within twice that about 95%
+public record DistinctCountDTO(LocalDate from, LocalDate to, long estimate, double relativeStandardError) {
+}
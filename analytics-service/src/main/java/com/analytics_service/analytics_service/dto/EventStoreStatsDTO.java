@@ -0,0 +1,8 @@
+package com.analytics_service.analytics_service.dto;
+
+import java.time.Instant;
+
+// oldest and newest are null while the log is empty
+public record EventStoreStatsDTO(int segments, long bytes, long firstSequence, long lastSequence, Instant oldest,
+        Instant newest) {
+}
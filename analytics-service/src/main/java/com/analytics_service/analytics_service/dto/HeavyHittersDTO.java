@@ -0,0 +1,10 @@
+package com.analytics_service.analytics_service.dto;
+
+import java.util.List;
+
+import com.analytics_service.analytics_service.sketch.TopK;
+
+// Count-min estimates are never below the true count, and with probability confidence
+// exceed it by at most maxOverestimate (epsilon times totalCount)
+public record HeavyHittersDTO(List<TopK.Entry> items, long totalCount, long maxOverestimate, double confidence) {
+}
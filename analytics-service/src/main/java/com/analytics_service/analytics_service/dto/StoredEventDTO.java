@@ -0,0 +1,8 @@
+package com.analytics_service.analytics_service.dto;
+
+import java.time.Instant;
+
+// One event read back from the event log, with where it came from in Kafka
+public record StoredEventDTO(long sequence, Instant timestamp, int partition, long offset, String patientId,
+        String eventType) {
+}
@@ -0,0 +1,8 @@
+package com.analytics_service.analytics_service.dto;
+
+import java.time.Instant;
+import java.util.Map;
+
+// Counts in [start, end), largest first; keys with no events are left out
+public record WindowCountsDTO(Instant start, Instant end, long total, Map<String, Long> counts) {
+}
@@ -0,0 +1,98 @@
+package com.analytics_service.analytics_service.kafka;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+
+// What a batch that failed after being applied had already done, per partition: the
+// highest offset it reached, and the records at or below it whose hand-off to a retry
+// topic failed. The redelivered batch skips everything else up to that offset, so its
+// events are not counted twice, and runs only the unsent records again. An entry lives
+// from a failure until a batch gets past its offset, or until the partition is revoked.
+class AppliedOffsets {
+
+    private final Map<TopicPartition, Applied> byPartition = new ConcurrentHashMap<>();
+
+    List<ConsumerRecord<String, byte[]>> unapplied(List<ConsumerRecord<String, byte[]>> records) {
+        if (byPartition.isEmpty()) {
+            return records;
+        }
+        List<ConsumerRecord<String, byte[]>> unapplied = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, byte[]> record : records) {
+            Applied applied = byPartition.get(new TopicPartition(record.topic(), record.partition()));
+            if (applied == null || record.offset() > applied.through()
+                    || applied.unsent().contains(record.offset())) {
+                unapplied.add(record);
+            }
+        }
+        return unapplied;
+    }
+
+    // records were all applied, except unsent, which have to run again
+    void failed(List<ConsumerRecord<String, byte[]>> records, Collection<ConsumerRecord<String, byte[]>> unsent) {
+        Map<TopicPartition, Set<Long>> unsentOffsets = offsetsByPartition(unsent);
+        offsetsByPartition(records).forEach((partition, offsets) -> byPartition.compute(partition,
+                (p, previous) -> {
+                    Set<Long> stillUnsent = new HashSet<>(unsentOffsets.getOrDefault(p, Set.of()));
+                    long through = highest(offsets);
+                    if (previous != null) {
+                        // Unsent earlier and not part of this attempt
+                        previous.unsent().stream().filter(offset -> !offsets.contains(offset))
+                                .forEach(stillUnsent::add);
+                        through = Math.max(through, previous.through());
+                    }
+                    return new Applied(through, stillUnsent);
+                }));
+    }
+
+    // Every record of the batch is now applied, skipped ones included
+    void succeeded(List<ConsumerRecord<String, byte[]>> records) {
+        if (byPartition.isEmpty()) {
+            return;
+        }
+        offsetsByPartition(records).forEach((partition, offsets) -> byPartition.computeIfPresent(partition,
+                (p, previous) -> {
+                    long through = highest(offsets);
+                    if (previous.through() <= through) {
+                        return null;
+                    }
+                    Set<Long> stillUnsent = new HashSet<>(previous.unsent());
+                    stillUnsent.removeIf(offset -> offset <= through);
+                    return new Applied(previous.through(), stillUnsent);
+                }));
+    }
+
+    // Another consumer may take the partition over, and it may come back from an older offset
+    void revoked(Collection<TopicPartition> partitions) {
+        byPartition.keySet().removeAll(partitions);
+    }
+
+    private static Map<TopicPartition, Set<Long>> offsetsByPartition(
+            Collection<ConsumerRecord<String, byte[]>> records) {
+        Map<TopicPartition, Set<Long>> offsets = new HashMap<>();
+        for (ConsumerRecord<String, byte[]> record : records) {
+            offsets.computeIfAbsent(new TopicPartition(record.topic(), record.partition()), p -> new HashSet<>())
+                    .add(record.offset());
+        }
+        return offsets;
+    }
+
+    private static long highest(Set<Long> offsets) {
+        long highest = Long.MIN_VALUE;
+        for (long offset : offsets) {
+            highest = Math.max(highest, offset);
+        }
+        return highest;
+    }
+
+    private record Applied(long through, Set<Long> unsent) {
+    }
+}
@@ -0,0 +1,370 @@
+package com.analytics_service.analytics_service.kafka;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import com.analytics_service.analytics_service.aggregation.EventAggregator;
+import com.analytics_service.analytics_service.dto.BackfillStatusDTO;
+import com.analytics_service.analytics_service.sketch.PatientSketches;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import patient.event.PatientEvent;
+
+// Recomputes the aggregates from the topic's history, e.g. after a fix to how events are
+// counted. A backfill reads the partitions this instance's live listener is assigned (each
+// instance of the group only counts its own) from a timestamp or offset up to the end
+// offsets taken when it starts, on a consumer of its own with large fetches, and decodes
+// each poll in parallel lanes into a shadow copy of the aggregates (ShadowAggregates).
+// The live listener keeps counting meanwhile, and also copies the events past those end
+// offsets into the shadow. Once the backfill reaches the end offsets, the shadow replaces
+// the live aggregates in one step, unless a rebalance moved partitions meanwhile. The live
+// listeners are only paused twice, each time for one batch: while the assignment and end
+// offsets are taken and for the swap.
+@Service
+public class BackfillService {
+
+    public enum State {
+        IDLE, RUNNING, COMPLETED, CANCELLED, FAILED
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(BackfillService.class);
+    private static final Duration POLL_TIMEOUT = Duration.ofSeconds(1);
+
+    private final KafkaConsumer kafkaConsumer;
+    private final EventAggregator eventAggregator;
+    private final PatientSketches patientSketches;
+    private final ConsumerFactory<String, byte[]> consumerFactory;
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final RetryTierListeners retryTierListeners;
+    private final String topic;
+    private final String groupId;
+    private final Properties consumerOverrides = new Properties();
+    private final int lanes;
+    private final int minRecordsPerLane;
+    private final long pauseTimeoutMillis;
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(
+            new CustomizableThreadFactory("analytics-backfill-"));
+    // Separate from the live decode pool, so a backfill never takes the live listener's threads
+    private final ExecutorService decodePool;
+    private final ReentrantLock startLock = new ReentrantLock();
+    private final Counter backfilledRecords;
+    private final Counter malformedRecords;
+
+    private volatile State state = State.IDLE;
+    private volatile String from;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile long recordsRead;
+    private volatile long recordsRemaining;
+    private volatile String error;
+    private volatile boolean cancelRequested;
+
+    public BackfillService(KafkaConsumer kafkaConsumer, EventAggregator eventAggregator,
+            PatientSketches patientSketches, ConsumerFactory<String, byte[]> consumerFactory,
+            KafkaListenerEndpointRegistry listenerRegistry, RetryTierListeners retryTierListeners,
+            MeterRegistry meterRegistry,
+            @Value("${analytics.kafka.topic:patient}") String topic,
+            @Value("${analytics.backfill.group-id:analytics_backfill}") String groupId,
+            @Value("${analytics.backfill.threads:0}") int threads,
+            @Value("${analytics.kafka.min-records-per-lane:256}") int minRecordsPerLane,
+            @Value("${analytics.backfill.max-poll-records:10000}") int maxPollRecords,
+            @Value("${analytics.backfill.fetch-min-bytes:1048576}") int fetchMinBytes,
+            @Value("${analytics.backfill.fetch-max-wait-ms:500}") int fetchMaxWaitMs,
+            @Value("${analytics.backfill.max-partition-fetch-bytes:16777216}") int maxPartitionFetchBytes,
+            @Value("${analytics.backfill.fetch-max-bytes:67108864}") int fetchMaxBytes,
+            @Value("${analytics.backfill.pause-timeout-ms:30000}") long pauseTimeoutMillis) {
+        this.kafkaConsumer = kafkaConsumer;
+        this.eventAggregator = eventAggregator;
+        this.patientSketches = patientSketches;
+        this.consumerFactory = consumerFactory;
+        this.listenerRegistry = listenerRegistry;
+        this.retryTierListeners = retryTierListeners;
+        this.topic = topic;
+        this.groupId = groupId;
+        // Half the cores by default, leaving the rest to the live listener
+        this.lanes = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.minRecordsPerLane = minRecordsPerLane;
+        this.pauseTimeoutMillis = pauseTimeoutMillis;
+        this.decodePool = Executors.newFixedThreadPool(lanes, new CustomizableThreadFactory("backfill-decode-"));
+        // Override values must be strings, the consumer factory only copies string properties
+        consumerOverrides.setProperty(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, String.valueOf(maxPollRecords));
+        consumerOverrides.setProperty(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, String.valueOf(fetchMinBytes));
+        consumerOverrides.setProperty(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, String.valueOf(fetchMaxWaitMs));
+        consumerOverrides.setProperty(ConsumerConfig.MAX_PARTITION_FETCH_BYTES_CONFIG,
+                String.valueOf(maxPartitionFetchBytes));
+        consumerOverrides.setProperty(ConsumerConfig.FETCH_MAX_BYTES_CONFIG, String.valueOf(fetchMaxBytes));
+        // Partitions are assigned, not subscribed, and nothing is committed
+        consumerOverrides.setProperty(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        this.backfilledRecords = meterRegistry.counter("analytics.backfill.records", "result", "processed");
+        this.malformedRecords = meterRegistry.counter("analytics.backfill.records", "result", "malformed");
+    }
+
+    // Exactly one of fromTimestamp (epoch millis) and fromOffset is given; fromOffset
+    // applies to every partition and is clamped to what the partition still holds
+    public BackfillStatusDTO start(Long fromTimestamp, Long fromOffset) {
+        startLock.lock();
+        try {
+            if (state == State.RUNNING) {
+                throw new IllegalStateException("A backfill is already running");
+            }
+            this.from = fromTimestamp != null ? Instant.ofEpochMilli(fromTimestamp).toString() : "offset " + fromOffset;
+            this.startedAt = Instant.now();
+            this.finishedAt = null;
+            this.recordsRead = 0;
+            this.recordsRemaining = 0;
+            this.error = null;
+            this.cancelRequested = false;
+            this.state = State.RUNNING;
+            try {
+                runner.execute(() -> run(fromTimestamp, fromOffset));
+            } catch (RejectedExecutionException e) {
+                // Shutting down
+                finish(State.FAILED, e.toString());
+                throw new IllegalStateException("Backfills are no longer accepted, the service is stopping", e);
+            }
+            return status();
+        } finally {
+            startLock.unlock();
+        }
+    }
+
+    public boolean cancel() {
+        if (state != State.RUNNING) {
+            return false;
+        }
+        cancelRequested = true;
+        return true;
+    }
+
+    public BackfillStatusDTO status() {
+        return new BackfillStatusDTO(state.name(), from, startedAt, finishedAt, recordsRead, recordsRemaining, error);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cancelRequested = true;
+        runner.shutdown();
+        decodePool.shutdown();
+    }
+
+    private void run(Long fromTimestamp, Long fromOffset) {
+        ShadowAggregates[] shadow = new ShadowAggregates[1];
+        long[][] ends = new long[1][];
+        List<TopicPartition> partitions = new ArrayList<>();
+        try (Consumer<String, byte[]> consumer = consumerFactory.createConsumer(groupId, "analytics-backfill", null,
+                consumerOverrides)) {
+            // Taken with the live listeners paused, so every event past them is one the live
+            // listener counts with the shadow already in place. Partitions this instance does
+            // not own stay at end offset 0, so whatever the live listener counts of them,
+            // e.g. from a retry topic, is mirrored as it is counted live.
+            boolean paused = withLivePaused(() -> {
+                partitions.addAll(livePartitions());
+                if (partitions.isEmpty()) {
+                    throw new IllegalStateException("No partition of " + topic + " is assigned to this instance");
+                }
+                consumer.assign(partitions);
+                long[] endOffsets = new long[partitions.get(partitions.size() - 1).partition() + 1];
+                consumer.endOffsets(partitions).forEach((partition, end) -> endOffsets[partition.partition()] = end);
+                ends[0] = endOffsets;
+                shadow[0] = new ShadowAggregates(topic, endOffsets, lanes, eventAggregator, patientSketches);
+                kafkaConsumer.mirrorTo(shadow[0]);
+            });
+            if (!paused) {
+                throw new IllegalStateException("The live listeners did not pause within " + pauseTimeoutMillis
+                        + " ms");
+            }
+            long[] endOffsets = ends[0];
+            seek(consumer, partitions, endOffsets, fromTimestamp, fromOffset);
+            log.info("Backfill of {} partitions {} from {} started, reading up to offsets {}", topic,
+                    partitions.stream().map(TopicPartition::partition).toList(), from, Arrays.toString(endOffsets));
+
+            List<TopicPartition> remaining = new ArrayList<>(partitions);
+            while (!caughtUp(consumer, remaining, endOffsets)) {
+                if (cancelRequested) {
+                    finish(State.CANCELLED, null);
+                    return;
+                }
+                List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+                for (ConsumerRecord<String, byte[]> record : consumer.poll(POLL_TIMEOUT)) {
+                    if (record.offset() < endOffsets[record.partition()]) {
+                        records.add(record);
+                    }
+                }
+                decode(records, shadow[0]);
+                recordsRead += records.size();
+            }
+
+            // Summed before the pause, so the swap itself only adds the live part
+            EventAggregator aggregator = shadow[0].mergedAggregator();
+            PatientSketches sketches = shadow[0].mergedSketches();
+            boolean swapped = withLivePaused(() -> {
+                // The live aggregates then hold partitions the shadow never read, or the other way round
+                if (!partitions.equals(livePartitions())) {
+                    throw new IllegalStateException("The partitions assigned to this instance changed during the"
+                            + " backfill, retry once the group is stable");
+                }
+                aggregator.merge(shadow[0].liveAggregator());
+                sketches.merge(shadow[0].liveSketches());
+                eventAggregator.replaceWith(aggregator);
+                patientSketches.replaceWith(sketches);
+                kafkaConsumer.mirrorTo(null);
+            });
+            if (!swapped) {
+                throw new IllegalStateException("The live listeners did not pause within " + pauseTimeoutMillis
+                        + " ms to swap in the backfilled aggregates");
+            }
+            log.info("Backfill of {} from {} swapped in after {} records", topic, from, recordsRead);
+            finish(State.COMPLETED, null);
+        } catch (RuntimeException | InterruptedException e) {
+            log.error("Backfill of {} from {} failed : {}", topic, from, e.toString());
+            finish(State.FAILED, e.toString());
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            // Not worth a pause: whatever the live listener mirrors meanwhile is dropped with the shadow
+            if (shadow[0] != null && state != State.COMPLETED) {
+                kafkaConsumer.mirrorTo(null);
+            }
+        }
+    }
+
+    // Sorted by partition number; empty when the live listener is stopped or unassigned
+    private List<TopicPartition> livePartitions() {
+        MessageListenerContainer main = listenerRegistry.getListenerContainer(KafkaConsumer.LISTENER_ID);
+        Collection<TopicPartition> assigned = main == null ? null : main.getAssignedPartitions();
+        List<TopicPartition> partitions = new ArrayList<>();
+        if (assigned != null) {
+            assigned.stream().filter(partition -> topic.equals(partition.topic())).forEach(partitions::add);
+        }
+        partitions.sort(Comparator.comparingInt(TopicPartition::partition));
+        return partitions;
+    }
+
+    private void seek(Consumer<String, byte[]> consumer, List<TopicPartition> partitions, long[] endOffsets,
+            Long fromTimestamp, Long fromOffset) {
+        if (fromTimestamp != null) {
+            Map<TopicPartition, Long> timestamps = new HashMap<>();
+            partitions.forEach(partition -> timestamps.put(partition, fromTimestamp));
+            Map<TopicPartition, OffsetAndTimestamp> offsets = consumer.offsetsForTimes(timestamps);
+            for (TopicPartition partition : partitions) {
+                OffsetAndTimestamp found = offsets.get(partition);
+                // No event that recent: nothing to read in this partition
+                consumer.seek(partition, found == null ? endOffsets[partition.partition()] : found.offset());
+            }
+        } else {
+            Map<TopicPartition, Long> beginnings = consumer.beginningOffsets(partitions);
+            for (TopicPartition partition : partitions) {
+                consumer.seek(partition, Math.min(Math.max(fromOffset, beginnings.get(partition)),
+                        endOffsets[partition.partition()]));
+            }
+        }
+    }
+
+    // Pauses each partition as it reaches its end offset, so later polls only fetch the others
+    private boolean caughtUp(Consumer<String, byte[]> consumer, List<TopicPartition> remaining, long[] endOffsets) {
+        long behind = 0;
+        for (int i = remaining.size() - 1; i >= 0; i--) {
+            TopicPartition partition = remaining.get(i);
+            long left = endOffsets[partition.partition()] - consumer.position(partition);
+            if (left <= 0) {
+                consumer.pause(List.of(partition));
+                remaining.remove(i);
+            } else {
+                behind += left;
+            }
+        }
+        recordsRemaining = behind;
+        return remaining.isEmpty();
+    }
+
+    // Splits the poll into contiguous lanes, each counted into its own shadow part; counts
+    // do not depend on order, so unlike the live listener there is no need to split by key
+    private void decode(List<ConsumerRecord<String, byte[]>> records, ShadowAggregates shadow) {
+        int laneCount = Math.max(1, Math.min(lanes, records.size() / minRecordsPerLane));
+        int perLane = (records.size() + laneCount - 1) / laneCount;
+        CompletableFuture<?>[] others = new CompletableFuture<?>[laneCount - 1];
+        for (int lane = 1; lane < laneCount; lane++) {
+            int part = lane;
+            List<ConsumerRecord<String, byte[]>> laneRecords = records.subList(Math.min(records.size(), lane * perLane),
+                    Math.min(records.size(), (lane + 1) * perLane));
+            others[lane - 1] = CompletableFuture.runAsync(() -> decodeLane(part, laneRecords, shadow), decodePool);
+        }
+        decodeLane(0, records.subList(0, Math.min(records.size(), perLane)), shadow);
+        CompletableFuture.allOf(others).join();
+    }
+
+    private void decodeLane(int lane, List<ConsumerRecord<String, byte[]>> records, ShadowAggregates shadow) {
+        for (ConsumerRecord<String, byte[]> record : records) {
+            try {
+                shadow.record(lane, record.timestamp(), PatientEvent.parseFrom(record.value()));
+                backfilledRecords.increment();
+            } catch (InvalidProtocolBufferException e) {
+                // Already dead-lettered when the live listener first saw it
+                malformedRecords.increment();
+            }
+        }
+    }
+
+    // Pauses the main and retry listeners, waits for their current batches to finish, runs
+    // the action and resumes them. False, without running the action, on timeout.
+    private boolean withLivePaused(Runnable action) throws InterruptedException {
+        List<MessageListenerContainer> containers = new ArrayList<>(retryTierListeners.containers());
+        MessageListenerContainer main = listenerRegistry.getListenerContainer(KafkaConsumer.LISTENER_ID);
+        if (main != null) {
+            containers.add(main);
+        }
+        containers.removeIf(container -> !container.isRunning());
+        containers.forEach(MessageListenerContainer::pause);
+        try {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(pauseTimeoutMillis);
+            while (!containers.stream().allMatch(MessageListenerContainer::isContainerPaused)) {
+                if (System.nanoTime() > deadline) {
+                    return false;
+                }
+                Thread.sleep(10);
+            }
+            action.run();
+            return true;
+        } finally {
+            containers.forEach(MessageListenerContainer::resume);
+        }
+    }
+
+    private void finish(State finalState, String failure) {
+        this.error = failure;
+        this.finishedAt = Instant.now();
+        this.state = finalState;
+    }
+}
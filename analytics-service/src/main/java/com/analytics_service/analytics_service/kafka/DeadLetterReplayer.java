@@ -0,0 +1,90 @@
+package com.analytics_service.analytics_service.kafka;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.stereotype.Component;
+
+// Moves dead letters back into the first retry tier, e.g. once the bug that failed them is
+// fixed. Progress through the dead-letter topic is committed under its own consumer group,
+// so each dead letter is replayed once however many times replay is called; one that
+// fails again simply comes back to the dead-letter topic after the retry tiers.
+@Component
+public class DeadLetterReplayer {
+
+    private static final Logger log = LoggerFactory.getLogger(DeadLetterReplayer.class);
+    private static final Duration POLL_TIMEOUT = Duration.ofSeconds(1);
+
+    private final ConsumerFactory<String, byte[]> consumerFactory;
+    private final RetryRouter retryRouter;
+    private final String groupId;
+    private final ReentrantLock replaying = new ReentrantLock();
+
+    public DeadLetterReplayer(ConsumerFactory<String, byte[]> consumerFactory, RetryRouter retryRouter,
+            @Value("${analytics.retry.replay-group-id:analytics_dlt_replay}") String groupId) {
+        this.consumerFactory = consumerFactory;
+        this.retryRouter = retryRouter;
+        this.groupId = groupId;
+    }
+
+    // Replays up to limit dead letters, oldest first per partition, and returns how many
+    public int replay(int limit) {
+        if (!replaying.tryLock()) {
+            throw new IllegalStateException("A dead-letter replay is already running");
+        }
+        Properties overrides = new Properties();
+        // A new group starts at the oldest dead letter, not after the newest
+        overrides.setProperty(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        overrides.setProperty(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, String.valueOf(Math.min(limit, 1000)));
+        try (Consumer<String, byte[]> consumer = consumerFactory.createConsumer(groupId, null, null, overrides)) {
+            List<TopicPartition> partitions = new ArrayList<>();
+            List<PartitionInfo> info = consumer.partitionsFor(retryRouter.deadLetterTopic(), POLL_TIMEOUT);
+            if (info == null || info.isEmpty()) {
+                return 0;
+            }
+            info.forEach(partition -> partitions.add(new TopicPartition(partition.topic(), partition.partition())));
+            consumer.assign(partitions);
+
+            List<CompletableFuture<?>> sends = new ArrayList<>();
+            Map<TopicPartition, OffsetAndMetadata> replayed = new HashMap<>();
+            while (sends.size() < limit) {
+                List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+                consumer.poll(POLL_TIMEOUT).forEach(records::add);
+                if (records.isEmpty()) {
+                    break;
+                }
+                for (ConsumerRecord<String, byte[]> record : records.subList(0, Math.min(records.size(),
+                        limit - sends.size()))) {
+                    sends.add(retryRouter.replay(record));
+                    replayed.put(new TopicPartition(record.topic(), record.partition()),
+                            new OffsetAndMetadata(record.offset() + 1));
+                }
+            }
+            // Only committed once every replayed record is on the retry topic
+            CompletableFuture.allOf(sends.toArray(CompletableFuture<?>[]::new)).join();
+            if (!replayed.isEmpty()) {
+                consumer.commitSync(replayed);
+            }
+            log.info("Replayed {} dead letters from {}", sends.size(), retryRouter.deadLetterTopic());
+            return sends.size();
+        } finally {
+            replaying.unlock();
+        }
+    }
+}
@@ -1,34 +1,219 @@
 package com.analytics_service.analytics_service.kafka;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
+import com.analytics_service.analytics_service.aggregation.EventAggregator;
+import com.analytics_service.analytics_service.sketch.PatientSketches;
+import com.analytics_service.analytics_service.store.EventLog;
 import com.google.protobuf.InvalidProtocolBufferException;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import patient.event.PatientEvent;
 
 @Service
 public class KafkaConsumer {
 
+    public static final String LISTENER_ID = "analytics-events";
+
     private static final Logger log = LoggerFactory.getLogger(KafkaConsumer.class);
+    // Returned for every record processed in place, so the healthy path allocates nothing
+    private static final CompletableFuture<Void> PROCESSED = CompletableFuture.completedFuture(null);
+
+    private final EventAggregator eventAggregator;
+    private final PatientSketches patientSketches;
+    private final EventLog eventLog;
+    private final RetryRouter retryRouter;
+    // Shared by every consumer thread; decoding is CPU-bound so it is sized to the cores
+    private final ExecutorService decodePool;
+    private final int lanes;
+    private final int minRecordsPerLane;
+    private final Counter processedRecords;
+    private final Counter malformedRecords;
+    private final Counter failedRecords;
+    private final DistributionSummary batchSize;
+    private final Timer batchTimer;
+    // Time from the event being produced to it being counted
+    private final Timer eventLag;
+    // Set while a backfill rebuilds the aggregates, see BackfillService
+    private volatile ShadowAggregates shadow;
+    // What a failed batch already counted, skipped when it is redelivered
+    private final AppliedOffsets appliedOffsets = new AppliedOffsets();
+
+    public KafkaConsumer(EventAggregator eventAggregator, PatientSketches patientSketches, EventLog eventLog,
+            RetryRouter retryRouter, MeterRegistry meterRegistry,
+            @Value("${analytics.kafka.decode-threads:0}") int decodeThreads,
+            @Value("${analytics.kafka.min-records-per-lane:256}") int minRecordsPerLane) {
+        this.eventAggregator = eventAggregator;
+        this.patientSketches = patientSketches;
+        this.eventLog = eventLog;
+        this.retryRouter = retryRouter;
+        this.lanes = decodeThreads > 0 ? decodeThreads : Runtime.getRuntime().availableProcessors();
+        this.decodePool = Executors.newFixedThreadPool(lanes, new CustomizableThreadFactory("event-decode-"));
+        this.minRecordsPerLane = minRecordsPerLane;
+        // The rate of this counter is the records-per-second figure
+        this.processedRecords = meterRegistry.counter("analytics.kafka.records", "result", "processed");
+        this.malformedRecords = meterRegistry.counter("analytics.kafka.records", "result", "malformed");
+        this.failedRecords = meterRegistry.counter("analytics.kafka.records", "result", "failed");
+        this.batchSize = meterRegistry.summary("analytics.kafka.batch.size");
+        this.batchTimer = meterRegistry.timer("analytics.kafka.batch");
+        this.eventLag = Timer.builder("analytics.kafka.event.lag")
+                .description("Time from a patient event being produced to it being counted")
+                .register(meterRegistry);
+    }
+
+    @KafkaListener(id = LISTENER_ID, topics = "${analytics.kafka.topic:patient}", groupId = "analytics_group",
+            batch = "true")
+    public void consumeEvents(List<ConsumerRecord<String, byte[]>> batch, Acknowledgment acknowledgment) {
+        long started = System.nanoTime();
+        List<ConsumerRecord<String, byte[]>> records = appliedOffsets.unapplied(batch);
+        // Stored first and on this thread, where each partition's records are still in offset order
+        eventLog.append(records);
+        Queue<HandOff> handedOff = new ConcurrentLinkedQueue<>();
+        int laneCount = Math.min(lanes, records.size() / minRecordsPerLane);
+        if (laneCount <= 1) {
+            consumeAll(records, handedOff);
+        } else {
+            // Records are split by key, so each patient's events stay in one lane, in offset order
+            List<List<ConsumerRecord<String, byte[]>>> byLane = new ArrayList<>(laneCount);
+            for (int lane = 0; lane < laneCount; lane++) {
+                byLane.add(new ArrayList<>(records.size() / laneCount + 1));
+            }
+            for (ConsumerRecord<String, byte[]> record : records) {
+                byLane.get(Math.floorMod(laneKey(record), laneCount)).add(record);
+            }
+            CompletableFuture<?>[] others = new CompletableFuture<?>[laneCount - 1];
+            for (int lane = 1; lane < laneCount; lane++) {
+                List<ConsumerRecord<String, byte[]>> laneRecords = byLane.get(lane);
+                others[lane - 1] = CompletableFuture.runAsync(() -> consumeAll(laneRecords, handedOff), decodePool);
+            }
+            // The consumer thread takes the first lane itself rather than waiting idle
+            consumeAll(byLane.get(0), handedOff);
+            CompletableFuture.allOf(others).join();
+        }
+        // Failed records are only acknowledged once they are on a retry or dead-letter topic;
+        // if that send fails, the listener fails and the batch is redelivered
+        awaitHandOffs(batch, records, handedOff);
 
-    @KafkaListener(topics = "patient", groupId = "analytics_group")
-    // The only change is Byte[] -> byte[]
-    public void consumeEvent(ConsumerRecord<String, byte[]> record) {
+        // Committed with the next poll; a crash before then redelivers the batch
+        acknowledgment.acknowledge();
+        batchSize.record(batch.size());
+        batchTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        long now = System.currentTimeMillis();
+        for (ConsumerRecord<String, byte[]> record : records) {
+            eventLag.record(Math.max(0, now - record.timestamp()), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Processes the record in place, or hands it to the retry pipeline and returns the
+    // hand-off, so the caller never waits on one bad record
+    public CompletableFuture<?> consumeEvent(ConsumerRecord<String, byte[]> record) {
         try {
             byte[] eventBytes = record.value();
 
             PatientEvent patientEvent = PatientEvent.parseFrom(eventBytes);
 
-            log.info("SUCCESS: New event consumed and parsed from partition {} with offset {}",
-                    record.partition(), record.offset());
-            log.info("--> Event details: {}", patientEvent);
+            // Windowed by the record timestamp, the time patient-service produced the event
+            eventAggregator.record(record.timestamp(), patientEvent.getEventType(), patientEvent.getEmail());
+            patientSketches.record(record.timestamp(), patientEvent.getPatientId(), patientEvent.getEmail(),
+                    patientEvent.getEventType());
+            ShadowAggregates rebuilding = shadow;
+            if (rebuilding != null) {
+                rebuilding.recordLive(record, patientEvent);
+            }
+            processedRecords.increment();
+            log.debug("Event consumed from partition {} with offset {} : {}", record.partition(), record.offset(),
+                    patientEvent.getEventType());
+            return PROCESSED;
 
         } catch (InvalidProtocolBufferException e) {
-            log.error("Error deserializing the event message: {}", e.getMessage());
+            // The same bytes will never parse, so they go straight to the dead-letter topic
+            malformedRecords.increment();
+            log.error("Error deserializing the event at {}-{} offset {}, dead-lettered : {}", record.topic(),
+                    record.partition(), record.offset(), e.getMessage());
+            return retryRouter.route(record, e, false);
+        } catch (RuntimeException e) {
+            failedRecords.increment();
+            log.warn("Processing the event at {}-{} offset {} failed, retrying later : {}", record.topic(),
+                    record.partition(), record.offset(), e.toString());
+            return retryRouter.route(record, e, true);
         }
     }
-}
\ No newline at end of file
+
+    void consumeAll(List<ConsumerRecord<String, byte[]>> records, Queue<HandOff> handedOff) {
+        for (ConsumerRecord<String, byte[]> record : records) {
+            CompletableFuture<?> result = consumeEvent(record);
+            if (result != PROCESSED) {
+                handedOff.add(new HandOff(record, result));
+            }
+        }
+    }
+
+    // Waits until every handed-off record is on its retry or dead-letter topic. records are
+    // the ones of batch this attempt applied; if a send failed they stay counted, the
+    // exception makes the container redeliver batch, and unapplied then leaves out all but
+    // the records that were not sent.
+    void awaitHandOffs(List<ConsumerRecord<String, byte[]>> batch, List<ConsumerRecord<String, byte[]>> records,
+            Queue<HandOff> handedOff) {
+        try {
+            CompletableFuture.allOf(handedOff.stream().map(HandOff::sent).toArray(CompletableFuture<?>[]::new))
+                    .join();
+        } catch (CompletionException e) {
+            appliedOffsets.failed(records, handedOff.stream()
+                    .filter(handOff -> handOff.sent().isCompletedExceptionally()).map(HandOff::record).toList());
+            throw e;
+        }
+        appliedOffsets.succeeded(batch);
+    }
+
+    // The records a redelivered batch has not applied yet
+    List<ConsumerRecord<String, byte[]>> unapplied(List<ConsumerRecord<String, byte[]>> records) {
+        return appliedOffsets.unapplied(records);
+    }
+
+    public void partitionsRevoked(Collection<TopicPartition> partitions) {
+        appliedOffsets.revoked(partitions);
+    }
+
+    // Set, and cleared on a swap, with the listeners paused, so each event is either mirrored
+    // or not. A failed or cancelled backfill clears it without pausing them: a batch may then
+    // be part mirrored, but that shadow is thrown away.
+    void mirrorTo(ShadowAggregates shadow) {
+        this.shadow = shadow;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        decodePool.shutdown();
+    }
+
+    record HandOff(ConsumerRecord<String, byte[]> record, CompletableFuture<?> sent) {
+    }
+
+    // Events are keyed by patient id; unkeyed records only need to keep partition order
+    private static int laneKey(ConsumerRecord<String, byte[]> record) {
+        return record.key() != null ? record.key().hashCode() : record.partition();
+    }
+}
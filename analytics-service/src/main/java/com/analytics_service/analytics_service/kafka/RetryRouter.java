@@ -0,0 +1,154 @@
+package com.analytics_service.analytics_service.kafka;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Sends records that could not be processed to delayed retry topics, one per backoff
+// tier (patient-retry-0, patient-retry-1, ...), and after the last tier, or straight away
+// when retrying cannot help, to the dead-letter topic (patient-dlt). The original key,
+// bytes and timestamp are kept, so a retried event still counts in the window it was
+// produced in. The first failure's topic, partition, offset and timestamp and the
+// latest exception travel in Spring Kafka's standard kafka_dlt-* headers.
+@Component
+public class RetryRouter {
+
+    static final String ATTEMPT_HEADER = "analytics-retry-attempt";
+    static final String DUE_AT_HEADER = "analytics-retry-due-at";
+
+    private static final Set<String> RETRY_HEADERS = Set.of(ATTEMPT_HEADER, DUE_AT_HEADER);
+    // Replaced on every hop rather than accumulated
+    private static final Set<String> HOP_HEADERS = Set.of(ATTEMPT_HEADER, DUE_AT_HEADER,
+            KafkaHeaders.DLT_EXCEPTION_FQCN, KafkaHeaders.DLT_EXCEPTION_MESSAGE);
+
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final List<String> tierTopics = new ArrayList<>();
+    private final long[] tierDelays;
+    private final String deadLetterTopic;
+    private final Counter[] retried;
+    private final Counter deadLettered;
+    private final Counter replayed;
+
+    public RetryRouter(KafkaTemplate<String, byte[]> kafkaTemplate, MeterRegistry meterRegistry,
+            @Value("${analytics.kafka.topic:patient}") String topic,
+            @Value("${analytics.retry.attempts:3}") int attempts,
+            @Value("${analytics.retry.initial-delay-ms:1000}") long initialDelayMillis,
+            @Value("${analytics.retry.multiplier:10}") double multiplier,
+            @Value("${analytics.retry.max-delay-ms:600000}") long maxDelayMillis) {
+        if (attempts < 1) {
+            throw new IllegalArgumentException("analytics.retry.attempts must be at least 1");
+        }
+        this.kafkaTemplate = kafkaTemplate;
+        this.tierDelays = new long[attempts];
+        this.retried = new Counter[attempts];
+        double delay = initialDelayMillis;
+        for (int tier = 0; tier < attempts; tier++) {
+            tierTopics.add(topic + "-retry-" + tier);
+            tierDelays[tier] = Math.min((long) delay, maxDelayMillis);
+            retried[tier] = meterRegistry.counter("analytics.kafka.retry", "tier", String.valueOf(tier));
+            delay *= multiplier;
+        }
+        this.deadLetterTopic = topic + "-dlt";
+        this.deadLettered = meterRegistry.counter("analytics.kafka.dead.letters");
+        this.replayed = meterRegistry.counter("analytics.kafka.dead.letters.replayed");
+    }
+
+    public List<String> tierTopics() {
+        return tierTopics;
+    }
+
+    public long tierDelayMillis(int tier) {
+        return tierDelays[tier];
+    }
+
+    public String deadLetterTopic() {
+        return deadLetterTopic;
+    }
+
+    // Completes once the record is safely on its next topic
+    public CompletableFuture<?> route(ConsumerRecord<String, byte[]> record, Exception failure, boolean retryable) {
+        int attempt = intHeader(record.headers(), ATTEMPT_HEADER);
+        if (!retryable || attempt >= tierTopics.size()) {
+            deadLettered.increment();
+            return send(deadLetterTopic, record, failure, attempt, 0);
+        }
+        retried[attempt].increment();
+        return send(tierTopics.get(attempt), record, failure, attempt + 1,
+                System.currentTimeMillis() + tierDelays[attempt]);
+    }
+
+    // Back into the first tier, due now, as if it had just failed for the first time; the
+    // headers saying where it came from and why it failed last are kept
+    public CompletableFuture<?> replay(ConsumerRecord<String, byte[]> deadLetter) {
+        Headers headers = copyHeaders(deadLetter, RETRY_HEADERS);
+        headers.add(ATTEMPT_HEADER, intBytes(1));
+        headers.add(DUE_AT_HEADER, longBytes(System.currentTimeMillis()));
+        replayed.increment();
+        return kafkaTemplate.send(new ProducerRecord<>(tierTopics.get(0), null, deadLetter.timestamp(),
+                deadLetter.key(), deadLetter.value(), headers));
+    }
+
+    private CompletableFuture<?> send(String topic, ConsumerRecord<String, byte[]> record, Exception failure,
+            int attempt, long dueAtMillis) {
+        Headers headers = copyHeaders(record, HOP_HEADERS);
+        if (headers.lastHeader(KafkaHeaders.DLT_ORIGINAL_TOPIC) == null) {
+            headers.add(KafkaHeaders.DLT_ORIGINAL_TOPIC, record.topic().getBytes(StandardCharsets.UTF_8));
+            headers.add(KafkaHeaders.DLT_ORIGINAL_PARTITION, intBytes(record.partition()));
+            headers.add(KafkaHeaders.DLT_ORIGINAL_OFFSET, longBytes(record.offset()));
+            headers.add(KafkaHeaders.DLT_ORIGINAL_TIMESTAMP, longBytes(record.timestamp()));
+        }
+        headers.add(KafkaHeaders.DLT_EXCEPTION_FQCN, failure.getClass().getName().getBytes(StandardCharsets.UTF_8));
+        headers.add(KafkaHeaders.DLT_EXCEPTION_MESSAGE,
+                String.valueOf(failure.getMessage()).getBytes(StandardCharsets.UTF_8));
+        headers.add(ATTEMPT_HEADER, intBytes(attempt));
+        if (dueAtMillis > 0) {
+            headers.add(DUE_AT_HEADER, longBytes(dueAtMillis));
+        }
+        return kafkaTemplate.send(new ProducerRecord<>(topic, null, record.timestamp(), record.key(), record.value(),
+                headers));
+    }
+
+    static long longHeader(Headers headers, String name) {
+        Header header = headers.lastHeader(name);
+        return header == null || header.value().length != Long.BYTES ? 0 : ByteBuffer.wrap(header.value()).getLong();
+    }
+
+    static int intHeader(Headers headers, String name) {
+        Header header = headers.lastHeader(name);
+        return header == null || header.value().length != Integer.BYTES ? 0 : ByteBuffer.wrap(header.value()).getInt();
+    }
+
+    private static Headers copyHeaders(ConsumerRecord<String, byte[]> record, Set<String> excluded) {
+        Headers headers = new RecordHeaders();
+        for (Header header : record.headers()) {
+            if (!excluded.contains(header.key())) {
+                headers.add(header);
+            }
+        }
+        return headers;
+    }
+
+    private static byte[] intBytes(int value) {
+        return ByteBuffer.allocate(Integer.BYTES).putInt(value).array();
+    }
+
+    private static byte[] longBytes(long value) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(value).array();
+    }
+}
@@ -0,0 +1,90 @@
+package com.analytics_service.analytics_service.kafka;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.listener.BatchAcknowledgingMessageListener;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+// Consumes the retry topics, each tier in its own container so a ten-minute tier never
+// holds up a one-second one, and none of them shares a thread with the main topic. Every
+// record of a tier waits the same delay, so within a partition they come due in offset
+// order: processing stops at the first record not yet due, and nack pauses the container
+// until then (it keeps polling while paused, so the group does not rebalance) and
+// redelivers from that record.
+@Component
+public class RetryTierListeners implements SmartLifecycle {
+
+    private final ConcurrentKafkaListenerContainerFactory<String, byte[]> containerFactory;
+    private final RetryRouter retryRouter;
+    private final KafkaConsumer kafkaConsumer;
+    private final List<ConcurrentMessageListenerContainer<String, byte[]>> containers = new ArrayList<>();
+
+    public RetryTierListeners(ConcurrentKafkaListenerContainerFactory<String, byte[]> containerFactory,
+            RetryRouter retryRouter, KafkaConsumer kafkaConsumer) {
+        this.containerFactory = containerFactory;
+        this.retryRouter = retryRouter;
+        this.kafkaConsumer = kafkaConsumer;
+    }
+
+    @Override
+    public void start() {
+        List<String> topics = retryRouter.tierTopics();
+        for (int tier = 0; tier < topics.size(); tier++) {
+            ConcurrentMessageListenerContainer<String, byte[]> container = containerFactory
+                    .createContainer(topics.get(tier));
+            container.setBeanName("analytics-retry-" + tier);
+            // Retries are the exception, one consumer per tier is plenty
+            container.setConcurrency(1);
+            container.setupMessageListener((BatchAcknowledgingMessageListener<String, byte[]>) this::onRetries);
+            container.start();
+            containers.add(container);
+        }
+    }
+
+    @Override
+    public void stop() {
+        containers.forEach(ConcurrentMessageListenerContainer::stop);
+        containers.clear();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return !containers.isEmpty();
+    }
+
+    List<MessageListenerContainer> containers() {
+        return List.copyOf(containers);
+    }
+
+    // A batch redelivered after a failed hand-off skips the records it already counted
+    void onRetries(List<ConsumerRecord<String, byte[]>> records, Acknowledgment acknowledgment) {
+        Queue<KafkaConsumer.HandOff> handedOff = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < records.size(); i++) {
+            long wait = RetryRouter.longHeader(records.get(i).headers(), RetryRouter.DUE_AT_HEADER)
+                    - System.currentTimeMillis();
+            if (wait > 0) {
+                List<ConsumerRecord<String, byte[]>> batch = records.subList(0, i);
+                List<ConsumerRecord<String, byte[]>> due = kafkaConsumer.unapplied(batch);
+                kafkaConsumer.consumeAll(due, handedOff);
+                kafkaConsumer.awaitHandOffs(batch, due, handedOff);
+                // Commits the records before i and redelivers the rest once the wait is over
+                acknowledgment.nack(i, Duration.ofMillis(wait));
+                return;
+            }
+        }
+        List<ConsumerRecord<String, byte[]>> due = kafkaConsumer.unapplied(records);
+        kafkaConsumer.consumeAll(due, handedOff);
+        kafkaConsumer.awaitHandOffs(records, due, handedOff);
+        acknowledgment.acknowledge();
+    }
+}
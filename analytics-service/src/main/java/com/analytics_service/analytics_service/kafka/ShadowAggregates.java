@@ -0,0 +1,81 @@
+package com.analytics_service.analytics_service.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.support.KafkaHeaders;
+
+import com.analytics_service.analytics_service.aggregation.EventAggregator;
+import com.analytics_service.analytics_service.sketch.PatientSketches;
+
+import patient.event.PatientEvent;
+
+// Aggregates being rebuilt by a backfill, beside the live ones. Each backfill lane records
+// into its own part, so lanes never contend on a counter, and the live consumer records
+// the events past the backfill's end offsets into a part of its own. The parts are summed
+// once the backfill reaches its end offsets, so nothing is counted twice or missed.
+final class ShadowAggregates {
+
+    private final String topic;
+    // By partition number
+    private final long[] endOffsets;
+    private final EventAggregator[] aggregators;
+    private final PatientSketches[] sketches;
+    private final int liveTail;
+
+    ShadowAggregates(String topic, long[] endOffsets, int lanes, EventAggregator liveAggregator,
+            PatientSketches liveSketches) {
+        this.topic = topic;
+        this.endOffsets = endOffsets;
+        this.aggregators = new EventAggregator[lanes + 1];
+        this.sketches = new PatientSketches[lanes + 1];
+        for (int part = 0; part <= lanes; part++) {
+            aggregators[part] = liveAggregator.emptyCopy();
+            sketches[part] = liveSketches.emptyCopy();
+        }
+        this.liveTail = lanes;
+    }
+
+    void record(int lane, long timestampMillis, PatientEvent event) {
+        aggregators[lane].record(timestampMillis, event.getEventType(), event.getEmail());
+        sketches[lane].record(timestampMillis, event.getPatientId(), event.getEmail(), event.getEventType());
+    }
+
+    // Called by the live consumer for every event it counts; those the backfill will not
+    // read are copied into the live part. Retried events are placed by their original offset.
+    void recordLive(ConsumerRecord<String, byte[]> record, PatientEvent event) {
+        int partition = record.partition();
+        long offset = record.offset();
+        if (record.headers().lastHeader(KafkaHeaders.DLT_ORIGINAL_OFFSET) != null) {
+            partition = RetryRouter.intHeader(record.headers(), KafkaHeaders.DLT_ORIGINAL_PARTITION);
+            offset = RetryRouter.longHeader(record.headers(), KafkaHeaders.DLT_ORIGINAL_OFFSET);
+        } else if (!topic.equals(record.topic())) {
+            return;
+        }
+        // A partition added since the backfill started is all live
+        if (partition >= endOffsets.length || offset >= endOffsets[partition]) {
+            record(liveTail, record.timestamp(), event);
+        }
+    }
+
+    // Sums the backfill lanes into the first part, leaving the live part to be added last
+    EventAggregator mergedAggregator() {
+        for (int part = 1; part < liveTail; part++) {
+            aggregators[0].merge(aggregators[part]);
+        }
+        return aggregators[0];
+    }
+
+    PatientSketches mergedSketches() {
+        for (int part = 1; part < liveTail; part++) {
+            sketches[0].merge(sketches[part]);
+        }
+        return sketches[0];
+    }
+
+    EventAggregator liveAggregator() {
+        return aggregators[liveTail];
+    }
+
+    PatientSketches liveSketches() {
+        return sketches[liveTail];
+    }
+}
@@ -0,0 +1,103 @@
+package com.analytics_service.analytics_service.sketch;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Frequency estimates in depth x width counters. An estimate is never below the true
+// count, and with probability 1 - delta it exceeds it by at most epsilon * total, where
+// epsilon = e / width and delta = e^-depth. Row hashes are fixed so sketches of the same
+// dimensions from different instances merge by adding their counters.
+public class CountMinSketch {
+
+    private final int depth;
+    private final int width;
+    // [row][column] flattened
+    private final AtomicLongArray counters;
+    private final AtomicLong total = new AtomicLong();
+
+    public CountMinSketch(int depth, int width) {
+        if (depth < 1 || width < 1) {
+            throw new IllegalArgumentException("Invalid sketch dimensions");
+        }
+        this.depth = depth;
+        this.width = width;
+        this.counters = new AtomicLongArray(depth * width);
+    }
+
+    // Smallest sketch meeting the given bounds
+    public static CountMinSketch withErrorBounds(double epsilon, double delta) {
+        return new CountMinSketch((int) Math.ceil(Math.log(1 / delta)), (int) Math.ceil(Math.E / epsilon));
+    }
+
+    // Same dimensions, so the two merge, with every counter at zero
+    public CountMinSketch emptyCopy() {
+        return new CountMinSketch(depth, width);
+    }
+
+    // Returns the key's estimate including this occurrence
+    public long add(long hash) {
+        total.incrementAndGet();
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.incrementAndGet(row * width + column(hash, row)));
+        }
+        return estimate;
+    }
+
+    public long estimate(long hash) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(row * width + column(hash, row)));
+        }
+        return estimate;
+    }
+
+    public long total() {
+        return total.get();
+    }
+
+    public double epsilon() {
+        return Math.E / width;
+    }
+
+    public double delta() {
+        return Math.exp(-depth);
+    }
+
+    public void merge(CountMinSketch other) {
+        if (other.depth != depth || other.width != width) {
+            throw new IllegalArgumentException("Cannot merge count-min sketches of different dimensions");
+        }
+        for (int i = 0; i < counters.length(); i++) {
+            counters.addAndGet(i, other.counters.get(i));
+        }
+        total.addAndGet(other.total.get());
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(depth);
+        out.writeInt(width);
+        out.writeLong(total.get());
+        for (int i = 0; i < counters.length(); i++) {
+            out.writeLong(counters.get(i));
+        }
+    }
+
+    public static CountMinSketch readFrom(DataInput in) throws IOException {
+        CountMinSketch sketch = new CountMinSketch(in.readInt(), in.readInt());
+        sketch.total.set(in.readLong());
+        for (int i = 0; i < sketch.counters.length(); i++) {
+            sketch.counters.set(i, in.readLong());
+        }
+        return sketch;
+    }
+
+    private int column(long hash, int row) {
+        // One hash per row from the key's hash and the row number
+        long h = Hashes.mix(hash + 0x9e3779b97f4a7c15L * (row + 1));
+        return (int) ((h >>> 1) % width);
+    }
+}
@@ -0,0 +1,25 @@
+package com.analytics_service.analytics_service.sketch;
+
+// 64-bit string hash for the sketches. Fixed, not seeded per process, so sketches built
+// by different instances can be merged.
+public final class Hashes {
+
+    private Hashes() {
+    }
+
+    public static long hash64(CharSequence key) {
+        // FNV-1a, then the SplitMix64 finalizer so the high bits are well mixed too
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    static long mix(long h) {
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+}
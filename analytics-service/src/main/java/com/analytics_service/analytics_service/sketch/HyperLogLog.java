@@ -0,0 +1,92 @@
+package com.analytics_service.analytics_service.sketch;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Distinct count estimate in 2^precision registers. The relative standard error is
+// 1.04 / sqrt(2^precision), 0.81% at the default precision of 14, for any cardinality.
+// Adding the same value again changes nothing, and merging two sketches gives the
+// sketch of the union of what both saw.
+public class HyperLogLog {
+
+    private final int precision;
+    private final AtomicIntegerArray registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("precision must be between 4 and 18 : " + precision);
+        }
+        this.precision = precision;
+        this.registers = new AtomicIntegerArray(1 << precision);
+    }
+
+    public void add(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // The sentinel bit caps the rank at 64 - precision + 1
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        int current = registers.get(index);
+        while (rank > current && !registers.compareAndSet(index, current, rank)) {
+            current = registers.get(index);
+        }
+    }
+
+    public long estimate() {
+        int m = registers.length();
+        double sum = 0;
+        int zeros = 0;
+        for (int i = 0; i < m; i++) {
+            int register = registers.get(i);
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = 0.7213 / (1 + 1.079 / m) * m * m / sum;
+        // Small cardinalities: linear counting over the empty registers is more accurate
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public double relativeStandardError() {
+        return 1.04 / Math.sqrt(registers.length());
+    }
+
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge HyperLogLog of precision " + other.precision
+                    + " into " + precision);
+        }
+        for (int i = 0; i < registers.length(); i++) {
+            int rank = other.registers.get(i);
+            int current = registers.get(i);
+            while (rank > current && !registers.compareAndSet(i, current, rank)) {
+                current = registers.get(i);
+            }
+        }
+    }
+
+    public HyperLogLog copy() {
+        HyperLogLog copy = new HyperLogLog(precision);
+        copy.merge(this);
+        return copy;
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeByte(precision);
+        for (int i = 0; i < registers.length(); i++) {
+            out.writeByte(registers.get(i));
+        }
+    }
+
+    public static HyperLogLog readFrom(DataInput in) throws IOException {
+        HyperLogLog sketch = new HyperLogLog(in.readUnsignedByte());
+        for (int i = 0; i < sketch.registers.length(); i++) {
+            sketch.registers.set(i, in.readUnsignedByte());
+        }
+        return sketch;
+    }
+}
@@ -0,0 +1,190 @@
+package com.analytics_service.analytics_service.sketch;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Distinct patients per UTC day, top email domains and most-updated patients, in fixed
+// memory whatever the event volume. Every sketch here merges, so the state of several
+// consumer instances (each seeing some partitions) combines into the state of one that
+// saw them all. The sketches are held together and swapped in one step by replaceWith.
+@Component
+public class PatientSketches {
+
+    public static final String PATIENT_UPDATED = "PATIENT_UPDATED";
+
+    private static final int FORMAT_VERSION = 1;
+    private static final long DAY_MILLIS = 86_400_000L;
+
+    private record DailyDistinct(long day, HyperLogLog patients) {
+    }
+
+    // days is a ring of per-day sketches, a slot is taken over by the first event of a newer day
+    private record State(AtomicReferenceArray<DailyDistinct> days, TopK emailDomains, TopK updatedPatients) {
+    }
+
+    private final int precision;
+    private final LongSupplier clock;
+    private volatile State state;
+
+    @Autowired
+    public PatientSketches(@Value("${analytics.sketch.retained-days:30}") int retainedDays,
+            @Value("${analytics.sketch.hll-precision:14}") int precision,
+            @Value("${analytics.sketch.top-k:100}") int k,
+            @Value("${analytics.sketch.cms-epsilon:0.0005}") double epsilon,
+            @Value("${analytics.sketch.cms-delta:0.01}") double delta) {
+        this(retainedDays, precision, new TopK(k, CountMinSketch.withErrorBounds(epsilon, delta)),
+                new TopK(k, CountMinSketch.withErrorBounds(epsilon, delta)), System::currentTimeMillis);
+    }
+
+    public PatientSketches(int retainedDays, int precision, TopK emailDomains, TopK updatedPatients, LongSupplier clock) {
+        this.precision = precision;
+        this.state = new State(new AtomicReferenceArray<>(retainedDays), emailDomains, updatedPatients);
+        this.clock = clock;
+    }
+
+    public void record(long timestampMillis, String patientId, String email, String eventType) {
+        State current = state;
+        HyperLogLog daily = daily(current, Math.floorDiv(timestampMillis, DAY_MILLIS));
+        if (daily != null) {
+            daily.add(Hashes.hash64(patientId));
+        }
+        int at = email.lastIndexOf('@');
+        if (at >= 0) {
+            current.emailDomains().add(email.substring(at + 1).toLowerCase(Locale.ROOT));
+        }
+        if (PATIENT_UPDATED.equals(eventType)) {
+            current.updatedPatients().add(patientId);
+        }
+    }
+
+    // Distinct patients over the last `count` UTC days including today, from the union of
+    // the daily sketches; a patient seen on several days counts once
+    public HyperLogLog distinctPatients(int count) {
+        long today = Math.floorDiv(clock.getAsLong(), DAY_MILLIS);
+        AtomicReferenceArray<DailyDistinct> days = state.days();
+        HyperLogLog union = new HyperLogLog(precision);
+        for (long day = today; day > today - count; day--) {
+            DailyDistinct slot = days.get((int) Math.floorMod(day, (long) days.length()));
+            if (slot != null && slot.day() == day) {
+                union.merge(slot.patients());
+            }
+        }
+        return union;
+    }
+
+    public LocalDate today() {
+        return LocalDate.ofEpochDay(Math.floorDiv(clock.getAsLong(), DAY_MILLIS));
+    }
+
+    public int retainedDays() {
+        return state.days().length();
+    }
+
+    public TopK emailDomains() {
+        return state.emailDomains();
+    }
+
+    public TopK updatedPatients() {
+        return state.updatedPatients();
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        State current = state;
+        out.writeInt(FORMAT_VERSION);
+        List<DailyDistinct> retained = retained(current);
+        out.writeInt(retained.size());
+        for (DailyDistinct slot : retained) {
+            out.writeLong(slot.day());
+            slot.patients().writeTo(out);
+        }
+        current.emailDomains().writeTo(out);
+        current.updatedPatients().writeTo(out);
+    }
+
+    // Adds a state written by writeTo, from a snapshot file or another instance
+    public void merge(DataInput in) throws IOException {
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported sketch format version " + version);
+        }
+        State current = state;
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            long day = in.readLong();
+            HyperLogLog patients = HyperLogLog.readFrom(in);
+            HyperLogLog daily = daily(current, day);
+            if (daily != null) {
+                daily.merge(patients);
+            }
+        }
+        current.emailDomains().merge(TopK.readFrom(in));
+        current.updatedPatients().merge(TopK.readFrom(in));
+    }
+
+    // Empty sketches of the same sizes and clock, to rebuild into
+    public PatientSketches emptyCopy() {
+        State current = state;
+        return new PatientSketches(current.days().length(), precision, current.emailDomains().emptyCopy(),
+                current.updatedPatients().emptyCopy(), clock);
+    }
+
+    public void merge(PatientSketches other) {
+        State from = other.state;
+        State into = state;
+        for (DailyDistinct slot : retained(from)) {
+            HyperLogLog daily = daily(into, slot.day());
+            if (daily != null) {
+                daily.merge(slot.patients());
+            }
+        }
+        into.emailDomains().merge(from.emailDomains());
+        into.updatedPatients().merge(from.updatedPatients());
+    }
+
+    // Takes over other's sketches in one step; other must no longer be recorded into
+    public void replaceWith(PatientSketches other) {
+        this.state = other.state;
+    }
+
+    private static List<DailyDistinct> retained(State state) {
+        AtomicReferenceArray<DailyDistinct> days = state.days();
+        List<DailyDistinct> retained = new ArrayList<>(days.length());
+        for (int i = 0; i < days.length(); i++) {
+            DailyDistinct slot = days.get(i);
+            if (slot != null) {
+                retained.add(slot);
+            }
+        }
+        return retained;
+    }
+
+    // The day's sketch, or null when the day is older than every retained one
+    private HyperLogLog daily(State state, long day) {
+        AtomicReferenceArray<DailyDistinct> days = state.days();
+        int index = (int) Math.floorMod(day, (long) days.length());
+        while (true) {
+            DailyDistinct slot = days.get(index);
+            if (slot != null && slot.day() == day) {
+                return slot.patients();
+            }
+            if (slot != null && slot.day() > day) {
+                return null;
+            }
+            DailyDistinct fresh = new DailyDistinct(day, new HyperLogLog(precision));
+            if (days.compareAndSet(index, slot, fresh)) {
+                return fresh.patients();
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.analytics_service.analytics_service.sketch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// Keeps the sketches across restarts. Loaded before the listener containers start and
+// written periodically and on shutdown, each time to a temp file moved over the old one
+// so a crash mid-write never leaves a torn snapshot. Events consumed after the last
+// snapshot but before their offsets were committed are counted again after a crash,
+// which can only raise the frequency estimates; distinct counts are unaffected.
+@Component
+public class SketchSnapshotStore {
+
+    private static final Logger log = LoggerFactory.getLogger(SketchSnapshotStore.class);
+
+    private final PatientSketches sketches;
+    private final Path file;
+
+    public SketchSnapshotStore(PatientSketches sketches,
+            @Value("${analytics.sketch.snapshot-file:data/analytics-sketches.bin}") String file) {
+        this.sketches = sketches;
+        this.file = Path.of(file);
+    }
+
+    @PostConstruct
+    public void load() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            sketches.merge(new DataInputStream(in));
+            log.info("Sketches restored from {}", file);
+        } catch (IOException e) {
+            log.warn("Could not restore sketches from {}, starting empty : {}", file, e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${analytics.sketch.snapshot-interval-ms:60000}")
+    @PreDestroy
+    public void save() {
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                sketches.writeTo(new DataOutputStream(out));
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not write the sketch snapshot to {} : {}", file, e.getMessage());
+        }
+    }
+}
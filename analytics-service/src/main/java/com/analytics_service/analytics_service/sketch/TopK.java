@@ -0,0 +1,120 @@
+package com.analytics_service.analytics_service.sketch;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+// The k most frequent keys, tracked as candidates beside a count-min sketch that counts
+// every key. A key becomes a candidate once its estimate beats the weakest candidate's,
+// so memory is k keys plus the sketch however many distinct keys there are. Counts carry
+// the sketch's error bound.
+public class TopK {
+
+    public record Entry(String key, long estimate) {
+    }
+
+    private final int k;
+    private final CountMinSketch sketch;
+    // Candidate -> estimate when last seen
+    private final Map<String, Long> candidates = new ConcurrentHashMap<>();
+    // Estimate a non-candidate must beat to get in, 0 until k candidates are tracked. Stored
+    // estimates only grow, so between trims this may lag below the true minimum, which
+    // only lets a few more keys try.
+    private volatile long threshold;
+    private final ReentrantLock admissionLock = new ReentrantLock();
+
+    public TopK(int k, CountMinSketch sketch) {
+        this.k = k;
+        this.sketch = sketch;
+    }
+
+    public TopK emptyCopy() {
+        return new TopK(k, sketch.emptyCopy());
+    }
+
+    public void add(String key) {
+        long estimate = sketch.add(Hashes.hash64(key));
+        // Candidates are refreshed in place and keys too rare to get in stop here; only
+        // an admission takes the lock
+        if (candidates.replace(key, estimate) != null || estimate <= threshold) {
+            return;
+        }
+        admissionLock.lock();
+        try {
+            candidates.put(key, estimate);
+            trim();
+        } finally {
+            admissionLock.unlock();
+        }
+    }
+
+    // Largest first, with estimates refreshed from the sketch
+    public List<Entry> top(int limit) {
+        return candidates.keySet().stream()
+                .map(key -> new Entry(key, sketch.estimate(Hashes.hash64(key))))
+                .sorted(Comparator.comparingLong(Entry::estimate).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    public CountMinSketch sketch() {
+        return sketch;
+    }
+
+    public void merge(TopK other) {
+        admissionLock.lock();
+        try {
+            sketch.merge(other.sketch);
+            for (String key : other.candidates.keySet()) {
+                candidates.put(key, 0L);
+            }
+            // Re-rank everything against the merged counts
+            candidates.replaceAll((key, estimate) -> sketch.estimate(Hashes.hash64(key)));
+            trim();
+        } finally {
+            admissionLock.unlock();
+        }
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(k);
+        sketch.writeTo(out);
+        List<String> keys = new ArrayList<>(candidates.keySet());
+        out.writeInt(keys.size());
+        for (String key : keys) {
+            out.writeUTF(key);
+        }
+    }
+
+    public static TopK readFrom(DataInput in) throws IOException {
+        TopK topK = new TopK(in.readInt(), CountMinSketch.readFrom(in));
+        int candidates = in.readInt();
+        for (int i = 0; i < candidates; i++) {
+            String key = in.readUTF();
+            topK.candidates.put(key, topK.sketch.estimate(Hashes.hash64(key)));
+        }
+        topK.admissionLock.lock();
+        try {
+            topK.trim();
+        } finally {
+            topK.admissionLock.unlock();
+        }
+        return topK;
+    }
+
+    // Caller holds admissionLock
+    private void trim() {
+        while (candidates.size() > k) {
+            candidates.entrySet().stream().min(Map.Entry.comparingByValue())
+                    .ifPresent(weakest -> candidates.remove(weakest.getKey()));
+        }
+        threshold = candidates.size() < k ? 0
+                : candidates.values().stream().mapToLong(Long::longValue).min().orElse(0);
+    }
+}
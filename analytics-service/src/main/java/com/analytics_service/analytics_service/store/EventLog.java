@@ -0,0 +1,325 @@
+package com.analytics_service.analytics_service.store;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// Append-only copy of every consumed patient event, as the raw protobuf bytes, so
+// time-range queries and rebuilt aggregates can be served without going back to Kafka.
+// Events get a sequence number in arrival order and go to memory-mapped segment files
+// (see Segment) that roll by size and age. Old segments are deleted after the retention
+// period and, when enabled, rewritten keeping only the last event per patient. Appends
+// are a few buffer writes under a lock and scans read the mapped pages in place, so
+// neither allocates per event. Pages are written back by the OS and forced to disk
+// every flush interval; a crash loses at most what Kafka redelivers anyway.
+@Component
+public class EventLog {
+
+    private static final Logger log = LoggerFactory.getLogger(EventLog.class);
+    private static final String COMPACTED_SUFFIX = ".compacted";
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentBytes;
+    private final int indexIntervalBytes;
+    private final long rollMillis;
+    private final long retentionMillis;
+    private final long compactAfterMillis;
+    private final NavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final ReentrantLock appendLock = new ReentrantLock();
+    // Guarded by appendLock
+    private Segment active;
+    private long nextSequence;
+    // Highest offset stored per partition; redelivered records at or below it are skipped
+    private final Map<Integer, Long> storedOffsets = new HashMap<>();
+    private final Counter appended;
+    private final Counter duplicates;
+
+    public EventLog(MeterRegistry meterRegistry,
+            @Value("${analytics.store.enabled:true}") boolean enabled,
+            @Value("${analytics.store.dir:data/event-log}") String directory,
+            @Value("${analytics.store.segment-bytes:134217728}") int segmentBytes,
+            @Value("${analytics.store.index-interval-bytes:4096}") int indexIntervalBytes,
+            @Value("${analytics.store.roll-ms:3600000}") long rollMillis,
+            @Value("${analytics.store.retention-hours:720}") long retentionHours,
+            @Value("${analytics.store.compact-after-hours:0}") long compactAfterHours) {
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.segmentBytes = Math.max(segmentBytes, Segment.MAX_RECORD_BYTES + Integer.BYTES);
+        this.indexIntervalBytes = indexIntervalBytes;
+        this.rollMillis = rollMillis;
+        this.retentionMillis = TimeUnit.HOURS.toMillis(retentionHours);
+        this.compactAfterMillis = TimeUnit.HOURS.toMillis(compactAfterHours);
+        this.appended = meterRegistry.counter("analytics.store.events", "result", "appended");
+        this.duplicates = meterRegistry.counter("analytics.store.events", "result", "duplicate");
+        Gauge.builder("analytics.store.segments", segments, Map::size).register(meterRegistry);
+        Gauge.builder("analytics.store.bytes", this, EventLog::sizeBytes).baseUnit("bytes").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+        // Left behind by a compaction that did not finish; the original is still in place
+        deleteRecursively(compactionDirectory());
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.log")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long baseSequence = Long.parseLong(name.substring(0, name.length() - ".log".length()));
+                segments.put(baseSequence, Segment.open(directory, baseSequence, indexIntervalBytes));
+            }
+        }
+        if (segments.isEmpty()) {
+            return;
+        }
+        for (Segment segment : segments.headMap(segments.lastKey()).values()) {
+            segment.seal();
+        }
+        active = segments.lastEntry().getValue();
+        active.clearTail();
+        nextSequence = active.lastSequence() + 1;
+        // The newest segment alone may not hold every partition when it has just rolled
+        for (Segment segment : segments.descendingMap().values().stream().limit(2).toList()) {
+            segment.scan(0, segment.view(), (sequence, timestamp, partition, offset, payload) -> {
+                storedOffsets.merge(partition, offset, Math::max);
+                return true;
+            });
+        }
+        log.info("Event log opened with {} segments, next sequence {}", segments.size(), nextSequence);
+    }
+
+    // Records are appended in the order given; callers pass each partition's records in
+    // offset order
+    public void append(List<ConsumerRecord<String, byte[]>> records) {
+        if (!enabled) {
+            return;
+        }
+        appendLock.lock();
+        try {
+            for (ConsumerRecord<String, byte[]> record : records) {
+                appendLocked(record);
+            }
+        } catch (IOException e) {
+            // The aggregates do not depend on the log, so consumption carries on
+            log.error("Could not append to the event log in {} : {}", directory, e.getMessage());
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Visits the events with from <= timestamp < to, segment by segment in sequence order
+    public void scan(long fromMillis, long toMillis, EventVisitor visitor) {
+        EventVisitor inRange = (sequence, timestamp, partition, offset, payload) -> timestamp < fromMillis
+                || timestamp >= toMillis || visitor.visit(sequence, timestamp, partition, offset, payload);
+        for (Segment segment : segments.values()) {
+            if (segment.isEmpty() || segment.maxTimestamp() < fromMillis || segment.minTimestamp() >= toMillis) {
+                continue;
+            }
+            if (!segment.scan(segment.positionForTimestamp(fromMillis), segment.view(), inRange)) {
+                return;
+            }
+        }
+    }
+
+    // Visits the events from sequence `fromSequence` on, e.g. to catch up after a checkpoint
+    public void scanFrom(long fromSequence, EventVisitor visitor) {
+        EventVisitor fromHere = (sequence, timestamp, partition, offset, payload) -> sequence < fromSequence
+                || visitor.visit(sequence, timestamp, partition, offset, payload);
+        Long first = segments.floorKey(fromSequence);
+        for (Segment segment : segments.tailMap(first == null ? Long.MIN_VALUE : first).values()) {
+            if (!segment.scan(segment.positionForSequence(fromSequence), segment.view(), fromHere)) {
+                return;
+            }
+        }
+    }
+
+    public Stats stats() {
+        long oldest = Long.MAX_VALUE;
+        long newest = Long.MIN_VALUE;
+        for (Segment segment : segments.values()) {
+            if (!segment.isEmpty()) {
+                oldest = Math.min(oldest, segment.minTimestamp());
+                newest = Math.max(newest, segment.maxTimestamp());
+            }
+        }
+        Map.Entry<Long, Segment> first = segments.firstEntry();
+        Map.Entry<Long, Segment> last = segments.lastEntry();
+        return new Stats(segments.size(), sizeBytes(), first == null ? 0 : first.getKey(),
+                last == null ? -1 : last.getValue().lastSequence(), oldest == Long.MAX_VALUE ? 0 : oldest,
+                newest == Long.MIN_VALUE ? 0 : newest);
+    }
+
+    @Scheduled(fixedDelayString = "${analytics.store.flush-interval-ms:1000}")
+    public void flush() {
+        Segment segment = active;
+        if (segment != null) {
+            segment.flush();
+        }
+    }
+
+    // Rolls the active segment once it is roll-ms old, then applies retention and compaction
+    // to sealed segments. Appends only wait for the roll.
+    @Scheduled(fixedDelayString = "${analytics.store.maintenance-interval-ms:60000}")
+    public void maintain() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        appendLock.lock();
+        try {
+            if (active != null && !active.isEmpty() && now - active.createdAtMillis() >= rollMillis) {
+                roll();
+            }
+        } catch (IOException e) {
+            log.error("Could not roll the event log segment : {}", e.getMessage());
+        } finally {
+            appendLock.unlock();
+        }
+
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            if (!segment.isSealed()) {
+                continue;
+            }
+            try {
+                if (segment.isEmpty() || now - segment.maxTimestamp() > retentionMillis) {
+                    segments.remove(segment.baseSequence(), segment);
+                    segment.delete();
+                    Files.deleteIfExists(compactedMarker(segment.baseSequence()));
+                    log.info("Deleted event log segment {}", segment.baseSequence());
+                } else if (compactAfterMillis > 0 && now - segment.maxTimestamp() > compactAfterMillis
+                        && !Files.exists(compactedMarker(segment.baseSequence()))) {
+                    compact(segment);
+                }
+            } catch (IOException e) {
+                log.warn("Maintenance of event log segment {} failed : {}", segment.baseSequence(), e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        appendLock.lock();
+        try {
+            if (active != null) {
+                active.flush();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void appendLocked(ConsumerRecord<String, byte[]> record) throws IOException {
+        Long stored = storedOffsets.get(record.partition());
+        if (stored != null && record.offset() <= stored) {
+            duplicates.increment();
+            return;
+        }
+        if (active == null || !active.append(nextSequence, record.timestamp(), record.partition(), record.offset(),
+                record.key(), record.value())) {
+            roll();
+            if (!active.append(nextSequence, record.timestamp(), record.partition(), record.offset(), record.key(),
+                    record.value())) {
+                log.warn("Event at partition {} offset {} is too large for the event log, skipped",
+                        record.partition(), record.offset());
+                return;
+            }
+        }
+        nextSequence++;
+        storedOffsets.put(record.partition(), record.offset());
+        appended.increment();
+    }
+
+    private void roll() throws IOException {
+        if (active != null) {
+            if (active.isEmpty()) {
+                return;
+            }
+            active.seal();
+        }
+        Segment segment = Segment.create(directory, nextSequence, segmentBytes, indexIntervalBytes);
+        segments.put(nextSequence, segment);
+        active = segment;
+    }
+
+    // Rewrites the segment with only the last event of each key. The copy is built aside
+    // and moved over the original, so a crash leaves one or the other.
+    private void compact(Segment segment) throws IOException {
+        long baseSequence = segment.baseSequence();
+        Path compacting = compactionDirectory();
+        Files.createDirectories(compacting);
+        Segment compacted = Segment.create(compacting, baseSequence, segment.end() + Integer.BYTES,
+                indexIntervalBytes);
+        segment.compactInto(compacted);
+        compacted.flush();
+        // Without an index a segment is recovered by scanning it whole, so dropping the old
+        // index first means a crash part way never pairs a log with the other one's index
+        Files.delete(Segment.indexPath(directory, baseSequence));
+        Files.move(Segment.logPath(compacting, baseSequence), Segment.logPath(directory, baseSequence),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(Segment.indexPath(compacting, baseSequence), Segment.indexPath(directory, baseSequence),
+                StandardCopyOption.ATOMIC_MOVE);
+        Segment reopened = Segment.open(directory, baseSequence, indexIntervalBytes);
+        reopened.seal();
+        segments.replace(baseSequence, segment, reopened);
+        Files.createFile(compactedMarker(baseSequence));
+        log.info("Compacted event log segment {} from {} to {} bytes", baseSequence, segment.end(), reopened.end());
+    }
+
+    private long sizeBytes() {
+        long bytes = 0;
+        for (Segment segment : segments.values()) {
+            bytes += segment.end();
+        }
+        return bytes;
+    }
+
+    private Path compactionDirectory() {
+        return directory.resolve("compacting");
+    }
+
+    private Path compactedMarker(long baseSequence) {
+        return directory.resolve(String.format("%020d", baseSequence) + COMPACTED_SUFFIX);
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(path)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(path);
+    }
+
+    // Timestamps are epoch millis, 0 when the log is empty
+    public record Stats(int segments, long bytes, long firstSequence, long lastSequence, long oldestTimestamp,
+            long newestTimestamp) {
+    }
+}
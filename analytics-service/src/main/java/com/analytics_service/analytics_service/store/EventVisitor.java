@@ -0,0 +1,12 @@
+package com.analytics_service.analytics_service.store;
+
+import java.nio.ByteBuffer;
+
+// Receives each stored event of a scan. payload spans the event's protobuf bytes
+// between its position and limit and is only valid during the call; it is reused for
+// the next event, so scans allocate nothing per event.
+@FunctionalInterface
+public interface EventVisitor {
+    // Return false to stop the scan
+    boolean visit(long sequence, long timestamp, int partition, long offset, ByteBuffer payload);
+}
@@ -0,0 +1,383 @@
+package com.analytics_service.analytics_service.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+// One file of the event log, memory-mapped at a fixed capacity, plus a sparse index
+// file. Records are appended back to back:
+//
+//   int size | int crc32c | long sequence | long timestamp | int partition | long offset |
+//   short keyLength | key bytes | payload bytes
+//
+// size covers the whole record and is written last, so a record is only visible once
+// complete; a zero size marks the end. Every indexIntervalBytes an index entry records
+// a record's sequence and position and the max and min timestamps of everything before
+// it, which is enough to binary-search to a sequence or the start of a time range.
+// One writer at a time (EventLog holds a lock); readers only read up to `end`.
+final class Segment {
+
+    static final int HEADER_BYTES = 38;
+    // Bytes past the end zeroed when the active segment is reopened, so a torn record can
+    // never look valid later
+    static final int MAX_RECORD_BYTES = 1 << 20;
+    private static final int INDEX_ENTRY_BYTES = 32;
+
+    private final long baseSequence;
+    private final Path logPath;
+    private final Path indexPath;
+    private final MappedByteBuffer log;
+    private final MappedByteBuffer index;
+    private final int capacity;
+    private final int indexInterval;
+    private final int indexCapacity;
+    private final long createdAtMillis;
+    // Writer-only state
+    private final CRC32C crc = new CRC32C();
+    private final ByteBuffer crcView;
+    // Read by scans too; a stale count only makes a scan start earlier
+    private volatile int indexEntries;
+    private int lastIndexedPosition;
+    private long lastSequence;
+    // Published to readers by the volatile write of end
+    private volatile int end;
+    private volatile long minTimestamp = Long.MAX_VALUE;
+    private volatile long maxTimestamp = Long.MIN_VALUE;
+    private volatile boolean sealed;
+
+    private Segment(long baseSequence, Path logPath, Path indexPath, int capacity, int indexInterval,
+            long createdAtMillis) throws IOException {
+        this.baseSequence = baseSequence;
+        this.logPath = logPath;
+        this.indexPath = indexPath;
+        this.capacity = capacity;
+        this.indexInterval = indexInterval;
+        this.indexCapacity = capacity / indexInterval + 2;
+        this.createdAtMillis = createdAtMillis;
+        this.lastSequence = baseSequence - 1;
+        try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            this.log = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            this.index = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) indexCapacity * INDEX_ENTRY_BYTES);
+        }
+        this.crcView = log.duplicate();
+    }
+
+    static Segment create(Path directory, long baseSequence, int capacity, int indexInterval) throws IOException {
+        Segment segment = new Segment(baseSequence, logPath(directory, baseSequence),
+                indexPath(directory, baseSequence), capacity, indexInterval, System.currentTimeMillis());
+        segment.writeIndexEntry(baseSequence, 0);
+        return segment;
+    }
+
+    // Reopens an existing segment: trusts the index up to its last entry and scans the
+    // records after it to find the end
+    static Segment open(Path directory, long baseSequence, int indexInterval) throws IOException {
+        Path logPath = logPath(directory, baseSequence);
+        int capacity = (int) Files.size(logPath);
+        Segment segment = new Segment(baseSequence, logPath, indexPath(directory, baseSequence), capacity,
+                indexInterval, Files.getLastModifiedTime(logPath).toMillis());
+        segment.recover();
+        return segment;
+    }
+
+    // False when the record does not fit, the caller then rolls to a new segment
+    boolean append(long sequence, long timestamp, int partition, long offset, String key, byte[] payload) {
+        int keyLength = encodedLength(key);
+        int size = HEADER_BYTES + keyLength + payload.length;
+        if (sealed || keyLength > 0xFFFF || end + size + Integer.BYTES > capacity || size > MAX_RECORD_BYTES) {
+            return false;
+        }
+        int position = end;
+        if (position - lastIndexedPosition >= indexInterval && indexEntries < indexCapacity) {
+            writeIndexEntry(sequence, position);
+        }
+        log.putLong(position + 8, sequence);
+        log.putLong(position + 16, timestamp);
+        log.putInt(position + 24, partition);
+        log.putLong(position + 28, offset);
+        log.putShort(position + 36, (short) keyLength);
+        encode(key, position + HEADER_BYTES);
+        log.put(position + HEADER_BYTES + keyLength, payload);
+        crc.reset();
+        crcView.limit(position + size).position(position + 8);
+        crc.update(crcView);
+        log.putInt(position + 4, (int) crc.getValue());
+        log.putInt(position, size);
+
+        lastSequence = sequence;
+        if (timestamp < minTimestamp) {
+            minTimestamp = timestamp;
+        }
+        if (timestamp > maxTimestamp) {
+            maxTimestamp = timestamp;
+        }
+        end = position + size;
+        return true;
+    }
+
+    // Position to start a scan from so no record with sequence >= `sequence` is skipped
+    int positionForSequence(long sequence) {
+        int low = 0;
+        int high = indexEntries - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (index.getLong(mid * INDEX_ENTRY_BYTES) <= sequence) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return index.getInt(low * INDEX_ENTRY_BYTES + 8);
+    }
+
+    // Position to start a scan from so no record with timestamp >= `timestamp` is skipped:
+    // the last index entry before which every record is older. Timestamps across Kafka
+    // partitions are only roughly ordered, so the max-before column is what is searched.
+    int positionForTimestamp(long timestamp) {
+        int low = 0;
+        int high = indexEntries - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (index.getLong(mid * INDEX_ENTRY_BYTES + 16) < timestamp) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return index.getInt(low * INDEX_ENTRY_BYTES + 8);
+    }
+
+    // Visits records from `position` to the current end, stopping early if the visitor
+    // returns false. view is the caller's reusable duplicate of this segment's buffer;
+    // the payload is passed as view's position..limit.
+    boolean scan(int position, ByteBuffer view, EventVisitor visitor) {
+        int limit = end;
+        while (position < limit) {
+            int size = view.getInt(position);
+            int keyLength = view.getShort(position + 36) & 0xFFFF;
+            view.limit(position + size).position(position + HEADER_BYTES + keyLength);
+            boolean more = visitor.visit(view.getLong(position + 8), view.getLong(position + 16),
+                    view.getInt(position + 24), view.getLong(position + 28), view);
+            view.clear();
+            if (!more) {
+                return false;
+            }
+            position += size;
+        }
+        return true;
+    }
+
+    // Copies into target only the last record of each key; records without a key are all kept
+    void compactInto(Segment target) {
+        ByteBuffer view = view();
+        int limit = end;
+        Map<String, Integer> latest = new HashMap<>();
+        for (int position = 0; position < limit; position += view.getInt(position)) {
+            String key = key(view, position);
+            if (key != null) {
+                latest.put(key, position);
+            }
+        }
+        for (int position = 0; position < limit; position += view.getInt(position)) {
+            String key = key(view, position);
+            if (key == null || latest.get(key) == position) {
+                target.copy(view, position);
+            }
+        }
+    }
+
+    // Only needed before appending again; sealed segments are never read past the end
+    void clearTail() {
+        for (int i = end; i < Math.min(capacity, end + MAX_RECORD_BYTES); i++) {
+            log.put(i, (byte) 0);
+        }
+    }
+
+    ByteBuffer view() {
+        return log.duplicate();
+    }
+
+    void seal() {
+        sealed = true;
+        flush();
+    }
+
+    void flush() {
+        log.force();
+        index.force();
+    }
+
+    // The mapping itself is released when the buffer is collected; on Linux the deleted
+    // file's pages stay readable for scans that are still running
+    void delete() throws IOException {
+        sealed = true;
+        Files.deleteIfExists(logPath);
+        Files.deleteIfExists(indexPath);
+    }
+
+    long baseSequence() {
+        return baseSequence;
+    }
+
+    long lastSequence() {
+        return lastSequence;
+    }
+
+    int end() {
+        return end;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    long minTimestamp() {
+        return minTimestamp;
+    }
+
+    long maxTimestamp() {
+        return maxTimestamp;
+    }
+
+    long createdAtMillis() {
+        return createdAtMillis;
+    }
+
+    boolean isSealed() {
+        return sealed;
+    }
+
+    boolean isEmpty() {
+        return end == 0;
+    }
+
+    static Path logPath(Path directory, long baseSequence) {
+        return directory.resolve(String.format("%020d.log", baseSequence));
+    }
+
+    static Path indexPath(Path directory, long baseSequence) {
+        return directory.resolve(String.format("%020d.index", baseSequence));
+    }
+
+    private static String key(ByteBuffer view, int position) {
+        int keyLength = view.getShort(position + 36) & 0xFFFF;
+        if (keyLength == 0) {
+            return null;
+        }
+        byte[] key = new byte[keyLength];
+        view.get(position + HEADER_BYTES, key);
+        return new String(key, StandardCharsets.UTF_8);
+    }
+
+    // Appends a record of another segment as is, checksum included
+    private void copy(ByteBuffer source, int position) {
+        int size = source.getInt(position);
+        long timestamp = source.getLong(position + 16);
+        if (end - lastIndexedPosition >= indexInterval && indexEntries < indexCapacity) {
+            writeIndexEntry(source.getLong(position + 8), end);
+        }
+        log.put(end, source, position, size);
+        lastSequence = source.getLong(position + 8);
+        minTimestamp = Math.min(minTimestamp, timestamp);
+        maxTimestamp = Math.max(maxTimestamp, timestamp);
+        end += size;
+    }
+
+    private void writeIndexEntry(long sequence, int position) {
+        int at = indexEntries * INDEX_ENTRY_BYTES;
+        index.putLong(at, sequence);
+        index.putInt(at + 8, position);
+        index.putLong(at + 16, maxTimestamp);
+        index.putLong(at + 24, minTimestamp);
+        indexEntries++;
+        lastIndexedPosition = position;
+    }
+
+    private void recover() {
+        // Entry 0 is at position 0, every later one at a positive position
+        indexEntries = 1;
+        while (indexEntries < indexCapacity && index.getInt(indexEntries * INDEX_ENTRY_BYTES + 8) > 0) {
+            indexEntries++;
+        }
+        while (true) {
+            int last = (indexEntries - 1) * INDEX_ENTRY_BYTES;
+            int start = index.getInt(last + 8);
+            // Entry 0 holds nothing before it, and is all zeros when the index file was lost,
+            // so min and max then come from the first record scanned
+            maxTimestamp = indexEntries == 1 ? Long.MIN_VALUE : index.getLong(last + 16);
+            minTimestamp = indexEntries == 1 ? Long.MAX_VALUE : index.getLong(last + 24);
+            lastIndexedPosition = start;
+            int position = start;
+            while (position + HEADER_BYTES <= capacity) {
+                int size = log.getInt(position);
+                if (size < HEADER_BYTES || size > MAX_RECORD_BYTES || position + size > capacity
+                        || !checksumMatches(position, size)) {
+                    break;
+                }
+                // Puts back the entries a lost index held
+                if (position - lastIndexedPosition >= indexInterval && indexEntries < indexCapacity) {
+                    writeIndexEntry(log.getLong(position + 8), position);
+                }
+                long timestamp = log.getLong(position + 16);
+                maxTimestamp = Math.max(maxTimestamp, timestamp);
+                minTimestamp = Math.min(minTimestamp, timestamp);
+                lastSequence = log.getLong(position + 8);
+                position += size;
+            }
+            if (position > start || indexEntries == 1) {
+                end = position;
+                return;
+            }
+            // The entry was written for a record that never completed, so the last record
+            // is somewhere before it: drop the entry and scan from the previous one
+            index.putInt(last + 8, 0);
+            indexEntries--;
+        }
+    }
+
+    private boolean checksumMatches(int position, int size) {
+        crc.reset();
+        crcView.limit(position + size).position(position + 8);
+        crc.update(crcView);
+        crcView.clear();
+        return (int) crc.getValue() == log.getInt(position + 4);
+    }
+
+    // Kafka keys here are patient ids, plain ASCII; anything else is stored as UTF-8
+    private static int encodedLength(String key) {
+        if (key == null) {
+            return 0;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) >= 0x80) {
+                return key.getBytes(StandardCharsets.UTF_8).length;
+            }
+        }
+        return key.length();
+    }
+
+    private void encode(String key, int position) {
+        if (key == null) {
+            return;
+        }
+        if (encodedLength(key) == key.length()) {
+            for (int i = 0; i < key.length(); i++) {
+                log.put(position + i, (byte) key.charAt(i));
+            }
+        } else {
+            log.put(position, key.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
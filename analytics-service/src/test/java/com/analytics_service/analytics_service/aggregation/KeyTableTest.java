@@ -0,0 +1,51 @@
+package com.analytics_service.analytics_service.aggregation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class KeyTableTest {
+
+    @Test
+    void knownKeysKeepTheirIndexAndNewOnesOverflowOnceFull() {
+        KeyTable table = new KeyTable(2, true);
+
+        int first = table.indexOf("[PATIENT_CREATED]", 1, 16);
+        int second = table.indexOf("patient_updated", 0, 15);
+
+        assertEquals(0, first);
+        assertEquals(1, second);
+        assertEquals(table.other(), table.indexOf("PATIENT_DELETED", 0, 15));
+        assertEquals(table.other(), table.indexOf("PATIENT_DELETED", 0, 15));
+        // Case folded, and still found after the table filled up
+        assertEquals(first, table.indexOf("Patient_Created", 0, 15));
+        assertEquals(second, table.indexOf("PATIENT_UPDATED", 0, 15));
+        assertEquals(2, table.size());
+        assertEquals("patient_created", table.key(first));
+        assertEquals(KeyTable.OTHER, table.key(table.other()));
+    }
+
+    @Test
+    void concurrentInsertsNeverExceedCapacity() throws Exception {
+        KeyTable table = new KeyTable(64, false);
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    String key = "key-" + i;
+                    table.indexOf(key, 0, key.length());
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(64, table.size());
+        for (int index = 0; index < 64; index++) {
+            String key = table.key(index);
+            assertEquals(index, table.indexOf(key, 0, key.length()));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.analytics_service.analytics_service.kafka;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+
+class AppliedOffsetsTest {
+
+    private final AppliedOffsets appliedOffsets = new AppliedOffsets();
+
+    @Test
+    void redeliveredBatchRunsOnlyTheUnsentRecords() {
+        List<ConsumerRecord<String, byte[]>> batch = records(0, 10, 20);
+        appliedOffsets.failed(batch, List.of(batch.get(3), batch.get(7)));
+
+        List<ConsumerRecord<String, byte[]>> redelivered = appliedOffsets.unapplied(batch);
+        assertEquals(List.of(13L, 17L), offsets(redelivered));
+        // The other partition had nothing applied
+        assertEquals(List.of(10L, 11L), offsets(appliedOffsets.unapplied(records(1, 10, 12))));
+
+        appliedOffsets.succeeded(batch);
+        assertEquals(offsets(batch), offsets(appliedOffsets.unapplied(batch)));
+    }
+
+    @Test
+    void secondFailureKeepsWhatTheFirstLeftUnsent() {
+        List<ConsumerRecord<String, byte[]>> batch = records(0, 0, 10);
+        appliedOffsets.failed(batch, List.of(batch.get(2), batch.get(5)));
+        // The redelivery gets as far as sending 2 again, and fails on 5
+        List<ConsumerRecord<String, byte[]>> redelivered = appliedOffsets.unapplied(batch);
+        appliedOffsets.failed(redelivered.subList(0, 1), List.of());
+
+        assertEquals(List.of(5L), offsets(appliedOffsets.unapplied(batch)));
+    }
+
+    @Test
+    void batchEndingBeforeTheAppliedOffsetKeepsTheRest() {
+        List<ConsumerRecord<String, byte[]>> batch = records(0, 0, 10);
+        appliedOffsets.failed(batch, List.of(batch.get(2), batch.get(8)));
+
+        // Redelivered as a smaller poll that only reaches offset 4
+        appliedOffsets.succeeded(batch.subList(0, 5));
+
+        assertEquals(List.of(8L, 10L), offsets(appliedOffsets.unapplied(records(0, 0, 11))));
+    }
+
+    @Test
+    void revokedPartitionStartsOver() {
+        List<ConsumerRecord<String, byte[]>> batch = records(0, 0, 10);
+        appliedOffsets.failed(batch, List.of());
+
+        appliedOffsets.revoked(List.of(new TopicPartition("patient", 0)));
+
+        assertEquals(offsets(batch), offsets(appliedOffsets.unapplied(batch)));
+    }
+
+    private static List<ConsumerRecord<String, byte[]>> records(int partition, long from, long to) {
+        List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+        for (long offset = from; offset < to; offset++) {
+            records.add(new ConsumerRecord<>("patient", partition, offset, "key", new byte[0]));
+        }
+        return records;
+    }
+
+    private static List<Long> offsets(List<ConsumerRecord<String, byte[]>> records) {
+        return records.stream().map(ConsumerRecord::offset).toList();
+    }
+}
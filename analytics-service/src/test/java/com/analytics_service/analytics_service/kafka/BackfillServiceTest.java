@@ -0,0 +1,30 @@
+package com.analytics_service.analytics_service.kafka;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class BackfillServiceTest {
+
+    @Test
+    void startAfterShutdownFailsInsteadOfStayingRunning() {
+        // Nothing here runs a backfill, so the Kafka side is left out
+        BackfillService service = new BackfillService(null, null, null, null, null, null, new SimpleMeterRegistry(),
+                "patient", "analytics_backfill", 1, 256, 10_000, 1, 500, 1_048_576, 1_048_576, 1_000);
+        service.shutdown();
+
+        assertThrows(IllegalStateException.class, () -> service.start(null, 0L));
+
+        assertEquals(BackfillService.State.FAILED.name(), service.status().state());
+        assertFalse(service.cancel());
+        // Rejected for the same reason again, not as "already running"
+        IllegalStateException again = assertThrows(IllegalStateException.class, () -> service.start(null, 0L));
+        assertTrue(again.getMessage().contains("stopping"), again.getMessage());
+        assertEquals(BackfillService.State.FAILED.name(), service.status().state());
+    }
+}
@@ -0,0 +1,162 @@
+package com.analytics_service.analytics_service.kafka;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class RetryRouterTest {
+
+    private static final byte[] VALUE = { 1, 2, 3 };
+    private static final long PRODUCED_AT = 1_700_000_000_000L;
+
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    private RetryRouter retryRouter;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void createRouter() {
+        kafkaTemplate = mock(KafkaTemplate.class);
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+        meterRegistry = new SimpleMeterRegistry();
+        // Tiers wait 1 s, then 10 s capped to 5 s, then 5 s
+        retryRouter = new RetryRouter(kafkaTemplate, meterRegistry, "patient", 3, 1000, 10, 5000);
+    }
+
+    @Test
+    void tiersWaitLongerUpToTheCap() {
+        assertEquals(List.of("patient-retry-0", "patient-retry-1", "patient-retry-2"), retryRouter.tierTopics());
+        assertEquals(1000, retryRouter.tierDelayMillis(0));
+        assertEquals(5000, retryRouter.tierDelayMillis(1));
+        assertEquals(5000, retryRouter.tierDelayMillis(2));
+        assertEquals("patient-dlt", retryRouter.deadLetterTopic());
+    }
+
+    @Test
+    void firstFailureGoesToTheFirstTierWithAttemptAndDueAt() {
+        long before = System.currentTimeMillis();
+        retryRouter.route(record("patient", 42, new RecordHeaders()), new IllegalStateException("boom"), true);
+        long after = System.currentTimeMillis();
+
+        ProducerRecord<String, byte[]> sent = lastSent();
+        assertEquals("patient-retry-0", sent.topic());
+        assertEquals("patient-1", sent.key());
+        assertArrayEquals(VALUE, sent.value());
+        assertEquals(PRODUCED_AT, sent.timestamp());
+        assertEquals(1, RetryRouter.intHeader(sent.headers(), RetryRouter.ATTEMPT_HEADER));
+        long dueAt = RetryRouter.longHeader(sent.headers(), RetryRouter.DUE_AT_HEADER);
+        assertTrue(dueAt >= before + 1000 && dueAt <= after + 1000, String.valueOf(dueAt));
+        assertEquals("patient", string(sent.headers(), KafkaHeaders.DLT_ORIGINAL_TOPIC));
+        assertEquals(42L, RetryRouter.longHeader(sent.headers(), KafkaHeaders.DLT_ORIGINAL_OFFSET));
+        assertEquals(IllegalStateException.class.getName(), string(sent.headers(), KafkaHeaders.DLT_EXCEPTION_FQCN));
+        assertEquals("boom", string(sent.headers(), KafkaHeaders.DLT_EXCEPTION_MESSAGE));
+        assertEquals(1.0, meterRegistry.counter("analytics.kafka.retry", "tier", "0").count());
+    }
+
+    @Test
+    void lastTierHandsOverToTheDeadLetterTopic() {
+        ConsumerRecord<String, byte[]> record = record("patient", 42, new RecordHeaders());
+        for (int tier = 0; tier < 3; tier++) {
+            retryRouter.route(record, new IllegalStateException("attempt " + tier), true);
+            ProducerRecord<String, byte[]> sent = lastSent();
+            assertEquals("patient-retry-" + tier, sent.topic());
+            assertEquals(tier + 1, RetryRouter.intHeader(sent.headers(), RetryRouter.ATTEMPT_HEADER));
+            record = record(sent.topic(), 7, sent.headers());
+        }
+
+        retryRouter.route(record, new IllegalStateException("attempt 3"), true);
+
+        ProducerRecord<String, byte[]> deadLetter = lastSent();
+        assertEquals("patient-dlt", deadLetter.topic());
+        assertEquals(3, RetryRouter.intHeader(deadLetter.headers(), RetryRouter.ATTEMPT_HEADER));
+        assertNull(deadLetter.headers().lastHeader(RetryRouter.DUE_AT_HEADER));
+        // Where it first failed is kept from the first hop, and the hop headers are not stacked
+        assertEquals("patient", string(deadLetter.headers(), KafkaHeaders.DLT_ORIGINAL_TOPIC));
+        assertEquals(42L, RetryRouter.longHeader(deadLetter.headers(), KafkaHeaders.DLT_ORIGINAL_OFFSET));
+        assertEquals(1, count(deadLetter.headers(), KafkaHeaders.DLT_ORIGINAL_TOPIC));
+        assertEquals(1, count(deadLetter.headers(), RetryRouter.ATTEMPT_HEADER));
+        assertEquals("attempt 3", string(deadLetter.headers(), KafkaHeaders.DLT_EXCEPTION_MESSAGE));
+        assertEquals(1.0, meterRegistry.counter("analytics.kafka.dead.letters").count());
+    }
+
+    @Test
+    void unparseableRecordIsDeadLetteredAtOnce() {
+        retryRouter.route(record("patient", 5, new RecordHeaders()), new IllegalArgumentException("bad bytes"), false);
+
+        ProducerRecord<String, byte[]> sent = lastSent();
+        assertEquals("patient-dlt", sent.topic());
+        assertEquals(0, RetryRouter.intHeader(sent.headers(), RetryRouter.ATTEMPT_HEADER));
+        assertNull(sent.headers().lastHeader(RetryRouter.DUE_AT_HEADER));
+    }
+
+    @Test
+    void replayStartsOverAtTheFirstTierDueNow() {
+        retryRouter.route(record("patient", 42, new RecordHeaders()), new IllegalStateException("boom"), false);
+        ConsumerRecord<String, byte[]> deadLetter = record("patient-dlt", 3, lastSent().headers());
+        deadLetter.headers().add(RetryRouter.ATTEMPT_HEADER, new byte[] { 0, 0, 0, 3 });
+
+        long before = System.currentTimeMillis();
+        retryRouter.replay(deadLetter);
+        long after = System.currentTimeMillis();
+
+        ProducerRecord<String, byte[]> replayed = lastSent();
+        assertEquals("patient-retry-0", replayed.topic());
+        assertEquals(PRODUCED_AT, replayed.timestamp());
+        assertEquals(1, RetryRouter.intHeader(replayed.headers(), RetryRouter.ATTEMPT_HEADER));
+        assertEquals(1, count(replayed.headers(), RetryRouter.ATTEMPT_HEADER));
+        long dueAt = RetryRouter.longHeader(replayed.headers(), RetryRouter.DUE_AT_HEADER);
+        assertTrue(dueAt >= before && dueAt <= after, String.valueOf(dueAt));
+        assertEquals(42L, RetryRouter.longHeader(replayed.headers(), KafkaHeaders.DLT_ORIGINAL_OFFSET));
+        assertEquals("boom", string(replayed.headers(), KafkaHeaders.DLT_EXCEPTION_MESSAGE));
+        assertEquals(1.0, meterRegistry.counter("analytics.kafka.dead.letters.replayed").count());
+    }
+
+    @SuppressWarnings("unchecked")
+    private ProducerRecord<String, byte[]> lastSent() {
+        ArgumentCaptor<ProducerRecord<String, byte[]>> sent = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate, atLeastOnce()).send(sent.capture());
+        return sent.getValue();
+    }
+
+    static ConsumerRecord<String, byte[]> record(String topic, long offset, Headers headers) {
+        return new ConsumerRecord<>(topic, 0, offset, PRODUCED_AT, TimestampType.CREATE_TIME, -1, -1, "patient-1",
+                VALUE, new RecordHeaders(headers.toArray()), Optional.empty());
+    }
+
+    private static String string(Headers headers, String name) {
+        return new String(headers.lastHeader(name).value(), StandardCharsets.UTF_8);
+    }
+
+    private static int count(Headers headers, String name) {
+        int count = 0;
+        for (Header header : headers.headers(name)) {
+            count++;
+        }
+        return count;
+    }
+}
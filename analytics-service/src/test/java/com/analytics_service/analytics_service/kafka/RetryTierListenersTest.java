@@ -0,0 +1,158 @@
+package com.analytics_service.analytics_service.kafka;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.Acknowledgment;
+
+import com.analytics_service.analytics_service.aggregation.EventAggregator;
+import com.analytics_service.analytics_service.sketch.PatientSketches;
+import com.analytics_service.analytics_service.store.EventLog;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import patient.event.PatientEvent;
+
+class RetryTierListenersTest {
+
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+    private EventAggregator eventAggregator;
+    private KafkaConsumer kafkaConsumer;
+    private RetryTierListeners listeners;
+    private Acknowledgment acknowledgment;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void createListeners() {
+        kafkaTemplate = mock(KafkaTemplate.class);
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+        eventAggregator = mock(EventAggregator.class);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RetryRouter retryRouter = new RetryRouter(kafkaTemplate, meterRegistry, "patient", 3, 1000, 10, 600000);
+        kafkaConsumer = new KafkaConsumer(eventAggregator, mock(PatientSketches.class), mock(EventLog.class),
+                retryRouter, meterRegistry, 1, 256);
+        // onRetries does not touch the container factory
+        listeners = new RetryTierListeners(null, retryRouter, kafkaConsumer);
+        acknowledgment = mock(Acknowledgment.class);
+    }
+
+    @AfterEach
+    void shutdown() {
+        kafkaConsumer.shutdown();
+    }
+
+    @Test
+    void dueBatchIsCountedAndAcknowledged() {
+        long now = System.currentTimeMillis();
+        listeners.onRetries(List.of(record(0, "a@example.com", now - 10), record(1, "b@example.com", now)),
+                acknowledgment);
+
+        verify(eventAggregator, times(2)).record(anyLong(), eq("PATIENT_CREATED"), anyString());
+        verify(acknowledgment).acknowledge();
+        verify(acknowledgment, never()).nack(any(Integer.class), any(Duration.class));
+    }
+
+    @Test
+    void stopsAtTheFirstRecordNotDueAndCommitsTheOnesBefore() {
+        long now = System.currentTimeMillis();
+        List<ConsumerRecord<String, byte[]>> records = List.of(record(0, "a@example.com", now - 10),
+                record(1, "b@example.com", now - 5), record(2, "c@example.com", now + 60_000),
+                record(3, "d@example.com", now + 61_000));
+
+        listeners.onRetries(records, acknowledgment);
+
+        verify(eventAggregator).record(anyLong(), anyString(), eq("a@example.com"));
+        verify(eventAggregator).record(anyLong(), anyString(), eq("b@example.com"));
+        verify(eventAggregator, times(2)).record(anyLong(), anyString(), anyString());
+        ArgumentCaptor<Duration> wait = ArgumentCaptor.forClass(Duration.class);
+        verify(acknowledgment).nack(eq(2), wait.capture());
+        assertTrue(wait.getValue().toMillis() > 59_000 && wait.getValue().toMillis() <= 60_000,
+                wait.getValue().toString());
+        verify(acknowledgment, never()).acknowledge();
+    }
+
+    @Test
+    void failingRecordMovesToTheNextTier() {
+        doThrow(new IllegalStateException("boom")).when(eventAggregator).record(anyLong(), anyString(),
+                eq("bad@example.com"));
+        long now = System.currentTimeMillis();
+
+        listeners.onRetries(List.of(record(0, "a@example.com", now), record(1, "bad@example.com", now)),
+                acknowledgment);
+
+        ProducerRecord<String, byte[]> sent = sent().get(0);
+        assertEquals("patient-retry-1", sent.topic());
+        assertEquals(2, RetryRouter.intHeader(sent.headers(), RetryRouter.ATTEMPT_HEADER));
+        verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    void redeliveryAfterAFailedHandOffOnlyRunsTheUnsentRecord() {
+        doThrow(new IllegalStateException("boom")).when(eventAggregator).record(anyLong(), anyString(),
+                eq("bad@example.com"));
+        when(kafkaTemplate.send(any(ProducerRecord.class)))
+                .thenReturn(CompletableFuture.failedFuture(new KafkaException("broker down")))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        long now = System.currentTimeMillis();
+        List<ConsumerRecord<String, byte[]>> records = List.of(record(0, "a@example.com", now),
+                record(1, "bad@example.com", now), record(2, "c@example.com", now));
+
+        assertThrows(CompletionException.class, () -> listeners.onRetries(records, acknowledgment));
+        verify(acknowledgment, never()).acknowledge();
+
+        listeners.onRetries(records, acknowledgment);
+
+        // a and c were counted by the first attempt only, the bad one was tried twice
+        verify(eventAggregator).record(anyLong(), anyString(), eq("a@example.com"));
+        verify(eventAggregator).record(anyLong(), anyString(), eq("c@example.com"));
+        verify(eventAggregator, times(2)).record(anyLong(), anyString(), eq("bad@example.com"));
+        assertEquals(2, sent().size());
+        verify(acknowledgment).acknowledge();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ProducerRecord<String, byte[]>> sent() {
+        ArgumentCaptor<ProducerRecord<String, byte[]>> sent = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate, atLeast(0)).send(sent.capture());
+        return new ArrayList<>(sent.getAllValues());
+    }
+
+    private static ConsumerRecord<String, byte[]> record(long offset, String email, long dueAt) {
+        RecordHeaders headers = new RecordHeaders();
+        headers.add(RetryRouter.ATTEMPT_HEADER, ByteBuffer.allocate(Integer.BYTES).putInt(1).array());
+        headers.add(RetryRouter.DUE_AT_HEADER, ByteBuffer.allocate(Long.BYTES).putLong(dueAt).array());
+        byte[] event = PatientEvent.newBuilder().setPatientId("patient-" + offset).setEmail(email)
+                .setEventType("PATIENT_CREATED").build().toByteArray();
+        return new ConsumerRecord<>("patient-retry-0", 0, offset, dueAt - 1000, TimestampType.CREATE_TIME, -1, -1,
+                "patient-" + offset, event, headers, Optional.empty());
+    }
+}
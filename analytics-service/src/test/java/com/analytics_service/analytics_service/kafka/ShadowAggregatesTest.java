@@ -0,0 +1,159 @@
+package com.analytics_service.analytics_service.kafka;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.KafkaHeaders;
+
+import com.analytics_service.analytics_service.aggregation.Dimension;
+import com.analytics_service.analytics_service.aggregation.EventAggregator;
+import com.analytics_service.analytics_service.aggregation.Granularity;
+import com.analytics_service.analytics_service.sketch.CountMinSketch;
+import com.analytics_service.analytics_service.sketch.PatientSketches;
+import com.analytics_service.analytics_service.sketch.TopK;
+
+import patient.event.PatientEvent;
+
+class ShadowAggregatesTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+    private static final String[] DOMAINS = { "a.com", "b.org", "c.net" };
+
+    @Test
+    void recordsOnlyWhatTheBackfillWillNotRead() {
+        EventAggregator live = aggregator();
+        ShadowAggregates shadow = new ShadowAggregates("patient", new long[] { 10, 6 }, 2, live, sketches());
+
+        // Before the end offset: the backfill reads it
+        shadow.recordLive(record("patient", 0, 9, new RecordHeaders()), event(9));
+        // Another topic with no retry headers is not the backfill's business
+        shadow.recordLive(record("other", 0, 20, new RecordHeaders()), event(20));
+        // A retry of an event below the end offset: the backfill counts the original
+        shadow.recordLive(retried(0, 3), event(3));
+        assertEquals(0, total(shadow.liveAggregator()));
+
+        // At the end offset, a retry of one past it, and a partition added since the start
+        shadow.recordLive(record("patient", 0, 10, new RecordHeaders()), event(10));
+        shadow.recordLive(retried(1, 6), event(6));
+        shadow.recordLive(record("patient", 2, 0, new RecordHeaders()), event(0));
+        assertEquals(3, total(shadow.liveAggregator()));
+    }
+
+    @Test
+    void lanesPlusLiveTailAddUpToASingleCopy() {
+        long[] endOffsets = { 10, 6 };
+        int[] partitionSizes = { 16, 10, 3 };
+        EventAggregator reference = aggregator();
+        PatientSketches referenceSketches = sketches();
+        ShadowAggregates shadow = new ShadowAggregates("patient", endOffsets, 2, aggregator(), sketches());
+
+        int lane = 0;
+        for (int partition = 0; partition < partitionSizes.length; partition++) {
+            for (int offset = 0; offset < partitionSizes[partition]; offset++) {
+                int id = partition * 100 + offset;
+                PatientEvent event = event(id);
+                reference.record(timestamp(id), event.getEventType(), event.getEmail());
+                referenceSketches.record(timestamp(id), event.getPatientId(), event.getEmail(), event.getEventType());
+                if (partition < endOffsets.length && offset < endOffsets[partition]) {
+                    shadow.record(lane, timestamp(id), event);
+                    lane = 1 - lane;
+                }
+            }
+        }
+        // The live consumer resumed a few offsets before the end offsets; partition 0's
+        // offsets 8 and 12 failed the first time and were counted from the retry topic
+        List<ConsumerRecord<String, byte[]>> liveRecords = new ArrayList<>();
+        for (int offset = 7; offset < 16; offset++) {
+            if (offset != 8 && offset != 12) {
+                liveRecords.add(record("patient", 0, offset, new RecordHeaders()));
+            }
+        }
+        for (int offset = 4; offset < 10; offset++) {
+            liveRecords.add(record("patient", 1, offset, new RecordHeaders()));
+        }
+        for (int offset = 0; offset < 3; offset++) {
+            liveRecords.add(record("patient", 2, offset, new RecordHeaders()));
+        }
+        liveRecords.add(retried(0, 8));
+        liveRecords.add(retried(0, 12));
+        for (ConsumerRecord<String, byte[]> record : liveRecords) {
+            int id = originalPartition(record) * 100 + (int) originalOffset(record);
+            shadow.recordLive(record, event(id));
+        }
+
+        EventAggregator merged = shadow.mergedAggregator();
+        merged.merge(shadow.liveAggregator());
+        PatientSketches mergedSketches = shadow.mergedSketches();
+        mergedSketches.merge(shadow.liveSketches());
+
+        assertEquals(29, total(merged));
+        for (Dimension dimension : Dimension.values()) {
+            for (Granularity granularity : Granularity.values()) {
+                assertEquals(reference.windows(dimension, granularity, 3), merged.windows(dimension, granularity, 3),
+                        dimension + " " + granularity);
+            }
+        }
+        assertEquals(referenceSketches.distinctPatients(1).estimate(), mergedSketches.distinctPatients(1).estimate());
+        assertEquals(referenceSketches.emailDomains().top(10), mergedSketches.emailDomains().top(10));
+        assertEquals(referenceSketches.updatedPatients().top(10), mergedSketches.updatedPatients().top(10));
+    }
+
+    private static EventAggregator aggregator() {
+        return new EventAggregator(64, 1024, () -> NOW);
+    }
+
+    private static PatientSketches sketches() {
+        return new PatientSketches(30, 14, new TopK(10, CountMinSketch.withErrorBounds(0.001, 0.01)),
+                new TopK(10, CountMinSketch.withErrorBounds(0.001, 0.01)), () -> NOW);
+    }
+
+    private static long total(EventAggregator aggregator) {
+        return aggregator.sliding(Dimension.ALL, Granularity.DAY, 2).total();
+    }
+
+    // Spread over the last hour so they fall in different minute windows
+    private static long timestamp(int id) {
+        return NOW - (id % 60) * 61_000L;
+    }
+
+    private static PatientEvent event(int id) {
+        return PatientEvent.newBuilder().setPatientId("patient-" + (id % 17))
+                .setEmail("patient" + id + "@" + DOMAINS[id % DOMAINS.length])
+                .setEventType(id % 2 == 0 ? "PATIENT_CREATED" : PatientSketches.PATIENT_UPDATED).build();
+    }
+
+    private static ConsumerRecord<String, byte[]> record(String topic, int partition, long offset,
+            RecordHeaders headers) {
+        int id = partition * 100 + (int) offset;
+        return new ConsumerRecord<>(topic, partition, offset, timestamp(id), TimestampType.CREATE_TIME, -1, -1,
+                "patient-" + (id % 17), event(id).toByteArray(), headers, Optional.empty());
+    }
+
+    // As RetryRouter sends it: on a retry topic, with where it was first consumed in the headers
+    private static ConsumerRecord<String, byte[]> retried(int partition, long offset) {
+        RecordHeaders headers = new RecordHeaders();
+        headers.add(KafkaHeaders.DLT_ORIGINAL_PARTITION, ByteBuffer.allocate(Integer.BYTES).putInt(partition).array());
+        headers.add(KafkaHeaders.DLT_ORIGINAL_OFFSET, ByteBuffer.allocate(Long.BYTES).putLong(offset).array());
+        int id = partition * 100 + (int) offset;
+        return new ConsumerRecord<>("patient-retry-0", 1, 40 + offset, timestamp(id), TimestampType.CREATE_TIME, -1,
+                -1, "patient-" + (id % 17), event(id).toByteArray(), headers, Optional.empty());
+    }
+
+    private static int originalPartition(ConsumerRecord<String, byte[]> record) {
+        return record.headers().lastHeader(KafkaHeaders.DLT_ORIGINAL_PARTITION) == null ? record.partition()
+                : RetryRouter.intHeader(record.headers(), KafkaHeaders.DLT_ORIGINAL_PARTITION);
+    }
+
+    private static long originalOffset(ConsumerRecord<String, byte[]> record) {
+        return record.headers().lastHeader(KafkaHeaders.DLT_ORIGINAL_OFFSET) == null ? record.offset()
+                : RetryRouter.longHeader(record.headers(), KafkaHeaders.DLT_ORIGINAL_OFFSET);
+    }
+}
@@ -0,0 +1,88 @@
+package com.analytics_service.analytics_service.sketch;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+class CountMinSketchTest {
+
+    // Key i occurs i % 50 + 1 times
+    private static int occurrences(int key) {
+        return key % 50 + 1;
+    }
+
+    private static void addStream(CountMinSketch sketch, int fromKey, int toKey) {
+        for (int key = fromKey; key < toKey; key++) {
+            long hash = Hashes.hash64("key-" + key);
+            for (int n = 0; n < occurrences(key); n++) {
+                sketch.add(hash);
+            }
+        }
+    }
+
+    @Test
+    void estimatesNeverUndercountAndStayWithinTheBound() {
+        CountMinSketch sketch = CountMinSketch.withErrorBounds(0.001, 0.01);
+        addStream(sketch, 0, 20_000);
+
+        long allowed = (long) Math.ceil(sketch.epsilon() * sketch.total());
+        int outside = 0;
+        for (int key = 0; key < 20_000; key++) {
+            long estimate = sketch.estimate(Hashes.hash64("key-" + key));
+            assertTrue(estimate >= occurrences(key));
+            if (estimate - occurrences(key) > allowed) {
+                outside++;
+            }
+        }
+        // At most delta of the keys may exceed the bound
+        assertTrue(outside <= 0.01 * 20_000, outside + " keys over the bound");
+    }
+
+    @Test
+    void mergeAddsCountsAsIfOneSketchSawBothStreams() throws IOException {
+        CountMinSketch all = new CountMinSketch(4, 2_000);
+        CountMinSketch first = all.emptyCopy();
+        CountMinSketch second = all.emptyCopy();
+        addStream(all, 0, 10_000);
+        addStream(first, 0, 4_000);
+        addStream(second, 4_000, 10_000);
+
+        first.merge(second);
+
+        assertEquals(all.total(), first.total());
+        assertArrayEquals(bytes(all), bytes(first));
+    }
+
+    @Test
+    void serializationRoundTripKeepsCountersAndTotal() throws IOException {
+        CountMinSketch sketch = new CountMinSketch(3, 500);
+        addStream(sketch, 0, 1_000);
+
+        byte[] written = bytes(sketch);
+        CountMinSketch read = CountMinSketch.readFrom(new DataInputStream(new ByteArrayInputStream(written)));
+
+        assertArrayEquals(written, bytes(read));
+        assertEquals(sketch.total(), read.total());
+        assertEquals(sketch.estimate(Hashes.hash64("key-7")), read.estimate(Hashes.hash64("key-7")));
+    }
+
+    @Test
+    void sketchesOfDifferentDimensionsDoNotMerge() {
+        assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(3, 500).merge(new CountMinSketch(4, 500)));
+    }
+
+    private static byte[] bytes(CountMinSketch sketch) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        sketch.writeTo(new DataOutputStream(out));
+        return out.toByteArray();
+    }
+}
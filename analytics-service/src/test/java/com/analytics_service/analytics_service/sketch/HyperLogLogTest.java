@@ -0,0 +1,83 @@
+package com.analytics_service.analytics_service.sketch;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+class HyperLogLogTest {
+
+    @Test
+    void estimateIsWithinThreeStandardErrors() {
+        HyperLogLog sketch = new HyperLogLog(14);
+        for (int i = 0; i < 100_000; i++) {
+            sketch.add(Hashes.hash64("patient-" + i));
+        }
+        long estimate = sketch.estimate();
+        // Adding values again changes nothing
+        for (int i = 0; i < 100_000; i++) {
+            sketch.add(Hashes.hash64("patient-" + i));
+        }
+
+        assertEquals(estimate, sketch.estimate());
+        assertTrue(Math.abs(estimate - 100_000) <= 3 * sketch.relativeStandardError() * 100_000,
+                "estimate " + estimate);
+    }
+
+    @Test
+    void mergeIsTheSketchOfTheUnion() throws IOException {
+        HyperLogLog all = new HyperLogLog(12);
+        HyperLogLog first = new HyperLogLog(12);
+        HyperLogLog second = new HyperLogLog(12);
+        // Overlapping halves, 0..59999 and 40000..99999
+        for (int i = 0; i < 100_000; i++) {
+            long hash = Hashes.hash64("patient-" + i);
+            all.add(hash);
+            if (i < 60_000) {
+                first.add(hash);
+            }
+            if (i >= 40_000) {
+                second.add(hash);
+            }
+        }
+
+        first.merge(second);
+
+        assertArrayEquals(bytes(all), bytes(first));
+        assertEquals(all.estimate(), first.estimate());
+    }
+
+    @Test
+    void serializationRoundTripKeepsEveryRegister() throws IOException {
+        HyperLogLog sketch = new HyperLogLog(10);
+        for (int i = 0; i < 5_000; i++) {
+            sketch.add(Hashes.hash64("patient-" + i));
+        }
+
+        byte[] written = bytes(sketch);
+        HyperLogLog read = HyperLogLog.readFrom(new DataInputStream(new ByteArrayInputStream(written)));
+
+        assertArrayEquals(written, bytes(read));
+        assertEquals(sketch.estimate(), read.estimate());
+        assertEquals(1 + (1 << 10), written.length);
+    }
+
+    @Test
+    void sketchesOfDifferentPrecisionDoNotMerge() {
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(12).merge(new HyperLogLog(14)));
+    }
+
+    private static byte[] bytes(HyperLogLog sketch) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        sketch.writeTo(new DataOutputStream(out));
+        return out.toByteArray();
+    }
+}
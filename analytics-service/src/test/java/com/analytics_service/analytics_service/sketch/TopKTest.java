@@ -0,0 +1,73 @@
+package com.analytics_service.analytics_service.sketch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class TopKTest {
+
+    private static final List<String> HEAVY = List.of("gmail.com", "yahoo.com", "outlook.com", "proton.me",
+            "icloud.com");
+
+    // The heavy keys 1000, 900, ... 600 times, interleaved with 20000 keys seen once or twice
+    private static void addStream(TopK topK, int part, int parts) {
+        for (int round = 0; round < 1_000; round++) {
+            for (int h = 0; h < HEAVY.size(); h++) {
+                if (round < 1_000 - 100 * h && round % parts == part) {
+                    topK.add(HEAVY.get(h));
+                }
+            }
+            for (int n = 0; n < 20; n++) {
+                int light = round * 20 + n;
+                if (light % parts == part) {
+                    topK.add("domain-" + light % 15_000 + ".example");
+                }
+            }
+        }
+    }
+
+    private static List<String> keys(TopK topK, int limit) {
+        return topK.top(limit).stream().map(TopK.Entry::key).toList();
+    }
+
+    @Test
+    void heavyHittersComeOutInOrder() {
+        TopK topK = new TopK(10, CountMinSketch.withErrorBounds(0.001, 0.01));
+        addStream(topK, 0, 1);
+
+        assertEquals(HEAVY, keys(topK, 5));
+        assertEquals(1_000, topK.top(1).get(0).estimate(), 0.001 * topK.sketch().total());
+    }
+
+    @Test
+    void mergedPartsRankLikeOneThatSawEverything() {
+        TopK first = new TopK(10, CountMinSketch.withErrorBounds(0.001, 0.01));
+        TopK second = first.emptyCopy();
+        addStream(first, 0, 2);
+        addStream(second, 1, 2);
+
+        first.merge(second);
+
+        assertEquals(HEAVY, keys(first, 5));
+    }
+
+    @Test
+    void serializationRoundTripKeepsCandidatesAndCounts() throws IOException {
+        TopK topK = new TopK(10, CountMinSketch.withErrorBounds(0.001, 0.01));
+        addStream(topK, 0, 1);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        topK.writeTo(new DataOutputStream(out));
+        TopK read = TopK.readFrom(new DataInputStream(new ByteArrayInputStream(out.toByteArray())));
+
+        assertEquals(topK.top(10), read.top(10));
+        assertEquals(topK.sketch().total(), read.sketch().total());
+    }
+}
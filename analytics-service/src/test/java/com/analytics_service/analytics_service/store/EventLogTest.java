@@ -0,0 +1,260 @@
+package com.analytics_service.analytics_service.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class EventLogTest {
+
+    private static final long BASE_TIME = 1_700_000_000_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void scansBySequenceAndTimeAcrossSegments() throws IOException {
+        EventLog eventLog = open(0);
+        // About 3 MiB of 1 KiB events, so three segments at the 1 MiB minimum size
+        List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+        for (int i = 0; i < 2_900; i++) {
+            records.add(record(i % 3, i / 3, timestamp(i), "patient-" + i % 40, 1_000, i));
+        }
+        eventLog.append(records);
+
+        EventLog.Stats stats = eventLog.stats();
+        assertEquals(3, stats.segments());
+        assertEquals(0, stats.firstSequence());
+        assertEquals(2_899, stats.lastSequence());
+        assertEquals(oldest(2_900), stats.oldestTimestamp());
+        assertEquals(newest(2_900), stats.newestTimestamp());
+
+        assertEquals(range(1_234, 2_900), sequencesFrom(eventLog, 1_234));
+        long from = BASE_TIME + 1_500_000;
+        long to = BASE_TIME + 2_400_000;
+        assertEquals(inTimeRange(2_900, from, to), sequencesBetween(eventLog, from, to));
+
+        // Stops where the visitor says so
+        List<Long> firstTen = new ArrayList<>();
+        eventLog.scanFrom(100, (sequence, timestamp, partition, offset, payload) -> {
+            firstTen.add(sequence);
+            return firstTen.size() < 10;
+        });
+        assertEquals(range(100, 110), firstTen);
+        eventLog.close();
+    }
+
+    @Test
+    void reopensAfterATornRecordAndAppendsAfterTheLastWholeOne() throws IOException {
+        EventLog eventLog = open(0);
+        eventLog.append(records(0, 10));
+        eventLog.close();
+        // Every record is 38 + 9 + 100 bytes; damage the payload of the last one
+        try (FileChannel channel = FileChannel.open(Segment.logPath(directory, 0), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 42 }), 9 * 147 + 120);
+        }
+
+        EventLog reopened = open(0);
+        assertEquals(8, reopened.stats().lastSequence());
+        // Offset 9 was lost with the record, so Kafka's redelivery of it is stored again
+        reopened.append(records(9, 12));
+        reopened.close();
+
+        EventLog again = open(0);
+        assertEquals(range(0, 12), sequencesFrom(again, 0));
+        assertEquals(range(0, 12), payloadIds(again));
+        again.close();
+    }
+
+    @Test
+    void reopensATruncatedSegment() throws IOException {
+        EventLog eventLog = open(0);
+        eventLog.append(records(0, 10));
+        eventLog.close();
+        // Cut in the middle of the last record
+        try (FileChannel channel = FileChannel.open(Segment.logPath(directory, 0), StandardOpenOption.WRITE)) {
+            channel.truncate(9 * 147 + 60);
+        }
+
+        EventLog reopened = open(0);
+        assertEquals(8, reopened.stats().lastSequence());
+        reopened.append(records(9, 12));
+
+        // Nothing more fits in the cut segment, so the new events start a second one
+        assertEquals(2, reopened.stats().segments());
+        assertEquals(range(0, 12), sequencesFrom(reopened, 0));
+        assertEquals(range(0, 12), payloadIds(reopened));
+        reopened.close();
+    }
+
+    @Test
+    void compactionKeepsTheLastEventPerKeyAndSurvivesAReopen() throws IOException {
+        EventLog eventLog = open(1);
+        long old = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2);
+        List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            // Five keys, and every seventh event without one
+            String key = i % 7 == 6 ? null : "patient-" + i % 5;
+            records.add(record(0, i, old + i, key, 100, i));
+            if (key == null || !keyRepeats(i, 30)) {
+                expected.add((long) i);
+            }
+        }
+        eventLog.append(records);
+
+        // Rolls the active segment, then compacts the sealed one
+        eventLog.maintain();
+
+        assertEquals(expected, sequencesFrom(eventLog, 0));
+        assertEquals(expected, payloadIds(eventLog));
+        assertEquals(old + expected.get(0), eventLog.stats().oldestTimestamp());
+        assertTrue(Files.exists(directory.resolve(String.format("%020d", 0) + ".compacted")));
+        eventLog.append(records(30, 31));
+        eventLog.close();
+
+        EventLog reopened = open(1);
+        List<Long> withNew = new ArrayList<>(expected);
+        withNew.add(30L);
+        assertEquals(withNew, sequencesFrom(reopened, 0));
+        reopened.close();
+    }
+
+    @Test
+    void recoversWithoutIndexFiles() throws IOException {
+        EventLog eventLog = open(0);
+        List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            records.add(record(i % 3, i / 3, timestamp(i), "patient-" + i, 100, i));
+        }
+        eventLog.append(records);
+        eventLog.close();
+        try (DirectoryStream<Path> indexes = Files.newDirectoryStream(directory, "*.index")) {
+            for (Path index : indexes) {
+                Files.delete(index);
+            }
+        }
+
+        EventLog reopened = open(0);
+
+        EventLog.Stats stats = reopened.stats();
+        assertEquals(499, stats.lastSequence());
+        assertEquals(oldest(500), stats.oldestTimestamp());
+        assertEquals(newest(500), stats.newestTimestamp());
+        assertEquals(range(250, 500), sequencesFrom(reopened, 250));
+        long from = BASE_TIME + 100_000;
+        long to = BASE_TIME + 300_000;
+        assertEquals(inTimeRange(500, from, to), sequencesBetween(reopened, from, to));
+        reopened.close();
+    }
+
+    private EventLog open(long compactAfterHours) throws IOException {
+        // Segment size 0 is raised to the minimum, a little over 1 MiB
+        EventLog eventLog = new EventLog(new SimpleMeterRegistry(), true, directory.toString(), 0, 1_024, 0, 720,
+                compactAfterHours);
+        eventLog.open();
+        return eventLog;
+    }
+
+    // Three partitions, whose timestamps run up to three seconds behind one another
+    private static long timestamp(int i) {
+        return BASE_TIME + i * 1_000L - (i % 3) * 1_500L;
+    }
+
+    private static long oldest(int count) {
+        long oldest = Long.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            oldest = Math.min(oldest, timestamp(i));
+        }
+        return oldest;
+    }
+
+    private static long newest(int count) {
+        long newest = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            newest = Math.max(newest, timestamp(i));
+        }
+        return newest;
+    }
+
+    private static boolean keyRepeats(int i, int count) {
+        for (int later = i + 5; later < count; later += 5) {
+            if (later % 7 != 6) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Partition 0, offsets from..to-1, 100 byte payloads
+    private static List<ConsumerRecord<String, byte[]>> records(int from, int to) {
+        List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            records.add(record(0, i, BASE_TIME + i, "patient-" + i % 10, 100, i));
+        }
+        return records;
+    }
+
+    // The payload starts with id so scans can tell which event they got
+    private static ConsumerRecord<String, byte[]> record(int partition, long offset, long timestamp, String key,
+            int payloadBytes, int id) {
+        byte[] payload = ByteBuffer.allocate(payloadBytes).putInt(id).array();
+        return new ConsumerRecord<>("patient", partition, offset, timestamp, TimestampType.CREATE_TIME,
+                key == null ? -1 : key.length(), payload.length, key, payload, new RecordHeaders(), Optional.empty());
+    }
+
+    private static List<Long> sequencesFrom(EventLog eventLog, long fromSequence) {
+        List<Long> sequences = new ArrayList<>();
+        eventLog.scanFrom(fromSequence, (sequence, timestamp, partition, offset, payload) -> sequences.add(sequence));
+        return sequences;
+    }
+
+    private static List<Long> sequencesBetween(EventLog eventLog, long from, long to) {
+        List<Long> sequences = new ArrayList<>();
+        eventLog.scan(from, to, (sequence, timestamp, partition, offset, payload) -> sequences.add(sequence));
+        return sequences;
+    }
+
+    private static List<Long> payloadIds(EventLog eventLog) {
+        List<Long> ids = new ArrayList<>();
+        eventLog.scanFrom(0, (sequence, timestamp, partition, offset, payload) -> ids.add(
+                (long) payload.getInt(payload.position())));
+        return ids;
+    }
+
+    private static List<Long> inTimeRange(int count, long from, long to) {
+        List<Long> sequences = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (timestamp(i) >= from && timestamp(i) < to) {
+                sequences.add((long) i);
+            }
+        }
+        return sequences;
+    }
+
+    private static List<Long> range(long from, long to) {
+        List<Long> sequences = new ArrayList<>();
+        for (long sequence = from; sequence < to; sequence++) {
+            sequences.add(sequence);
+        }
+        return sequences;
+    }
+}
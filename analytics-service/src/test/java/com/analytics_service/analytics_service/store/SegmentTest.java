@@ -0,0 +1,67 @@
+package com.analytics_service.analytics_service.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SegmentTest {
+
+    // 38 header bytes, a 10 byte key and 52 payload bytes
+    private static final int RECORD_BYTES = 100;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void indexLostWithTheFileIsRebuiltOnOpen() throws IOException {
+        Segment segment = Segment.create(directory, 1_000, 64 * 1_024, 1_000);
+        for (int i = 0; i < 500; i++) {
+            assertTrue(segment.append(1_000 + i, 5_000 + i, 0, i, "patient-" + (char) ('a' + i % 26) + "x",
+                    new byte[52]));
+        }
+        int positionOf400 = segment.positionForSequence(1_400);
+        segment.flush();
+        Files.delete(Segment.indexPath(directory, 1_000));
+
+        Segment reopened = Segment.open(directory, 1_000, 1_000);
+
+        assertEquals(500 * RECORD_BYTES, reopened.end());
+        assertEquals(1_499, reopened.lastSequence());
+        assertEquals(5_000, reopened.minTimestamp());
+        assertEquals(5_499, reopened.maxTimestamp());
+        // The same entries as appending wrote, so scans still start close to where asked
+        assertEquals(positionOf400, reopened.positionForSequence(1_400));
+        assertTrue(positionOf400 > 390 * RECORD_BYTES);
+        assertTrue(reopened.positionForTimestamp(5_400) > 390 * RECORD_BYTES);
+        assertTrue(reopened.positionForTimestamp(5_400) <= 400 * RECORD_BYTES);
+    }
+
+    @Test
+    void indexEntryOfARecordThatNeverCompletedIsDropped() throws IOException {
+        // An index entry before every record
+        Segment segment = Segment.create(directory, 0, 64 * 1_024, RECORD_BYTES);
+        for (int i = 0; i < 10; i++) {
+            segment.append(i, 5_000 + i, 0, i, "patient-ax", new byte[52]);
+        }
+        // The last record loses its size, as if the writer died just before writing it
+        ByteBuffer view = segment.view();
+        view.putInt(9 * RECORD_BYTES, 0);
+        segment.flush();
+
+        Segment reopened = Segment.open(directory, 0, RECORD_BYTES);
+
+        assertEquals(9 * RECORD_BYTES, reopened.end());
+        assertEquals(8, reopened.lastSequence());
+        assertEquals(5_008, reopened.maxTimestamp());
+        assertEquals(8 * RECORD_BYTES, reopened.positionForSequence(9));
+        assertTrue(reopened.append(9, 5_009, 0, 9, "patient-bx", new byte[52]));
+        assertEquals(9 * RECORD_BYTES, reopened.positionForSequence(9));
+    }
+}
@@ -1,43 +1,162 @@
 package com.pm.api_gateway.filter;
 
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ServerWebExchange;
+
+import com.pm.api_gateway.jwt.JwtVerifier;
+import com.pm.api_gateway.jwt.UnknownSigningKeyException;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import reactor.core.publisher.Mono;
 
 @Component
 public class JwtValidationGatewayFilterFactory extends AbstractGatewayFilterFactory<Object> {
 
+    // Verified identity passed to downstream services, any client-supplied values are overwritten
+    public static final String USER_EMAIL_HEADER = "X-User-Email";
+    public static final String USER_ROLE_HEADER = "X-User-Role";
+
+    // auth-service's RFC 6750 error_description for a key id it does not have either
+    private static final String UNKNOWN_KEY_DESCRIPTION = "Unknown signing key";
+    // Forged tokens can make up any number of key ids; past this many, expired ones are dropped
+    private static final int MAX_UNKNOWN_KEY_IDS = 10_000;
+
+    private final JwtVerifier jwtVerifier;
     private final WebClient webClient;
+    // Key ids auth-service said it does not know, to the nanoTime they may be asked about again
+    private final Map<String, Long> unknownKeyIds = new ConcurrentHashMap<>();
+    private final long unknownKeyTtlNanos;
+    private final int maxUnknownKeyIds;
+    private final LongSupplier nanoClock;
 
-    public JwtValidationGatewayFilterFactory(WebClient.Builder webClientBuilder,
-            @Value("${auth.service.url}") String authServiceUrl) {
+    @Autowired
+    public JwtValidationGatewayFilterFactory(JwtVerifier jwtVerifier, WebClient.Builder webClientBuilder,
+            @Value("${auth.service.url}") String authServiceUrl,
+            @Value("${jwt.unknown-kid-cache-seconds:30}") long unknownKeyCacheSeconds) {
+        this(jwtVerifier, webClientBuilder, authServiceUrl, unknownKeyCacheSeconds, MAX_UNKNOWN_KEY_IDS,
+                System::nanoTime);
+    }
+
+    public JwtValidationGatewayFilterFactory(JwtVerifier jwtVerifier, WebClient.Builder webClientBuilder,
+            String authServiceUrl, long unknownKeyCacheSeconds, int maxUnknownKeyIds, LongSupplier nanoClock) {
+        this.jwtVerifier = jwtVerifier;
         this.webClient = webClientBuilder.baseUrl(authServiceUrl).build();
+        this.unknownKeyTtlNanos = TimeUnit.SECONDS.toNanos(unknownKeyCacheSeconds);
+        this.maxUnknownKeyIds = maxUnknownKeyIds;
+        this.nanoClock = nanoClock;
     }
 
     @Override
     public GatewayFilter apply(Object config) {
 
         return (exchange, chain) -> {
-            String token = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+            String authHeader = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
 
-            if (token == null || !token.startsWith("Bearer ")) {
-                exchange.getResponse().setStatusCode(HttpStatus.UNAUTHORIZED);
-                return exchange.getResponse().setComplete();
+            if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+                return unauthorized(exchange);
             }
 
-            return webClient.get()
-                    .uri("/validate")
-                    .header(HttpHeaders.AUTHORIZATION, token)
-                    .retrieve()
-                    .toBodilessEntity()
-                    .then(chain.filter(exchange));
+            // Verified in-process, auth-service is only asked about keys we do not have, and
+            // for a while not again about one it does not have either
+            Claims claims;
+            try {
+                claims = jwtVerifier.verify(authHeader.substring(7));
+            } catch (UnknownSigningKeyException e) {
+                if (isKnownUnknown(e.getKeyId())) {
+                    return unauthorized(exchange);
+                }
+                return validateRemotely(exchange, chain, authHeader, e.getKeyId());
+            } catch (JwtException | IllegalArgumentException e) {
+                return unauthorized(exchange);
+            }
+
+            return chain.filter(withUser(exchange, claims.getSubject(), claims.get("role", String.class)));
         };
+    }
 
-        // throw new UnsupportedOperationException("Not supported yet.");
+    private Mono<Void> validateRemotely(ServerWebExchange exchange, GatewayFilterChain chain, String authHeader,
+            String keyId) {
+        return webClient.get()
+                .uri("/validate")
+                .header(HttpHeaders.AUTHORIZATION, authHeader)
+                .exchangeToMono(response -> {
+                    if (response.statusCode().is2xxSuccessful()) {
+                        return response.bodyToMono(ValidatedUser.class).map(Optional::of);
+                    }
+                    // Only a key auth-service lacks too is remembered; a bad token signed with a
+                    // key it does have says nothing about the next token carrying that key id
+                    String challenge = response.headers().asHttpHeaders().getFirst(HttpHeaders.WWW_AUTHENTICATE);
+                    if (challenge != null && challenge.contains(UNKNOWN_KEY_DESCRIPTION)) {
+                        rememberUnknown(keyId);
+                    }
+                    return response.releaseBody().thenReturn(Optional.<ValidatedUser>empty());
+                })
+                .flatMap(user -> user.isPresent()
+                        ? chain.filter(withUser(exchange, user.get().email(), user.get().role()))
+                        : unauthorized(exchange));
     }
 
+    private boolean isKnownUnknown(String keyId) {
+        Long until = unknownKeyIds.get(keyId);
+        if (until == null) {
+            return false;
+        }
+        if (nanoClock.getAsLong() - until < 0) {
+            return true;
+        }
+        unknownKeyIds.remove(keyId, until);
+        return false;
+    }
+
+    private void rememberUnknown(String keyId) {
+        long now = nanoClock.getAsLong();
+        if (unknownKeyIds.size() >= maxUnknownKeyIds) {
+            unknownKeyIds.values().removeIf(until -> now - until >= 0);
+            if (unknownKeyIds.size() >= maxUnknownKeyIds) {
+                return;
+            }
+        }
+        unknownKeyIds.put(keyId, now + unknownKeyTtlNanos);
+    }
+
+    private static ServerWebExchange withUser(ServerWebExchange exchange, String email, String role) {
+        ServerHttpRequest request = exchange.getRequest().mutate()
+                .headers(headers -> {
+                    headers.remove(USER_EMAIL_HEADER);
+                    headers.remove(USER_ROLE_HEADER);
+                    if (email != null) {
+                        headers.set(USER_EMAIL_HEADER, email);
+                    }
+                    if (role != null) {
+                        headers.set(USER_ROLE_HEADER, role);
+                    }
+                })
+                .build();
+        return exchange.mutate().request(request).build();
+    }
+
+    private static Mono<Void> unauthorized(ServerWebExchange exchange) {
+        exchange.getResponse().setStatusCode(HttpStatus.UNAUTHORIZED);
+        return exchange.getResponse().setComplete();
+    }
+
+    // Body of auth-service GET /validate
+    private record ValidatedUser(String email, String role) {
+    }
 }
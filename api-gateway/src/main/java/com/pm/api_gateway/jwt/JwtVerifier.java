@@ -0,0 +1,80 @@
+package com.pm.api_gateway.jwt;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.crypto.SecretKey;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.LocatorAdapter;
+import io.jsonwebtoken.security.Keys;
+
+// Verifies auth-service tokens in-process with the shared signing keys. Keys are
+// matched on the token's "kid" header, derived from the key the same way Jwtutil does.
+// During a rotation the old secret goes in jwt.previous-secrets on both services.
+@Component
+public class JwtVerifier {
+
+    private final SecretKey currentKey;
+    private final Map<String, SecretKey> keys = new LinkedHashMap<>();
+    private final JwtParser parser;
+
+    public JwtVerifier(@Value("${jwt.secret}") String secret,
+            @Value("${jwt.previous-secrets:}") List<String> previousSecrets,
+            @Value("${jwt.clock-skew-seconds:30}") long clockSkewSeconds) {
+        this.currentKey = hmacKey(secret);
+        keys.put(keyId(currentKey), currentKey);
+        for (String previous : previousSecrets) {
+            if (!previous.isBlank()) {
+                SecretKey key = hmacKey(previous.trim());
+                keys.put(keyId(key), key);
+            }
+        }
+        this.parser = Jwts.parser().keyLocator(new LocatorAdapter<Key>() {
+            @Override
+            protected Key locate(JwsHeader header) {
+                // Tokens issued before key ids were added have no kid and use the current key
+                String kid = header.getKeyId();
+                if (kid == null) {
+                    return currentKey;
+                }
+                SecretKey key = keys.get(kid);
+                if (key == null) {
+                    throw new UnknownSigningKeyException(kid);
+                }
+                return key;
+            }
+        }).clockSkewSeconds(clockSkewSeconds).build();
+    }
+
+    // Throws UnknownSigningKeyException on a key miss and JwtException for any other invalid token
+    public Claims verify(String token) {
+        return parser.parseSignedClaims(token).getPayload();
+    }
+
+    private static SecretKey hmacKey(String secret) {
+        return Keys.hmacShaKeyFor(Base64.getDecoder().decode(secret.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String keyId(SecretKey key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getEncoded());
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
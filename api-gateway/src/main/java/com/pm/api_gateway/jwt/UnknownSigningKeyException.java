@@ -0,0 +1,18 @@
+package com.pm.api_gateway.jwt;
+
+import io.jsonwebtoken.JwtException;
+
+// The token names a key id this gateway was not configured with, only auth-service can decide
+public class UnknownSigningKeyException extends JwtException {
+
+    private final String keyId;
+
+    public UnknownSigningKeyException(String keyId) {
+        super("Unknown signing key " + keyId);
+        this.keyId = keyId;
+    }
+
+    public String getKeyId() {
+        return keyId;
+    }
+}
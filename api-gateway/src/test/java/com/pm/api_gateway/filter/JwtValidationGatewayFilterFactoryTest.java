@@ -0,0 +1,174 @@
+package com.pm.api_gateway.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ServerWebExchange;
+
+import com.pm.api_gateway.jwt.JwtVerifier;
+import com.pm.api_gateway.jwt.TestTokens;
+
+import reactor.core.publisher.Mono;
+
+class JwtValidationGatewayFilterFactoryTest {
+
+    private static final long TTL_SECONDS = 30;
+
+    private final String secret = TestTokens.newSecret();
+    private final AtomicLong nanos = new AtomicLong();
+    private final AtomicInteger remoteCalls = new AtomicInteger();
+    // What auth-service GET /validate answers
+    private final AtomicReference<ClientResponse> validateResponse = new AtomicReference<>();
+    private final AtomicReference<ServerWebExchange> forwarded = new AtomicReference<>();
+
+    @Test
+    void knownKidIsVerifiedLocallyAndForgedIdentityHeadersAreReplaced() {
+        GatewayFilter filter = filter(10);
+
+        MockServerWebExchange exchange = exchange(TestTokens.token(secret, "jane@example.com", "USER"));
+        filter.filter(exchange, this::forward).block();
+
+        assertEquals(0, remoteCalls.get());
+        HttpHeaders headers = forwarded.get().getRequest().getHeaders();
+        assertEquals(List.of("jane@example.com"), headers.get(JwtValidationGatewayFilterFactory.USER_EMAIL_HEADER));
+        assertEquals(List.of("USER"), headers.get(JwtValidationGatewayFilterFactory.USER_ROLE_HEADER));
+    }
+
+    @Test
+    void missingOrInvalidTokenIsRejectedWithoutAskingAuthService() {
+        GatewayFilter filter = filter(10);
+
+        MockServerWebExchange noToken = MockServerWebExchange.from(MockServerHttpRequest.get("/patients"));
+        filter.filter(noToken, this::forward).block();
+        MockServerWebExchange badSignature = exchange(
+                TestTokens.token(TestTokens.newSecret(), TestTokens.keyId(secret), "jane@example.com", "USER"));
+        filter.filter(badSignature, this::forward).block();
+
+        assertEquals(HttpStatus.UNAUTHORIZED, noToken.getResponse().getStatusCode());
+        assertEquals(HttpStatus.UNAUTHORIZED, badSignature.getResponse().getStatusCode());
+        assertNull(forwarded.get());
+        assertEquals(0, remoteCalls.get());
+    }
+
+    @Test
+    void unknownKidFallsBackToAuthService() {
+        GatewayFilter filter = filter(10);
+        validateResponse.set(ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body("{\"email\":\"jane@example.com\",\"role\":\"ADMIN\"}")
+                .build());
+
+        filter.filter(exchange(TestTokens.token(TestTokens.newSecret(), "jane@example.com", "ADMIN")), this::forward)
+                .block();
+
+        assertEquals(1, remoteCalls.get());
+        HttpHeaders headers = forwarded.get().getRequest().getHeaders();
+        assertEquals(List.of("jane@example.com"), headers.get(JwtValidationGatewayFilterFactory.USER_EMAIL_HEADER));
+        assertEquals(List.of("ADMIN"), headers.get(JwtValidationGatewayFilterFactory.USER_ROLE_HEADER));
+    }
+
+    @Test
+    void kidAuthServiceLacksTooIsNotAskedAboutAgainUntilTheTtlPasses() {
+        GatewayFilter filter = filter(10);
+        String token = TestTokens.token(TestTokens.newSecret(), "jane@example.com", "USER");
+
+        assertEquals(HttpStatus.UNAUTHORIZED, send(filter, token, unknownKey()));
+        assertEquals(HttpStatus.UNAUTHORIZED, send(filter, token, unknownKey()));
+        assertEquals(1, remoteCalls.get());
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(TTL_SECONDS));
+        assertEquals(HttpStatus.UNAUTHORIZED, send(filter, token, unknownKey()));
+        assertEquals(2, remoteCalls.get());
+        assertNull(forwarded.get());
+    }
+
+    @Test
+    void otherRejectionsAreNotCached() {
+        GatewayFilter filter = filter(10);
+        String token = TestTokens.token(TestTokens.newSecret(), "jane@example.com", "USER");
+
+        send(filter, token, ClientResponse.create(HttpStatus.UNAUTHORIZED)
+                .header(HttpHeaders.WWW_AUTHENTICATE, "Bearer error=\"invalid_token\"").build());
+        send(filter, token, ClientResponse.create(HttpStatus.SERVICE_UNAVAILABLE).build());
+        send(filter, token, unknownKey());
+
+        assertEquals(3, remoteCalls.get());
+    }
+
+    @Test
+    void cacheStopsGrowingAtItsBoundUntilEntriesExpire() {
+        GatewayFilter filter = filter(2);
+        String first = TestTokens.token(TestTokens.newSecret(), "a@example.com", "USER");
+        String second = TestTokens.token(TestTokens.newSecret(), "b@example.com", "USER");
+        String third = TestTokens.token(TestTokens.newSecret(), "c@example.com", "USER");
+
+        send(filter, first, unknownKey());
+        send(filter, second, unknownKey());
+        send(filter, third, unknownKey());
+        assertEquals(3, remoteCalls.get());
+
+        // Full of live entries, the third kid was not remembered
+        send(filter, first, unknownKey());
+        send(filter, second, unknownKey());
+        send(filter, third, unknownKey());
+        assertEquals(4, remoteCalls.get());
+
+        // Expired entries make room for new ones
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(TTL_SECONDS));
+        send(filter, third, unknownKey());
+        send(filter, third, unknownKey());
+        assertEquals(5, remoteCalls.get());
+    }
+
+    private GatewayFilter filter(int maxUnknownKeyIds) {
+        WebClient.Builder webClient = WebClient.builder().exchangeFunction(request -> {
+            remoteCalls.incrementAndGet();
+            return Mono.just(validateResponse.get());
+        });
+        return new JwtValidationGatewayFilterFactory(new JwtVerifier(secret, List.of(), 30), webClient,
+                "http://auth-service", TTL_SECONDS, maxUnknownKeyIds, nanos::get).apply(new Object());
+    }
+
+    private HttpStatus send(GatewayFilter filter, String token, ClientResponse response) {
+        validateResponse.set(response);
+        MockServerWebExchange exchange = exchange(token);
+        filter.filter(exchange, this::forward).block();
+        return (HttpStatus) exchange.getResponse().getStatusCode();
+    }
+
+    private Mono<Void> forward(ServerWebExchange exchange) {
+        forwarded.set(exchange);
+        return Mono.empty();
+    }
+
+    // What auth-service answers for a kid it has no key for
+    private static ClientResponse unknownKey() {
+        return ClientResponse.create(HttpStatus.UNAUTHORIZED)
+                .header(HttpHeaders.WWW_AUTHENTICATE,
+                        "Bearer error=\"invalid_token\", error_description=\"Unknown signing key\"")
+                .build();
+    }
+
+    // Carries client-supplied identity headers the filter has to overwrite
+    private static MockServerWebExchange exchange(String token) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/patients")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .header(JwtValidationGatewayFilterFactory.USER_EMAIL_HEADER, "forged@example.com")
+                .header(JwtValidationGatewayFilterFactory.USER_ROLE_HEADER, "ADMIN"));
+    }
+}
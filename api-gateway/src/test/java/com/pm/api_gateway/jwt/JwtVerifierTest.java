@@ -0,0 +1,57 @@
+package com.pm.api_gateway.jwt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.security.SignatureException;
+
+class JwtVerifierTest {
+
+    private final String current = TestTokens.newSecret();
+    private final String previous = TestTokens.newSecret();
+
+    @Test
+    void picksTheKeyNamedByTheKid() {
+        JwtVerifier verifier = new JwtVerifier(current, List.of(), 30);
+
+        Claims claims = verifier.verify(TestTokens.token(current, "jane@example.com", "ADMIN"));
+
+        assertEquals("jane@example.com", claims.getSubject());
+        assertEquals("ADMIN", claims.get("role", String.class));
+        // A kid naming one key on a token signed with another does not verify
+        String mislabelled = TestTokens.token(previous, TestTokens.keyId(current), "jane@example.com", "ADMIN");
+        assertThrows(SignatureException.class, () -> verifier.verify(mislabelled));
+    }
+
+    @Test
+    void previousSecretKeepsVerifyingDuringARotation() {
+        String oldToken = TestTokens.token(previous, "jane@example.com", "USER");
+
+        JwtVerifier rotating = new JwtVerifier(current, List.of(" " + previous + " ", ""), 30);
+        assertEquals("jane@example.com", rotating.verify(oldToken).getSubject());
+
+        // Once the previous secret is dropped its kid is unknown, for auth-service to decide
+        JwtVerifier rotated = new JwtVerifier(current, List.of(), 30);
+        UnknownSigningKeyException e = assertThrows(UnknownSigningKeyException.class,
+                () -> rotated.verify(oldToken));
+        assertEquals(TestTokens.keyId(previous), e.getKeyId());
+    }
+
+    @Test
+    void tokenWithoutKidIsCheckedAgainstTheCurrentKey() {
+        JwtVerifier verifier = new JwtVerifier(current, List.of(previous), 30);
+
+        assertEquals("jane@example.com",
+                verifier.verify(TestTokens.token(current, null, "jane@example.com", "USER")).getSubject());
+        // Not tried against the previous keys, and not an unknown key either
+        JwtException e = assertThrows(JwtException.class,
+                () -> verifier.verify(TestTokens.token(previous, null, "jane@example.com", "USER")));
+        assertEquals(SignatureException.class, e.getClass());
+    }
+}
@@ -0,0 +1,61 @@
+package com.pm.api_gateway.jwt;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HexFormat;
+
+import javax.crypto.SecretKey;
+
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+
+// Signs tokens the way auth-service's Jwtutil does
+public final class TestTokens {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private TestTokens() {
+    }
+
+    // Base64 of 32 random bytes, the format of jwt.secret
+    public static String newSecret() {
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    public static String keyId(String secret) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key(secret).getEncoded());
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static String token(String secret, String email, String role) {
+        return token(secret, keyId(secret), email, role);
+    }
+
+    // A null keyId leaves the kid header out, like tokens issued before key ids were added
+    public static String token(String secret, String keyId, String email, String role) {
+        JwtBuilder builder = Jwts.builder();
+        if (keyId != null) {
+            builder.header().keyId(keyId);
+        }
+        return builder.subject(email)
+                .claim("role", role)
+                .issuedAt(new Date())
+                .expiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(key(secret))
+                .compact();
+    }
+
+    private static SecretKey key(String secret) {
+        return Keys.hmacShaKeyFor(Base64.getDecoder().decode(secret));
+    }
+}
@@ -0,0 +1,45 @@
+package com.pm.auth_service.cache;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pm.auth_service.model.User;
+import com.pm.auth_service.repo.UserRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+// Short-lived email -> user cache so repeated logins skip the findByEmail query.
+// The TTL bounds how long a changed password or role can go unnoticed.
+// Unknown emails are not cached, a newly registered user can log in immediately.
+@Component
+public class UserCredentialCache {
+
+    private final UserRepository userRepository;
+    private final Cache<String, User> cache;
+
+    public UserCredentialCache(UserRepository userRepository, MeterRegistry meterRegistry,
+            @Value("${auth.credential-cache.max-size:10000}") long maxSize,
+            @Value("${auth.credential-cache.ttl-seconds:60}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "user-credentials");
+    }
+
+    public Optional<User> findByEmail(String email) {
+        return Optional.ofNullable(cache.get(email, key -> userRepository.findByEmail(key).orElse(null)));
+    }
+
+    public void invalidate(String email) {
+        cache.invalidate(email);
+    }
+}
@@ -1,7 +1,8 @@
 package com.pm.auth_service.controller;
 
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -12,36 +13,49 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.pm.auth_service.dto.LoginRequestDTO;
 import com.pm.auth_service.dto.LoginResponseDTO;
+import com.pm.auth_service.dto.TokenClaimsDTO;
 import com.pm.auth_service.service.AuthService;
 
 import io.swagger.v3.oas.annotations.Operation;
+import jakarta.servlet.http.HttpServletRequest;
 @RestController
 public class AuthController {
     
 
     private final AuthService authService ;
-    public AuthController(AuthService authService){
+    // Behind the gateway every request arrives from the gateway's address, so the client
+    // is the last X-Forwarded-For entry, the one the gateway appended itself. Off unless
+    // configured, a caller reaching this service directly could write that header itself;
+    // docker-compose turns it on and publishes no port for this service.
+    private final boolean trustForwardedFor;
+
+    public AuthController(AuthService authService,
+            @Value("${auth.login-guard.trust-forwarded-for:false}") boolean trustForwardedFor){
         this.authService=authService;
+        this.trustForwardedFor = trustForwardedFor;
     }
 
     @Operation(summary="Generate token on user Login")
     @PostMapping("/login")
-    public ResponseEntity<LoginResponseDTO> login(@RequestBody LoginRequestDTO loginRequestDTO){
+    public CompletableFuture<ResponseEntity<LoginResponseDTO>> login(@RequestBody LoginRequestDTO loginRequestDTO,
+            HttpServletRequest request){
 
-        Optional<String> tokenoptional = authService.authenticate(loginRequestDTO);
+        return authService.authenticate(loginRequestDTO, clientId(request)).thenApply(tokenoptional -> tokenoptional
+            .map(token -> ResponseEntity.ok(new LoginResponseDTO(token)))
+            .orElseGet(() -> ResponseEntity.status(HttpStatus.UNAUTHORIZED).build()));
+    }
 
-        if(tokenoptional.isEmpty()){
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+    private String clientId(HttpServletRequest request) {
+        String forwardedFor = trustForwardedFor ? request.getHeader("X-Forwarded-For") : null;
+        if (forwardedFor == null || forwardedFor.isBlank()) {
+            return request.getRemoteAddr();
         }
-
-        String token = tokenoptional.get();
-        System.out.println("...........................The Import problem is solved ........................");
-        return ResponseEntity.ok(new LoginResponseDTO(token));  
-
-
+        return forwardedFor.substring(forwardedFor.lastIndexOf(',') + 1).trim();
     }
+
+    // The gateway verifies tokens itself and only calls this for signing keys it does not know
     @GetMapping("/validate")
-    public ResponseEntity<Void> validateToken(
+    public ResponseEntity<TokenClaimsDTO> validateToken(
       @RequestHeader("Authorization") String authHeader) {
 
         // Authorization: Bearer <token>
@@ -50,8 +64,8 @@ public class AuthController {
         }
 
         return authService.validateToken(authHeader.substring(7))
-        ? ResponseEntity.ok().build()
-        : ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        .map(claims -> ResponseEntity.ok(new TokenClaimsDTO(claims.getSubject(), claims.get("role", String.class))))
+        .orElseGet(() -> ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
   }
 
     
@@ -0,0 +1,19 @@
+package com.pm.auth_service.dto;
+
+public class TokenClaimsDTO {
+    private final String email;
+    private final String role;
+
+    public TokenClaimsDTO(String email, String role) {
+        this.email = email;
+        this.role = role;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getRole() {
+        return role;
+    }
+}
@@ -0,0 +1,7 @@
+package com.pm.auth_service.exception;
+
+public class AuthServiceBusyException extends RuntimeException {
+    public AuthServiceBusyException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,48 @@
+package com.pm.auth_service.exception;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+@ControllerAdvice
+public class GlobalExceptionHandling {
+
+    private static final Logger logger = LoggerFactory.getLogger(GlobalExceptionHandling.class);
+
+    @ExceptionHandler(AuthServiceBusyException.class)
+    public ResponseEntity<Map<String, String>> handleAuthServiceBusyException(AuthServiceBusyException ex) {
+        logger.warn("Login rejected, password check queue is full : {}", ex.getMessage());
+        Map<String, String> error = new HashMap<>();
+        error.put("errorMessage", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(error);
+    }
+
+    // RFC 6750 error, the gateway remembers such key ids briefly instead of asking again
+    @ExceptionHandler(UnknownSigningKeyException.class)
+    public ResponseEntity<Void> handleUnknownSigningKeyException(UnknownSigningKeyException ex) {
+        logger.debug("Token rejected : {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .header(HttpHeaders.WWW_AUTHENTICATE,
+                        "Bearer error=\"invalid_token\", error_description=\"Unknown signing key\"")
+                .build();
+    }
+
+    @ExceptionHandler(TooManyLoginAttemptsException.class)
+    public ResponseEntity<Map<String, String>> handleTooManyLoginAttemptsException(TooManyLoginAttemptsException ex) {
+        logger.debug("Login rejected : {}", ex.getMessage());
+        Map<String, String> error = new HashMap<>();
+        error.put("errorMessage", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(error);
+    }
+}
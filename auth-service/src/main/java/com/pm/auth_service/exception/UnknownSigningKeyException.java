@@ -0,0 +1,11 @@
+package com.pm.auth_service.exception;
+
+import io.jsonwebtoken.JwtException;
+
+// The token names a key id this service does not have, so no token carrying it can ever verify
+public class UnknownSigningKeyException extends JwtException {
+
+    public UnknownSigningKeyException(String keyId) {
+        super("Unknown signing key " + keyId);
+    }
+}
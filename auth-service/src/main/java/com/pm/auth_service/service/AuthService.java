@@ -1,19 +1,22 @@
 package com.pm.auth_service.service;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 // --- Make sure these are imported ---
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 // ---
 
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import com.pm.auth_service.cache.UserCredentialCache;
 import com.pm.auth_service.dto.LoginRequestDTO;
+import com.pm.auth_service.exception.UnknownSigningKeyException;
 import com.pm.auth_service.model.User;
 import com.pm.auth_service.util.Jwtutil;
 
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
 
 @Service
@@ -22,61 +25,76 @@ public class AuthService {
     // 1. Add a logger
     private static final Logger log = LoggerFactory.getLogger(AuthService.class);
 
-    private final UserService userService;
-    private final PasswordEncoder passwordEncoder;
+    private final UserCredentialCache userCredentialCache;
+    private final PasswordVerifier passwordVerifier;
+    private final LoginAttemptGuard loginAttemptGuard;
     private final Jwtutil jwtUtil;
 
-    public AuthService(UserService userService , PasswordEncoder passwordEncoder, Jwtutil jwtUtil){
-        this.userService= userService;
-        this.passwordEncoder=passwordEncoder;
+    public AuthService(UserCredentialCache userCredentialCache, PasswordVerifier passwordVerifier,
+            LoginAttemptGuard loginAttemptGuard, Jwtutil jwtUtil){
+        this.userCredentialCache = userCredentialCache;
+        this.passwordVerifier = passwordVerifier;
+        this.loginAttemptGuard = loginAttemptGuard;
         this.jwtUtil = jwtUtil;
     }
 
-    public Optional<String> authenticate(LoginRequestDTO loginRequestDTO) {
-        
-        // 2. Find the user first
-        Optional<User> userOptional = userService.findByEmail(loginRequestDTO.getEmail());
-
-        // 3. If the user doesn't even exist, return empty immediately
-        if (userOptional.isEmpty()) {
-            log.warn("Login attempt failed: User not found for email {}", loginRequestDTO.getEmail());
-            return Optional.empty();
-        }
-
-        // 4. The user exists! Let's get them.
-        User user = userOptional.get();
-        String providedPassword = loginRequestDTO.getPassword();
-        String storedPasswordHash = user.getPassword();
-
-        // 5. Let's run the check
-        boolean passwordMatches = passwordEncoder.matches(providedPassword, storedPasswordHash);
-
-        // 6. --- THIS IS THE SPY LOG ---
-        log.info("--- AUTHENTICATION ATTEMPT ---");
-        log.info("Email from Postman: {}", loginRequestDTO.getEmail());
-        log.info("Password from Postman: {}", providedPassword);
-        log.info("Password Hash from DB: {}", storedPasswordHash);
-        log.info("Password check result: {}", passwordMatches);
-        log.info("------------------------------");
-
-        // 7. Now, we return the token only if the password matches
-        if (passwordMatches) {
-            String token = jwtUtil.generateToken(user.getEmail(), user.getRole());
-            return Optional.of(token);
-        } else {
-            return Optional.empty(); // This is what's causing the 401
+    // Completes on the password-check pool, the calling request thread is released meanwhile.
+    // clientId identifies the caller (its address) for failed-login throttling.
+    public CompletableFuture<Optional<String>> authenticate(LoginRequestDTO loginRequestDTO, String clientId) {
+
+        // 0. Reject callers over their failed-login budget before any lookup or hashing. The
+        // attempt is counted from here on, so concurrent guesses cannot outrun the limit.
+        String email = loginRequestDTO.getEmail();
+        loginAttemptGuard.acquire(email, clientId);
+        try {
+            // 1. Find the user, usually from the credential cache
+            Optional<User> userOptional = userCredentialCache.findByEmail(email);
+
+            // 2. If the user doesn't even exist, return empty immediately
+            if (userOptional.isEmpty()) {
+                log.warn("Login attempt failed: User not found for email {}", email);
+                loginAttemptGuard.recordFailure(email, clientId);
+                return CompletableFuture.completedFuture(Optional.empty());
+            }
+
+            // 3. The user exists, check the password off the request thread
+            User user = userOptional.get();
+            return passwordVerifier.matches(loginRequestDTO.getPassword(), user.getPassword())
+                .whenComplete((passwordMatches, failure) -> {
+                    if (failure != null) {
+                        loginAttemptGuard.release(email, clientId);
+                    } else if (passwordMatches) {
+                        loginAttemptGuard.recordSuccess(email, clientId);
+                    } else {
+                        loginAttemptGuard.recordFailure(email, clientId);
+                    }
+                })
+                .thenApply(passwordMatches -> {
+                    log.debug("Password check for {} : {}", user.getEmail(), passwordMatches);
+                    // 4. Return the token only if the password matches
+                    return passwordMatches
+                        ? Optional.of(jwtUtil.generateToken(user.getEmail(), user.getRole()))
+                        : Optional.<String>empty();
+                });
+        } catch (RuntimeException e) {
+            // Lookup failed or the password-check queue is full, no verdict on this attempt
+            loginAttemptGuard.release(email, clientId);
+            throw e;
         }
     }
 
-    public boolean validateToken(String token){
+
+    // Verified claims, or empty when the token is invalid or expired. A token signed with a
+    // key this service does not know throws UnknownSigningKeyException instead, so the
+    // gateway can tell a key it need not ask about again from one bad token.
+    public Optional<Claims> validateToken(String token){
         try{
-            log.info("Validating Token at AuthService...");
-            jwtUtil.validateToken(token);
-            log.info("Token is Validated.");
-            return true;
+            return Optional.of(jwtUtil.validateToken(token));
+        }catch(UnknownSigningKeyException e){
+            throw e;
         }catch(JwtException e){
-            log.error("Exception at AuthService.java ----- > " , e);
-            return false;
+            log.debug("Token rejected : {}", e.getMessage());
+            return Optional.empty();
         }
     }
 }
@@ -0,0 +1,123 @@
+package com.pm.auth_service.service;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.pm.auth_service.exception.TooManyLoginAttemptsException;
+import com.pm.auth_service.util.SlidingWindowCountMinSketch;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Counts failed logins per email and per client over a sliding window and rejects
+// further attempts once either passes its limit, before any user lookup or BCrypt.
+// Counts are sketch estimates: bounded memory, may overcount under heavy key churn.
+// An attempt holds a slot from acquire until its outcome is known, and in-flight slots
+// count against the limit, so a burst of concurrent guesses cannot all pass the check
+// while their password hashes are still being compared. A per-client limit of 0 or
+// less turns the client check off.
+@Component
+public class LoginAttemptGuard {
+
+    private final SlidingWindowCountMinSketch failuresByEmail;
+    private final SlidingWindowCountMinSketch failuresByClient;
+    private final int maxFailuresPerEmail;
+    private final int maxFailuresPerClient;
+    private final long retryAfterSeconds;
+    private final Counter rejectedByEmail;
+    private final Counter rejectedByClient;
+    // Attempts acquired but not yet settled, by key; entries go away when they reach zero,
+    // so these hold at most one entry per login in progress
+    private final Map<String, Integer> pendingByEmail = new ConcurrentHashMap<>();
+    private final Map<String, Integer> pendingByClient = new ConcurrentHashMap<>();
+
+    @Autowired
+    public LoginAttemptGuard(MeterRegistry meterRegistry,
+            @Value("${auth.login-guard.window-seconds:300}") long windowSeconds,
+            @Value("${auth.login-guard.max-failures-per-email:10}") int maxFailuresPerEmail,
+            @Value("${auth.login-guard.max-failures-per-client:0}") int maxFailuresPerClient,
+            @Value("${auth.login-guard.sketch-width:16384}") int sketchWidth) {
+        this(meterRegistry, windowSeconds, maxFailuresPerEmail, maxFailuresPerClient, sketchWidth,
+                System::currentTimeMillis);
+    }
+
+    public LoginAttemptGuard(MeterRegistry meterRegistry, long windowSeconds, int maxFailuresPerEmail,
+            int maxFailuresPerClient, int sketchWidth, LongSupplier clock) {
+        Duration window = Duration.ofSeconds(windowSeconds);
+        // 3 rows x 5 buckets x width ints each, about 1 MB per sketch at the default width
+        this.failuresByEmail = new SlidingWindowCountMinSketch(3, sketchWidth, 5, window, clock);
+        this.failuresByClient = new SlidingWindowCountMinSketch(3, sketchWidth, 5, window, clock);
+        this.maxFailuresPerEmail = maxFailuresPerEmail;
+        this.maxFailuresPerClient = maxFailuresPerClient;
+        // The oldest bucket ages out after one bucket length
+        this.retryAfterSeconds = Math.max(1, windowSeconds / 5);
+        this.rejectedByEmail = meterRegistry.counter("auth.login.rejected", "reason", "email");
+        this.rejectedByClient = meterRegistry.counter("auth.login.rejected", "reason", "client");
+    }
+
+    // Every successful acquire must be followed by exactly one recordSuccess, recordFailure or release
+    public void acquire(String email, String clientId) {
+        String emailKey = normalize(email);
+        if (!reserve(pendingByEmail, failuresByEmail, emailKey, maxFailuresPerEmail)) {
+            rejectedByEmail.increment();
+            throw new TooManyLoginAttemptsException("Too many failed logins for this account", retryAfterSeconds);
+        }
+        if (maxFailuresPerClient > 0
+                && !reserve(pendingByClient, failuresByClient, clientId, maxFailuresPerClient)) {
+            unreserve(pendingByEmail, emailKey);
+            rejectedByClient.increment();
+            throw new TooManyLoginAttemptsException("Too many failed logins from this client", retryAfterSeconds);
+        }
+    }
+
+    public void recordFailure(String email, String clientId) {
+        String emailKey = normalize(email);
+        // Counted before the slot is given back, so the attempt is never invisible in between
+        failuresByEmail.increment(emailKey);
+        if (maxFailuresPerClient > 0) {
+            failuresByClient.increment(clientId);
+        }
+        release(email, clientId);
+    }
+
+    public void recordSuccess(String email, String clientId) {
+        release(email, clientId);
+    }
+
+    // The attempt ended without a verdict on the password, e.g. the check was rejected as busy
+    public void release(String email, String clientId) {
+        unreserve(pendingByEmail, normalize(email));
+        if (maxFailuresPerClient > 0) {
+            unreserve(pendingByClient, clientId);
+        }
+    }
+
+    private static boolean reserve(Map<String, Integer> pending, SlidingWindowCountMinSketch failures, String key,
+            int max) {
+        boolean[] reserved = new boolean[1];
+        pending.compute(key, (k, inFlight) -> {
+            int count = inFlight == null ? 0 : inFlight;
+            if (failures.estimate(k) + count >= max) {
+                return inFlight;
+            }
+            reserved[0] = true;
+            return count + 1;
+        });
+        return reserved[0];
+    }
+
+    private static void unreserve(Map<String, Integer> pending, String key) {
+        pending.computeIfPresent(key, (k, inFlight) -> inFlight > 1 ? inFlight - 1 : null);
+    }
+
+    private static String normalize(String email) {
+        return email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,70 @@
+package com.pm.auth_service.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import com.pm.auth_service.exception.AuthServiceBusyException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+
+// Runs BCrypt checks on a small fixed pool with a bounded queue, so a login storm
+// uses at most the pool's cores and never the request threads that serve /validate.
+// When the queue is full the login fails fast with 503 instead of piling up.
+@Component
+public class PasswordVerifier {
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final Timer hashTimer;
+    private final Timer queueWaitTimer;
+
+    public PasswordVerifier(PasswordEncoder passwordEncoder, MeterRegistry meterRegistry,
+            @Value("${auth.password-check.threads:0}") int threads,
+            @Value("${auth.password-check.queue-capacity:100}") int queueCapacity) {
+        this.passwordEncoder = passwordEncoder;
+        // Default leaves one core free for token validation and everything else
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("password-check-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        // executor.queued / executor.active / executor.completed tagged name=password-check
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, "password-check");
+        this.hashTimer = Timer.builder("auth.password.hash")
+                .description("Time spent in BCrypt password checks")
+                .register(meterRegistry);
+        this.queueWaitTimer = Timer.builder("auth.password.queue.wait")
+                .description("Time a password check waited for a free hashing thread")
+                .register(meterRegistry);
+    }
+
+    public CompletableFuture<Boolean> matches(String rawPassword, String encodedPassword) {
+        long enqueuedAt = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                long startedAt = System.nanoTime();
+                queueWaitTimer.record(startedAt - enqueuedAt, TimeUnit.NANOSECONDS);
+                boolean matches = passwordEncoder.matches(rawPassword, encodedPassword);
+                hashTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                return matches;
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            throw new AuthServiceBusyException("Too many logins in progress, try again shortly", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
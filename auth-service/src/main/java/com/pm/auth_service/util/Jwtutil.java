@@ -1,8 +1,15 @@
 package com.pm.auth_service.util;
 
 import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
 import java.util.Date;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import javax.crypto.SecretKey;
 
@@ -11,25 +18,60 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import com.pm.auth_service.exception.UnknownSigningKeyException;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.LocatorAdapter;
 import io.jsonwebtoken.security.Keys; // Make sure this is imported
 import io.jsonwebtoken.security.SignatureException;
 
 @Component
 public class Jwtutil {
-    
+
     private static final Logger log = LoggerFactory.getLogger(Jwtutil.class);
     private final SecretKey secretkey; // This is correct
-    
-    public Jwtutil(@Value("${jwt.secret}") String secret){
-        byte[] keyBytes = Base64.getDecoder().decode(secret.getBytes(StandardCharsets.UTF_8));
-        this.secretkey = Keys.hmacShaKeyFor(keyBytes); // This is correct
+    // Tokens carry this in their "kid" header so verifiers can pick the key without asking us
+    private final String keyId;
+    // Current key plus any previous ones still accepted during a rotation, by key id
+    private final Map<String, SecretKey> verificationKeys = new LinkedHashMap<>();
+    // Parsers are immutable and thread-safe, so one is built up front instead of per call
+    private final JwtParser parser;
+
+    public Jwtutil(@Value("${jwt.secret}") String secret,
+            @Value("${jwt.previous-secrets:}") List<String> previousSecrets){
+        this.secretkey = hmacKey(secret); // This is correct
+        this.keyId = keyId(secretkey);
+        verificationKeys.put(keyId, secretkey);
+        for (String previous : previousSecrets) {
+            if (!previous.isBlank()) {
+                SecretKey key = hmacKey(previous.trim());
+                verificationKeys.put(keyId(key), key);
+            }
+        }
+        this.parser = Jwts.parser().keyLocator(new LocatorAdapter<Key>() {
+            @Override
+            protected Key locate(JwsHeader header) {
+                // Tokens issued before key ids were added have no kid and were signed with the current key
+                String kid = header.getKeyId();
+                if (kid == null) {
+                    return secretkey;
+                }
+                SecretKey key = verificationKeys.get(kid);
+                if (key == null) {
+                    throw new UnknownSigningKeyException(kid);
+                }
+                return key;
+            }
+        }).build();
     }
-    
+
     public String generateToken(String email, String role) {
-        // This is perfect, no changes
         return Jwts.builder()
+            .header().keyId(keyId).and()
             .subject(email)
             .claim("role", role)
             .issuedAt(new Date())
@@ -38,24 +80,34 @@ public class Jwtutil {
             .compact();
     }
 
-    // --- THIS IS THE UPDATED VALIDATION METHOD ---
-    public void validateToken(String token) {
+    public Claims validateToken(String token) {
         try {
-            log.info("----- Validating Token at Jwtutil.java -----");
-            
-            // Use the "classic" parser that works on all versions
-            Jwts.parser()
-                .setSigningKey(secretkey) // Use setSigningKey instead of secretKey
-                .build()
-                .parseSignedClaims(token);
-
-            log.info("............ Token is validated ..........");     
+            return parser.parseSignedClaims(token).getPayload();
+        } catch (UnknownSigningKeyException e) {
+            log.debug("Unknown JWT signing key : {}", e.getMessage());
+            throw e;
         } catch (SignatureException e) {
-            log.error("This is the SignatureException --------> ", e);
+            log.debug("Invalid JWT signature : {}", e.getMessage());
             throw new JwtException("Invalid JWT signature");
-        } catch (JwtException e) {
-            log.error("This is the JwtException --------> ", e);
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("Invalid JWT : {}", e.getMessage());
             throw new JwtException("Invalid JWT");
         }
     }
-}
\ No newline at end of file
+
+    private static SecretKey hmacKey(String secret) {
+        byte[] keyBytes = Base64.getDecoder().decode(secret.getBytes(StandardCharsets.UTF_8));
+        return Keys.hmacShaKeyFor(keyBytes);
+    }
+
+    // Derived from the key itself so the gateway computes the same id from the same secret
+    // without any extra configuration. Truncated SHA-256, it does not reveal the key.
+    private static String keyId(SecretKey key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getEncoded());
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.pm.auth_service.util;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+// Count-min sketch over a sliding window split into time buckets. Memory is fixed at
+// buckets * depth * width counters however many distinct keys are seen, and hash
+// collisions can only make an estimate higher, never lower. Lock-free: counters are
+// atomic and an expired bucket is cleared by the first thread that writes into it.
+public class SlidingWindowCountMinSketch {
+
+    private final int depth;
+    private final int width;
+    private final int buckets;
+    private final long bucketMillis;
+    private final LongSupplier clock;
+    // Random per instance so colliding keys cannot be precomputed
+    private final long[] rowSeeds;
+    // [bucket][row][column] flattened
+    private final AtomicIntegerArray counters;
+    // Time slot (millis / bucketMillis) each bucket currently counts
+    private final AtomicLongArray bucketSlots;
+
+    public SlidingWindowCountMinSketch(int depth, int width, int buckets, Duration window) {
+        this(depth, width, buckets, window, System::currentTimeMillis);
+    }
+
+    public SlidingWindowCountMinSketch(int depth, int width, int buckets, Duration window, LongSupplier clock) {
+        if (depth < 1 || width < 1 || buckets < 1 || window.toMillis() < buckets) {
+            throw new IllegalArgumentException("Invalid sketch dimensions");
+        }
+        this.depth = depth;
+        this.width = width;
+        this.buckets = buckets;
+        this.bucketMillis = window.toMillis() / buckets;
+        this.clock = clock;
+        this.rowSeeds = new long[depth];
+        for (int row = 0; row < depth; row++) {
+            rowSeeds[row] = ThreadLocalRandom.current().nextLong();
+        }
+        this.counters = new AtomicIntegerArray(buckets * depth * width);
+        this.bucketSlots = new AtomicLongArray(buckets);
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            bucketSlots.set(bucket, Long.MIN_VALUE);
+        }
+    }
+
+    // Conservative update: only the rows holding the smallest count for key are raised,
+    // which keeps overestimates from colliding keys far lower than a plain increment
+    public void increment(String key) {
+        long slot = clock.getAsLong() / bucketMillis;
+        int base = currentBucket(slot) * depth * width;
+        long hash = hash(key);
+        int[] cells = new int[depth];
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            cells[row] = base + row * width + column(hash, row);
+            min = Math.min(min, counters.get(cells[row]));
+        }
+        for (int row = 0; row < depth; row++) {
+            int cell = cells[row];
+            int current = counters.get(cell);
+            while (current <= min && !counters.compareAndSet(cell, current, min + 1)) {
+                current = counters.get(cell);
+            }
+        }
+    }
+
+    // Upper bound on the number of increments for key within the window
+    public int estimate(String key) {
+        long slot = clock.getAsLong() / bucketMillis;
+        long hash = hash(key);
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int column = column(hash, row);
+            int sum = 0;
+            for (int bucket = 0; bucket < buckets; bucket++) {
+                long age = slot - bucketSlots.get(bucket);
+                if (age >= 0 && age < buckets) {
+                    sum += counters.get((bucket * depth + row) * width + column);
+                }
+            }
+            estimate = Math.min(estimate, sum);
+        }
+        return estimate;
+    }
+
+    private int currentBucket(long slot) {
+        int bucket = (int) Math.floorMod(slot, (long) buckets);
+        long seen = bucketSlots.get(bucket);
+        if (seen < slot && bucketSlots.compareAndSet(bucket, seen, slot)) {
+            // Increments racing with the reset can be lost, at most a few per bucket boundary
+            int base = bucket * depth * width;
+            for (int i = base; i < base + depth * width; i++) {
+                counters.set(i, 0);
+            }
+        }
+        return bucket;
+    }
+
+    private int column(long hash, int row) {
+        // SplitMix64 finalizer, one independent-looking hash per row from one string hash
+        long h = hash ^ rowSeeds[row];
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        h ^= h >>> 31;
+        return (int) ((h >>> 1) % width);
+    }
+
+    // 64-bit FNV-1a
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+}
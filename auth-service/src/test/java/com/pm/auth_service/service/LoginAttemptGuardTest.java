@@ -0,0 +1,85 @@
+package com.pm.auth_service.service;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import com.pm.auth_service.exception.TooManyLoginAttemptsException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class LoginAttemptGuardTest {
+
+    private static final String CLIENT = "10.0.0.1";
+
+    private final AtomicLong clock = new AtomicLong();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private LoginAttemptGuard guard(int maxFailuresPerEmail, int maxFailuresPerClient) {
+        return new LoginAttemptGuard(meterRegistry, 5, maxFailuresPerEmail, maxFailuresPerClient, 1024, clock::get);
+    }
+
+    @Test
+    void attemptsInFlightCountAgainstTheLimitUntilReleased() {
+        LoginAttemptGuard guard = guard(3, 0);
+        for (int i = 0; i < 3; i++) {
+            guard.acquire("jane@example.com", CLIENT);
+        }
+        assertThrows(TooManyLoginAttemptsException.class, () -> guard.acquire("jane@example.com", CLIENT));
+
+        // Neither a release nor a success leaves anything counted
+        guard.release("jane@example.com", CLIENT);
+        guard.recordSuccess("jane@example.com", CLIENT);
+        guard.acquire("jane@example.com", CLIENT);
+        guard.acquire("jane@example.com", CLIENT);
+        assertThrows(TooManyLoginAttemptsException.class, () -> guard.acquire("jane@example.com", CLIENT));
+    }
+
+    @Test
+    void failuresHoldTheLimitUntilTheyLeaveTheWindow() {
+        LoginAttemptGuard guard = guard(3, 0);
+        for (int i = 0; i < 3; i++) {
+            guard.acquire("jane@example.com", CLIENT);
+            guard.recordFailure(" Jane@Example.com", CLIENT);
+        }
+
+        TooManyLoginAttemptsException rejected = assertThrows(TooManyLoginAttemptsException.class,
+                () -> guard.acquire("jane@example.com", CLIENT));
+        assertEquals(1, rejected.getRetryAfterSeconds());
+        assertEquals(1.0, meterRegistry.counter("auth.login.rejected", "reason", "email").count());
+        assertDoesNotThrow(() -> guard.acquire("john@example.com", CLIENT));
+
+        clock.set(5000);
+        assertDoesNotThrow(() -> guard.acquire("jane@example.com", CLIENT));
+    }
+
+    @Test
+    void clientRejectionGivesBackTheEmailSlot() {
+        LoginAttemptGuard guard = guard(1, 2);
+        guard.acquire("a@example.com", CLIENT);
+        guard.recordFailure("a@example.com", CLIENT);
+        guard.acquire("b@example.com", CLIENT);
+        guard.recordFailure("b@example.com", CLIENT);
+
+        assertThrows(TooManyLoginAttemptsException.class, () -> guard.acquire("c@example.com", CLIENT));
+        assertEquals(1.0, meterRegistry.counter("auth.login.rejected", "reason", "client").count());
+        // With one attempt per email, a slot kept by the rejected attempt would block this
+        assertDoesNotThrow(() -> guard.acquire("c@example.com", "10.0.0.2"));
+    }
+
+    @Test
+    void clientLimitOfZeroIsOff() {
+        LoginAttemptGuard guard = guard(3, 0);
+        for (int i = 0; i < 100; i++) {
+            String email = "user" + i + "@example.com";
+            guard.acquire(email, CLIENT);
+            guard.recordFailure(email, CLIENT);
+        }
+        assertDoesNotThrow(() -> guard.acquire("another@example.com", CLIENT));
+        assertEquals(0.0, meterRegistry.counter("auth.login.rejected", "reason", "client").count());
+    }
+}
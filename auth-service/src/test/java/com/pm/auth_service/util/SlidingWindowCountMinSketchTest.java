@@ -0,0 +1,72 @@
+package com.pm.auth_service.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+class SlidingWindowCountMinSketchTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void heavyKeyStaysExactAmongManyCollidingKeys() {
+        // 64 columns for 500 keys: every column is shared, so a plain update would
+        // push the heavy key's estimate up by the light keys landing on its cells
+        SlidingWindowCountMinSketch sketch = new SlidingWindowCountMinSketch(4, 64, 5, Duration.ofSeconds(5),
+                clock::get);
+        for (int i = 0; i < 50; i++) {
+            sketch.increment("heavy");
+        }
+        for (int i = 0; i < 500; i++) {
+            sketch.increment("light" + i);
+        }
+
+        assertEquals(50, sketch.estimate("heavy"));
+        for (int i = 0; i < 500; i++) {
+            assertTrue(sketch.estimate("light" + i) >= 1);
+        }
+    }
+
+    @Test
+    void eachIncrementRaisesTheKeyByOne() {
+        SlidingWindowCountMinSketch sketch = new SlidingWindowCountMinSketch(3, 2, 5, Duration.ofSeconds(5),
+                clock::get);
+        for (int i = 0; i < 20; i++) {
+            String key = "key" + (i % 7);
+            int before = sketch.estimate(key);
+            sketch.increment(key);
+            assertEquals(before + 1, sketch.estimate(key));
+        }
+    }
+
+    @Test
+    void countsLeaveTheWindowBucketByBucket() {
+        // Five buckets of one second each
+        SlidingWindowCountMinSketch sketch = new SlidingWindowCountMinSketch(3, 1024, 5, Duration.ofSeconds(5),
+                clock::get);
+        sketch.increment("key");
+        sketch.increment("key");
+        clock.set(2500);
+        sketch.increment("key");
+
+        clock.set(4999);
+        assertEquals(3, sketch.estimate("key"));
+
+        // The first bucket is five seconds old
+        clock.set(5000);
+        assertEquals(1, sketch.estimate("key"));
+
+        // Writing into the expired bucket starts it from zero
+        sketch.increment("key");
+        assertEquals(2, sketch.estimate("key"));
+
+        clock.set(7500);
+        assertEquals(1, sketch.estimate("key"));
+        clock.set(10000);
+        assertEquals(0, sketch.estimate("key"));
+    }
+}
@@ -0,0 +1,21 @@
+package com.pm.billing_service.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import net.devh.boot.grpc.server.serverfactory.GrpcServerConfigurer;
+
+@Configuration
+public class GrpcServerConfig {
+
+    // BillingGrpcService blocks on JDBC; in the 'virtual' profile each call runs on its own
+    // virtual thread instead of a platform thread from the default cached pool
+    @Bean
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public GrpcServerConfigurer virtualThreadGrpcExecutor() {
+        return serverBuilder -> serverBuilder.executor(new VirtualThreadTaskExecutor("grpc-"));
+    }
+}
@@ -0,0 +1,50 @@
+package com.pm.billing_service.controller;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.pm.billing_service.service.InvoiceRunService;
+import com.pm.billing_service.service.InvoiceRunService.RunProgress;
+
+// Starts or resumes an invoice run by hand, e.g. POST /invoice-runs/2026-09, and
+// reports its progress and throughput
+@RestController
+@RequestMapping("/invoice-runs")
+public class InvoiceRunController {
+
+    private final InvoiceRunService invoiceRunService;
+
+    public InvoiceRunController(InvoiceRunService invoiceRunService) {
+        this.invoiceRunService = invoiceRunService;
+    }
+
+    @PostMapping("/{period}")
+    public ResponseEntity<Void> start(@PathVariable String period) {
+        invoiceRunService.start(parse(period));
+        return ResponseEntity.status(HttpStatus.ACCEPTED).build();
+    }
+
+    @GetMapping("/{period}")
+    public ResponseEntity<RunProgress> progress(@PathVariable String period) {
+        return invoiceRunService.progress(parse(period))
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    private static YearMonth parse(String period) {
+        try {
+            return YearMonth.parse(period);
+        } catch (DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "period must look like 2026-09");
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.pm.billing_service.entity;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+
+// An account's balance over its entries 1..lastEntrySequence. The current balance is
+// the latest snapshot plus the entries after it. Older snapshots are kept as history.
+@Entity
+@Table(indexes = @Index(name = "idx_balance_snapshot_account_sequence", columnList = "account_id, last_entry_sequence"))
+public class BalanceSnapshot {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "balance_snapshot_seq")
+    @SequenceGenerator(name = "balance_snapshot_seq", sequenceName = "balance_snapshot_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false, updatable = false)
+    private UUID accountId;
+
+    @Column(nullable = false, updatable = false)
+    private long lastEntrySequence;
+
+    @Column(nullable = false, updatable = false)
+    private long balanceMinor;
+
+    @Column(nullable = false, updatable = false)
+    private Instant createdAt;
+
+    public BalanceSnapshot(UUID accountId, long lastEntrySequence, long balanceMinor, Instant createdAt) {
+        this.accountId = accountId;
+        this.lastEntrySequence = lastEntrySequence;
+        this.balanceMinor = balanceMinor;
+        this.createdAt = createdAt;
+    }
+
+    public Long getId() {
+        return this.id;
+    }
+
+    public UUID getAccountId() {
+        return this.accountId;
+    }
+
+    public long getLastEntrySequence() {
+        return this.lastEntrySequence;
+    }
+
+    public long getBalanceMinor() {
+        return this.balanceMinor;
+    }
+
+    public Instant getCreatedAt() {
+        return this.createdAt;
+    }
+
+    public BalanceSnapshot() {
+    }
+
+}
@@ -3,22 +3,39 @@ package com.pm.billing_service.entity;
 // import jakarta.annotation.Generated;
 import java.util.UUID;
 
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 
+// One account per patient; the unique constraint is also the index deactivation looks up by
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = BillingAccount.PATIENT_ID_UNIQUE_CONSTRAINT,
+        columnNames = "patient_id"))
 public class BillingAccount {
 
+    public static final String PATIENT_ID_UNIQUE_CONSTRAINT = "uk_billing_account_patient_id";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidV7
     private UUID Id;
 
-    private String patientId;
+    // Native uuid, 16 bytes instead of a 36 character string
+    @Column(nullable = false)
+    private UUID patientId;
     private String name;
     private String email;
-    private String status;
+
+    @Convert(converter = BillingAccountStatusConverter.class)
+    @Column(nullable = false)
+    private BillingAccountStatus status;
+
+    // entrySequence of the account's last ledger entry. Ledger posts take the row lock
+    // and bump this, which numbers each account's entries without gaps in commit order.
+    @Column(nullable = false)
+    private long ledgerSequence;
 
     public UUID getId() {
         return this.Id;
@@ -28,11 +45,11 @@ public class BillingAccount {
         this.Id = Id;
     }
 
-    public String getPatientId() {
+    public UUID getPatientId() {
         return this.patientId;
     }
 
-    public void setPatientId(String patientId) {
+    public void setPatientId(UUID patientId) {
         this.patientId = patientId;
     }
 
@@ -52,12 +69,20 @@ public class BillingAccount {
         this.email = email;
     }
 
-    public String getStatus() {
+    public BillingAccountStatus getStatus() {
         return this.status;
     }
 
-    public void setStatus(String status) {
+    public void setStatus(BillingAccountStatus status) {
         this.status = status;
     }
 
+    public long getLedgerSequence() {
+        return this.ledgerSequence;
+    }
+
+    public void setLedgerSequence(long ledgerSequence) {
+        this.ledgerSequence = ledgerSequence;
+    }
+
 }
@@ -0,0 +1,18 @@
+package com.pm.billing_service.entity;
+
+// Stored by code in a smallint column: never change or reuse a code
+public enum BillingAccountStatus implements CodedEnum {
+    ACTIVE(0),
+    INACTIVE(1);
+
+    private final short code;
+
+    BillingAccountStatus(int code) {
+        this.code = (short) code;
+    }
+
+    @Override
+    public short code() {
+        return code;
+    }
+}
@@ -0,0 +1,10 @@
+package com.pm.billing_service.entity;
+
+import jakarta.persistence.Converter;
+
+@Converter
+public class BillingAccountStatusConverter extends CodedEnumConverter<BillingAccountStatus> {
+    public BillingAccountStatusConverter() {
+        super(BillingAccountStatus.class);
+    }
+}
@@ -0,0 +1,16 @@
+package com.pm.billing_service.entity;
+
+// An enum stored as a fixed smallint code rather than its ordinal, so values can be
+// reordered or removed without rewriting existing rows. Native SQL binds code().
+public interface CodedEnum {
+    short code();
+
+    static <E extends Enum<E> & CodedEnum> E fromCode(Class<E> type, short code) {
+        for (E value : type.getEnumConstants()) {
+            if (value.code() == code) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Unknown " + type.getSimpleName() + " code " + code);
+    }
+}
@@ -0,0 +1,22 @@
+package com.pm.billing_service.entity;
+
+import jakarta.persistence.AttributeConverter;
+
+// Maps a CodedEnum to its smallint column
+public abstract class CodedEnumConverter<E extends Enum<E> & CodedEnum> implements AttributeConverter<E, Short> {
+    private final Class<E> type;
+
+    protected CodedEnumConverter(Class<E> type) {
+        this.type = type;
+    }
+
+    @Override
+    public Short convertToDatabaseColumn(E value) {
+        return value == null ? null : value.code();
+    }
+
+    @Override
+    public E convertToEntityAttribute(Short code) {
+        return code == null ? null : CodedEnum.fromCode(type, code);
+    }
+}
@@ -0,0 +1,63 @@
+package com.pm.billing_service.entity;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+// One per account and month. The unique constraint makes a resumed invoice run skip
+// accounts it already invoiced before a crash.
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_invoice_account_period",
+        columnNames = { "account_id", "period" }))
+public class Invoice {
+    @Id
+    @UuidV7
+    private UUID id;
+
+    @Column(nullable = false, updatable = false)
+    private UUID accountId;
+
+    // YearMonth.toString(), e.g. 2026-09
+    @Column(nullable = false, updatable = false, length = 7)
+    private String period;
+
+    // Charges and payments posted to the ledger within the period, in minor units
+    @Column(nullable = false, updatable = false)
+    private long chargesMinor;
+
+    @Column(nullable = false, updatable = false)
+    private long paymentsMinor;
+
+    @Column(nullable = false, updatable = false)
+    private Instant createdAt;
+
+    public UUID getId() {
+        return this.id;
+    }
+
+    public UUID getAccountId() {
+        return this.accountId;
+    }
+
+    public String getPeriod() {
+        return this.period;
+    }
+
+    public long getChargesMinor() {
+        return this.chargesMinor;
+    }
+
+    public long getPaymentsMinor() {
+        return this.paymentsMinor;
+    }
+
+    public Instant getCreatedAt() {
+        return this.createdAt;
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.pm.billing_service.entity;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+// One row per invoiced month; a RUNNING row left behind by a crash is resumed
+@Entity
+public class InvoiceRun {
+    // YearMonth.toString(), e.g. 2026-09
+    @Id
+    @Column(length = 7)
+    private String period;
+
+    @Convert(converter = InvoiceRunStatusConverter.class)
+    @Column(nullable = false)
+    private InvoiceRunStatus status;
+
+    @Column(nullable = false)
+    private int partitions;
+
+    @Column(nullable = false)
+    private Instant startedAt;
+
+    private Instant finishedAt;
+
+    public String getPeriod() {
+        return this.period;
+    }
+
+    public InvoiceRunStatus getStatus() {
+        return this.status;
+    }
+
+    public int getPartitions() {
+        return this.partitions;
+    }
+
+    public Instant getStartedAt() {
+        return this.startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return this.finishedAt;
+    }
+
+}
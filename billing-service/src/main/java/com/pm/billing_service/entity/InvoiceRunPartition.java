@@ -0,0 +1,80 @@
+package com.pm.billing_service.entity;
+
+import java.util.UUID;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+// The accounts with lowerBound < id <= upperBound. checkpoint is the last account id
+// invoiced, written in the same transaction as that chunk's invoices, so a resumed
+// partition continues right after it.
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_invoice_run_partition",
+        columnNames = { "period", "partition_index" }))
+public class InvoiceRunPartition {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "invoice_run_partition_seq")
+    @SequenceGenerator(name = "invoice_run_partition_seq", sequenceName = "invoice_run_partition_seq",
+            allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false, length = 7)
+    private String period;
+
+    @Column(nullable = false)
+    private int partitionIndex;
+
+    @Column(nullable = false)
+    private UUID lowerBound;
+
+    @Column(nullable = false)
+    private UUID upperBound;
+
+    @Column(nullable = false)
+    private UUID checkpoint;
+
+    @Column(nullable = false)
+    private long invoicedAccounts;
+
+    @Column(nullable = false)
+    private boolean completed;
+
+    public Long getId() {
+        return this.id;
+    }
+
+    public String getPeriod() {
+        return this.period;
+    }
+
+    public int getPartitionIndex() {
+        return this.partitionIndex;
+    }
+
+    public UUID getLowerBound() {
+        return this.lowerBound;
+    }
+
+    public UUID getUpperBound() {
+        return this.upperBound;
+    }
+
+    public UUID getCheckpoint() {
+        return this.checkpoint;
+    }
+
+    public long getInvoicedAccounts() {
+        return this.invoicedAccounts;
+    }
+
+    public boolean isCompleted() {
+        return this.completed;
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.pm.billing_service.entity;
+
+// Stored by code in a smallint column: never change or reuse a code
+public enum InvoiceRunStatus implements CodedEnum {
+    RUNNING(0),
+    COMPLETED(1);
+
+    private final short code;
+
+    InvoiceRunStatus(int code) {
+        this.code = (short) code;
+    }
+
+    @Override
+    public short code() {
+        return code;
+    }
+}
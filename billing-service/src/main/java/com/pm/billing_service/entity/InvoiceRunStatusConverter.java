@@ -0,0 +1,10 @@
+package com.pm.billing_service.entity;
+
+import jakarta.persistence.Converter;
+
+@Converter
+public class InvoiceRunStatusConverter extends CodedEnumConverter<InvoiceRunStatus> {
+    public InvoiceRunStatusConverter() {
+        super(InvoiceRunStatus.class);
+    }
+}
@@ -0,0 +1,103 @@
+package com.pm.billing_service.entity;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+// One immutable ledger line. entrySequence numbers an account's entries 1, 2, 3...
+// without gaps, in commit order, so "everything after a snapshot" is a range scan on
+// the (account_id, entry_sequence) index. Amounts are signed minor units: charges
+// positive, payments negative, so a balance is a plain sum.
+@Entity
+@Table(uniqueConstraints = {
+        @UniqueConstraint(name = "uk_ledger_entry_account_sequence", columnNames = { "account_id", "entry_sequence" }),
+        @UniqueConstraint(name = "uk_ledger_entry_account_idempotency_key",
+                columnNames = { "account_id", "idempotency_key" }) },
+        // Month totals for invoices read only the month's entries of each account
+        indexes = @Index(name = "idx_ledger_entry_account_created_at", columnList = "account_id, created_at"))
+public class LedgerEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ledger_entry_seq")
+    @SequenceGenerator(name = "ledger_entry_seq", sequenceName = "ledger_entry_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false, updatable = false)
+    private UUID accountId;
+
+    @Column(nullable = false, updatable = false)
+    private long entrySequence;
+
+    @Convert(converter = LedgerEntryTypeConverter.class)
+    @Column(nullable = false, updatable = false)
+    private LedgerEntryType type;
+
+    @Column(nullable = false, updatable = false)
+    private long amountMinor;
+
+    @Column(updatable = false)
+    private String description;
+
+    // Lets a caller retry a post without charging twice; null when not supplied
+    @Column(updatable = false)
+    private String idempotencyKey;
+
+    @Column(nullable = false, updatable = false)
+    private Instant createdAt;
+
+    public LedgerEntry(UUID accountId, long entrySequence, LedgerEntryType type, long amountMinor,
+            String description, String idempotencyKey, Instant createdAt) {
+        this.accountId = accountId;
+        this.entrySequence = entrySequence;
+        this.type = type;
+        this.amountMinor = amountMinor;
+        this.description = description;
+        this.idempotencyKey = idempotencyKey;
+        this.createdAt = createdAt;
+    }
+
+    public Long getId() {
+        return this.id;
+    }
+
+    public UUID getAccountId() {
+        return this.accountId;
+    }
+
+    public long getEntrySequence() {
+        return this.entrySequence;
+    }
+
+    public LedgerEntryType getType() {
+        return this.type;
+    }
+
+    public long getAmountMinor() {
+        return this.amountMinor;
+    }
+
+    public String getDescription() {
+        return this.description;
+    }
+
+    public String getIdempotencyKey() {
+        return this.idempotencyKey;
+    }
+
+    public Instant getCreatedAt() {
+        return this.createdAt;
+    }
+
+    public LedgerEntry() {
+    }
+
+}
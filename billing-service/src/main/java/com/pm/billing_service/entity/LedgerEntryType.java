@@ -0,0 +1,20 @@
+package com.pm.billing_service.entity;
+
+// Stored by code in a smallint column: never change or reuse a code
+public enum LedgerEntryType implements CodedEnum {
+    // Raises the balance owed
+    CHARGE(0),
+    // Lowers the balance owed
+    PAYMENT(1);
+
+    private final short code;
+
+    LedgerEntryType(int code) {
+        this.code = (short) code;
+    }
+
+    @Override
+    public short code() {
+        return code;
+    }
+}
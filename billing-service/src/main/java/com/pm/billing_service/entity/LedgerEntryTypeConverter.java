@@ -0,0 +1,10 @@
+package com.pm.billing_service.entity;
+
+import jakarta.persistence.Converter;
+
+@Converter
+public class LedgerEntryTypeConverter extends CodedEnumConverter<LedgerEntryType> {
+    public LedgerEntryTypeConverter() {
+        super(LedgerEntryType.class);
+    }
+}
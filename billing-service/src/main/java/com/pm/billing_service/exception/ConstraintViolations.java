@@ -0,0 +1,24 @@
+package com.pm.billing_service.exception;
+
+import org.hibernate.exception.ConstraintViolationException;
+
+public final class ConstraintViolations {
+
+    private ConstraintViolations() {
+    }
+
+    // True when the failure, or anything that caused it, names the given database constraint
+    public static boolean violates(Throwable failure, String constraintName) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation
+                    && constraintName.equalsIgnoreCase(violation.getConstraintName())) {
+                return true;
+            }
+            String message = cause.getMessage();
+            if (message != null && message.toLowerCase().contains(constraintName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
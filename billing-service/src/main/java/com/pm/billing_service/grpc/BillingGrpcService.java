@@ -1,46 +1,82 @@
 package com.pm.billing_service.grpc;
 
 // Import the correct, generated gRPC classes
+import com.pm.billingservice.grpc.BalanceRequest;
+import com.pm.billingservice.grpc.BalanceResponse;
+import com.pm.billingservice.grpc.BillingBatchRequest;
+import com.pm.billingservice.grpc.BillingBatchResponse;
+import com.pm.billingservice.grpc.BillingItemResult;
 import com.pm.billingservice.grpc.BillingRequest;
 import com.pm.billingservice.grpc.BillingResponse;
+import com.pm.billingservice.grpc.LedgerEntryRequest;
+import com.pm.billingservice.grpc.LedgerEntryResponse;
 import com.pm.billingservice.grpc.PatientDeletionRequest; // Correct request class
 import com.pm.billingservice.grpc.BillingServiceGrpc.BillingServiceImplBase;
 
 // Imports for database classes
 import com.pm.billing_service.entity.BillingAccount;
+import com.pm.billing_service.entity.BillingAccountStatus;
+import com.pm.billing_service.entity.LedgerEntryType;
+import com.pm.billing_service.exception.ConstraintViolations;
 import com.pm.billing_service.repo.BillingAccountRepository;
+import com.pm.billing_service.service.BillingAccountBatchService;
+import com.pm.billing_service.service.LedgerService;
 
 // Standard library imports
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
 import io.grpc.stub.StreamObserver;
 import net.devh.boot.grpc.server.service.GrpcService;
+import org.hibernate.exception.DataException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 
 @GrpcService
 public class BillingGrpcService extends BillingServiceImplBase {
 
     private static final Logger log = LoggerFactory.getLogger(BillingGrpcService.class);
     private final BillingAccountRepository repository;
+    private final BillingAccountBatchService batchService;
+    private final LedgerService ledgerService;
 
     @Autowired
-    public BillingGrpcService(BillingAccountRepository repository) {
+    public BillingGrpcService(BillingAccountRepository repository, BillingAccountBatchService batchService,
+            LedgerService ledgerService) {
         this.repository = repository;
+        this.batchService = batchService;
+        this.ledgerService = ledgerService;
     }
 
     @Override
     public void createBillingAccount(BillingRequest request, StreamObserver<BillingResponse> responseObserver) {
+        UUID patientId = patientId(request.getPatientId(), responseObserver);
+        if (patientId == null) {
+            return;
+        }
         BillingAccount newAccount = new BillingAccount();
-        newAccount.setPatientId(request.getPatientId());
+        newAccount.setPatientId(patientId);
         newAccount.setName(request.getName());
         newAccount.setEmail(request.getEmail());
-        newAccount.setStatus("ACTIVE");
+        newAccount.setStatus(BillingAccountStatus.ACTIVE);
 
-        BillingAccount savedAccount = repository.save(newAccount);
+        BillingAccount savedAccount;
+        try {
+            savedAccount = repository.saveAndFlush(newAccount);
+        } catch (DataIntegrityViolationException e) {
+            responseObserver.onError(creationFailure(e, patientId).asRuntimeException());
+            return;
+        }
 
         BillingResponse response = BillingResponse.newBuilder()
                 .setAccountId(savedAccount.getId().toString())
-                .setStatus(savedAccount.getStatus())
+                .setStatus(savedAccount.getStatus().name())
                 .build();
 
         responseObserver.onNext(response);
@@ -50,19 +86,160 @@ public class BillingGrpcService extends BillingServiceImplBase {
     @Override
     public void processPatientDeletion(PatientDeletionRequest request,
             StreamObserver<BillingResponse> responseObserver) {
-        log.info("gRPC request to process deletion for patientId: {}", request.getPatientId());
+        log.debug("gRPC request to process deletion for patientId: {}", request.getPatientId());
+        UUID patientId = patientId(request.getPatientId(), responseObserver);
+        if (patientId == null) {
+            return;
+        }
+
+        // A bulk UPDATE and an id lookup, the account is never loaded
+        Optional<UUID> accountId = repository.deactivateByPatientId(patientId);
+        if (accountId.isEmpty()) {
+            responseObserver.onError(Status.NOT_FOUND
+                    .withDescription("No billing account for patient " + patientId)
+                    .asRuntimeException());
+            return;
+        }
+
+        BillingResponse response = BillingResponse.newBuilder()
+                .setAccountId(accountId.get().toString())
+                .setStatus(BillingAccountStatus.INACTIVE.name())
+                .build();
+
+        responseObserver.onNext(response);
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void createBillingAccounts(BillingBatchRequest request,
+            StreamObserver<BillingBatchResponse> responseObserver) {
+        List<BillingItemResult> results = batchService.createAll(request.getRequestsList(), 0);
+        log.info("gRPC batch created {} billing accounts", request.getRequestsCount());
+
+        responseObserver.onNext(BillingBatchResponse.newBuilder().addAllResults(results).build());
+        responseObserver.onCompleted();
+    }
+
+    // Writes a chunk as soon as it has arrived, so only one chunk of requests is held at a time
+    @Override
+    public StreamObserver<BillingRequest> streamBillingAccounts(StreamObserver<BillingBatchResponse> responseObserver) {
+        return new StreamObserver<>() {
+            private final List<BillingRequest> pending = new ArrayList<>(batchService.getChunkSize());
+            private final BillingBatchResponse.Builder response = BillingBatchResponse.newBuilder();
+            private int received;
+
+            @Override
+            public void onNext(BillingRequest request) {
+                pending.add(request);
+                if (pending.size() >= batchService.getChunkSize()) {
+                    flush();
+                }
+            }
 
-        repository.findByPatientId(request.getPatientId()).ifPresent(account -> {
-            account.setStatus("INACTIVE");
-            repository.save(account);
+            @Override
+            public void onError(Throwable t) {
+                // Chunks already written stay, the client learns which from its own retry
+                log.warn("Billing account stream aborted by client after {} requests : {}", received,
+                        t.getMessage());
+            }
 
-            BillingResponse response = BillingResponse.newBuilder()
-                    .setAccountId(account.getId().toString())
-                    .setStatus(account.getStatus())
-                    .build();
+            @Override
+            public void onCompleted() {
+                flush();
+                log.info("gRPC stream created {} billing accounts", received);
+                responseObserver.onNext(response.build());
+                responseObserver.onCompleted();
+            }
+
+            private void flush() {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                response.addAllResults(batchService.createAll(pending, received));
+                received += pending.size();
+                pending.clear();
+            }
+        };
+    }
+
+    @Override
+    public void postLedgerEntry(LedgerEntryRequest request, StreamObserver<LedgerEntryResponse> responseObserver) {
+        UUID patientId = patientId(request.getPatientId(), responseObserver);
+        if (patientId == null) {
+            return;
+        }
+        LedgerEntryType type = switch (request.getType()) {
+            case CHARGE -> LedgerEntryType.CHARGE;
+            case PAYMENT -> LedgerEntryType.PAYMENT;
+            default -> null;
+        };
+
+        LedgerService.Posting posting;
+        try {
+            posting = ledgerService.post(patientId, type, request.getAmountMinor(), request.getDescription(),
+                    request.getIdempotencyKey());
+        } catch (StatusRuntimeException e) {
+            responseObserver.onError(e);
+            return;
+        }
+
+        responseObserver.onNext(LedgerEntryResponse.newBuilder()
+                .setPatientId(patientId.toString())
+                .setEntrySequence(posting.entrySequence())
+                .setBalanceMinor(posting.balanceMinor())
+                .build());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void getBalance(BalanceRequest request, StreamObserver<BalanceResponse> responseObserver) {
+        UUID patientId = patientId(request.getPatientId(), responseObserver);
+        if (patientId == null) {
+            return;
+        }
+
+        LedgerService.Balance balance;
+        try {
+            balance = ledgerService.getBalance(patientId);
+        } catch (StatusRuntimeException e) {
+            responseObserver.onError(e);
+            return;
+        }
+
+        responseObserver.onNext(BalanceResponse.newBuilder()
+                .setPatientId(patientId.toString())
+                .setBalanceMinor(balance.balanceMinor())
+                .setEntrySequence(balance.entrySequence())
+                .build());
+        responseObserver.onCompleted();
+    }
+
+    // ALREADY_EXISTS only for the one-account-per-patient constraint; callers treat that as
+    // success, so any other integrity failure must not be reported the same way
+    private static Status creationFailure(DataIntegrityViolationException e, UUID patientId) {
+        if (ConstraintViolations.violates(e, BillingAccount.PATIENT_ID_UNIQUE_CONSTRAINT)) {
+            return Status.ALREADY_EXISTS.withDescription("Billing account already exists for patient " + patientId);
+        }
+        // Bad data, e.g. a name longer than its column
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DataException) {
+                return Status.INVALID_ARGUMENT.withDescription("Billing account rejected : "
+                        + e.getMostSpecificCause().getMessage());
+            }
+        }
+        log.error("Billing account for patient {} could not be created", patientId, e);
+        return Status.INTERNAL.withDescription("Billing account could not be created for patient " + patientId);
+    }
 
-            responseObserver.onNext(response);
-            responseObserver.onCompleted();
-        });
+    // Parsed patient id, or null after failing the call with INVALID_ARGUMENT
+    private static UUID patientId(String value, StreamObserver<?> responseObserver) {
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription("patientId must be a UUID : " + value)
+                    .asRuntimeException());
+            return null;
+        }
     }
-}
\ No newline at end of file
+}
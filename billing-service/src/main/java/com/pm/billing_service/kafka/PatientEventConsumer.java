@@ -0,0 +1,97 @@
+package com.pm.billing_service.kafka;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.pm.billing_service.entity.BillingAccountStatus;
+import com.pm.billing_service.service.BillingAccountSyncService;
+import com.pm.billing_service.service.BillingAccountSyncService.AccountState;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import patient.event.PatientEvent;
+
+// Provisions and deactivates billing accounts from patient lifecycle events, the
+// alternative to patient-service calling BillingService over gRPC on every write.
+@Service
+@ConditionalOnProperty(name = "billing.provisioning.kafka.enabled", havingValue = "true")
+public class PatientEventConsumer {
+
+    private static final Logger log = LoggerFactory.getLogger(PatientEventConsumer.class);
+
+    private final BillingAccountSyncService syncService;
+    private final Counter appliedEvents;
+    private final Counter skippedEvents;
+    // Time from the event being produced to its account change being committed
+    private final Timer eventLag;
+
+    public PatientEventConsumer(BillingAccountSyncService syncService, MeterRegistry meterRegistry) {
+        this.syncService = syncService;
+        this.appliedEvents = meterRegistry.counter("billing.kafka.events", "result", "applied");
+        this.skippedEvents = meterRegistry.counter("billing.kafka.events", "result", "skipped");
+        this.eventLag = Timer.builder("billing.kafka.event.lag")
+                .description("Time from a patient event being produced to its billing account change committing")
+                .register(meterRegistry);
+    }
+
+    @KafkaListener(topics = "${billing.kafka.patient-topic:patient}", groupId = "${billing.kafka.group-id:billing-service}",
+            batch = "true")
+    public void consumeEvents(List<ConsumerRecord<String, byte[]>> records) {
+        // Events are keyed by patient id, so one patient's events arrive in order and the
+        // last one in the batch is that patient's current state
+        Map<UUID, AccountState> latest = new LinkedHashMap<>();
+        int skipped = 0;
+        for (ConsumerRecord<String, byte[]> record : records) {
+            AccountState state = toState(record);
+            if (state == null) {
+                skipped++;
+                continue;
+            }
+            latest.remove(state.patientId());
+            latest.put(state.patientId(), state);
+        }
+
+        syncService.upsertAll(latest.values());
+
+        long now = System.currentTimeMillis();
+        for (ConsumerRecord<String, byte[]> record : records) {
+            eventLag.record(Math.max(0, now - record.timestamp()), TimeUnit.MILLISECONDS);
+        }
+        appliedEvents.increment(records.size() - skipped);
+        skippedEvents.increment(skipped);
+        log.debug("Applied {} patient events as {} billing account upserts", records.size(), latest.size());
+    }
+
+    private AccountState toState(ConsumerRecord<String, byte[]> record) {
+        try {
+            PatientEvent event = PatientEvent.parseFrom(record.value());
+            BillingAccountStatus status = switch (event.getEventType()) {
+                case "PATIENT_CREATED", "PATIENT_UPDATED" -> BillingAccountStatus.ACTIVE;
+                case "PATIENT_DELETED" -> BillingAccountStatus.INACTIVE;
+                default -> null;
+            };
+            if (status == null) {
+                log.warn("Ignoring patient event of unknown type {} at {}-{}@{}", event.getEventType(),
+                        record.topic(), record.partition(), record.offset());
+                return null;
+            }
+            return new AccountState(UUID.fromString(event.getPatientId()), event.getName(), event.getEmail(), status);
+        } catch (InvalidProtocolBufferException | IllegalArgumentException e) {
+            log.warn("Skipping malformed patient event at {}-{}@{} : {}", record.topic(), record.partition(),
+                    record.offset(), e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.pm.billing_service.repo;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.pm.billing_service.entity.BalanceSnapshot;
+
+public interface BalanceSnapshotRepository extends JpaRepository<BalanceSnapshot, Long> {
+    // Reads the last row of the (account_id, last_entry_sequence) index
+    Optional<BalanceSnapshot> findFirstByAccountIdOrderByLastEntrySequenceDesc(UUID accountId);
+}
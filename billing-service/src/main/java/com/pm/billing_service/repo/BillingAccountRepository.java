@@ -4,9 +4,41 @@ import java.util.Optional;
 import java.util.UUID;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.pm.billing_service.entity.BillingAccount;
+import com.pm.billing_service.entity.BillingAccountStatus;
+
+import jakarta.persistence.LockModeType;
 
 public interface BillingAccountRepository extends JpaRepository<BillingAccount, UUID> {
-    Optional<BillingAccount> findByPatientId(String patientId);
+    Optional<BillingAccount> findByPatientId(UUID patientId);
+
+    // SELECT ... FOR UPDATE: serialises ledger posts per account, not across accounts
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM BillingAccount a WHERE a.patientId = :patientId")
+    Optional<BillingAccount> findByPatientIdForUpdate(@Param("patientId") UUID patientId);
+
+    @Query("SELECT a.id FROM BillingAccount a WHERE a.patientId = :patientId")
+    Optional<UUID> findIdByPatientId(@Param("patientId") UUID patientId);
+
+    // Bulk update through the patient_id index, no load-then-save; returns the rows updated.
+    // Clears the persistence context so no stale account is read back in the same transaction.
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE BillingAccount a SET a.status = :status WHERE a.patientId = :patientId")
+    int updateStatusByPatientId(@Param("patientId") UUID patientId, @Param("status") BillingAccountStatus status);
+
+    // The account id, or empty when the patient has no account
+    @Transactional
+    default Optional<UUID> deactivateByPatientId(UUID patientId) {
+        if (updateStatusByPatientId(patientId, BillingAccountStatus.INACTIVE) == 0) {
+            return Optional.empty();
+        }
+        return findIdByPatientId(patientId);
+    }
 }
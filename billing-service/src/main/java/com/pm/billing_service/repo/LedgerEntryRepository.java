@@ -0,0 +1,20 @@
+package com.pm.billing_service.repo;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.pm.billing_service.entity.LedgerEntry;
+
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+    Optional<LedgerEntry> findByAccountIdAndIdempotencyKey(UUID accountId, String idempotencyKey);
+
+    // Range scan on the (account_id, entry_sequence) unique index, only the tail
+    // after the latest snapshot is read
+    @Query("SELECT COALESCE(SUM(e.amountMinor), 0) FROM LedgerEntry e "
+            + "WHERE e.accountId = :accountId AND e.entrySequence > :afterSequence")
+    long sumAfter(@Param("accountId") UUID accountId, @Param("afterSequence") long afterSequence);
+}
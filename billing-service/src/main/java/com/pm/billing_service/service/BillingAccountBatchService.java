@@ -0,0 +1,120 @@
+package com.pm.billing_service.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.pm.billing_service.entity.BillingAccount;
+import com.pm.billing_service.entity.BillingAccountStatus;
+import com.pm.billing_service.repo.BillingAccountRepository;
+import com.pm.billingservice.grpc.BillingItemResult;
+import com.pm.billingservice.grpc.BillingRequest;
+
+// Creates billing accounts a chunk per transaction. Ids are generated in memory, so
+// hibernate.jdbc.batch_size turns each chunk into a handful of multi-row inserts.
+// If a chunk fails, its items are retried one by one so only the bad ones fail.
+@Service
+public class BillingAccountBatchService {
+
+    public static final String FAILED = "FAILED";
+
+    private static final Logger log = LoggerFactory.getLogger(BillingAccountBatchService.class);
+
+    private final BillingAccountRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    public BillingAccountBatchService(BillingAccountRepository repository,
+            PlatformTransactionManager transactionManager,
+            @Value("${billing.batch.chunk-size:500}") int chunkSize) {
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    // Results are in request order, numbered from firstIndex
+    public List<BillingItemResult> createAll(List<BillingRequest> requests, int firstIndex) {
+        List<BillingItemResult> results = new ArrayList<>(requests.size());
+        for (int start = 0; start < requests.size(); start += chunkSize) {
+            List<BillingRequest> chunk = requests.subList(start, Math.min(start + chunkSize, requests.size()));
+            results.addAll(createChunk(chunk, firstIndex + start));
+        }
+        return results;
+    }
+
+    private List<BillingItemResult> createChunk(List<BillingRequest> chunk, int firstIndex) {
+        BillingItemResult[] results = new BillingItemResult[chunk.size()];
+        List<Integer> valid = new ArrayList<>(chunk.size());
+        List<BillingAccount> accounts = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            BillingRequest request = chunk.get(i);
+            try {
+                accounts.add(toAccount(request));
+                valid.add(i);
+            } catch (IllegalArgumentException e) {
+                results[i] = failed(firstIndex + i, request, "patientId must be a UUID : " + request.getPatientId());
+            }
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> repository.saveAllAndFlush(accounts));
+            for (int j = 0; j < valid.size(); j++) {
+                int i = valid.get(j);
+                results[i] = created(firstIndex + i, accounts.get(j));
+            }
+        } catch (DataAccessException e) {
+            log.warn("Billing account chunk of {} failed, retrying items one by one : {}", accounts.size(),
+                    e.getMessage());
+            for (int i : valid) {
+                BillingRequest request = chunk.get(i);
+                try {
+                    BillingAccount account = toAccount(request);
+                    transactionTemplate.executeWithoutResult(status -> repository.saveAndFlush(account));
+                    results[i] = created(firstIndex + i, account);
+                } catch (DataAccessException itemFailure) {
+                    results[i] = failed(firstIndex + i, request, itemFailure.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+        return List.of(results);
+    }
+
+    private static BillingAccount toAccount(BillingRequest request) {
+        BillingAccount account = new BillingAccount();
+        account.setPatientId(UUID.fromString(request.getPatientId()));
+        account.setName(request.getName());
+        account.setEmail(request.getEmail());
+        account.setStatus(BillingAccountStatus.ACTIVE);
+        return account;
+    }
+
+    private static BillingItemResult created(int index, BillingAccount account) {
+        return BillingItemResult.newBuilder()
+                .setIndex(index)
+                .setPatientId(account.getPatientId().toString())
+                .setAccountId(account.getId().toString())
+                .setStatus(account.getStatus().name())
+                .build();
+    }
+
+    private static BillingItemResult failed(int index, BillingRequest request, String errorMessage) {
+        return BillingItemResult.newBuilder()
+                .setIndex(index)
+                .setPatientId(request.getPatientId())
+                .setStatus(FAILED)
+                .setErrorMessage(errorMessage == null ? "Billing account could not be created" : errorMessage)
+                .build();
+    }
+}
@@ -0,0 +1,63 @@
+package com.pm.billing_service.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.pm.billing_service.entity.BillingAccountStatus;
+import com.pm.billing_service.entity.UuidV7Generator;
+
+// Applies the latest known state of each patient's account as an upsert on patient_id.
+// Applying the same state twice leaves the row unchanged, so replayed events are harmless.
+// Written as a standard MERGE (PostgreSQL 15+) rather than INSERT ... ON CONFLICT, which
+// H2 cannot run, so the statement is tested as it ships. Unlike ON CONFLICT, two replicas
+// inserting the same new patient at once fail one batch on the unique key; the listener
+// then redelivers it and the retry updates the row the other committed.
+@Service
+public class BillingAccountSyncService {
+
+    private static final String UPSERT = "MERGE INTO billing_account a "
+            + "USING (VALUES (?, ?, ?, ?, ?)) AS s (id, patient_id, name, email, status) "
+            + "ON a.patient_id = s.patient_id "
+            + "WHEN MATCHED THEN UPDATE SET name = s.name, email = s.email, status = s.status "
+            + "WHEN NOT MATCHED THEN INSERT (id, patient_id, name, email, status, ledger_sequence) "
+            + "VALUES (s.id, s.patient_id, s.name, s.email, s.status, 0)";
+
+    public record AccountState(UUID patientId, String name, String email, BillingAccountStatus status) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    public BillingAccountSyncService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            @Value("${billing.kafka.upsert-chunk-size:500}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    // At most one state per patient, the last one wins anyway
+    public void upsertAll(Collection<AccountState> states) {
+        List<AccountState> pending = new ArrayList<>(states);
+        for (int start = 0; start < pending.size(); start += chunkSize) {
+            List<AccountState> chunk = pending.subList(start, Math.min(start + chunkSize, pending.size()));
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(UPSERT, chunk, chunk.size(),
+                    (ps, state) -> {
+                        // Only used when the row is new; an existing account keeps its id
+                        ps.setObject(1, UuidV7Generator.next());
+                        ps.setObject(2, state.patientId());
+                        ps.setString(3, state.name());
+                        ps.setString(4, state.email());
+                        ps.setShort(5, state.status().code());
+                    }));
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.pm.billing_service.service;
+
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Invoices the previous month once a month, and on startup resumes any run a crash
+// or redeploy interrupted. Every replica does both; they split the partitions between
+// them through InvoiceRunService's claims.
+@Component
+public class InvoiceRunScheduler implements ApplicationRunner {
+
+    private final InvoiceRunService invoiceRunService;
+
+    public InvoiceRunScheduler(InvoiceRunService invoiceRunService) {
+        this.invoiceRunService = invoiceRunService;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        invoiceRunService.unfinishedPeriods().forEach(invoiceRunService::start);
+    }
+
+    @Scheduled(cron = "${billing.invoice.cron:0 0 2 1 * *}", zone = "UTC")
+    public void invoicePreviousMonth() {
+        invoiceRunService.start(YearMonth.now(ZoneOffset.UTC).minusMonths(1));
+    }
+}
@@ -0,0 +1,299 @@
+package com.pm.billing_service.service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.pm.billing_service.entity.BillingAccountStatus;
+import com.pm.billing_service.entity.CodedEnum;
+import com.pm.billing_service.entity.InvoiceRunStatus;
+import com.pm.billing_service.entity.UuidV7Generator;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+// Invoices every active account for a month. The accounts are split into id ranges of
+// roughly equal size, and the ranges are worked through in parallel. Each range reads
+// its accounts in keyset chunks, together with their ledger totals for the month, and
+// batch-inserts the chunk's invoices in the same transaction that moves the range's
+// checkpoint. A run that dies part way is resumed from the checkpoints, and
+// uk_invoice_account_period keeps any account from being invoiced twice.
+//
+// Every replica starts the same runs. Each chunk transaction first claims its partition
+// row with FOR UPDATE SKIP LOCKED and continues from the checkpoint it reads there, so
+// a partition is only ever advanced by the one transaction holding it; a replica that
+// finds a partition claimed leaves it to the holder.
+@Service
+public class InvoiceRunService {
+
+    public record RunProgress(String period, InvoiceRunStatus status, int partitions, int completedPartitions,
+            long invoicedAccounts, Instant startedAt, Instant finishedAt, double accountsPerSecond) {
+    }
+
+    private record Partition(long id, int index, UUID upperBound) {
+    }
+
+    // claimed is false when another transaction holds the partition or it is already done
+    private record ChunkResult(boolean claimed, int invoiced, boolean completed) {
+    }
+
+    private static final ChunkResult NOT_CLAIMED = new ChunkResult(false, 0, true);
+
+    private record AccountTotals(UUID accountId, long chargesMinor, long paymentsMinor) {
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(InvoiceRunService.class);
+
+    // Range bounds, no account can have either id: UUIDv7 ids carry version bits
+    private static final UUID MIN_ID = new UUID(0L, 0L);
+    private static final UUID MAX_ID = new UUID(-1L, -1L);
+
+    // ON CONFLICT without a target: the tables have no other unique key it could hide, and
+    // the statements then also run on H2's PostgreSQL mode in the tests
+    private static final String CREATE_RUN = "INSERT INTO invoice_run (period, status, partitions, started_at) "
+            + "VALUES (?, ?, ?, ?) ON CONFLICT DO NOTHING";
+
+    // Every step-th active account id, in id order; these become the partition bounds
+    private static final String PARTITION_BOUNDS = "SELECT id FROM ("
+            + "SELECT id, row_number() OVER (ORDER BY id) AS rn FROM billing_account WHERE status = ?) ranked "
+            + "WHERE rn % ? = 0 ORDER BY id LIMIT ?";
+
+    private static final String CREATE_PARTITION = "INSERT INTO invoice_run_partition "
+            + "(id, period, partition_index, lower_bound, upper_bound, checkpoint, invoiced_accounts, completed) "
+            + "VALUES (nextval('invoice_run_partition_seq'), ?, ?, ?, ?, ?, 0, false)";
+
+    // One round trip per chunk: the next accounts of the range and their month totals.
+    // The ledger join is a range scan of idx_ledger_entry_account_created_at per account.
+    private static final String NEXT_CHUNK = "SELECT a.id, "
+            + "COALESCE(SUM(e.amount_minor) FILTER (WHERE e.amount_minor > 0), 0) AS charges, "
+            + "COALESCE(-SUM(e.amount_minor) FILTER (WHERE e.amount_minor < 0), 0) AS payments "
+            + "FROM (SELECT id FROM billing_account WHERE status = ? AND id > ? AND id <= ? ORDER BY id LIMIT ?) a "
+            + "LEFT JOIN ledger_entry e ON e.account_id = a.id AND e.created_at >= ? AND e.created_at < ? "
+            + "GROUP BY a.id ORDER BY a.id";
+
+    private static final String INSERT_INVOICE = "INSERT INTO invoice "
+            + "(id, account_id, period, charges_minor, payments_minor, created_at) VALUES (?, ?, ?, ?, ?, ?) "
+            + "ON CONFLICT DO NOTHING";
+
+    // Row lock held until the chunk commits; a partition another replica is writing is skipped
+    private static final String CLAIM = "SELECT checkpoint FROM invoice_run_partition "
+            + "WHERE id = ? AND NOT completed FOR UPDATE SKIP LOCKED";
+
+    private static final String CHECKPOINT = "UPDATE invoice_run_partition "
+            + "SET checkpoint = ?, invoiced_accounts = invoiced_accounts + ?, completed = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService executor;
+    private final int partitions;
+    private final int chunkSize;
+    private final Counter invoicedAccounts;
+    private final Timer chunkTimer;
+    // At most one run per period in this process; replicas coordinate through the claims
+    private final Map<YearMonth, CompletableFuture<RunProgress>> activeRuns = new ConcurrentHashMap<>();
+
+    public InvoiceRunService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${billing.invoice.partitions:32}") int partitions,
+            @Value("${billing.invoice.parallelism:8}") int parallelism,
+            @Value("${billing.invoice.chunk-size:1000}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Each worker holds one pooled connection while it writes a chunk
+        this.executor = Executors.newFixedThreadPool(parallelism, new CustomizableThreadFactory("invoice-run-"));
+        this.partitions = partitions;
+        this.chunkSize = chunkSize;
+        this.invoicedAccounts = meterRegistry.counter("billing.invoice.accounts");
+        this.chunkTimer = meterRegistry.timer("billing.invoice.chunk");
+    }
+
+    // Starts the run for period, or resumes it if an earlier one did not finish. The
+    // future completes when every partition is done; a completed period is a no-op.
+    public CompletableFuture<RunProgress> start(YearMonth period) {
+        boolean[] started = new boolean[1];
+        CompletableFuture<RunProgress> runFuture = activeRuns.computeIfAbsent(period, p -> {
+            started[0] = true;
+            return CompletableFuture.supplyAsync(() -> run(p), executor)
+                    .thenCompose(partitionsDone -> partitionsDone);
+        });
+        // Registered once the future is in the map: inside computeIfAbsent, a run that had
+        // already finished would remove its entry before it was added and leave it there
+        if (started[0]) {
+            runFuture.whenComplete((progress, failure) -> {
+                activeRuns.remove(period, runFuture);
+                if (failure != null) {
+                    log.error("Invoice run {} stopped, it resumes from its checkpoints on the next start", period,
+                            failure);
+                }
+            });
+        }
+        return runFuture;
+    }
+
+    // Periods left RUNNING by a crashed process
+    public List<YearMonth> unfinishedPeriods() {
+        return jdbcTemplate.queryForList("SELECT period FROM invoice_run WHERE status = ? ORDER BY period",
+                String.class, InvoiceRunStatus.RUNNING.code()).stream().map(YearMonth::parse).toList();
+    }
+
+    public Optional<RunProgress> progress(YearMonth period) {
+        return jdbcTemplate.query("SELECT r.status, r.partitions, r.started_at, r.finished_at, "
+                + "COUNT(*) FILTER (WHERE p.completed) AS completed_partitions, "
+                + "COALESCE(SUM(p.invoiced_accounts), 0) AS invoiced_accounts "
+                + "FROM invoice_run r LEFT JOIN invoice_run_partition p ON p.period = r.period "
+                + "WHERE r.period = ? GROUP BY r.period", (rs, rowNum) -> {
+                    Instant startedAt = rs.getTimestamp("started_at").toInstant();
+                    Timestamp finished = rs.getTimestamp("finished_at");
+                    Instant finishedAt = finished == null ? null : finished.toInstant();
+                    long invoiced = rs.getLong("invoiced_accounts");
+                    long elapsedMillis = Math.max(1,
+                            (finishedAt == null ? Instant.now() : finishedAt).toEpochMilli() - startedAt.toEpochMilli());
+                    InvoiceRunStatus status = CodedEnum.fromCode(InvoiceRunStatus.class, rs.getShort("status"));
+                    return new RunProgress(period.toString(), status, rs.getInt("partitions"),
+                            rs.getInt("completed_partitions"), invoiced, startedAt, finishedAt,
+                            invoiced * 1000.0 / elapsedMillis);
+                }, period.toString()).stream().findFirst();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Unfinished partitions keep their checkpoints and are resumed on the next start
+        executor.shutdownNow();
+    }
+
+    private CompletableFuture<RunProgress> run(YearMonth period) {
+        createRunIfAbsent(period);
+        List<Partition> pending = jdbcTemplate.query("SELECT id, partition_index, upper_bound "
+                + "FROM invoice_run_partition WHERE period = ? AND NOT completed ORDER BY partition_index",
+                (rs, rowNum) -> new Partition(rs.getLong("id"), rs.getInt("partition_index"),
+                        rs.getObject("upper_bound", UUID.class)),
+                period.toString());
+        log.info("Invoice run {} : {} partitions to process", period, pending.size());
+
+        Timestamp from = Timestamp.from(period.atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC));
+        Timestamp to = Timestamp.from(period.plusMonths(1).atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC));
+        List<CompletableFuture<Void>> work = new ArrayList<>(pending.size());
+        for (Partition partition : pending) {
+            work.add(CompletableFuture.runAsync(() -> processPartition(period, partition, from, to), executor));
+        }
+
+        // A failed partition leaves the run RUNNING; the next start resumes only what is left.
+        // Partitions left to another replica may still be running, so whichever replica sees
+        // the last one completed marks the run.
+        return CompletableFuture.allOf(work.toArray(CompletableFuture[]::new)).thenApply(done -> {
+            jdbcTemplate.update("UPDATE invoice_run SET status = ?, finished_at = ? WHERE period = ? AND status = ? "
+                    + "AND NOT EXISTS (SELECT 1 FROM invoice_run_partition WHERE period = ? AND NOT completed)",
+                    InvoiceRunStatus.COMPLETED.code(), Timestamp.from(Instant.now()), period.toString(),
+                    InvoiceRunStatus.RUNNING.code(), period.toString());
+            RunProgress progress = progress(period).orElseThrow();
+            if (progress.status() == InvoiceRunStatus.COMPLETED) {
+                log.info("Invoice run {} completed : {} accounts in {} partitions, {} accounts/s", period,
+                        progress.invoicedAccounts(), progress.partitions(),
+                        Math.round(progress.accountsPerSecond()));
+            } else {
+                log.info("Invoice run {} : this instance is done, {} of {} partitions completed", period,
+                        progress.completedPartitions(), progress.partitions());
+            }
+            return progress;
+        });
+    }
+
+    // The run row and its partitions are created in one transaction, so a crash in
+    // between leaves nothing behind and the next start simply plans again
+    private void createRunIfAbsent(YearMonth period) {
+        transactionTemplate.executeWithoutResult(status -> {
+            int created = jdbcTemplate.update(CREATE_RUN, period.toString(), InvoiceRunStatus.RUNNING.code(),
+                    partitions, Timestamp.from(Instant.now()));
+            if (created == 0) {
+                return;
+            }
+            Long active = jdbcTemplate.queryForObject("SELECT count(*) FROM billing_account WHERE status = ?",
+                    Long.class, BillingAccountStatus.ACTIVE.code());
+            long step = Math.max(1, (active + partitions - 1) / partitions);
+            List<UUID> bounds = new ArrayList<>(jdbcTemplate.queryForList(PARTITION_BOUNDS, UUID.class,
+                    BillingAccountStatus.ACTIVE.code(), step, partitions - 1));
+            bounds.add(MAX_ID);
+
+            UUID lower = MIN_ID;
+            List<Object[]> rows = new ArrayList<>(bounds.size());
+            for (int i = 0; i < bounds.size(); i++) {
+                rows.add(new Object[] { period.toString(), i, lower, bounds.get(i), lower });
+                lower = bounds.get(i);
+            }
+            jdbcTemplate.batchUpdate(CREATE_PARTITION, rows);
+            jdbcTemplate.update("UPDATE invoice_run SET partitions = ? WHERE period = ?", rows.size(),
+                    period.toString());
+            log.info("Invoice run {} planned : {} active accounts in {} partitions", period, active, rows.size());
+        });
+    }
+
+    private void processPartition(YearMonth period, Partition partition, Timestamp from, Timestamp to) {
+        long started = System.nanoTime();
+        long invoiced = 0;
+        boolean completed = false;
+        while (!completed) {
+            long chunkStarted = System.nanoTime();
+            ChunkResult chunk = transactionTemplate.execute(status -> invoiceChunk(period, partition, from, to));
+            if (!chunk.claimed()) {
+                log.info("Invoice run {} partition {} is claimed by another instance or done, left to it", period,
+                        partition.index());
+                return;
+            }
+            chunkTimer.record(System.nanoTime() - chunkStarted, TimeUnit.NANOSECONDS);
+            invoiced += chunk.invoiced();
+            invoicedAccounts.increment(chunk.invoiced());
+            completed = chunk.completed();
+        }
+        double seconds = Math.max(1, System.nanoTime() - started) / 1e9;
+        log.info("Invoice run {} partition {} done : {} accounts, {} accounts/s", period, partition.index(),
+                invoiced, Math.round(invoiced / seconds));
+    }
+
+    // Fewer than chunkSize accounts means the range is exhausted
+    private ChunkResult invoiceChunk(YearMonth period, Partition partition, Timestamp from, Timestamp to) {
+        List<UUID> claimed = jdbcTemplate.queryForList(CLAIM, UUID.class, partition.id());
+        if (claimed.isEmpty()) {
+            return NOT_CLAIMED;
+        }
+        UUID after = claimed.get(0);
+        List<AccountTotals> chunk = jdbcTemplate.query(NEXT_CHUNK,
+                (rs, rowNum) -> new AccountTotals(rs.getObject("id", UUID.class), rs.getLong("charges"),
+                        rs.getLong("payments")),
+                BillingAccountStatus.ACTIVE.code(), after, partition.upperBound(), chunkSize, from, to);
+        Timestamp now = Timestamp.from(Instant.now());
+        jdbcTemplate.batchUpdate(INSERT_INVOICE, chunk, chunk.size(), (ps, totals) -> {
+            ps.setObject(1, UuidV7Generator.next());
+            ps.setObject(2, totals.accountId());
+            ps.setString(3, period.toString());
+            ps.setLong(4, totals.chargesMinor());
+            ps.setLong(5, totals.paymentsMinor());
+            ps.setTimestamp(6, now);
+        });
+        UUID last = chunk.isEmpty() ? after : chunk.get(chunk.size() - 1).accountId();
+        boolean completed = chunk.size() < chunkSize;
+        jdbcTemplate.update(CHECKPOINT, last, chunk.size(), completed, partition.id());
+        return new ChunkResult(true, chunk.size(), completed);
+    }
+}
@@ -0,0 +1,129 @@
+package com.pm.billing_service.service;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.pm.billing_service.entity.BalanceSnapshot;
+import com.pm.billing_service.entity.BillingAccount;
+import com.pm.billing_service.entity.BillingAccountStatus;
+import com.pm.billing_service.entity.LedgerEntry;
+import com.pm.billing_service.entity.LedgerEntryType;
+import com.pm.billing_service.repo.BalanceSnapshotRepository;
+import com.pm.billing_service.repo.BillingAccountRepository;
+import com.pm.billing_service.repo.LedgerEntryRepository;
+
+import io.grpc.Status;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Append-only ledger. Entries are never updated or deleted; a balance is the latest
+// snapshot plus the entries after it. Every snapshotEvery-th post of an account also
+// writes a snapshot, so a balance read never sums more than snapshotEvery - 1 entries
+// however long the account's history is.
+@Service
+public class LedgerService {
+
+    public record Posting(long entrySequence, long balanceMinor) {
+    }
+
+    public record Balance(long entrySequence, long balanceMinor) {
+    }
+
+    private final BillingAccountRepository accountRepository;
+    private final LedgerEntryRepository entryRepository;
+    private final BalanceSnapshotRepository snapshotRepository;
+    private final TransactionTemplate writeTransaction;
+    private final TransactionTemplate readTransaction;
+    private final long snapshotEvery;
+    private final DistributionSummary tailEntries;
+
+    public LedgerService(BillingAccountRepository accountRepository, LedgerEntryRepository entryRepository,
+            BalanceSnapshotRepository snapshotRepository, PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${billing.ledger.snapshot-every-entries:100}") long snapshotEvery) {
+        this.accountRepository = accountRepository;
+        this.entryRepository = entryRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        // Repeatable read so the account, snapshot and tail sum all come from one database snapshot
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.readTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotEvery = snapshotEvery;
+        this.tailEntries = DistributionSummary.builder("billing.ledger.balance.tail.entries")
+                .description("Ledger entries summed on top of the latest snapshot per balance read")
+                .register(meterRegistry);
+    }
+
+    // amountMinor is the positive amount in minor units, the type decides its sign.
+    // A repeated idempotencyKey returns the original entry instead of posting again.
+    public Posting post(UUID patientId, LedgerEntryType type, long amountMinor, String description,
+            String idempotencyKey) {
+        if (type == null) {
+            throw Status.INVALID_ARGUMENT.withDescription("Ledger entry type is required").asRuntimeException();
+        }
+        if (amountMinor <= 0) {
+            throw Status.INVALID_ARGUMENT.withDescription("amountMinor must be positive : " + amountMinor)
+                    .asRuntimeException();
+        }
+        String key = idempotencyKey == null || idempotencyKey.isBlank() ? null : idempotencyKey;
+
+        return writeTransaction.execute(status -> {
+            // The row lock orders posts per account, concurrent posts to other accounts do not wait
+            BillingAccount account = accountRepository.findByPatientIdForUpdate(patientId)
+                    .orElseThrow(() -> noAccount(patientId));
+            UUID accountId = account.getId();
+
+            if (key != null) {
+                Optional<LedgerEntry> existing = entryRepository.findByAccountIdAndIdempotencyKey(accountId, key);
+                if (existing.isPresent()) {
+                    return new Posting(existing.get().getEntrySequence(), balance(account).balanceMinor());
+                }
+            }
+            if (type == LedgerEntryType.CHARGE && account.getStatus() == BillingAccountStatus.INACTIVE) {
+                throw Status.FAILED_PRECONDITION
+                        .withDescription("Billing account for patient " + patientId + " is inactive")
+                        .asRuntimeException();
+            }
+
+            long signedAmount = type == LedgerEntryType.CHARGE ? amountMinor : -amountMinor;
+            long balance = Math.addExact(balance(account).balanceMinor(), signedAmount);
+
+            long sequence = account.getLedgerSequence() + 1;
+            Instant now = Instant.now();
+            entryRepository.save(new LedgerEntry(accountId, sequence, type, signedAmount, description, key, now));
+            account.setLedgerSequence(sequence);
+            // Sequences have no gaps, so the latest snapshot is always at the last multiple of snapshotEvery
+            if (sequence % snapshotEvery == 0) {
+                snapshotRepository.save(new BalanceSnapshot(accountId, sequence, balance, now));
+            }
+            return new Posting(sequence, balance);
+        });
+    }
+
+    public Balance getBalance(UUID patientId) {
+        return readTransaction.execute(status -> balance(accountRepository.findByPatientId(patientId)
+                .orElseThrow(() -> noAccount(patientId))));
+    }
+
+    private Balance balance(BillingAccount account) {
+        Optional<BalanceSnapshot> snapshot = snapshotRepository
+                .findFirstByAccountIdOrderByLastEntrySequenceDesc(account.getId());
+        long snapshotSequence = snapshot.map(BalanceSnapshot::getLastEntrySequence).orElse(0L);
+        tailEntries.record(account.getLedgerSequence() - snapshotSequence);
+        long balance = snapshot.map(BalanceSnapshot::getBalanceMinor).orElse(0L)
+                + entryRepository.sumAfter(account.getId(), snapshotSequence);
+        return new Balance(account.getLedgerSequence(), balance);
+    }
+
+    private static RuntimeException noAccount(UUID patientId) {
+        return Status.NOT_FOUND.withDescription("No billing account for patient " + patientId).asRuntimeException();
+    }
+}
@@ -0,0 +1,41 @@
+package com.pm.billing_service.entity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+class CodedEnumConverterTest {
+
+    // The codes already written to the database; a failure here means existing rows change meaning
+    @Test
+    void codesAreTheOnesAlreadyStored() {
+        assertEquals(Map.of(BillingAccountStatus.ACTIVE, (short) 0, BillingAccountStatus.INACTIVE, (short) 1),
+                codes(BillingAccountStatus.values()));
+        assertEquals(Map.of(LedgerEntryType.CHARGE, (short) 0, LedgerEntryType.PAYMENT, (short) 1),
+                codes(LedgerEntryType.values()));
+        assertEquals(Map.of(InvoiceRunStatus.RUNNING, (short) 0, InvoiceRunStatus.COMPLETED, (short) 1),
+                codes(InvoiceRunStatus.values()));
+    }
+
+    @Test
+    void convertsBothWays() {
+        LedgerEntryTypeConverter converter = new LedgerEntryTypeConverter();
+        for (LedgerEntryType type : LedgerEntryType.values()) {
+            assertEquals(type, converter.convertToEntityAttribute(converter.convertToDatabaseColumn(type)));
+        }
+        assertNull(converter.convertToDatabaseColumn(null));
+        assertNull(converter.convertToEntityAttribute(null));
+        assertThrows(IllegalArgumentException.class, () -> converter.convertToEntityAttribute((short) 99));
+    }
+
+    private static <E extends Enum<E> & CodedEnum> Map<E, Short> codes(E[] values) {
+        return Arrays.stream(values).collect(Collectors.toMap(Function.identity(), CodedEnum::code));
+    }
+}
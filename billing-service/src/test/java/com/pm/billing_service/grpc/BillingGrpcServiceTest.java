@@ -0,0 +1,112 @@
+package com.pm.billing_service.grpc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.pm.billing_service.entity.BillingAccountStatus;
+import com.pm.billing_service.repo.BillingAccountRepository;
+import com.pm.billingservice.grpc.BillingRequest;
+import com.pm.billingservice.grpc.BillingResponse;
+import com.pm.billingservice.grpc.PatientDeletionRequest;
+
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+
+@SpringBootTest
+class BillingGrpcServiceTest {
+
+    @Autowired
+    private BillingGrpcService grpcService;
+
+    @Autowired
+    private BillingAccountRepository repository;
+
+    @BeforeEach
+    void clearAccounts() {
+        repository.deleteAll();
+    }
+
+    @Test
+    void secondAccountForAPatientIsAlreadyExists() {
+        UUID patientId = UUID.randomUUID();
+        Recorder<BillingResponse> first = new Recorder<>();
+        grpcService.createBillingAccount(request(patientId, "Jane Doe"), first);
+        Recorder<BillingResponse> second = new Recorder<>();
+        grpcService.createBillingAccount(request(patientId, "Jane Doe"), second);
+
+        assertNull(first.error);
+        assertEquals(BillingAccountStatus.ACTIVE.name(), first.values.get(0).getStatus());
+        assertEquals(Status.Code.ALREADY_EXISTS, second.error.getCode());
+    }
+
+    @Test
+    void otherIntegrityFailuresAreNotAlreadyExists() {
+        Recorder<BillingResponse> recorder = new Recorder<>();
+        // Longer than the name column
+        grpcService.createBillingAccount(request(UUID.randomUUID(), "x".repeat(300)), recorder);
+
+        assertEquals(Status.Code.INVALID_ARGUMENT, recorder.error.getCode());
+        assertEquals(0, repository.count());
+    }
+
+    @Test
+    void deletionDeactivatesTheAccountAndReturnsItsId() {
+        UUID patientId = UUID.randomUUID();
+        Recorder<BillingResponse> created = new Recorder<>();
+        grpcService.createBillingAccount(request(patientId, "Jane Doe"), created);
+
+        Recorder<BillingResponse> deleted = new Recorder<>();
+        grpcService.processPatientDeletion(PatientDeletionRequest.newBuilder()
+                .setPatientId(patientId.toString()).build(), deleted);
+
+        assertNull(deleted.error);
+        assertEquals(created.values.get(0).getAccountId(), deleted.values.get(0).getAccountId());
+        assertEquals(BillingAccountStatus.INACTIVE.name(), deleted.values.get(0).getStatus());
+        assertEquals(BillingAccountStatus.INACTIVE, repository.findByPatientId(patientId).orElseThrow().getStatus());
+    }
+
+    @Test
+    void deletionOfAPatientWithoutAccountIsNotFound() {
+        Recorder<BillingResponse> recorder = new Recorder<>();
+        grpcService.processPatientDeletion(PatientDeletionRequest.newBuilder()
+                .setPatientId(UUID.randomUUID().toString()).build(), recorder);
+
+        assertEquals(Status.Code.NOT_FOUND, recorder.error.getCode());
+    }
+
+    private static BillingRequest request(UUID patientId, String name) {
+        return BillingRequest.newBuilder()
+                .setPatientId(patientId.toString())
+                .setName(name)
+                .setEmail(patientId + "@example.com")
+                .build();
+    }
+
+    private static final class Recorder<T> implements StreamObserver<T> {
+        private final List<T> values = new ArrayList<>();
+        private Status error;
+
+        @Override
+        public void onNext(T value) {
+            values.add(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = Status.fromThrowable(t);
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.pm.billing_service.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.pm.billing_service.entity.BillingAccount;
+import com.pm.billing_service.entity.BillingAccountStatus;
+import com.pm.billing_service.repo.BillingAccountRepository;
+import com.pm.billingservice.grpc.BillingItemResult;
+import com.pm.billingservice.grpc.BillingRequest;
+
+@SpringBootTest(properties = "billing.batch.chunk-size=3")
+class BillingAccountBatchServiceTest {
+
+    @Autowired
+    private BillingAccountBatchService batchService;
+
+    @Autowired
+    private BillingAccountRepository repository;
+
+    @BeforeEach
+    void clearAccounts() {
+        repository.deleteAll();
+    }
+
+    @Test
+    void createsEveryAccountAcrossChunks() {
+        List<BillingRequest> requests = List.of(request(UUID.randomUUID()), request(UUID.randomUUID()),
+                request(UUID.randomUUID()), request(UUID.randomUUID()), request(UUID.randomUUID()));
+
+        List<BillingItemResult> results = batchService.createAll(requests, 10);
+
+        assertEquals(5, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            BillingItemResult result = results.get(i);
+            assertEquals(10 + i, result.getIndex());
+            assertEquals(requests.get(i).getPatientId(), result.getPatientId());
+            assertEquals(BillingAccountStatus.ACTIVE.name(), result.getStatus());
+            BillingAccount account = repository.findById(UUID.fromString(result.getAccountId())).orElseThrow();
+            assertEquals(requests.get(i).getPatientId(), account.getPatientId().toString());
+        }
+        assertEquals(5, repository.count());
+    }
+
+    @Test
+    void failingChunkFallsBackToItemsAndOnlyTheBadOnesFail() {
+        UUID existing = UUID.randomUUID();
+        batchService.createAll(List.of(request(existing)), 0);
+        UUID repeated = UUID.randomUUID();
+        // One chunk of three: a patient that already has an account, a new one, and the
+        // new one again; then a chunk holding an id that is not a UUID and a valid one
+        List<BillingRequest> requests = List.of(request(existing), request(repeated), request(repeated),
+                BillingRequest.newBuilder().setPatientId("not-a-uuid").setName("x").setEmail("x@example.com")
+                        .build(),
+                request(UUID.randomUUID()));
+
+        List<BillingItemResult> results = batchService.createAll(requests, 0);
+
+        assertFailed(results.get(0), 0);
+        assertEquals(BillingAccountStatus.ACTIVE.name(), results.get(1).getStatus());
+        assertFailed(results.get(2), 2);
+        assertFailed(results.get(3), 3);
+        assertTrue(results.get(3).getErrorMessage().contains("not-a-uuid"));
+        assertEquals(BillingAccountStatus.ACTIVE.name(), results.get(4).getStatus());
+        // The first account plus the two that were created, nothing half-written
+        assertEquals(3, repository.count());
+        assertTrue(repository.findByPatientId(repeated).isPresent());
+    }
+
+    private static void assertFailed(BillingItemResult result, int index) {
+        assertEquals(index, result.getIndex());
+        assertEquals(BillingAccountBatchService.FAILED, result.getStatus());
+        assertTrue(result.getAccountId().isEmpty());
+        assertFalse(result.getErrorMessage().isEmpty());
+    }
+
+    private static BillingRequest request(UUID patientId) {
+        return BillingRequest.newBuilder()
+                .setPatientId(patientId.toString())
+                .setName("Patient " + patientId)
+                .setEmail(patientId + "@example.com")
+                .build();
+    }
+}
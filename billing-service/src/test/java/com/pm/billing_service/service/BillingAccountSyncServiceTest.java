@@ -0,0 +1,83 @@
+package com.pm.billing_service.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.pm.billing_service.entity.BillingAccount;
+import com.pm.billing_service.entity.BillingAccountStatus;
+import com.pm.billing_service.repo.BillingAccountRepository;
+import com.pm.billing_service.service.BillingAccountSyncService.AccountState;
+
+// Runs the upsert's native SQL against H2 in PostgreSQL mode
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:account_sync_db;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE",
+        "spring.jpa.database-platform=org.hibernate.dialect.PostgreSQLDialect",
+        "billing.kafka.upsert-chunk-size=2" })
+class BillingAccountSyncServiceTest {
+
+    @Autowired
+    private BillingAccountSyncService syncService;
+
+    @Autowired
+    private BillingAccountRepository repository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void clearAccounts() {
+        repository.deleteAll();
+    }
+
+    @Test
+    void insertsNewAccountsAcrossChunks() {
+        List<AccountState> states = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            states.add(new AccountState(UUID.randomUUID(), "Patient " + i, "patient" + i + "@example.com",
+                    BillingAccountStatus.ACTIVE));
+        }
+
+        syncService.upsertAll(states);
+
+        assertEquals(5, repository.count());
+        for (AccountState state : states) {
+            BillingAccount account = repository.findByPatientId(state.patientId()).orElseThrow();
+            assertEquals(state.name(), account.getName());
+            assertEquals(state.email(), account.getEmail());
+            assertEquals(BillingAccountStatus.ACTIVE, account.getStatus());
+            assertEquals(0L, account.getLedgerSequence());
+        }
+    }
+
+    @Test
+    void existingAccountKeepsItsIdAndLedgerAndTakesTheNewState() {
+        UUID patientId = UUID.randomUUID();
+        syncService.upsertAll(List.of(new AccountState(patientId, "Jane Doe", "jane@example.com",
+                BillingAccountStatus.ACTIVE)));
+        BillingAccount created = repository.findByPatientId(patientId).orElseThrow();
+        jdbcTemplate.update("UPDATE billing_account SET ledger_sequence = 7 WHERE id = ?", created.getId());
+
+        AccountState deleted = new AccountState(patientId, "Jane Roe", "jane.roe@example.com",
+                BillingAccountStatus.INACTIVE);
+        syncService.upsertAll(List.of(deleted));
+        // A replayed event changes nothing
+        syncService.upsertAll(List.of(deleted));
+
+        assertEquals(1, repository.count());
+        BillingAccount account = repository.findByPatientId(patientId).orElseThrow();
+        assertEquals(created.getId(), account.getId());
+        assertEquals("Jane Roe", account.getName());
+        assertEquals("jane.roe@example.com", account.getEmail());
+        assertEquals(BillingAccountStatus.INACTIVE, account.getStatus());
+        assertEquals(7L, account.getLedgerSequence());
+    }
+}
@@ -0,0 +1,161 @@
+package com.pm.billing_service.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.pm.billing_service.entity.BillingAccount;
+import com.pm.billing_service.entity.BillingAccountStatus;
+import com.pm.billing_service.entity.InvoiceRunStatus;
+import com.pm.billing_service.entity.LedgerEntryType;
+import com.pm.billing_service.repo.BillingAccountRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Runs the native partition, claim and checkpoint SQL against H2 in PostgreSQL mode
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:invoice_run_db;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE",
+        "spring.jpa.database-platform=org.hibernate.dialect.PostgreSQLDialect",
+        "billing.invoice.partitions=4", "billing.invoice.chunk-size=7" })
+class InvoiceRunServiceTest {
+
+    private static final int ACCOUNTS = 60;
+
+    @Autowired
+    private InvoiceRunService invoiceRunService;
+
+    @Autowired
+    private BillingAccountRepository accountRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final YearMonth period = YearMonth.now(ZoneOffset.UTC);
+
+    private UUID chargedPatient;
+
+    @BeforeEach
+    void openAccounts() {
+        jdbcTemplate.update("DELETE FROM invoice");
+        jdbcTemplate.update("DELETE FROM invoice_run_partition");
+        jdbcTemplate.update("DELETE FROM invoice_run");
+        jdbcTemplate.update("DELETE FROM balance_snapshot");
+        jdbcTemplate.update("DELETE FROM ledger_entry");
+        accountRepository.deleteAll();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            BillingAccount account = new BillingAccount();
+            account.setPatientId(UUID.randomUUID());
+            account.setName("Patient " + i);
+            account.setEmail("patient" + i + "@example.com");
+            account.setStatus(BillingAccountStatus.ACTIVE);
+            accountRepository.save(account);
+            if (i == 0) {
+                chargedPatient = account.getPatientId();
+            }
+        }
+        BillingAccount inactive = new BillingAccount();
+        inactive.setPatientId(UUID.randomUUID());
+        inactive.setName("Gone");
+        inactive.setEmail("gone@example.com");
+        inactive.setStatus(BillingAccountStatus.INACTIVE);
+        accountRepository.save(inactive);
+        // Written directly: the PostgreSQL dialect's row locks (FOR NO KEY UPDATE) do not parse in H2
+        UUID accountId = accountRepository.findByPatientId(chargedPatient).orElseThrow().getId();
+        Timestamp now = Timestamp.from(Instant.now());
+        jdbcTemplate.update("INSERT INTO ledger_entry (id, account_id, entry_sequence, type, amount_minor, created_at) "
+                + "VALUES (1, ?, 1, ?, 5000, ?), (2, ?, 2, ?, -1200, ?)", accountId,
+                LedgerEntryType.CHARGE.code(), now, accountId, LedgerEntryType.PAYMENT.code(), now);
+    }
+
+    @Test
+    void invoicesEveryActiveAccountOnceWithItsMonthTotals() throws Exception {
+        InvoiceRunService.RunProgress progress = invoiceRunService.start(period).get(30, TimeUnit.SECONDS);
+
+        assertEquals(InvoiceRunStatus.COMPLETED, progress.status());
+        assertEquals(ACCOUNTS, progress.invoicedAccounts());
+        assertEquals(progress.partitions(), progress.completedPartitions());
+        assertInvoicedOnce();
+        UUID accountId = accountRepository.findByPatientId(chargedPatient).orElseThrow().getId();
+        assertEquals(5000L, jdbcTemplate.queryForObject(
+                "SELECT charges_minor FROM invoice WHERE account_id = ?", Long.class, accountId));
+        assertEquals(1200L, jdbcTemplate.queryForObject(
+                "SELECT payments_minor FROM invoice WHERE account_id = ?", Long.class, accountId));
+
+        // A completed period is a no-op and counts nothing twice
+        assertEquals(ACCOUNTS, invoiceRunService.start(period).get(30, TimeUnit.SECONDS).invoicedAccounts());
+        assertInvoicedOnce();
+    }
+
+    @Test
+    void replicasShareThePartitionsWithoutCountingTwice() throws Exception {
+        // Two more instances on the same database stand in for other replicas
+        InvoiceRunService replica = new InvoiceRunService(jdbcTemplate, transactionManager,
+                new SimpleMeterRegistry(), 4, 3, 7);
+        InvoiceRunService another = new InvoiceRunService(jdbcTemplate, transactionManager,
+                new SimpleMeterRegistry(), 4, 3, 7);
+        try {
+            CompletableFuture<InvoiceRunService.RunProgress> first = invoiceRunService.start(period);
+            CompletableFuture<InvoiceRunService.RunProgress> second = replica.start(period);
+            CompletableFuture<InvoiceRunService.RunProgress> third = another.start(period);
+            CompletableFuture.allOf(first, second, third).get(30, TimeUnit.SECONDS);
+        } finally {
+            replica.shutdown();
+            another.shutdown();
+        }
+
+        InvoiceRunService.RunProgress progress = invoiceRunService.progress(period).orElseThrow();
+        assertEquals(InvoiceRunStatus.COMPLETED, progress.status());
+        assertEquals(ACCOUNTS, progress.invoicedAccounts());
+        assertInvoicedOnce();
+    }
+
+    @Test
+    void resumesAPartitionFromItsCheckpoint() throws Exception {
+        invoiceRunService.start(period).get(30, TimeUnit.SECONDS);
+        // Reopen the first partition as a crash after its first chunk would have left it
+        Long partitionId = jdbcTemplate.queryForObject(
+                "SELECT id FROM invoice_run_partition WHERE period = ? AND partition_index = 0", Long.class,
+                period.toString());
+        UUID afterFirstChunk = jdbcTemplate.queryForObject(
+                "SELECT id FROM billing_account WHERE status = ? ORDER BY id LIMIT 1 OFFSET 6", UUID.class,
+                BillingAccountStatus.ACTIVE.code());
+        jdbcTemplate.update("DELETE FROM invoice WHERE account_id > ? AND account_id <= "
+                + "(SELECT upper_bound FROM invoice_run_partition WHERE id = ?)", afterFirstChunk, partitionId);
+        jdbcTemplate.update("UPDATE invoice_run_partition SET checkpoint = ?, invoiced_accounts = 7, "
+                + "completed = false WHERE id = ?", afterFirstChunk, partitionId);
+        jdbcTemplate.update("UPDATE invoice_run SET status = ?, finished_at = NULL WHERE period = ?",
+                InvoiceRunStatus.RUNNING.code(), period.toString());
+
+        InvoiceRunService.RunProgress progress = invoiceRunService.start(period).get(30, TimeUnit.SECONDS);
+
+        assertEquals(InvoiceRunStatus.COMPLETED, progress.status());
+        assertEquals(ACCOUNTS, progress.invoicedAccounts());
+        assertInvoicedOnce();
+    }
+
+    private void assertInvoicedOnce() {
+        assertEquals(ACCOUNTS, jdbcTemplate.queryForObject(
+                "SELECT count(DISTINCT account_id) FROM invoice WHERE period = ?", Integer.class, period.toString()));
+        assertEquals(ACCOUNTS, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM invoice WHERE period = ?", Integer.class, period.toString()));
+        assertEquals(ACCOUNTS, jdbcTemplate.queryForObject(
+                "SELECT SUM(invoiced_accounts) FROM invoice_run_partition WHERE period = ?", Integer.class,
+                period.toString()));
+    }
+}
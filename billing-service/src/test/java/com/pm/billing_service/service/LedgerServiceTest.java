@@ -0,0 +1,122 @@
+package com.pm.billing_service.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.pm.billing_service.entity.BalanceSnapshot;
+import com.pm.billing_service.entity.BillingAccount;
+import com.pm.billing_service.entity.BillingAccountStatus;
+import com.pm.billing_service.entity.LedgerEntryType;
+import com.pm.billing_service.repo.BalanceSnapshotRepository;
+import com.pm.billing_service.repo.BillingAccountRepository;
+import com.pm.billing_service.repo.LedgerEntryRepository;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+
+@SpringBootTest(properties = "billing.ledger.snapshot-every-entries=3")
+class LedgerServiceTest {
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private BillingAccountRepository accountRepository;
+
+    @Autowired
+    private LedgerEntryRepository entryRepository;
+
+    @Autowired
+    private BalanceSnapshotRepository snapshotRepository;
+
+    private UUID patientId;
+
+    @BeforeEach
+    void openAccount() {
+        snapshotRepository.deleteAll();
+        entryRepository.deleteAll();
+        accountRepository.deleteAll();
+        patientId = UUID.randomUUID();
+        BillingAccount account = new BillingAccount();
+        account.setPatientId(patientId);
+        account.setName("Jane Doe");
+        account.setEmail("jane@example.com");
+        account.setStatus(BillingAccountStatus.ACTIVE);
+        accountRepository.save(account);
+    }
+
+    @Test
+    void balanceIsLatestSnapshotPlusTheEntriesAfterIt() {
+        long expected = 0;
+        for (int i = 1; i <= 7; i++) {
+            LedgerEntryType type = i % 3 == 0 ? LedgerEntryType.PAYMENT : LedgerEntryType.CHARGE;
+            long amount = 100L * i;
+            expected += type == LedgerEntryType.CHARGE ? amount : -amount;
+
+            LedgerService.Posting posting = ledgerService.post(patientId, type, amount, "entry " + i, null);
+
+            assertEquals(i, posting.entrySequence());
+            assertEquals(expected, posting.balanceMinor());
+        }
+
+        // Snapshots after entries 3 and 6, so the read sums snapshot 6 and entry 7
+        List<BalanceSnapshot> snapshots = snapshotRepository.findAll();
+        assertEquals(2, snapshots.size());
+        BalanceSnapshot latest = snapshotRepository.findFirstByAccountIdOrderByLastEntrySequenceDesc(
+                accountRepository.findByPatientId(patientId).orElseThrow().getId()).orElseThrow();
+        assertEquals(6, latest.getLastEntrySequence());
+        assertEquals(expected - 700, latest.getBalanceMinor());
+
+        LedgerService.Balance balance = ledgerService.getBalance(patientId);
+        assertEquals(7, balance.entrySequence());
+        assertEquals(expected, balance.balanceMinor());
+    }
+
+    @Test
+    void repeatedIdempotencyKeyReturnsTheOriginalEntry() {
+        LedgerService.Posting first = ledgerService.post(patientId, LedgerEntryType.CHARGE, 2500, "visit", "visit-1");
+        LedgerService.Posting replay = ledgerService.post(patientId, LedgerEntryType.CHARGE, 2500, "visit",
+                "visit-1");
+        LedgerService.Posting other = ledgerService.post(patientId, LedgerEntryType.CHARGE, 500, "lab", "lab-1");
+
+        assertEquals(first.entrySequence(), replay.entrySequence());
+        assertEquals(2500, replay.balanceMinor());
+        assertEquals(2, other.entrySequence());
+        assertEquals(3000, other.balanceMinor());
+        assertEquals(2, entryRepository.count());
+        assertEquals(3000, ledgerService.getBalance(patientId).balanceMinor());
+    }
+
+    @Test
+    void inactiveAccountTakesPaymentsButNoCharges() {
+        ledgerService.post(patientId, LedgerEntryType.CHARGE, 1000, "visit", null);
+        accountRepository.deactivateByPatientId(patientId);
+
+        StatusRuntimeException charge = assertThrows(StatusRuntimeException.class,
+                () -> ledgerService.post(patientId, LedgerEntryType.CHARGE, 1000, "visit", null));
+        LedgerService.Posting payment = ledgerService.post(patientId, LedgerEntryType.PAYMENT, 1000, "paid", null);
+
+        assertEquals(Status.Code.FAILED_PRECONDITION, charge.getStatus().getCode());
+        assertEquals(0, payment.balanceMinor());
+    }
+
+    @Test
+    void rejectsNonPositiveAmountsAndUnknownPatients() {
+        StatusRuntimeException zero = assertThrows(StatusRuntimeException.class,
+                () -> ledgerService.post(patientId, LedgerEntryType.CHARGE, 0, "nothing", null));
+        StatusRuntimeException unknown = assertThrows(StatusRuntimeException.class,
+                () -> ledgerService.getBalance(UUID.randomUUID()));
+
+        assertEquals(Status.Code.INVALID_ARGUMENT, zero.getStatus().getCode());
+        assertEquals(Status.Code.NOT_FOUND, unknown.getStatus().getCode());
+        assertEquals(0, entryRepository.count());
+    }
+}
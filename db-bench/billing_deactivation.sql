@@ -0,0 +1,99 @@
+-- Deactivation latency at 10M billing accounts: the old schema (varchar patient_id with
+-- no index, varchar status, load then save) vs the new one (uuid patient_id with a
+-- unique index, smallint status, single UPDATE ... RETURNING).
+--
+-- Run against a scratch database on the same Postgres image as docker-compose:
+--   docker exec -i patient-service-db psql -U admin_user -d billing_db < db-bench/billing_deactivation.sql
+--
+-- Loading 2 x 10M rows takes a few minutes and about 3 GB of disk.
+
+\timing on
+
+DROP TABLE IF EXISTS bench_account_old;
+DROP TABLE IF EXISTS bench_account_new;
+
+CREATE TABLE bench_account_old (
+    id uuid PRIMARY KEY,
+    patient_id varchar(255),
+    name varchar(255),
+    email varchar(255),
+    status varchar(255)
+);
+
+CREATE TABLE bench_account_new (
+    id uuid PRIMARY KEY,
+    patient_id uuid NOT NULL CONSTRAINT uk_bench_account_patient_id UNIQUE,
+    name varchar(255),
+    email varchar(255),
+    status smallint NOT NULL
+);
+
+INSERT INTO bench_account_new
+SELECT gen_random_uuid(), gen_random_uuid(), 'patient ' || g, 'patient' || g || '@example.com', 0
+FROM generate_series(1, 10000000) g;
+
+INSERT INTO bench_account_old
+SELECT id, patient_id::text, name, email, 'ACTIVE' FROM bench_account_new;
+
+VACUUM ANALYZE bench_account_old;
+VACUUM ANALYZE bench_account_new;
+
+SELECT relname,
+       pg_size_pretty(pg_table_size(oid)) AS table_size,
+       pg_size_pretty(pg_indexes_size(oid)) AS index_size
+FROM pg_class
+WHERE relname IN ('bench_account_old', 'bench_account_new')
+ORDER BY relname;
+
+-- The same 200 random patients for both schemas
+CREATE TEMP TABLE bench_targets AS
+SELECT patient_id FROM bench_account_new TABLESAMPLE SYSTEM (0.01) LIMIT 200;
+
+-- Old path: findByPatientId (sequential scan) then save by id, as BillingGrpcService did
+DO $$
+DECLARE
+    target uuid;
+    account_id uuid;
+    started timestamptz;
+    total interval := interval '0';
+    n int := 0;
+BEGIN
+    FOR target IN SELECT patient_id FROM bench_targets LOOP
+        started := clock_timestamp();
+        SELECT id INTO account_id FROM bench_account_old WHERE patient_id = target::text;
+        UPDATE bench_account_old SET status = 'INACTIVE' WHERE id = account_id;
+        total := total + (clock_timestamp() - started);
+        n := n + 1;
+    END LOOP;
+    RAISE NOTICE 'old schema: % deactivations, mean % ms', n,
+        round((extract(epoch FROM total) * 1000 / n)::numeric, 3);
+END
+$$;
+
+-- New path: BillingAccountRepository.deactivateByPatientId
+DO $$
+DECLARE
+    target uuid;
+    account_id uuid;
+    started timestamptz;
+    total interval := interval '0';
+    n int := 0;
+BEGIN
+    FOR target IN SELECT patient_id FROM bench_targets LOOP
+        started := clock_timestamp();
+        UPDATE bench_account_new SET status = 1 WHERE patient_id = target RETURNING id INTO account_id;
+        total := total + (clock_timestamp() - started);
+        n := n + 1;
+    END LOOP;
+    RAISE NOTICE 'new schema: % deactivations, mean % ms', n,
+        round((extract(epoch FROM total) * 1000 / n)::numeric, 3);
+END
+$$;
+
+EXPLAIN (ANALYZE, BUFFERS)
+UPDATE bench_account_new SET status = 1
+WHERE patient_id = (SELECT patient_id FROM bench_targets LIMIT 1)
+RETURNING id;
+
+DROP TABLE bench_account_old;
+DROP TABLE bench_account_new;
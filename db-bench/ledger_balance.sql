@@ -0,0 +1,95 @@
+-- Balance read cost for an account with a long history: summing every ledger entry vs
+-- the latest balance snapshot plus the entries after it, as LedgerService.getBalance does.
+--
+-- Run against a scratch database on the same Postgres image as docker-compose:
+--   docker exec -i patient-service-db psql -U admin_user -d billing_db < db-bench/ledger_balance.sql
+--
+-- 1,000 accounts with 5,000 entries each (5M rows), snapshots every 100 entries.
+
+\timing on
+
+DROP TABLE IF EXISTS bench_ledger_entry;
+DROP TABLE IF EXISTS bench_balance_snapshot;
+
+CREATE TABLE bench_ledger_entry (
+    id bigint PRIMARY KEY,
+    account_id uuid NOT NULL,
+    entry_sequence bigint NOT NULL,
+    type smallint NOT NULL,
+    amount_minor bigint NOT NULL,
+    CONSTRAINT uk_bench_ledger_entry_account_sequence UNIQUE (account_id, entry_sequence)
+);
+
+CREATE TABLE bench_balance_snapshot (
+    id bigint PRIMARY KEY,
+    account_id uuid NOT NULL,
+    last_entry_sequence bigint NOT NULL,
+    balance_minor bigint NOT NULL
+);
+CREATE INDEX idx_bench_balance_snapshot_account_sequence
+    ON bench_balance_snapshot (account_id, last_entry_sequence);
+
+CREATE TEMP TABLE bench_accounts AS
+SELECT gen_random_uuid() AS account_id FROM generate_series(1, 1000);
+
+-- Sequences end at 5,042 so every read has a 42 entry tail past the last snapshot
+INSERT INTO bench_ledger_entry
+SELECT row_number() OVER (), a.account_id, s, s % 2,
+       CASE WHEN s % 2 = 0 THEN 2500 ELSE -2000 END
+FROM bench_accounts a, generate_series(1, 5042) s;
+
+INSERT INTO bench_balance_snapshot
+SELECT row_number() OVER (), e.account_id, e.entry_sequence,
+       sum(e.amount_minor) OVER (PARTITION BY e.account_id ORDER BY e.entry_sequence)
+FROM bench_ledger_entry e;
+DELETE FROM bench_balance_snapshot WHERE last_entry_sequence % 100 <> 0;
+
+VACUUM ANALYZE bench_ledger_entry;
+VACUUM ANALYZE bench_balance_snapshot;
+
+-- Full-history sum
+DO $$
+DECLARE
+    target uuid;
+    balance bigint;
+    started timestamptz;
+    total interval := interval '0';
+    n int := 0;
+BEGIN
+    FOR target IN SELECT account_id FROM bench_accounts LIMIT 200 LOOP
+        started := clock_timestamp();
+        SELECT coalesce(sum(amount_minor), 0) INTO balance FROM bench_ledger_entry WHERE account_id = target;
+        total := total + (clock_timestamp() - started);
+        n := n + 1;
+    END LOOP;
+    RAISE NOTICE 'full sum: % reads, mean % ms', n, round((extract(epoch FROM total) * 1000 / n)::numeric, 3);
+END
+$$;
+
+-- Latest snapshot plus tail
+DO $$
+DECLARE
+    target uuid;
+    snapshot_sequence bigint;
+    snapshot_balance bigint;
+    balance bigint;
+    started timestamptz;
+    total interval := interval '0';
+    n int := 0;
+BEGIN
+    FOR target IN SELECT account_id FROM bench_accounts LIMIT 200 LOOP
+        started := clock_timestamp();
+        SELECT last_entry_sequence, balance_minor INTO snapshot_sequence, snapshot_balance
+        FROM bench_balance_snapshot WHERE account_id = target
+        ORDER BY last_entry_sequence DESC LIMIT 1;
+        SELECT coalesce(snapshot_balance, 0) + coalesce(sum(amount_minor), 0) INTO balance
+        FROM bench_ledger_entry WHERE account_id = target AND entry_sequence > coalesce(snapshot_sequence, 0);
+        total := total + (clock_timestamp() - started);
+        n := n + 1;
+    END LOOP;
+    RAISE NOTICE 'snapshot + tail: % reads, mean % ms', n, round((extract(epoch FROM total) * 1000 / n)::numeric, 3);
+END
+$$;
+
+DROP TABLE bench_ledger_entry;
+DROP TABLE bench_balance_snapshot;
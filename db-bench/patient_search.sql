@@ -0,0 +1,138 @@
+-- GET /patients/search at 1M patients: p50 and p99 of PatientRepository's first-page query
+-- for a mix of terms, and the previous unbounded ranking for comparison.
+--
+-- Run against a scratch database on the same Postgres image as docker-compose:
+--   docker exec -i patient-service-db psql -U admin_user -d db < db-bench/patient_search.sql
+-- Takes a few minutes, mostly building the data and indexes.
+--
+-- Names repeat heavily (60 first x 100 last names, 15 streets, 20 cities), so common
+-- terms match thousands of rows; that is the case ranking and deep paging have to survive.
+
+\timing on
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+DROP TABLE IF EXISTS bench_patient;
+CREATE TABLE bench_patient (
+    id uuid PRIMARY KEY,
+    name varchar(255) NOT NULL,
+    email varchar(255) NOT NULL UNIQUE,
+    address varchar(255) NOT NULL
+);
+
+INSERT INTO bench_patient
+SELECT gen_random_uuid(),
+       f.v || ' ' || l.v,
+       lower(f.v) || '.' || lower(l.v) || g || '@example.com',
+       (g % 997 + 1) || ' ' || s.v || ', ' || c.v
+FROM generate_series(1, 1000000) g
+CROSS JOIN LATERAL (SELECT (ARRAY['Olivia','Liam','Emma','Noah','Amelia','Oliver','Ava','Elijah','Sophia','Lucas',
+        'Isabella','Mason','Mia','Ethan','Harper','James','Evelyn','Benjamin','Abigail','Henry','Emily','Alexander',
+        'Ella','Sebastian','Scarlett','Jack','Grace','Daniel','Chloe','Matthew','Victoria','Samuel','Riley','David',
+        'Aria','Joseph','Lily','Carter','Aurora','Owen','Zoey','Wyatt','Nora','John','Hannah','Luke','Layla',
+        'Gabriel','Leah','Isaac','Stella','Anthony','Hazel','Dylan','Ellie','Leo','Paisley','Lincoln','Audrey',
+        'Jaxon'])[1 + (g * 7) % 60] AS v) f
+CROSS JOIN LATERAL (SELECT (ARRAY['Smith','Johnson','Williams','Brown','Jones','Garcia','Miller','Davis','Rodriguez',
+        'Martinez','Hernandez','Lopez','Gonzalez','Wilson','Anderson','Thomas','Taylor','Moore','Jackson','Martin',
+        'Lee','Perez','Thompson','White','Harris','Sanchez','Clark','Ramirez','Lewis','Robinson','Walker','Young',
+        'Allen','King','Wright','Scott','Torres','Nguyen','Hill','Flores','Green','Adams','Nelson','Baker','Hall',
+        'Rivera','Campbell','Mitchell','Carter','Roberts','Gomez','Phillips','Evans','Turner','Diaz','Parker','Cruz',
+        'Edwards','Collins','Reyes','Stewart','Morris','Morales','Murphy','Cook','Rogers','Gutierrez','Ortiz',
+        'Morgan','Cooper','Peterson','Bailey','Reed','Kelly','Howard','Ramos','Kim','Cox','Ward','Richardson',
+        'Watson','Brooks','Chavez','Wood','James','Bennett','Gray','Mendoza','Ruiz','Hughes','Price','Alvarez',
+        'Castillo','Sanders','Patel','Myers','Long','Ross','Foster','Jimenez'])[1 + (g * 13 + g / 60) % 100] AS v) l
+CROSS JOIN LATERAL (SELECT (ARRAY['Main St','Oak Ave','Pine Rd','Maple Dr','Cedar Ln','Elm St','Lakeview Blvd',
+        'Hillcrest Way','Sunset Ave','Park Pl','River Rd','Washington St','Church St','Highland Ave',
+        'Franklin Ct'])[1 + (g * 11) % 15] AS v) s
+CROSS JOIN LATERAL (SELECT (ARRAY['Springfield','Riverside','Fairview','Georgetown','Salem','Madison','Clinton',
+        'Arlington','Ashland','Dover','Milton','Newport','Oxford','Bristol','Dayton','Franklin','Greenville',
+        'Hudson','Kingston','Lexington'])[1 + (g * 17) % 20] AS v) c;
+
+-- The indexes PatientSearchIndexInitializer creates
+CREATE INDEX bench_patient_name_trgm ON bench_patient USING gin (name gin_trgm_ops);
+CREATE INDEX bench_patient_email_trgm ON bench_patient USING gin (email gin_trgm_ops);
+CREATE INDEX bench_patient_address_trgm ON bench_patient USING gin (address gin_trgm_ops);
+CREATE INDEX bench_patient_name_lower_prefix ON bench_patient (lower(name) text_pattern_ops, id);
+CREATE INDEX bench_patient_email_lower_prefix ON bench_patient (lower(email) text_pattern_ops, id);
+VACUUM ANALYZE bench_patient;
+
+-- PatientRepository.search, with the arguments PatientService passes; EXECUTE plans every call
+-- with the values, as the JDBC driver's custom plans do
+CREATE OR REPLACE FUNCTION bench_search(q text, candidates int, page int)
+RETURNS TABLE (id uuid, rank real) LANGUAGE plpgsql AS $$
+BEGIN
+    RETURN QUERY EXECUTE
+        'SELECT ranked.id, ranked.rank FROM ('
+        || ' SELECT c.id AS id, GREATEST(similarity(c.name, $1), similarity(c.email, $1),'
+        || ' similarity(c.address, $1),'
+        || ' CASE WHEN lower(c.name) LIKE $2 OR lower(c.email) LIKE $2 THEN 1 ELSE 0 END) AS rank'
+        || ' FROM ((SELECT p.id, p.name, p.email, p.address FROM bench_patient p'
+        || ' WHERE lower(p.name) LIKE $2 ORDER BY lower(p.name) USING ~<~, p.id LIMIT $5)'
+        || ' UNION (SELECT p.id, p.name, p.email, p.address FROM bench_patient p'
+        || ' WHERE lower(p.email) LIKE $2 ORDER BY lower(p.email) USING ~<~, p.id LIMIT $5)'
+        || ' UNION (SELECT p.id, p.name, p.email, p.address FROM bench_patient p'
+        || ' WHERE $3 AND p.name % $1 LIMIT $5)'
+        || ' UNION (SELECT p.id, p.name, p.email, p.address FROM bench_patient p'
+        || ' WHERE $4 AND p.email % $1 LIMIT $5)'
+        || ' UNION (SELECT p.id, p.name, p.email, p.address FROM bench_patient p'
+        || ' WHERE $3 AND p.address % $1 LIMIT $5)) c'
+        || ') ranked ORDER BY ranked.rank DESC, ranked.id LIMIT $6'
+        USING q, lower(q) || '%', length(q) >= 3, length(q) >= 3 AND q LIKE '%@%', candidates, page + 1;
+END $$;
+
+-- The query before candidates were bounded: every row any predicate matches is ranked
+CREATE OR REPLACE FUNCTION bench_search_unbounded(q text, page int)
+RETURNS TABLE (id uuid, rank real) LANGUAGE plpgsql AS $$
+BEGIN
+    RETURN QUERY EXECUTE
+        'SELECT p.id, GREATEST(similarity(p.name, $1), similarity(p.email, $1), similarity(p.address, $1),'
+        || ' CASE WHEN p.name ILIKE $2 OR p.email ILIKE $2 THEN 1 ELSE 0 END) AS rank'
+        || ' FROM bench_patient p'
+        || ' WHERE p.name % $1 OR p.email % $1 OR p.address % $1 OR p.name ILIKE $2 OR p.email ILIKE $2'
+        || ' ORDER BY rank DESC, p.id LIMIT $3'
+        USING q, q || '%', page + 1;
+END $$;
+
+-- What PatientRepository.configureSearch sets for the search transaction
+SET synchronize_seqscans = off;
+SET max_parallel_workers_per_gather = 0;
+
+-- A surname, a full name, typos, an email prefix, an email with a typo, address words, a
+-- two-letter prefix and a miss. 50 runs each, after one warm-up run.
+CREATE TEMP TABLE bench_timing (query text, term text, ms float8);
+DO $$
+DECLARE
+    term text;
+    run int;
+    started timestamptz;
+BEGIN
+    FOREACH term IN ARRAY ARRAY['smith', 'olivia smith', 'olivia smth', 'olivia.smith1',
+            'olivia.smth12@example.com', 'lakeview', '12 lakeview blvd', 'em', 'xyzzy'] LOOP
+        PERFORM * FROM bench_search(term, 200, 20);
+        FOR run IN 1..50 LOOP
+            started := clock_timestamp();
+            PERFORM * FROM bench_search(term, 200, 20);
+            INSERT INTO bench_timing VALUES ('bounded', term,
+                    extract(epoch FROM clock_timestamp() - started) * 1000);
+        END LOOP;
+        FOR run IN 1..5 LOOP
+            started := clock_timestamp();
+            PERFORM * FROM bench_search_unbounded(term, 20);
+            INSERT INTO bench_timing VALUES ('unbounded', term,
+                    extract(epoch FROM clock_timestamp() - started) * 1000);
+        END LOOP;
+    END LOOP;
+END $$;
+
+SELECT term, query,
+       round(percentile_cont(0.5) WITHIN GROUP (ORDER BY ms)::numeric, 1) AS p50_ms,
+       round(percentile_cont(0.99) WITHIN GROUP (ORDER BY ms)::numeric, 1) AS p99_ms
+FROM bench_timing GROUP BY term, query ORDER BY term, query;
+
+-- Every bounded run together, as the endpoint would see this mix
+SELECT round(percentile_cont(0.99) WITHIN GROUP (ORDER BY ms)::numeric, 1) AS p99_ms
+FROM bench_timing WHERE query = 'bounded';
+
+DROP FUNCTION bench_search(text, int, int);
+DROP FUNCTION bench_search_unbounded(text, int);
+DROP TABLE bench_patient;
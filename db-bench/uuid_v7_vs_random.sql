@@ -0,0 +1,62 @@
+-- Insert throughput and primary key index size: random (v4) vs time-ordered (v7) UUIDs.
+--
+-- Run against a scratch database on the same Postgres image as docker-compose:
+--   docker exec -i patient-service-db psql -U admin_user -d db < db-bench/uuid_v7_vs_random.sql
+--
+-- Each table gets 5M rows in 500 committed batches of 10k so that the
+-- comparison reflects page splits and buffer misses on the PK index, not batch shape.
+-- Set shared_buffers well below the final index size to see the out-of-RAM behaviour.
+
+\timing on
+
+CREATE EXTENSION IF NOT EXISTS pgcrypto;
+
+-- UuidV7Generator's layout (48-bit ms timestamp, version 7, variant, random tail),
+-- with random bits where the Java generator keeps its 12-bit sequence
+CREATE OR REPLACE FUNCTION bench_uuid_v7() RETURNS uuid AS $$
+DECLARE
+    ts_hex text := lpad(to_hex((extract(epoch FROM clock_timestamp()) * 1000)::bigint), 12, '0');
+    rnd bytea := gen_random_bytes(10);
+BEGIN
+    rnd := set_byte(rnd, 0, (get_byte(rnd, 0) & 15) | 112);
+    rnd := set_byte(rnd, 2, (get_byte(rnd, 2) & 63) | 128);
+    RETURN encode(decode(ts_hex, 'hex') || rnd, 'hex')::uuid;
+END
+$$ LANGUAGE plpgsql VOLATILE;
+
+DROP TABLE IF EXISTS bench_patient_v4;
+DROP TABLE IF EXISTS bench_patient_v7;
+CREATE TABLE bench_patient_v4 (id uuid PRIMARY KEY, name varchar(255) NOT NULL);
+CREATE TABLE bench_patient_v7 (id uuid PRIMARY KEY, name varchar(255) NOT NULL);
+
+-- Random ids
+DO $$
+BEGIN
+    FOR i IN 1..500 LOOP
+        INSERT INTO bench_patient_v4 SELECT gen_random_uuid(), 'patient ' || g FROM generate_series(1, 10000) g;
+        COMMIT;
+    END LOOP;
+END
+$$;
+
+-- Time-ordered ids
+DO $$
+BEGIN
+    FOR i IN 1..500 LOOP
+        INSERT INTO bench_patient_v7 SELECT bench_uuid_v7(), 'patient ' || g FROM generate_series(1, 10000) g;
+        COMMIT;
+    END LOOP;
+END
+$$;
+
+SELECT relname,
+       pg_size_pretty(pg_relation_size(indexrelid)) AS pk_index_size,
+       idx_blks_read,
+       idx_blks_hit
+FROM pg_statio_user_indexes
+WHERE relname IN ('bench_patient_v4', 'bench_patient_v7')
+ORDER BY relname;
+
+DROP TABLE bench_patient_v4;
+DROP TABLE bench_patient_v7;
+DROP FUNCTION bench_uuid_v7();
@@ -0,0 +1,52 @@
+package com.pm.jvm_monitoring;
+
+import java.time.Duration;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+
+// In virtual-thread mode, logs every JFR jdk.VirtualThreadPinned event above the
+// threshold with the frames that held the carrier thread (usually a synchronized
+// block or a native call around blocking IO). Registered by
+// VirtualThreadPinningAutoConfiguration in every service that depends on this module.
+public class VirtualThreadPinningMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private final RecordingStream stream = new RecordingStream();
+    private final long thresholdMs;
+
+    public VirtualThreadPinningMonitor(long thresholdMs) {
+        this.thresholdMs = thresholdMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        stream.enable(PINNED_EVENT).withThreshold(Duration.ofMillis(thresholdMs)).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::report);
+        stream.startAsync();
+        log.info("Watching for virtual threads pinned longer than {} ms", thresholdMs);
+    }
+
+    private void report(RecordedEvent event) {
+        String frames = event.getStackTrace() == null ? "no stack trace"
+                : event.getStackTrace().getFrames().stream()
+                        .limit(8)
+                        .map(frame -> frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                                + ":" + frame.getLineNumber())
+                        .collect(Collectors.joining(" <- "));
+        log.warn("Virtual thread pinned its carrier for {} ms : {}", event.getDuration().toMillis(), frames);
+    }
+
+    @PreDestroy
+    public void stop() {
+        stream.close();
+    }
+}
@@ -0,0 +1,43 @@
+package com.pm.patient_service.cache;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pm.patient_service.dto.PatientResponseDTO;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+// Size-bounded, TTL-evicting read-through cache for GET /patients/{id}.
+// Hit, miss and eviction counts are published as cache.* metrics tagged cache=patients.
+@Component
+public class PatientCache {
+
+    private final Cache<UUID, PatientResponseDTO> cache;
+
+    public PatientCache(MeterRegistry meterRegistry,
+            @Value("${patient.cache.max-size:100000}") long maxSize,
+            @Value("${patient.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "patients");
+    }
+
+    // Returns null without caching anything when the loader finds no patient
+    public PatientResponseDTO get(UUID id, Function<UUID, PatientResponseDTO> loader) {
+        return cache.get(id, loader);
+    }
+
+    public void invalidate(UUID id) {
+        cache.invalidate(id);
+    }
+}
@@ -0,0 +1,113 @@
+package com.pm.patient_service.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.pm.patient_service.repository.PatientRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Bloom filter over every registered email. A negative answer is definite and lets
+// the caller skip the existsByEmail query; a positive one still has to be checked.
+// Emails are never removed, so deletes and email changes only cost false positives
+// until the next rebuild. The unique constraint stays the source of truth.
+@Component
+public class PatientEmailFilter implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(PatientEmailFilter.class);
+
+    private final PatientRepository patientrepository;
+    private final TransactionTemplate transactionTemplate;
+    private final long expectedEmails;
+    private final double falsePositiveRate;
+    private final Counter definiteNegatives;
+    private final Counter possiblePositives;
+
+    private volatile BloomFilter<CharSequence> filter;
+    // Set while a rebuild scans the table so concurrent writes land in both filters
+    private volatile BloomFilter<CharSequence> building;
+    // A lock rather than synchronized: the rebuild blocks on JDBC and must not pin a virtual thread
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    public PatientEmailFilter(PatientRepository patientrepository, PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${patient.email-filter.expected-emails:2000000}") long expectedEmails,
+            @Value("${patient.email-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.patientrepository = patientrepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.expectedEmails = expectedEmails;
+        this.falsePositiveRate = falsePositiveRate;
+        this.definiteNegatives = meterRegistry.counter("patient.email.filter", "result", "negative");
+        this.possiblePositives = meterRegistry.counter("patient.email.filter", "result", "maybe");
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        rebuild();
+    }
+
+    // False only when the email has definitely never been registered
+    public boolean mightContain(String email) {
+        BloomFilter<CharSequence> current = filter;
+        if (current == null || current.mightContain(email)) {
+            possiblePositives.increment();
+            return true;
+        }
+        definiteNegatives.increment();
+        return false;
+    }
+
+    public void put(String email) {
+        if (email == null) {
+            return;
+        }
+        BloomFilter<CharSequence> current = filter;
+        if (current != null) {
+            current.put(email);
+        }
+        BloomFilter<CharSequence> next = building;
+        if (next != null) {
+            next.put(email);
+        }
+    }
+
+    // Periodic rebuild sheds deleted and changed emails and resets the false positive rate
+    @Scheduled(cron = "${patient.email-filter.rebuild-cron:0 0 3 * * *}")
+    public void rebuild() {
+        rebuildLock.lock();
+        try {
+            BloomFilter<CharSequence> next = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8),
+                    expectedEmails, falsePositiveRate);
+            building = next;
+            long[] count = { 0 };
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<String> emails = patientrepository.streamAllEmails()) {
+                    emails.forEach(email -> {
+                        next.put(email);
+                        count[0]++;
+                    });
+                }
+            });
+            filter = next;
+            log.info("Email filter built from {} patients", count[0]);
+        } finally {
+            building = null;
+            rebuildLock.unlock();
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package com.pm.patient_service.controller;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
 
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -12,15 +16,23 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import com.pm.patient_service.dto.BatchPatientResultDTO;
+import com.pm.patient_service.dto.PatientPageResponseDTO;
 import com.pm.patient_service.dto.PatientRequestDTO;
 import com.pm.patient_service.dto.PatientResponseDTO;
 import com.pm.patient_service.dto.validators.CreatePatientValidationGroup;
+import com.pm.patient_service.service.PatientBatchService;
+import com.pm.patient_service.service.PatientExportService;
 import com.pm.patient_service.service.PatientService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.constraints.Size;
 import jakarta.validation.groups.Default;
 
 @RestController
@@ -28,17 +40,59 @@ import jakarta.validation.groups.Default;
 @Tag(name = "Patient Management", description = "APIs for managing patients")
 public class PatientController {
 
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    static final String NEXT_CURSOR = "X-Next-Cursor";
+
     private final PatientService patientservice;
+    private final PatientExportService patientexportservice;
+    private final PatientBatchService patientbatchservice;
 
-    public PatientController(PatientService patientservice) {
+    public PatientController(PatientService patientservice, PatientExportService patientexportservice,
+            PatientBatchService patientbatchservice) {
         this.patientservice = patientservice;
+        this.patientexportservice = patientexportservice;
+        this.patientbatchservice = patientbatchservice;
     }
 
     @GetMapping
-    @Operation(summary = "Gets all patients", description = "Retrieves a list of all patients in the system")
-    public ResponseEntity<List<PatientResponseDTO>> getallpatients() {
-        List<PatientResponseDTO> patients = patientservice.getallpatients();
-        return ResponseEntity.ok().body(patients);
+    @Operation(summary = "Gets all patients", description = "Retrieves a page of patients, pass the X-Next-Cursor header back as cursor to continue")
+    public ResponseEntity<List<PatientResponseDTO>> getallpatients(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate registeredFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate registeredTo,
+            @RequestParam(required = false) String name) {
+        PatientPageResponseDTO page = patientservice.getallpatients(cursor, size, registeredFrom, registeredTo,
+                name);
+        return pageResponse(page);
+    }
+
+    @GetMapping("/search")
+    @Operation(summary = "Search patients", description = "Fuzzy and prefix search over name, email and address, best matches first, pass the X-Next-Cursor header back as cursor to continue")
+    public ResponseEntity<List<PatientResponseDTO>> searchPatients(
+            @RequestParam @Size(min = 3, max = 100, message = "Search term must be between 3 and 100 characters") String q,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        PatientPageResponseDTO page = patientservice.searchPatients(q, cursor, size);
+        return pageResponse(page);
+    }
+
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    @Operation(summary = "Export all patients", description = "Streams every patient as newline-delimited JSON, optionally gzip encoded")
+    public ResponseEntity<StreamingResponseBody> exportPatients(@RequestParam(defaultValue = "false") boolean gzip) {
+        StreamingResponseBody body = out -> patientexportservice.exportNdjson(out, gzip);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(NDJSON);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    @GetMapping("/{id}")
+    @Operation(summary = "Get patient", description = "Retrieves a single patient by id")
+    public ResponseEntity<PatientResponseDTO> getPatient(@PathVariable UUID id) {
+        PatientResponseDTO patient = patientservice.getPatient(id);
+        return ResponseEntity.ok().body(patient);
     }
 
     @PostMapping
@@ -49,6 +103,15 @@ public class PatientController {
         return ResponseEntity.ok().body(patientresponsedto);
     }
 
+    @PostMapping("/batch")
+    @Operation(summary = "Create patients in bulk", description = "Creates many patients at once and reports a result per item")
+    public ResponseEntity<List<BatchPatientResultDTO>> savePatients(
+            @RequestBody List<PatientRequestDTO> patientrequestdtos) {
+        // Items are validated one by one in the service so a bad item does not reject the batch
+        List<BatchPatientResultDTO> results = patientbatchservice.savePatients(patientrequestdtos);
+        return ResponseEntity.ok().body(results);
+    }
+
     @PutMapping("/{id}")
     @Operation(summary = "update patients", description = "Update patients in the system")
     public ResponseEntity<PatientResponseDTO> updatePatient(@PathVariable UUID id,
@@ -64,4 +127,16 @@ public class PatientController {
         return ResponseEntity.ok().body("Patient deleted sucessfully : " + id);
     }
 
+    // The body stays a plain array; the cursor travels in headers, absent on the last page
+    private static ResponseEntity<List<PatientResponseDTO>> pageResponse(PatientPageResponseDTO page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("cursor", page.getNextCursor())
+                    .toUriString();
+            response.header(NEXT_CURSOR, page.getNextCursor());
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return response.body(page.getPatients());
+    }
 }
@@ -0,0 +1,54 @@
+package com.pm.patient_service.dto;
+
+public class BatchPatientResultDTO {
+    public static final String CREATED = "CREATED";
+    public static final String FAILED = "FAILED";
+
+    // Position of the item in the submitted batch
+    private int index;
+    private String status;
+    private PatientResponseDTO patient;
+    private String errorMessage;
+
+    public BatchPatientResultDTO(int index) {
+        this.index = index;
+    }
+
+    public int getIndex() {
+        return this.index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public String getStatus() {
+        return this.status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public PatientResponseDTO getPatient() {
+        return this.patient;
+    }
+
+    public void setPatient(PatientResponseDTO patient) {
+        this.patient = patient;
+    }
+
+    public String getErrorMessage() {
+        return this.errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public void fail(String errorMessage) {
+        this.status = FAILED;
+        this.errorMessage = errorMessage;
+    }
+
+}
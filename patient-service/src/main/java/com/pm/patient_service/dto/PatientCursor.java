@@ -0,0 +1,47 @@
+package com.pm.patient_service.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+import com.pm.patient_service.exception.InvalidCursorException;
+
+// Position of the last patient returned, handed to clients as an opaque token
+public class PatientCursor {
+    private final LocalDate registeredDate;
+    private final UUID id;
+
+    public PatientCursor(LocalDate registeredDate, UUID id) {
+        this.registeredDate = registeredDate;
+        this.id = id;
+    }
+
+    public LocalDate getRegisteredDate() {
+        return this.registeredDate;
+    }
+
+    public UUID getId() {
+        return this.id;
+    }
+
+    public String encode() {
+        String raw = registeredDate + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static PatientCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            if (separator < 0) {
+                throw new InvalidCursorException("Malformed page cursor : " + token);
+            }
+            return new PatientCursor(LocalDate.parse(raw.substring(0, separator)),
+                    UUID.fromString(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidCursorException("Malformed page cursor : " + token);
+        }
+    }
+}
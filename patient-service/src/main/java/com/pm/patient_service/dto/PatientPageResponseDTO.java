@@ -0,0 +1,31 @@
+package com.pm.patient_service.dto;
+
+import java.util.List;
+
+public class PatientPageResponseDTO {
+    private List<PatientResponseDTO> patients;
+    // Opaque token for the next page, null when this is the last page
+    private String nextCursor;
+
+    public PatientPageResponseDTO(List<PatientResponseDTO> patients, String nextCursor) {
+        this.patients = patients;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<PatientResponseDTO> getPatients() {
+        return this.patients;
+    }
+
+    public void setPatients(List<PatientResponseDTO> patients) {
+        this.patients = patients;
+    }
+
+    public String getNextCursor() {
+        return this.nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.pm.patient_service.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+import com.pm.patient_service.exception.InvalidCursorException;
+
+// Rank and id of the last search hit returned, handed to clients as an opaque token.
+// The rank travels as its exact float bits so the next page starts exactly after it.
+public class PatientSearchCursor {
+    private final float rank;
+    private final UUID id;
+
+    public PatientSearchCursor(float rank, UUID id) {
+        this.rank = rank;
+        this.id = id;
+    }
+
+    public float getRank() {
+        return this.rank;
+    }
+
+    public UUID getId() {
+        return this.id;
+    }
+
+    public String encode() {
+        String raw = Integer.toHexString(Float.floatToIntBits(rank)) + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static PatientSearchCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            if (separator < 0) {
+                throw new InvalidCursorException("Malformed search cursor : " + token);
+            }
+            float rank = Float.intBitsToFloat(Integer.parseUnsignedInt(raw.substring(0, separator), 16));
+            if (Float.isNaN(rank)) {
+                throw new InvalidCursorException("Malformed search cursor : " + token);
+            }
+            return new PatientSearchCursor(rank, UUID.fromString(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("Malformed search cursor : " + token);
+        }
+    }
+}
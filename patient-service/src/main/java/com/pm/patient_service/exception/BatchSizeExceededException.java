@@ -0,0 +1,7 @@
+package com.pm.patient_service.exception;
+
+public class BatchSizeExceededException extends RuntimeException {
+    public BatchSizeExceededException(String message) {
+        super(message);
+    }
+}
@@ -5,6 +5,7 @@ import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -48,4 +49,28 @@ public class GlobalExceptionHandling {
         return ResponseEntity.badRequest().body(error);
 
     }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<Map<String, String>> handleInvalidCursorException(InvalidCursorException ex) {
+        logger.warn("Invalid page cursor : {}", ex.getMessage());
+        Map<String, String> error = new HashMap<>();
+        error.put("errorMessage", ex.getMessage());
+        return ResponseEntity.badRequest().body(error);
+    }
+
+    @ExceptionHandler(BatchSizeExceededException.class)
+    public ResponseEntity<Map<String, String>> handleBatchSizeExceededException(BatchSizeExceededException ex) {
+        logger.warn("Rejected patient batch : {}", ex.getMessage());
+        Map<String, String> error = new HashMap<>();
+        error.put("errorMessage", ex.getMessage());
+        return ResponseEntity.badRequest().body(error);
+    }
+
+    @ExceptionHandler(BillingUnavailableException.class)
+    public ResponseEntity<Map<String, String>> handleBillingUnavailableException(BillingUnavailableException ex) {
+        logger.warn("Billing service unavailable : {}", ex.getMessage());
+        Map<String, String> error = new HashMap<>();
+        error.put("errorMessage", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(error);
+    }
 }
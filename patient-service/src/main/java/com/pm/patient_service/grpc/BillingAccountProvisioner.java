@@ -0,0 +1,333 @@
+package com.pm.patient_service.grpc;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.pm.billingservice.grpc.BillingBatchResponse;
+import com.pm.billingservice.grpc.BillingItemResult;
+import com.pm.billingservice.grpc.BillingResponse;
+import com.pm.patient_service.exception.BillingUnavailableException;
+import com.pm.patient_service.model.BillingDeactivation;
+import com.pm.patient_service.model.BillingStatus;
+import com.pm.patient_service.model.Patient;
+import com.pm.patient_service.repository.BillingDeactivationRepository;
+import com.pm.patient_service.repository.PatientRepository;
+
+import io.grpc.Status;
+import jakarta.annotation.PreDestroy;
+
+// Creates and deactivates billing accounts off the request thread. Patients are
+// stored PENDING and flipped to ACTIVE once billing-service confirms the account.
+// Under the FAIL policy the caller instead waits inside its transaction, so a patient
+// is only committed (or deleted) together with its billing account. Otherwise a delete
+// leaves a BillingDeactivation row behind until the account is confirmed deactivated.
+@Component
+public class BillingAccountProvisioner {
+
+    private static final Logger log = LoggerFactory.getLogger(BillingAccountProvisioner.class);
+
+    private final BillingServiceGrpcClient billingservicegrpcclient;
+    private final PatientRepository patientrepository;
+    private final BillingDeactivationRepository billingDeactivationRepository;
+    private final BillingProvisioningMode provisioningMode;
+    private final BillingFailurePolicy failurePolicy;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    // How long a deactivation is left to the call made after the delete before it is swept
+    private final Duration reconcileGrace;
+    // Runs completion callbacks and delayed retries, never gRPC or request threads
+    private final ScheduledExecutorService executor;
+
+    public BillingAccountProvisioner(BillingServiceGrpcClient billingservicegrpcclient,
+            PatientRepository patientrepository, BillingDeactivationRepository billingDeactivationRepository,
+            @Value("${billing.provisioning-mode:GRPC}") BillingProvisioningMode provisioningMode,
+            @Value("${billing.failure-policy:RETRY}") BillingFailurePolicy failurePolicy,
+            @Value("${billing.retry.max-attempts:5}") int maxAttempts,
+            @Value("${billing.retry.initial-backoff-ms:500}") long initialBackoffMs,
+            @Value("${billing.retry.max-backoff-ms:30000}") long maxBackoffMs,
+            @Value("${billing.reconcile.grace-ms:300000}") long reconcileGraceMs,
+            @Value("${billing.callback-threads:2}") int callbackThreads) {
+        this.billingservicegrpcclient = billingservicegrpcclient;
+        this.patientrepository = patientrepository;
+        this.billingDeactivationRepository = billingDeactivationRepository;
+        this.provisioningMode = provisioningMode;
+        this.failurePolicy = failurePolicy;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.reconcileGrace = Duration.ofMillis(reconcileGraceMs);
+        this.executor = Executors.newScheduledThreadPool(callbackThreads);
+    }
+
+    // True when billing-service provisions from patient events and callers must not call it
+    public boolean isEventDriven() {
+        return provisioningMode == BillingProvisioningMode.EVENTS;
+    }
+
+    // What a new patient starts as: PENDING until billing-service confirms the account,
+    // or nothing in EVENTS mode, where no confirmation ever comes
+    public BillingStatus initialStatus() {
+        return isEventDriven() ? null : BillingStatus.PENDING;
+    }
+
+    // True when callers should wait on the returned futures and surface failures
+    public boolean waitsForBilling() {
+        return failurePolicy == BillingFailurePolicy.FAIL;
+    }
+
+    // Starts the creates as one batch RPC (a unary call for a single patient); the
+    // returned futures, one per patient, complete with the first attempt
+    public List<ListenableFuture<BillingResponse>> provisionAll(List<Patient> patients) {
+        List<ListenableFuture<BillingResponse>> calls = patients.size() > 1
+                ? createAccounts(patients)
+                : patients.stream().map(this::createAccount).toList();
+
+        // One status update for every account that came back on the first attempt
+        Futures.addCallback(Futures.successfulAsList(calls), new FutureCallback<List<BillingResponse>>() {
+            @Override
+            public void onSuccess(List<BillingResponse> responses) {
+                List<UUID> active = new ArrayList<>(patients.size());
+                for (int i = 0; i < responses.size(); i++) {
+                    if (responses.get(i) != null) {
+                        active.add(patients.get(i).getId());
+                    }
+                }
+                if (!active.isEmpty()) {
+                    patientrepository.updateBillingStatus(active, BillingStatus.ACTIVE);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                log.error("Could not record billing account status : {}", t.getMessage());
+            }
+        }, executor);
+
+        for (int i = 0; i < calls.size(); i++) {
+            Patient patient = patients.get(i);
+            Futures.addCallback(calls.get(i), new FutureCallback<BillingResponse>() {
+                @Override
+                public void onSuccess(BillingResponse response) {
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    if (Status.fromThrowable(t).getCode() == Status.Code.ALREADY_EXISTS) {
+                        // An earlier attempt went through after all
+                        patientrepository.updateBillingStatus(List.of(patient.getId()), BillingStatus.ACTIVE);
+                        return;
+                    }
+                    log.warn("Billing account creation failed for patient {} : {}", patient.getId(),
+                            t.getMessage());
+                    if (failurePolicy == BillingFailurePolicy.RETRY && isRetryable(t)) {
+                        retry(() -> createAccount(patient), "create billing account for " + patient.getId(), 2,
+                                () -> patientrepository.updateBillingStatus(List.of(patient.getId()),
+                                        BillingStatus.ACTIVE));
+                    }
+                }
+            }, executor);
+        }
+        return calls;
+    }
+
+    public ListenableFuture<BillingResponse> provision(Patient patient) {
+        return provisionAll(List.of(patient)).get(0);
+    }
+
+    // Creates the account and waits for it, bounded by the gRPC deadline. Meant to run
+    // before the patient's transaction commits, which a failure here rolls back.
+    public void provisionNow(Patient patient) {
+        try {
+            createAccount(patient).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BillingUnavailableException("Interrupted while creating billing account", e);
+        } catch (ExecutionException e) {
+            throw new BillingUnavailableException("Billing account creation failed for patient " + patient.getId(),
+                    e.getCause());
+        }
+    }
+
+    // Deactivates the account and waits for it; a patient that never had one is fine
+    public void deprovisionNow(UUID patientId) {
+        try {
+            billingservicegrpcclient.processPatientDeletionAsync(patientId.toString()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BillingUnavailableException("Interrupted while deactivating billing account", e);
+        } catch (ExecutionException e) {
+            if (Status.fromThrowable(e.getCause()).getCode() != Status.Code.NOT_FOUND) {
+                throw new BillingUnavailableException(
+                        "Billing account deactivation failed for patient " + patientId, e.getCause());
+            }
+        }
+    }
+
+    // One more create for each patient still PENDING. Unary calls, because ALREADY_EXISTS
+    // (an earlier attempt did get through) also means ACTIVE, and the batch RPC does not
+    // report it apart from other failures. Anything else waits for the next sweep.
+    public void reconcile(List<Patient> patients) {
+        for (Patient patient : patients) {
+            Futures.addCallback(createAccount(patient), new FutureCallback<BillingResponse>() {
+                @Override
+                public void onSuccess(BillingResponse response) {
+                    patientrepository.updateBillingStatus(List.of(patient.getId()), BillingStatus.ACTIVE);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    if (Status.fromThrowable(t).getCode() == Status.Code.ALREADY_EXISTS) {
+                        patientrepository.updateBillingStatus(List.of(patient.getId()), BillingStatus.ACTIVE);
+                        return;
+                    }
+                    log.warn("Billing reconciliation failed for patient {} : {}", patient.getId(), t.getMessage());
+                }
+            }, executor);
+        }
+    }
+
+    // Call inside the transaction that deletes the patient, before deprovision(patientId)
+    // runs after commit; the row is what BillingReconciler sweeps if that call fails
+    public void recordDeactivation(UUID patientId) {
+        Instant now = Instant.now();
+        billingDeactivationRepository.save(new BillingDeactivation(patientId, now, now.plus(reconcileGrace)));
+    }
+
+    public void deprovision(UUID patientId) {
+        String description = "deactivate billing account for " + patientId;
+        Runnable confirmed = () -> billingDeactivationRepository.deleteByPatientId(patientId);
+        Futures.addCallback(billingservicegrpcclient.processPatientDeletionAsync(patientId.toString()),
+                new FutureCallback<BillingResponse>() {
+                    @Override
+                    public void onSuccess(BillingResponse response) {
+                        confirmed.run();
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t) {
+                        if (Status.fromThrowable(t).getCode() == Status.Code.NOT_FOUND) {
+                            // The patient never had an account
+                            confirmed.run();
+                            return;
+                        }
+                        log.warn("Failed to {} : {}", description, t.getMessage());
+                        if (failurePolicy == BillingFailurePolicy.RETRY && isRetryable(t)) {
+                            retry(() -> billingservicegrpcclient.processPatientDeletionAsync(patientId.toString()),
+                                    description, 2, confirmed);
+                        }
+                    }
+                }, executor);
+    }
+
+    // One more deactivation for each recorded one; confirmed rows are removed, anything
+    // else waits for its next attempt
+    public void reconcileDeactivations(List<UUID> patientIds) {
+        for (UUID patientId : patientIds) {
+            Futures.addCallback(billingservicegrpcclient.processPatientDeletionAsync(patientId.toString()),
+                    new FutureCallback<BillingResponse>() {
+                        @Override
+                        public void onSuccess(BillingResponse response) {
+                            billingDeactivationRepository.deleteByPatientId(patientId);
+                        }
+
+                        @Override
+                        public void onFailure(Throwable t) {
+                            if (Status.fromThrowable(t).getCode() == Status.Code.NOT_FOUND) {
+                                billingDeactivationRepository.deleteByPatientId(patientId);
+                                return;
+                            }
+                            log.warn("Billing deactivation failed for deleted patient {} : {}", patientId,
+                                    t.getMessage());
+                        }
+                    }, executor);
+        }
+    }
+
+    private ListenableFuture<BillingResponse> createAccount(Patient patient) {
+        return billingservicegrpcclient.createBillingAccountAsync(patient.getId().toString(), patient.getName(),
+                patient.getEmail());
+    }
+
+    // Splits the batch response back into a future per patient so failures are retried individually
+    private List<ListenableFuture<BillingResponse>> createAccounts(List<Patient> patients) {
+        ListenableFuture<BillingBatchResponse> batch = billingservicegrpcclient.createBillingAccountsAsync(
+                patients.stream()
+                        .map(patient -> BillingServiceGrpcClient.billingRequest(patient.getId().toString(),
+                                patient.getName(), patient.getEmail()))
+                        .toList());
+        List<ListenableFuture<BillingResponse>> calls = new ArrayList<>(patients.size());
+        for (int i = 0; i < patients.size(); i++) {
+            int index = i;
+            calls.add(Futures.transformAsync(batch, response -> itemResponse(response.getResults(index)),
+                    MoreExecutors.directExecutor()));
+        }
+        return calls;
+    }
+
+    private static ListenableFuture<BillingResponse> itemResponse(BillingItemResult item) {
+        if (!item.getErrorMessage().isEmpty()) {
+            return Futures.immediateFailedFuture(new IllegalStateException(item.getErrorMessage()));
+        }
+        return Futures.immediateFuture(BillingResponse.newBuilder()
+                .setAccountId(item.getAccountId())
+                .setStatus(item.getStatus())
+                .build());
+    }
+
+    private void retry(Supplier<ListenableFuture<BillingResponse>> call, String description, int attempt,
+            Runnable onSuccess) {
+        if (attempt > maxAttempts) {
+            log.error("Giving up after {} attempts to {}, left for BillingReconciler", maxAttempts, description);
+            return;
+        }
+        long backoff = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 2, 20));
+        executor.schedule(() -> Futures.addCallback(call.get(), new FutureCallback<BillingResponse>() {
+            @Override
+            public void onSuccess(BillingResponse response) {
+                log.info("Succeeded to {} on attempt {}", description, attempt);
+                onSuccess.run();
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                if (Status.fromThrowable(t).getCode() == Status.Code.ALREADY_EXISTS) {
+                    onSuccess.run();
+                } else if (isRetryable(t)) {
+                    retry(call, description, attempt + 1, onSuccess);
+                } else {
+                    log.error("Giving up on {} : {}", description, t.getMessage());
+                }
+            }
+        }, executor), backoff, TimeUnit.MILLISECONDS);
+    }
+
+    // The answer to these will not change on another attempt
+    private static boolean isRetryable(Throwable t) {
+        Status.Code code = Status.fromThrowable(t).getCode();
+        return code != Status.Code.NOT_FOUND && code != Status.Code.ALREADY_EXISTS
+                && code != Status.Code.INVALID_ARGUMENT;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
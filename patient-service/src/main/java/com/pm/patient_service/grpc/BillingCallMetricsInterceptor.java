@@ -0,0 +1,54 @@
+package com.pm.patient_service.grpc;
+
+import java.net.SocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Grpc;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// Times every billing call, tagged with the backend (subchannel address) that served it,
+// so an unbalanced or failing billing-service instance shows up in billing.grpc.client.calls
+final class BillingCallMetricsInterceptor implements ClientInterceptor {
+
+    private final MeterRegistry meterRegistry;
+
+    BillingCallMetricsInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method,
+            CallOptions callOptions, Channel next) {
+        long startedAt = System.nanoTime();
+        ClientCall<ReqT, RespT> call = next.newCall(method, callOptions);
+        return new ForwardingClientCall.SimpleForwardingClientCall<>(call) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(responseListener) {
+                    @Override
+                    public void onClose(Status status, Metadata trailers) {
+                        // Null when the call failed before a transport was picked
+                        SocketAddress backend = call.getAttributes().get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR);
+                        Timer.builder("billing.grpc.client.calls")
+                                .tag("method", method.getBareMethodName())
+                                .tag("status", status.getCode().name())
+                                .tag("backend", backend == null ? "none" : backend.toString())
+                                .register(meterRegistry)
+                                .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            }
+        };
+    }
+}
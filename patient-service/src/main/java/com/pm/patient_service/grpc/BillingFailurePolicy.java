@@ -0,0 +1,11 @@
+package com.pm.patient_service.grpc;
+
+// What savePatient and deletePatient do when billing-service cannot answer in time
+public enum BillingFailurePolicy {
+    // Wait for billing before the patient change commits; roll it back and answer 503 if billing does not answer
+    FAIL,
+    // Answer immediately, leave the account PENDING and retry in the background with backoff
+    RETRY,
+    // Answer immediately and leave the account PENDING for later reconciliation
+    PENDING
+}
@@ -0,0 +1,9 @@
+package com.pm.patient_service.grpc;
+
+// How billing accounts follow patient creates and deletes
+public enum BillingProvisioningMode {
+    // Call billing-service over gRPC after each write, subject to BillingFailurePolicy
+    GRPC,
+    // Make no billing call; billing-service provisions from the events on the patient topic
+    EVENTS
+}
@@ -0,0 +1,133 @@
+package com.pm.patient_service.grpc;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.pm.patient_service.model.BillingDeactivation;
+import com.pm.patient_service.model.BillingStatus;
+import com.pm.patient_service.model.Patient;
+import com.pm.patient_service.model.UuidV7Generator;
+import com.pm.patient_service.repository.BillingDeactivationRepository;
+import com.pm.patient_service.repository.PatientRepository;
+
+// Picks up patients whose billing account was never confirmed: those left PENDING by
+// the PENDING policy or by RETRY giving up. Only patients older than the grace period
+// are swept, so accounts still in flight or being retried are left alone. It also re-sends
+// the deactivations deleted patients left in billing_deactivation. Replicas may sweep the
+// same patient; the second create comes back ALREADY_EXISTS.
+//
+// Every swept row has its next attempt pushed back (exponentially, up to max-backoff)
+// before the calls go out, so the next sweep moves on to other rows whatever these calls
+// return. A patient still PENDING after max-attempts sweeps is marked FAILED; a
+// deactivation is left in its table and no longer swept.
+@Component
+public class BillingReconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(BillingReconciler.class);
+
+    private final PatientRepository patientrepository;
+    private final BillingDeactivationRepository billingDeactivationRepository;
+    private final BillingAccountProvisioner billingAccountProvisioner;
+    private final Duration grace;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long intervalMs;
+    private final long maxBackoffMs;
+
+    public BillingReconciler(PatientRepository patientrepository,
+            BillingDeactivationRepository billingDeactivationRepository,
+            BillingAccountProvisioner billingAccountProvisioner,
+            @Value("${billing.reconcile.grace-ms:300000}") long graceMs,
+            @Value("${billing.reconcile.batch-size:200}") int batchSize,
+            @Value("${billing.reconcile.max-attempts:10}") int maxAttempts,
+            @Value("${billing.reconcile.interval-ms:60000}") long intervalMs,
+            @Value("${billing.reconcile.max-backoff-ms:3600000}") long maxBackoffMs) {
+        this.patientrepository = patientrepository;
+        this.billingDeactivationRepository = billingDeactivationRepository;
+        this.billingAccountProvisioner = billingAccountProvisioner;
+        this.grace = Duration.ofMillis(graceMs);
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.intervalMs = intervalMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    @Scheduled(fixedDelayString = "${billing.reconcile.interval-ms:60000}")
+    public void reconcile() {
+        // billing-service provisions from patient events itself
+        if (billingAccountProvisioner.isEventDriven()) {
+            return;
+        }
+        Instant now = Instant.now();
+        reconcileCreates(now);
+        reconcileDeactivations(now);
+    }
+
+    private void reconcileCreates(Instant now) {
+        List<Patient> due = patientrepository.findDueForBilling(BillingStatus.PENDING,
+                UuidV7Generator.lowerBound(now.toEpochMilli() - grace.toMillis()), now,
+                PageRequest.of(0, batchSize));
+        if (due.isEmpty()) {
+            return;
+        }
+        List<Patient> retry = new ArrayList<>(due.size());
+        List<UUID> exhausted = new ArrayList<>();
+        for (Patient patient : due) {
+            if (patient.getBillingAttempts() >= maxAttempts) {
+                exhausted.add(patient.getId());
+            } else {
+                retry.add(patient);
+            }
+        }
+        if (!exhausted.isEmpty()) {
+            patientrepository.updateBillingStatus(exhausted, BillingStatus.FAILED);
+            log.error("Billing account creation failed {} times for {} patients, marked FAILED : {}", maxAttempts,
+                    exhausted.size(), exhausted);
+        }
+        if (!retry.isEmpty()) {
+            Map<Integer, List<UUID>> byAttempts = retry.stream().collect(Collectors
+                    .groupingBy(Patient::getBillingAttempts, Collectors.mapping(Patient::getId, Collectors.toList())));
+            byAttempts.forEach((attempts, ids) -> patientrepository.scheduleBillingAttempt(ids,
+                    now.plusMillis(backoffMs(attempts))));
+            log.info("Reconciling {} patients with a PENDING billing account", retry.size());
+            billingAccountProvisioner.reconcile(retry);
+        }
+    }
+
+    private void reconcileDeactivations(Instant now) {
+        List<BillingDeactivation> due = billingDeactivationRepository.findDue(now, maxAttempts,
+                PageRequest.of(0, batchSize));
+        if (due.isEmpty()) {
+            return;
+        }
+        Map<Integer, List<UUID>> byAttempts = due.stream().collect(Collectors.groupingBy(
+                BillingDeactivation::getAttempts,
+                Collectors.mapping(BillingDeactivation::getPatientId, Collectors.toList())));
+        byAttempts.forEach((attempts, ids) -> {
+            billingDeactivationRepository.scheduleAttempt(ids, now.plusMillis(backoffMs(attempts)));
+            if (attempts + 1 >= maxAttempts) {
+                log.error("Last attempt to deactivate the billing accounts of deleted patients {}, "
+                        + "left in billing_deactivation if it fails", ids);
+            }
+        });
+        log.info("Reconciling {} billing accounts of deleted patients", due.size());
+        billingAccountProvisioner.reconcileDeactivations(
+                due.stream().map(BillingDeactivation::getPatientId).toList());
+    }
+
+    private long backoffMs(int attempts) {
+        return Math.min(maxBackoffMs, intervalMs << Math.min(attempts, 20));
+    }
+}
@@ -1,56 +1,227 @@
 package com.pm.patient_service.grpc;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 // Import the main gRPC service class
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.pm.billingservice.grpc.BillingBatchRequest;
+import com.pm.billingservice.grpc.BillingBatchResponse;
 import com.pm.billingservice.grpc.BillingRequest;
 import com.pm.billingservice.grpc.BillingResponse;
 import com.pm.billingservice.grpc.BillingServiceGrpc;
 import com.pm.billingservice.grpc.PatientDeletionRequest;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import io.grpc.ConnectivityState;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 
 @Service
 public class BillingServiceGrpcClient {
 
         private final Logger log = LoggerFactory.getLogger(BillingServiceGrpcClient.class);
 
-        public final BillingServiceGrpc.BillingServiceBlockingStub blockingStub;
+        // A pool of channels, each balancing round-robin over every billing-service backend.
+        // One HTTP/2 connection caps concurrent streams per backend; more channels lift that.
+        private final List<ManagedChannel> channels;
+        private final BillingServiceGrpc.BillingServiceBlockingStub[] blockingStubs;
+        private final BillingServiceGrpc.BillingServiceFutureStub[] futureStubs;
+        private final BillingServiceGrpc.BillingServiceStub[] asyncStubs;
+        private final AtomicInteger nextChannel = new AtomicInteger();
+        // Every call gets its own deadline, a slow billing-service can no longer hold a caller indefinitely
+        private final long deadlineMs;
+        // Batch and streaming calls carry many accounts, so they get a longer one
+        private final long batchDeadlineMs;
 
         public BillingServiceGrpcClient(@Value("${billing.service.address:localhost}") String serverAddress,
-                        @Value("${billing.service.grpc.port:9091}") int serverPort) {
+                        @Value("${billing.service.grpc.port:9091}") int serverPort,
+                        @Value("${billing.service.addresses:}") List<String> serverAddresses,
+                        @Value("${billing.service.deadline-ms:2000}") long deadlineMs,
+                        @Value("${billing.service.batch-deadline-ms:30000}") long batchDeadlineMs,
+                        @Value("${billing.service.channel-pool-size:2}") int channelPoolSize,
+                        @Value("${billing.service.keepalive-time-ms:30000}") long keepAliveTimeMs,
+                        @Value("${billing.service.keepalive-timeout-ms:10000}") long keepAliveTimeoutMs,
+                        @Value("${billing.service.idle-timeout-ms:300000}") long idleTimeoutMs,
+                        @Value("${billing.service.max-inbound-message-bytes:16777216}") int maxInboundMessageBytes,
+                        MeterRegistry meterRegistry) {
 
-                log.info("Connecting to Billing Service using GRPC at --> ServerAddress: {}, ServerPort: {}",
-                                serverAddress,
-                                serverPort);
+                // billing.service.addresses (host:port,...) lists instances explicitly; otherwise
+                // every A record behind billing.service.address is a backend
+                List<String> hostPorts = serverAddresses.stream().map(String::trim).filter(a -> !a.isEmpty()).toList();
+                String target;
+                if (hostPorts.isEmpty()) {
+                        target = "dns:///" + serverAddress + ":" + serverPort;
+                } else {
+                        StaticAddressNameResolverProvider.registerOnce();
+                        target = StaticAddressNameResolverProvider.target(hostPorts);
+                }
+                log.info("Connecting to Billing Service using GRPC at --> Target: {}, Channels: {}", target,
+                                channelPoolSize);
 
-                ManagedChannel channel = ManagedChannelBuilder.forAddress(serverAddress, serverPort)
-                                .usePlaintext()
-                                .build();
-
-                blockingStub = BillingServiceGrpc.newBlockingStub(channel);
+                BillingCallMetricsInterceptor metricsInterceptor = new BillingCallMetricsInterceptor(meterRegistry);
+                int poolSize = Math.max(1, channelPoolSize);
+                channels = new ArrayList<>(poolSize);
+                blockingStubs = new BillingServiceGrpc.BillingServiceBlockingStub[poolSize];
+                futureStubs = new BillingServiceGrpc.BillingServiceFutureStub[poolSize];
+                asyncStubs = new BillingServiceGrpc.BillingServiceStub[poolSize];
+                for (int i = 0; i < poolSize; i++) {
+                        ManagedChannel channel = ManagedChannelBuilder.forTarget(target)
+                                        .usePlaintext()
+                                        .defaultLoadBalancingPolicy("round_robin")
+                                        // Detects dead connections to a backend between calls
+                                        .keepAliveTime(keepAliveTimeMs, TimeUnit.MILLISECONDS)
+                                        .keepAliveTimeout(keepAliveTimeoutMs, TimeUnit.MILLISECONDS)
+                                        .idleTimeout(idleTimeoutMs, TimeUnit.MILLISECONDS)
+                                        .maxInboundMessageSize(maxInboundMessageBytes)
+                                        .intercept(metricsInterceptor)
+                                        .build();
+                        channels.add(channel);
+                        blockingStubs[i] = BillingServiceGrpc.newBlockingStub(channel);
+                        futureStubs[i] = BillingServiceGrpc.newFutureStub(channel);
+                        asyncStubs[i] = BillingServiceGrpc.newStub(channel);
+                        // 1 while the channel has at least one READY subchannel
+                        Gauge.builder("billing.grpc.channel.ready", channel,
+                                        c -> c.getState(false) == ConnectivityState.READY ? 1 : 0)
+                                        .tag("channel", String.valueOf(i))
+                                        .register(meterRegistry);
+                }
+                this.deadlineMs = deadlineMs;
+                this.batchDeadlineMs = batchDeadlineMs;
         }
 
         public BillingResponse createBillingAccount(String patientId, String name, String email) {
-                BillingRequest request = BillingRequest.newBuilder()
+                BillingResponse response = blockingStub().withDeadlineAfter(deadlineMs, TimeUnit.MILLISECONDS)
+                                .createBillingAccount(billingRequest(patientId, name, email));
+                return response;
+        }
+
+        // Non-blocking variant so callers can pipeline many creates over the channel
+        public ListenableFuture<BillingResponse> createBillingAccountAsync(String patientId, String name,
+                        String email) {
+                return futureStub().withDeadlineAfter(deadlineMs, TimeUnit.MILLISECONDS)
+                                .createBillingAccount(billingRequest(patientId, name, email));
+        }
+
+        public void processPatientDeletion(String patientId) {
+                log.info("Sending gRPC notification of patient deletion for patientId: {}", patientId);
+                blockingStub().withDeadlineAfter(deadlineMs, TimeUnit.MILLISECONDS)
+                                .processPatientDeletion(deletionRequest(patientId));
+        }
+
+        public ListenableFuture<BillingResponse> processPatientDeletionAsync(String patientId) {
+                return futureStub().withDeadlineAfter(deadlineMs, TimeUnit.MILLISECONDS)
+                                .processPatientDeletion(deletionRequest(patientId));
+        }
+
+        // One round trip for many accounts, results come back per item in request order
+        public BillingBatchResponse createBillingAccounts(List<BillingRequest> requests) {
+                return blockingStub().withDeadlineAfter(batchDeadlineMs, TimeUnit.MILLISECONDS)
+                                .createBillingAccounts(batchRequest(requests));
+        }
+
+        public ListenableFuture<BillingBatchResponse> createBillingAccountsAsync(List<BillingRequest> requests) {
+                return futureStub().withDeadlineAfter(batchDeadlineMs, TimeUnit.MILLISECONDS)
+                                .createBillingAccounts(batchRequest(requests));
+        }
+
+        // Client-streaming variant for batches too large for one message. Requests are
+        // pulled from the iterator only while the transport is ready, so a slow server
+        // pushes back instead of the whole batch being buffered in memory.
+        public ListenableFuture<BillingBatchResponse> streamBillingAccounts(Iterator<BillingRequest> requests) {
+                SettableFuture<BillingBatchResponse> result = SettableFuture.create();
+                asyncStub().withDeadlineAfter(batchDeadlineMs, TimeUnit.MILLISECONDS)
+                                .streamBillingAccounts(new ClientResponseObserver<BillingRequest, BillingBatchResponse>() {
+                                        private boolean completed;
+
+                                        @Override
+                                        public void beforeStart(ClientCallStreamObserver<BillingRequest> requestStream) {
+                                                requestStream.setOnReadyHandler(() -> {
+                                                        while (requestStream.isReady() && requests.hasNext()) {
+                                                                requestStream.onNext(requests.next());
+                                                        }
+                                                        if (!requests.hasNext() && !completed) {
+                                                                completed = true;
+                                                                requestStream.onCompleted();
+                                                        }
+                                                });
+                                        }
+
+                                        @Override
+                                        public void onNext(BillingBatchResponse response) {
+                                                result.set(response);
+                                        }
+
+                                        @Override
+                                        public void onError(Throwable t) {
+                                                result.setException(t);
+                                        }
+
+                                        @Override
+                                        public void onCompleted() {
+                                        }
+                                });
+                return result;
+        }
+
+        private int nextChannel() {
+                return Math.floorMod(nextChannel.getAndIncrement(), channels.size());
+        }
+
+        private BillingServiceGrpc.BillingServiceBlockingStub blockingStub() {
+                return blockingStubs[nextChannel()];
+        }
+
+        private BillingServiceGrpc.BillingServiceFutureStub futureStub() {
+                return futureStubs[nextChannel()];
+        }
+
+        private BillingServiceGrpc.BillingServiceStub asyncStub() {
+                return asyncStubs[nextChannel()];
+        }
+
+        // In-flight calls get a grace period to finish before the channels are torn down
+        @PreDestroy
+        public void shutdown() throws InterruptedException {
+                channels.forEach(ManagedChannel::shutdown);
+                for (ManagedChannel channel : channels) {
+                        if (!channel.awaitTermination(5, TimeUnit.SECONDS)) {
+                                channel.shutdownNow();
+                        }
+                }
+        }
+
+        static BillingRequest billingRequest(String patientId, String name, String email) {
+                return BillingRequest.newBuilder()
                                 .setPatientId(patientId)
                                 .setName(name)
                                 .setEmail(email)
                                 .build();
+        }
 
-                BillingResponse response = blockingStub.createBillingAccount(request);
-                return response;
+        private static BillingBatchRequest batchRequest(List<BillingRequest> requests) {
+                return BillingBatchRequest.newBuilder()
+                                .addAllRequests(requests)
+                                .build();
         }
 
-        public void processPatientDeletion(String patientId) {
-                PatientDeletionRequest request = PatientDeletionRequest.newBuilder()
+        private static PatientDeletionRequest deletionRequest(String patientId) {
+                return PatientDeletionRequest.newBuilder()
                                 .setPatientId(patientId)
                                 .build();
-                log.info("Sending gRPC notification of patient deletion for patientId: {}", patientId);
-                blockingStub.processPatientDeletion(request);
         }
 }
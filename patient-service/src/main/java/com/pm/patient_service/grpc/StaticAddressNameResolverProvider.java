@@ -0,0 +1,103 @@
+package com.pm.patient_service.grpc;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.grpc.Attributes;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.NameResolver;
+import io.grpc.NameResolverProvider;
+import io.grpc.NameResolverRegistry;
+
+// Resolves "static:///host1:port1,host2:port2" to a fixed list of backends, so a
+// channel can balance over billing-service instances that are not behind one DNS name
+final class StaticAddressNameResolverProvider extends NameResolverProvider {
+
+    static final String SCHEME = "static";
+
+    private static final AtomicBoolean REGISTERED = new AtomicBoolean();
+
+    static void registerOnce() {
+        if (REGISTERED.compareAndSet(false, true)) {
+            NameResolverRegistry.getDefaultRegistry().register(new StaticAddressNameResolverProvider());
+        }
+    }
+
+    static String target(Collection<String> hostPorts) {
+        return SCHEME + ":///" + String.join(",", hostPorts);
+    }
+
+    @Override
+    protected boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    protected int priority() {
+        return 5;
+    }
+
+    @Override
+    public String getDefaultScheme() {
+        return SCHEME;
+    }
+
+    @Override
+    public Collection<Class<? extends SocketAddress>> getProducedSocketAddressTypes() {
+        return List.of(InetSocketAddress.class);
+    }
+
+    @Override
+    public NameResolver newNameResolver(URI targetUri, NameResolver.Args args) {
+        if (!SCHEME.equals(targetUri.getScheme())) {
+            return null;
+        }
+        List<URI> hostPorts = new ArrayList<>();
+        for (String hostPort : targetUri.getPath().substring(1).split(",")) {
+            hostPorts.add(URI.create("//" + hostPort.trim()));
+        }
+        String authority = hostPorts.get(0).getAuthority();
+
+        return new NameResolver() {
+            private Listener2 listener;
+
+            @Override
+            public String getServiceAuthority() {
+                return authority;
+            }
+
+            @Override
+            public void start(Listener2 listener) {
+                this.listener = listener;
+                resolve();
+            }
+
+            // Called by the channel when backends fail, so changed host IPs are picked up
+            @Override
+            public void refresh() {
+                resolve();
+            }
+
+            private void resolve() {
+                List<EquivalentAddressGroup> backends = new ArrayList<>(hostPorts.size());
+                for (URI hostPort : hostPorts) {
+                    backends.add(new EquivalentAddressGroup(
+                            new InetSocketAddress(hostPort.getHost(), hostPort.getPort())));
+                }
+                listener.onResult(ResolutionResult.newBuilder()
+                        .setAddresses(backends)
+                        .setAttributes(Attributes.EMPTY)
+                        .build());
+            }
+
+            @Override
+            public void shutdown() {
+            }
+        };
+    }
+}
@@ -1,8 +1,10 @@
 package com.pm.patient_service.kafka;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
 import com.pm.patient_service.model.Patient;
@@ -11,23 +13,23 @@ import patient.event.PatientEvent;
 
 @Service
 public class KafkaProducer {
-    private static final Logger log = LoggerFactory.getLogger(KafkaProducer.class);
 
     private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final String topic;
 
-    public KafkaProducer(KafkaTemplate<String, byte[]> kafkaTemplate) {
+    public KafkaProducer(KafkaTemplate<String, byte[]> kafkaTemplate,
+            @Value("${patient.kafka.topic:patient}") String topic) {
         this.kafkaTemplate = kafkaTemplate;
+        this.topic = topic;
     }
 
-    public void sendEvent(Patient patient) {
-        PatientEvent event = PatientEvent.newBuilder().setPatientId(patient.getId().toString())
-                .setName(patient.getName()).setEmail(patient.getEmail()).setEventType("PATIENT_CREATED").build();
-
-        try {
-            kafkaTemplate.send("patient", event.toByteArray());
-        } catch (Exception e) {
-            log.error("Error in sending patient event -- type Patient_created : {}", event);
-        }
+    public static PatientEvent toEvent(Patient patient, String eventType) {
+        return PatientEvent.newBuilder().setPatientId(patient.getId().toString())
+                .setName(patient.getName()).setEmail(patient.getEmail()).setEventType(eventType).build();
+    }
 
+    // Keyed by patient id so every event for one patient lands on the same partition, in order
+    public CompletableFuture<SendResult<String, byte[]>> send(String patientId, byte[] payload) {
+        return kafkaTemplate.send(topic, patientId, payload);
     }
 }
@@ -0,0 +1,134 @@
+package com.pm.patient_service.kafka;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.pm.patient_service.model.OutboxEvent;
+import com.pm.patient_service.repository.OutboxEventRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// Drains patient_outbox to Kafka in insert order (relay_sequence). A batch is only deleted once every
+// record in it has been acknowledged, so delivery is at-least-once. On PostgreSQL each
+// batch runs under a transaction-scoped advisory lock, so one replica drains at a time
+// and a patient's events are never sent out of order by two relays racing.
+@Component
+public class OutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+    private static final long RELAY_LOCK_KEY = "patient_outbox".hashCode();
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final KafkaProducer kafkaProducer;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+    private final long sendTimeoutMs;
+
+    private final Counter publishedCounter;
+    private final Counter failedBatchCounter;
+    private final Timer batchTimer;
+    private final AtomicLong pendingEvents = new AtomicLong();
+    private final AtomicLong oldestEventAgeMs = new AtomicLong();
+    private volatile Boolean advisoryLocks;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository, KafkaProducer kafkaProducer,
+            PlatformTransactionManager transactionManager, JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+            @Value("${patient.outbox.batch-size:500}") int batchSize,
+            @Value("${patient.outbox.send-timeout-ms:30000}") long sendTimeoutMs) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.kafkaProducer = kafkaProducer;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+        this.sendTimeoutMs = sendTimeoutMs;
+
+        this.publishedCounter = meterRegistry.counter("patient.outbox.published");
+        this.failedBatchCounter = meterRegistry.counter("patient.outbox.failed.batches");
+        this.batchTimer = meterRegistry.timer("patient.outbox.batch.publish");
+        meterRegistry.gauge("patient.outbox.pending", pendingEvents);
+        meterRegistry.gauge("patient.outbox.lag.ms", oldestEventAgeMs);
+    }
+
+    @Scheduled(fixedDelayString = "${patient.outbox.poll-interval-ms:100}")
+    public void drain() {
+        try {
+            int published;
+            // Keep going while batches come back full, otherwise wait for the next poll
+            do {
+                published = transactionTemplate.execute(status -> publishNextBatch());
+            } while (published == batchSize);
+        } catch (RuntimeException e) {
+            failedBatchCounter.increment();
+            log.error("Outbox relay batch failed, it will be retried on the next poll : {}", e.getMessage());
+        }
+    }
+
+    private int publishNextBatch() {
+        // Another replica is draining; this one tries again on the next poll
+        if (usesAdvisoryLocks() && !outboxEventRepository.tryRelayLock(RELAY_LOCK_KEY)) {
+            return 0;
+        }
+        List<OutboxEvent> batch = outboxEventRepository.findNextBatch(PageRequest.of(0, batchSize));
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<?>[] sends = batch.stream()
+                .map(event -> kafkaProducer.send(event.getAggregateId(), event.getPayload()))
+                .toArray(CompletableFuture[]::new);
+        try {
+            CompletableFuture.allOf(sends).get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while publishing outbox batch", e);
+        } catch (ExecutionException | TimeoutException e) {
+            // Rolls the transaction back, the rows stay in the outbox
+            throw new IllegalStateException("Publishing outbox batch failed", e);
+        }
+
+        outboxEventRepository.deleteAllByIdInBatch(batch.stream().map(OutboxEvent::getId).toList());
+        batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        publishedCounter.increment(batch.size());
+        return batch.size();
+    }
+
+    // Sampled apart from the drain: counting the outbox every poll would cost more than the poll
+    @Scheduled(fixedDelayString = "${patient.outbox.lag-sample-interval-ms:5000}")
+    public void recordLag() {
+        pendingEvents.set(outboxEventRepository.count());
+        oldestEventAgeMs.set(outboxEventRepository.findOldestCreatedAt()
+                .map(oldest -> Duration.between(oldest, Instant.now()).toMillis())
+                .orElse(0L));
+    }
+
+    // H2 has no advisory locks; it only backs a single local instance
+    private boolean usesAdvisoryLocks() {
+        if (advisoryLocks == null) {
+            String database = jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            advisoryLocks = "PostgreSQL".equals(database);
+        }
+        return advisoryLocks;
+    }
+}
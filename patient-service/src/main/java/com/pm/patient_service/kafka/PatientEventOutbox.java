@@ -0,0 +1,46 @@
+package com.pm.patient_service.kafka;
+
+import java.time.Instant;
+import java.util.Collection;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.pm.patient_service.model.OutboxEvent;
+import com.pm.patient_service.model.Patient;
+import com.pm.patient_service.repository.OutboxEventRepository;
+
+@Component
+public class PatientEventOutbox {
+
+    public static final String PATIENT_CREATED = "PATIENT_CREATED";
+    public static final String PATIENT_UPDATED = "PATIENT_UPDATED";
+    public static final String PATIENT_DELETED = "PATIENT_DELETED";
+
+    private final OutboxEventRepository outboxEventRepository;
+
+    public PatientEventOutbox(OutboxEventRepository outboxEventRepository) {
+        this.outboxEventRepository = outboxEventRepository;
+    }
+
+    // Must join the caller's transaction: the event commits or rolls back with the patient row.
+    // The patient change is flushed first, so its row lock is held before the event row is
+    // inserted and takes its relay_sequence: a concurrent change to the same patient waits
+    // for this commit and gets a later one, and the relay's order is the patient's commit order.
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(Patient patient, String eventType) {
+        outboxEventRepository.flush();
+        outboxEventRepository.save(new OutboxEvent(patient.getId().toString(), eventType,
+                KafkaProducer.toEvent(patient, eventType).toByteArray(), Instant.now()));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void appendAll(Collection<Patient> patients, String eventType) {
+        Instant now = Instant.now();
+        outboxEventRepository.saveAll(patients.stream()
+                .map(patient -> new OutboxEvent(patient.getId().toString(), eventType,
+                        KafkaProducer.toEvent(patient, eventType).toByteArray(), now))
+                .toList());
+    }
+}
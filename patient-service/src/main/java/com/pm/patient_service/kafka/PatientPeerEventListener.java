@@ -0,0 +1,49 @@
+package com.pm.patient_service.kafka;
+
+import java.util.UUID;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.pm.patient_service.cache.PatientCache;
+import com.pm.patient_service.cache.PatientEmailFilter;
+
+import patient.event.PatientEvent;
+
+// Every replica joins its own consumer group, named after its host, so each one sees every
+// event published by its peers: updates and deletes drop the stale cache entry, and new
+// emails are added to the local email filter. Two replicas must not share a hostname, or
+// they split the partitions between them and each misses the other's share.
+@Component
+public class PatientPeerEventListener {
+
+    private static final Logger log = LoggerFactory.getLogger(PatientPeerEventListener.class);
+
+    private final PatientCache patientCache;
+    private final PatientEmailFilter patientEmailFilter;
+
+    public PatientPeerEventListener(PatientCache patientCache, PatientEmailFilter patientEmailFilter) {
+        this.patientCache = patientCache;
+        this.patientEmailFilter = patientEmailFilter;
+    }
+
+    @KafkaListener(topics = "${patient.kafka.topic:patient}", groupId = "${patient.peer-events.group-id}")
+    public void onPatientEvent(ConsumerRecord<String, byte[]> record) {
+        try {
+            PatientEvent event = PatientEvent.parseFrom(record.value());
+            if (!PatientEventOutbox.PATIENT_DELETED.equals(event.getEventType())) {
+                patientEmailFilter.put(event.getEmail());
+            }
+            if (PatientEventOutbox.PATIENT_UPDATED.equals(event.getEventType())
+                    || PatientEventOutbox.PATIENT_DELETED.equals(event.getEventType())) {
+                patientCache.invalidate(UUID.fromString(event.getPatientId()));
+            }
+        } catch (InvalidProtocolBufferException | IllegalArgumentException e) {
+            log.warn("Skipping unreadable patient event at offset {} : {}", record.offset(), e.getMessage());
+        }
+    }
+}
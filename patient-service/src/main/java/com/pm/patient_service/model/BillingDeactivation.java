@@ -0,0 +1,56 @@
+package com.pm.patient_service.model;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+// A deleted patient whose billing account still has to be deactivated. Written in the
+// same transaction as the delete and removed once billing-service confirms, so a failed
+// deactivation after the patient row is gone is still found by BillingReconciler.
+@Entity
+@Table(name = "billing_deactivation",
+        indexes = @Index(name = "idx_billing_deactivation_next_attempt_at", columnList = "nextAttemptAt"))
+public class BillingDeactivation {
+    @Id
+    private UUID patientId;
+
+    @Column(nullable = false)
+    private Instant requestedAt;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(nullable = false)
+    private Instant nextAttemptAt;
+
+    public BillingDeactivation(UUID patientId, Instant requestedAt, Instant nextAttemptAt) {
+        this.patientId = patientId;
+        this.requestedAt = requestedAt;
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public UUID getPatientId() {
+        return this.patientId;
+    }
+
+    public Instant getRequestedAt() {
+        return this.requestedAt;
+    }
+
+    public int getAttempts() {
+        return this.attempts;
+    }
+
+    public Instant getNextAttemptAt() {
+        return this.nextAttemptAt;
+    }
+
+    public BillingDeactivation() {
+    }
+
+}
@@ -0,0 +1,11 @@
+package com.pm.patient_service.model;
+
+// State of the patient's account in billing-service as last seen by this service. Left
+// null in EVENTS provisioning mode, where billing-service creates the account from the
+// patient topic and this service never hears back.
+public enum BillingStatus {
+    PENDING,
+    ACTIVE,
+    // BillingReconciler gave up after billing.reconcile.max-attempts sweeps
+    FAILED
+}
@@ -0,0 +1,96 @@
+package com.pm.patient_service.model;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+
+// A patient event waiting to be relayed to Kafka, written in the same
+// transaction as the patient change it describes
+@Entity
+@Table(name = "patient_outbox", indexes = {
+        @Index(name = "idx_patient_outbox_created_at", columnList = "createdAt"),
+        @Index(name = "idx_patient_outbox_relay_sequence", columnList = "relaySequence") })
+public class OutboxEvent {
+    // Each replica takes ids from the sequence in blocks of 50, one round trip per block
+    // rather than per event, so ids do not follow insert order across replicas
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "patient_outbox_seq")
+    @SequenceGenerator(name = "patient_outbox_seq", sequenceName = "patient_outbox_seq", allocationSize = 50)
+    private Long id;
+
+    // The relay publishes in this order. Filled in by the database on insert, one value
+    // per row, so a patient's later event always sorts after its earlier one whichever
+    // replica wrote them; never read back into the entity.
+    @Column(insertable = false, updatable = false, columnDefinition = "bigserial")
+    private Long relaySequence;
+
+    @Column(nullable = false)
+    private String aggregateId;
+
+    @Column(nullable = false)
+    private String eventType;
+
+    @Column(nullable = false)
+    private byte[] payload;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    public OutboxEvent(String aggregateId, String eventType, byte[] payload, Instant createdAt) {
+        this.aggregateId = aggregateId;
+        this.eventType = eventType;
+        this.payload = payload;
+        this.createdAt = createdAt;
+    }
+
+    public Long getId() {
+        return this.id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getAggregateId() {
+        return this.aggregateId;
+    }
+
+    public void setAggregateId(String aggregateId) {
+        this.aggregateId = aggregateId;
+    }
+
+    public String getEventType() {
+        return this.eventType;
+    }
+
+    public void setEventType(String eventType) {
+        this.eventType = eventType;
+    }
+
+    public byte[] getPayload() {
+        return this.payload;
+    }
+
+    public void setPayload(byte[] payload) {
+        this.payload = payload;
+    }
+
+    public Instant getCreatedAt() {
+        return this.createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public OutboxEvent() {
+    }
+
+}
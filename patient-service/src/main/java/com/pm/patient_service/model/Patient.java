@@ -1,20 +1,33 @@
 package com.pm.patient_service.model;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.UUID;
 
+import org.hibernate.annotations.ColumnDefault;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotNull;
 
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = Patient.EMAIL_UNIQUE_CONSTRAINT, columnNames = "email"),
+    indexes = {
+        // keyset pagination walks (registered_date, id) in order
+        @Index(name = "idx_patient_registered_date_id", columnList = "registered_date, id")
+})
 public class Patient {
+    public static final String EMAIL_UNIQUE_CONSTRAINT = "uk_patient_email";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @UuidV7
     private UUID id;
 
     @NotNull
@@ -22,7 +35,6 @@ public class Patient {
 
     @NotNull
     @Email
-    @Column(unique = true)
     private String email;
 
     @NotNull
@@ -34,6 +46,17 @@ public class Patient {
     @NotNull
     private LocalDate registeredDate;
 
+    @Enumerated(EnumType.STRING)
+    private BillingStatus billingStatus;
+
+    // BillingReconciler sweeps a PENDING patient again only once billingNextAttemptAt
+    // has passed, so patients that keep failing stop holding up the ones behind them
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private int billingAttempts;
+
+    private Instant billingNextAttemptAt;
+
     public Patient(UUID id, String name, String email, String address, LocalDate dateofbirth, LocalDate registeredDate) {
         this.id = id;
         this.name = name;
@@ -91,6 +114,22 @@ public class Patient {
         this.registeredDate = registeredDate;
     }
 
+    public BillingStatus getBillingStatus() {
+        return this.billingStatus;
+    }
+
+    public void setBillingStatus(BillingStatus billingStatus) {
+        this.billingStatus = billingStatus;
+    }
+
+    public int getBillingAttempts() {
+        return this.billingAttempts;
+    }
+
+    public Instant getBillingNextAttemptAt() {
+        return this.billingNextAttemptAt;
+    }
+
     @Override
     public String toString() {
         return "{" +
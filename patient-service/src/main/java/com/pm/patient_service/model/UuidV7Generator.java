@@ -0,0 +1,55 @@
+package com.pm.patient_service.model;
+
+import java.util.EnumSet;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+
+// Time-ordered UUIDs in the RFC 9562 version 7 layout: 48-bit Unix millisecond
+// timestamp, version nibble, 12-bit sequence, variant bits, 62 random bits.
+// Consecutive ids land on the right-most B-tree page instead of a random one.
+// The timestamp and sequence share one AtomicLong, so ids are strictly increasing
+// across threads in this JVM even if the wall clock steps backwards.
+public class UuidV7Generator implements BeforeExecutionGenerator {
+
+    private static final AtomicLong LAST = new AtomicLong();
+
+    public UuidV7Generator(UuidV7 config) {
+    }
+
+    public static UUID next() {
+        long now = System.currentTimeMillis();
+        long state;
+        long next;
+        do {
+            state = LAST.get();
+            // (millis << 12 | sequence); a full sequence carries into the millisecond field
+            next = (now << 12) > state ? now << 12 : state + 1;
+        } while (!LAST.compareAndSet(state, next));
+
+        long msb = ((next >>> 12) << 16) | 0x7000L | (next & 0xFFFL);
+        long lsb = (ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(msb, lsb);
+    }
+
+    // Sorts before every id generated at or after the given millisecond
+    public static UUID lowerBound(long epochMillis) {
+        return new UUID((epochMillis << 16) | 0x7000L, 0x8000000000000000L);
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue,
+            EventType eventType) {
+        return next();
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+}
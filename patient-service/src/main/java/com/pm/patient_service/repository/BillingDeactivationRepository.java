@@ -0,0 +1,35 @@
+package com.pm.patient_service.repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.pm.patient_service.model.BillingDeactivation;
+
+public interface BillingDeactivationRepository extends JpaRepository<BillingDeactivation, UUID> {
+
+    // Rows past maxAttempts stay in the table for an operator but are no longer swept
+    @Query("SELECT d FROM BillingDeactivation d WHERE d.nextAttemptAt <= :now AND d.attempts < :maxAttempts"
+            + " ORDER BY d.nextAttemptAt")
+    List<BillingDeactivation> findDue(@Param("now") Instant now, @Param("maxAttempts") int maxAttempts,
+            Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE BillingDeactivation d SET d.attempts = d.attempts + 1, d.nextAttemptAt = :next"
+            + " WHERE d.patientId IN :ids")
+    int scheduleAttempt(@Param("ids") Collection<UUID> ids, @Param("next") Instant next);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM BillingDeactivation d WHERE d.patientId = :patientId")
+    int deleteByPatientId(@Param("patientId") UUID patientId);
+}
@@ -0,0 +1,26 @@
+package com.pm.patient_service.repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.pm.patient_service.model.OutboxEvent;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // Only the replica holding the relay lock reads the outbox, so no row locks are needed
+    @Query("SELECT e FROM OutboxEvent e ORDER BY e.relaySequence")
+    List<OutboxEvent> findNextBatch(Pageable pageable);
+
+    // Held until the surrounding transaction ends; false while another replica holds it
+    @Query(value = "SELECT pg_try_advisory_xact_lock(:key)", nativeQuery = true)
+    boolean tryRelayLock(@Param("key") long key);
+
+    @Query("SELECT MIN(e.createdAt) FROM OutboxEvent e")
+    Optional<Instant> findOldestCreatedAt();
+}
@@ -0,0 +1,49 @@
+package com.pm.patient_service.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// Outbox ids are allocated in blocks of 50, which needs the sequence to step by 50. A
+// database created when ids were taken one at a time still has a step of 1; Hibernate
+// then falls back to single ids (increment_size_mismatch_strategy=fix) and the step is
+// raised here, so the next start allocates in blocks. Raising it while running only
+// leaves gaps: every value handed out afterwards is past the ones already used.
+@Component
+public class OutboxSequenceInitializer implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxSequenceInitializer.class);
+    private static final int INCREMENT = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public OutboxSequenceInitializer(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        String database = jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        if (!"PostgreSQL".equals(database)) {
+            return;
+        }
+        Long increment;
+        try {
+            increment = jdbcTemplate.queryForObject(
+                    "SELECT increment_by FROM pg_sequences WHERE sequencename = 'patient_outbox_seq'", Long.class);
+        } catch (EmptyResultDataAccessException e) {
+            return;
+        }
+        if (increment != null && increment != INCREMENT) {
+            jdbcTemplate.execute("ALTER SEQUENCE patient_outbox_seq INCREMENT BY " + INCREMENT);
+            log.info("patient_outbox_seq now steps by {} (was {}), outbox ids are pooled from the next start",
+                    INCREMENT, increment);
+        }
+    }
+}
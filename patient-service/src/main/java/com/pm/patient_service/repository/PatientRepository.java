@@ -1,14 +1,107 @@
 package com.pm.patient_service.repository;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.pm.patient_service.model.BillingStatus;
 import com.pm.patient_service.model.Patient;
-// import java.util.List;
 
-public interface PatientRepository extends JpaRepository<Patient, UUID> {
+import jakarta.persistence.QueryHint;
+
+public interface PatientRepository extends JpaRepository<Patient, UUID>, JpaSpecificationExecutor<Patient> {
     boolean existsByEmail(String email);
 
     boolean existsByEmailAndIdNot(String email, UUID id);
+
+    @Query("SELECT p.email FROM Patient p WHERE p.email IN :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    // Must be consumed inside a transaction; rows arrive through a JDBC cursor
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "5000"))
+    @Query("SELECT p.email FROM Patient p")
+    Stream<String> streamAllEmails();
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Patient p SET p.billingStatus = :status WHERE p.id IN :ids")
+    int updateBillingStatus(@Param("ids") Collection<UUID> ids, @Param("status") BillingStatus status);
+
+    // Patients in status created before createdBefore (ids are UUIDv7, so an id bound is a
+    // creation-time bound) whose next billing attempt is due, oldest first
+    @Query("SELECT p FROM Patient p WHERE p.billingStatus = :status AND p.id < :createdBefore"
+            + " AND (p.billingNextAttemptAt IS NULL OR p.billingNextAttemptAt <= :now) ORDER BY p.id")
+    List<Patient> findDueForBilling(@Param("status") BillingStatus status, @Param("createdBefore") UUID createdBefore,
+            @Param("now") Instant now, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Patient p SET p.billingAttempts = p.billingAttempts + 1, p.billingNextAttemptAt = :next"
+            + " WHERE p.id IN :ids")
+    int scheduleBillingAttempt(@Param("ids") Collection<UUID> ids, @Param("next") Instant next);
+
+    // Fuzzy (trigram similarity) or prefix match on name, email and address, best match first.
+    // Ranking is only over a bounded candidate set: each branch contributes at most
+    // :candidates rows, so the cost no longer grows with how many patients a common term
+    // matches. Prefixes (lowercased by the caller) are read in order from the
+    // (lower(col) text_pattern_ops, id) indexes; the % branches use the gin_trgm_ops indexes
+    // (see PatientSearchIndexInitializer) and take the first matches in table order, which
+    // configureSearch keeps the same from one page to the next. :fuzzy turns the trigram
+    // branches off for terms too short to have a trigram, and :fuzzyEmail the email one for
+    // terms without an '@', which never reach the threshold against a whole address but make
+    // the index recheck thousands of rows.
+    String SEARCH_RANKED = "SELECT c.id AS id, GREATEST(similarity(c.name, :q), similarity(c.email, :q),"
+            + " similarity(c.address, :q),"
+            + " CASE WHEN lower(c.name) LIKE :prefix OR lower(c.email) LIKE :prefix THEN 1 ELSE 0 END) AS rank"
+            + " FROM ((SELECT p.id, p.name, p.email, p.address FROM patient p"
+            + " WHERE lower(p.name) LIKE :prefix ORDER BY lower(p.name) USING ~<~, p.id LIMIT :candidates)"
+            + " UNION (SELECT p.id, p.name, p.email, p.address FROM patient p"
+            + " WHERE lower(p.email) LIKE :prefix ORDER BY lower(p.email) USING ~<~, p.id LIMIT :candidates)"
+            + " UNION (SELECT p.id, p.name, p.email, p.address FROM patient p"
+            + " WHERE :fuzzy AND p.name % :q LIMIT :candidates)"
+            + " UNION (SELECT p.id, p.name, p.email, p.address FROM patient p"
+            + " WHERE :fuzzyEmail AND p.email % :q LIMIT :candidates)"
+            + " UNION (SELECT p.id, p.name, p.email, p.address FROM patient p"
+            + " WHERE :fuzzy AND p.address % :q LIMIT :candidates)) c";
+
+    // Hits are (id, rank) only; the rank goes into the cursor and the patients are loaded by id
+    interface SearchHit {
+        UUID getId();
+
+        Float getRank();
+    }
+
+    @Query(value = "SELECT ranked.id, ranked.rank FROM (" + SEARCH_RANKED + ") ranked"
+            + " ORDER BY ranked.rank DESC, ranked.id LIMIT :limit", nativeQuery = true)
+    List<SearchHit> search(@Param("q") String q, @Param("prefix") String prefix, @Param("fuzzy") boolean fuzzy,
+            @Param("fuzzyEmail") boolean fuzzyEmail, @Param("candidates") int candidates,
+            @Param("limit") int limit);
+
+    // Keyset continuation after the (rank, id) of the previous page's last hit, in the same order
+    @Query(value = "SELECT ranked.id, ranked.rank FROM (" + SEARCH_RANKED + ") ranked"
+            + " WHERE ranked.rank < CAST(:afterRank AS real)"
+            + " OR (ranked.rank = CAST(:afterRank AS real) AND ranked.id > :afterId)"
+            + " ORDER BY ranked.rank DESC, ranked.id LIMIT :limit", nativeQuery = true)
+    List<SearchHit> searchAfter(@Param("q") String q, @Param("prefix") String prefix, @Param("fuzzy") boolean fuzzy,
+            @Param("fuzzyEmail") boolean fuzzyEmail, @Param("candidates") int candidates,
+            @Param("afterRank") float afterRank, @Param("afterId") UUID afterId, @Param("limit") int limit);
+
+    // Local to the current transaction, so it must run inside the same one as the search.
+    // Besides the threshold, scans start at the first block and run in one process, so a
+    // trigram branch's first :candidates matches are the same rows on every page.
+    @Query(value = "SELECT set_config('pg_trgm.similarity_threshold', :threshold, true),"
+            + " set_config('synchronize_seqscans', 'off', true),"
+            + " set_config('max_parallel_workers_per_gather', '0', true)", nativeQuery = true)
+    Object configureSearch(@Param("threshold") String threshold);
 }
@@ -0,0 +1,53 @@
+package com.pm.patient_service.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// Trigram GIN and lowercase prefix indexes behind GET /patients/search, and the name prefix
+// index behind the name filter of GET /patients. JPA cannot declare operator classes or
+// expression indexes, so they are created here once Hibernate has built the schema.
+@Component
+public class PatientSearchIndexInitializer implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(PatientSearchIndexInitializer.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PatientSearchIndexInitializer(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        String database = jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        if (!"PostgreSQL".equals(database)) {
+            log.warn("Patient search indexes need PostgreSQL pg_trgm, skipping on {}", database);
+            return;
+        }
+        jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+        jdbcTemplate.execute(
+                "CREATE INDEX IF NOT EXISTS idx_patient_name_trgm ON patient USING gin (name gin_trgm_ops)");
+        jdbcTemplate.execute(
+                "CREATE INDEX IF NOT EXISTS idx_patient_email_trgm ON patient USING gin (email gin_trgm_ops)");
+        jdbcTemplate.execute(
+                "CREATE INDEX IF NOT EXISTS idx_patient_address_trgm ON patient USING gin (address gin_trgm_ops)");
+        // text_pattern_ops, so LIKE 'prefix%' is a range scan whatever the database collation,
+        // and id after it, so the first matches in (value, id) order come straight off the index
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_patient_name_lower_prefix"
+                + " ON patient (lower(name) text_pattern_ops, id)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_patient_email_lower_prefix"
+                + " ON patient (lower(email) text_pattern_ops, id)");
+        // The list filter matches name case-sensitively; a plain btree on name only serves
+        // LIKE under the C collation, so the one earlier versions declared is replaced
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_patient_name_prefix"
+                + " ON patient (name text_pattern_ops)");
+        jdbcTemplate.execute("DROP INDEX IF EXISTS idx_patient_name");
+        log.info("Patient search trigram and prefix indexes are in place");
+    }
+}
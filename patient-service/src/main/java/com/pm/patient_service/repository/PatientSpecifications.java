@@ -0,0 +1,44 @@
+package com.pm.patient_service.repository;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import com.pm.patient_service.model.Patient;
+
+public final class PatientSpecifications {
+
+    private PatientSpecifications() {
+    }
+
+    public static Specification<Patient> all() {
+        return (root, query, cb) -> cb.conjunction();
+    }
+
+    // Keyset predicate: everything strictly after (registeredDate, id)
+    public static Specification<Patient> after(LocalDate registeredDate, UUID id) {
+        return (root, query, cb) -> cb.or(
+                cb.greaterThan(root.<LocalDate>get("registeredDate"), registeredDate),
+                cb.and(cb.equal(root.<LocalDate>get("registeredDate"), registeredDate),
+                        cb.greaterThan(root.<UUID>get("id"), id)));
+    }
+
+    public static Specification<Patient> registeredOnOrAfter(LocalDate from) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.<LocalDate>get("registeredDate"), from);
+    }
+
+    public static Specification<Patient> registeredOnOrBefore(LocalDate to) {
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.<LocalDate>get("registeredDate"), to);
+    }
+
+    public static Specification<Patient> nameStartsWith(String prefix) {
+        String pattern = likePrefix(prefix);
+        return (root, query, cb) -> cb.like(root.<String>get("name"), pattern, '\\');
+    }
+
+    // LIKE pattern matching values that start with prefix, wildcards escaped with '\'
+    public static String likePrefix(String prefix) {
+        return prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+}
@@ -0,0 +1,215 @@
+package com.pm.patient_service.service;
+
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.pm.billingservice.grpc.BillingResponse;
+import com.pm.patient_service.cache.PatientEmailFilter;
+import com.pm.patient_service.dto.BatchPatientResultDTO;
+import com.pm.patient_service.dto.PatientRequestDTO;
+import com.pm.patient_service.dto.validators.CreatePatientValidationGroup;
+import com.pm.patient_service.exception.BatchSizeExceededException;
+import com.pm.patient_service.exception.ConstraintViolations;
+import com.pm.patient_service.grpc.BillingAccountProvisioner;
+import com.pm.patient_service.kafka.PatientEventOutbox;
+import com.pm.patient_service.mapper.PatientMapper;
+import com.pm.patient_service.model.BillingStatus;
+import com.pm.patient_service.model.Patient;
+import com.pm.patient_service.repository.PatientRepository;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import jakarta.validation.groups.Default;
+
+@Service
+public class PatientBatchService {
+
+    private static final Logger log = LoggerFactory.getLogger(PatientBatchService.class);
+    private final PatientRepository patientrepository;
+    private final BillingAccountProvisioner billingAccountProvisioner;
+    private final PatientEventOutbox patientEventOutbox;
+    private final PatientEmailFilter patientEmailFilter;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxBatchSize;
+    private final int billingChunkSize;
+    private final long billingTimeoutMs;
+
+    public PatientBatchService(PatientRepository patientrepository,
+            BillingAccountProvisioner billingAccountProvisioner, PatientEventOutbox patientEventOutbox,
+            PatientEmailFilter patientEmailFilter, Validator validator, PlatformTransactionManager transactionManager,
+            @Value("${patient.batch.max-size:1000}") int maxBatchSize,
+            @Value("${patient.batch.billing-chunk-size:100}") int billingChunkSize,
+            @Value("${patient.batch.billing-timeout-ms:10000}") long billingTimeoutMs) {
+        this.patientrepository = patientrepository;
+        this.billingAccountProvisioner = billingAccountProvisioner;
+        this.patientEventOutbox = patientEventOutbox;
+        this.patientEmailFilter = patientEmailFilter;
+        this.validator = validator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxBatchSize = maxBatchSize;
+        this.billingChunkSize = billingChunkSize;
+        this.billingTimeoutMs = billingTimeoutMs;
+    }
+
+    // Create many - every item gets a result, failures do not abort the rest of the batch.
+    // Under the FAIL policy each item follows the single-create rule: the billing accounts
+    // are created before commit, and an item whose account fails is not created.
+    public List<BatchPatientResultDTO> savePatients(List<PatientRequestDTO> patientrequestdtos) {
+        if (patientrequestdtos.size() > maxBatchSize) {
+            throw new BatchSizeExceededException(
+                    "Batch of " + patientrequestdtos.size() + " patients exceeds the limit of " + maxBatchSize);
+        }
+
+        List<BatchPatientResultDTO> results = new ArrayList<>(patientrequestdtos.size());
+        // batch index -> patient that passed validation
+        Map<Integer, Patient> pending = new LinkedHashMap<>();
+        Set<String> batchEmails = new HashSet<>();
+
+        for (int i = 0; i < patientrequestdtos.size(); i++) {
+            BatchPatientResultDTO result = new BatchPatientResultDTO(i);
+            results.add(result);
+
+            PatientRequestDTO patientrequestdto = patientrequestdtos.get(i);
+            if (patientrequestdto == null) {
+                result.fail("Patient is mandatory");
+                continue;
+            }
+            Set<ConstraintViolation<PatientRequestDTO>> violations = validator.validate(patientrequestdto,
+                    Default.class, CreatePatientValidationGroup.class);
+            if (!violations.isEmpty()) {
+                result.fail(violations.stream()
+                        .map(violation -> violation.getPropertyPath() + " : " + violation.getMessage())
+                        .collect(Collectors.joining(", ")));
+                continue;
+            }
+            if (!batchEmails.add(patientrequestdto.getEmail())) {
+                result.fail("Email appears more than once in the batch : " + patientrequestdto.getEmail());
+                continue;
+            }
+            try {
+                Patient patient = PatientMapper.toModel(patientrequestdto);
+                patient.setBillingStatus(billingAccountProvisioner.initialStatus());
+                pending.put(i, patient);
+            } catch (DateTimeParseException e) {
+                result.fail("Invalid date : " + e.getParsedString());
+            }
+        }
+
+        if (pending.isEmpty()) {
+            return results;
+        }
+
+        // One set query replaces an existsByEmail round trip per patient, and only
+        // emails the filter cannot rule out are sent to the database at all
+        List<String> candidates = pending.values().stream().map(Patient::getEmail)
+                .filter(patientEmailFilter::mightContain).toList();
+        Set<String> existingEmails = candidates.isEmpty() ? Set.of()
+                : new HashSet<>(patientrepository.findExistingEmails(candidates));
+        pending.entrySet().removeIf(entry -> {
+            String email = entry.getValue().getEmail();
+            if (existingEmails.contains(email)) {
+                results.get(entry.getKey()).fail("Email already exists in the system for a patient : " + email);
+                return true;
+            }
+            return false;
+        });
+
+        if (pending.isEmpty()) {
+            return results;
+        }
+
+        // Ids are generated in memory, so hibernate.jdbc.batch_size groups these
+        // into multi-row JDBC batches at flush. The outbox rows ride in the same transaction.
+        boolean provisionInTransaction = !billingAccountProvisioner.isEventDriven()
+                && billingAccountProvisioner.waitsForBilling();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                patientrepository.saveAllAndFlush(pending.values());
+                if (provisionInTransaction) {
+                    Map<Integer, String> billingFailures = createBillingAccountsNow(pending);
+                    List<Patient> dropped = new ArrayList<>(billingFailures.size());
+                    billingFailures.forEach((index, message) -> {
+                        results.get(index).fail(message);
+                        dropped.add(pending.remove(index));
+                    });
+                    patientrepository.deleteAll(dropped);
+                    pending.values().forEach(patient -> patient.setBillingStatus(BillingStatus.ACTIVE));
+                }
+                patientEventOutbox.appendAll(pending.values(), PatientEventOutbox.PATIENT_CREATED);
+            });
+        } catch (DataIntegrityViolationException e) {
+            if (!ConstraintViolations.violates(e, Patient.EMAIL_UNIQUE_CONSTRAINT)) {
+                throw e;
+            }
+            log.warn("Patient batch rolled back on a constraint violation : {}", e.getMessage());
+            pending.keySet().forEach(index -> results.get(index)
+                    .fail("Batch rolled back, an email was registered concurrently"));
+            return results;
+        }
+        pending.values().forEach(patient -> patientEmailFilter.put(patient.getEmail()));
+        log.info("Batch of {} patients saved to database", pending.size());
+
+        pending.forEach((index, patient) -> {
+            BatchPatientResultDTO result = results.get(index);
+            result.setStatus(BatchPatientResultDTO.CREATED);
+            result.setPatient(PatientMapper.toDTO(patient));
+        });
+
+        if (!billingAccountProvisioner.isEventDriven() && !provisionInTransaction) {
+            // Off the request path; the patients stay PENDING until billing-service confirms
+            List<Patient> created = new ArrayList<>(pending.values());
+            for (int start = 0; start < created.size(); start += billingChunkSize) {
+                billingAccountProvisioner.provisionAll(
+                        created.subList(start, Math.min(start + billingChunkSize, created.size())));
+            }
+        }
+
+        return results;
+    }
+
+    // One batch billing RPC per chunk instead of one blocking round trip per patient.
+    // Runs inside the insert transaction and returns batch index -> error for every
+    // patient whose account was not confirmed within the timeout.
+    private Map<Integer, String> createBillingAccountsNow(Map<Integer, Patient> created) {
+        Map<Integer, String> failures = new LinkedHashMap<>();
+        List<Map.Entry<Integer, Patient>> entries = new ArrayList<>(created.entrySet());
+        for (int start = 0; start < entries.size(); start += billingChunkSize) {
+            List<Map.Entry<Integer, Patient>> chunk = entries.subList(start,
+                    Math.min(start + billingChunkSize, entries.size()));
+
+            List<ListenableFuture<BillingResponse>> futures = billingAccountProvisioner
+                    .provisionAll(chunk.stream().map(Map.Entry::getValue).toList());
+            for (int j = 0; j < chunk.size(); j++) {
+                int index = chunk.get(j).getKey();
+                try {
+                    futures.get(j).get(billingTimeoutMs, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failures.put(index, "Patient not created, billing account creation was interrupted");
+                } catch (ExecutionException | TimeoutException e) {
+                    failures.put(index, "Patient not created, billing account creation failed : " + e.getMessage());
+                }
+            }
+        }
+        return failures;
+    }
+}
@@ -0,0 +1,88 @@
+package com.pm.patient_service.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.pm.patient_service.dto.PatientResponseDTO;
+import com.pm.patient_service.mapper.PatientMapper;
+import com.pm.patient_service.model.Patient;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+@Service
+public class PatientExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(PatientExportService.class);
+    private static final byte NEWLINE = '\n';
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectWriter patientWriter;
+    private final int fetchSize;
+
+    public PatientExportService(PlatformTransactionManager transactionManager, ObjectMapper objectMapper,
+            @Value("${patient.export.fetch-size:1000}") int fetchSize) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        // Keep the response stream open between rows and let us decide when to flush
+        this.patientWriter = objectMapper.writerFor(PatientResponseDTO.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.fetchSize = fetchSize;
+    }
+
+    // Writes every patient as one JSON object per line. Rows are pulled through a
+    // server-side cursor (fetchSize rows per round trip) and detached once written,
+    // so heap use stays flat regardless of table size.
+    public void exportNdjson(OutputStream responseStream, boolean gzip) throws IOException {
+        long[] exported = { 0 };
+        // try-with-resources releases the GZIP deflater's native memory on the error path too
+        try (OutputStream out = gzip ? new GZIPOutputStream(responseStream, 8192, true) : responseStream) {
+            // Commits the response headers (and the gzip header) before the query starts, so
+            // the client is not left waiting on a status line until the first chunk is ready
+            out.flush();
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<Patient> patients = entityManager
+                        .createQuery("SELECT p FROM Patient p", Patient.class)
+                        .setHint("org.hibernate.fetchSize", fetchSize)
+                        .setHint("org.hibernate.readOnly", true)
+                        .getResultStream()) {
+                    Iterator<Patient> iterator = patients.iterator();
+                    while (iterator.hasNext()) {
+                        Patient patient = iterator.next();
+                        patientWriter.writeValue(out, PatientMapper.toDTO(patient));
+                        out.write(NEWLINE);
+                        entityManager.detach(patient);
+                        // Push each fetched chunk to the client instead of buffering it
+                        if (++exported[0] % fetchSize == 0) {
+                            out.flush();
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        log.info("Patient export finished, {} rows written", exported[0]);
+    }
+}
@@ -2,91 +2,264 @@ package com.pm.patient_service.service;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.pm.patient_service.cache.PatientCache;
+import com.pm.patient_service.cache.PatientEmailFilter;
+import com.pm.patient_service.dto.PatientCursor;
+import com.pm.patient_service.dto.PatientPageResponseDTO;
 import com.pm.patient_service.dto.PatientRequestDTO;
 import com.pm.patient_service.dto.PatientResponseDTO;
+import com.pm.patient_service.dto.PatientSearchCursor;
+import com.pm.patient_service.exception.ConstraintViolations;
 import com.pm.patient_service.exception.EmailAlreadyExistsException;
 import com.pm.patient_service.exception.PatientNotFoundException;
-import com.pm.patient_service.grpc.BillingServiceGrpcClient;
-import com.pm.patient_service.kafka.KafkaProducer; // Import KafkaProducer
+import com.pm.patient_service.grpc.BillingAccountProvisioner;
+import com.pm.patient_service.kafka.PatientEventOutbox;
 import com.pm.patient_service.mapper.PatientMapper;
+import com.pm.patient_service.model.BillingStatus;
 import com.pm.patient_service.model.Patient;
 import com.pm.patient_service.repository.PatientRepository;
+import com.pm.patient_service.repository.PatientSpecifications;
 
 @Service
 public class PatientService {
 
     private static final Logger log = LoggerFactory.getLogger(PatientService.class);
     private final PatientRepository patientrepository;
-    private final BillingServiceGrpcClient billingservicegrpcclient;
-    private final KafkaProducer kafkaProducer; // Add KafkaProducer field
+    private final BillingAccountProvisioner billingAccountProvisioner;
+    private final PatientEventOutbox patientEventOutbox;
+    private final PatientCache patientCache;
+    private final PatientEmailFilter patientEmailFilter;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxPageSize;
+    private final String similarityThreshold;
+    private final int maxSearchCandidates;
 
-    // Update the constructor to accept KafkaProducer
-    public PatientService(PatientRepository patientrepository, BillingServiceGrpcClient billingservicegrpcclient,
-            KafkaProducer kafkaProducer) {
+    public PatientService(PatientRepository patientrepository, BillingAccountProvisioner billingAccountProvisioner,
+            PatientEventOutbox patientEventOutbox, PatientCache patientCache, PatientEmailFilter patientEmailFilter,
+            PlatformTransactionManager transactionManager,
+            @Value("${patient.page.max-size:500}") int maxPageSize,
+            @Value("${patient.search.similarity-threshold:0.3}") double similarityThreshold,
+            @Value("${patient.search.max-candidates:200}") int maxSearchCandidates) {
+        if (similarityThreshold < 0 || similarityThreshold > 1) {
+            throw new IllegalArgumentException("patient.search.similarity-threshold must be between 0 and 1");
+        }
         this.patientrepository = patientrepository;
-        this.billingservicegrpcclient = billingservicegrpcclient;
-        this.kafkaProducer = kafkaProducer; // Initialize KafkaProducer
+        this.billingAccountProvisioner = billingAccountProvisioner;
+        this.patientEventOutbox = patientEventOutbox;
+        this.patientCache = patientCache;
+        this.patientEmailFilter = patientEmailFilter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxPageSize = maxPageSize;
+        this.similarityThreshold = String.valueOf(similarityThreshold);
+        this.maxSearchCandidates = maxSearchCandidates;
     }
 
-    // Read
-    public List<PatientResponseDTO> getallpatients() {
-        List<Patient> patientlist = patientrepository.findAll();
+    // Read - keyset pagination ordered by (registeredDate, id), so every page is
+    // a bounded index range scan no matter how deep the client has paged
+    public PatientPageResponseDTO getallpatients(String cursor, int size, LocalDate registeredFrom,
+            LocalDate registeredTo, String namePrefix) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+
+        Specification<Patient> spec = PatientSpecifications.all();
+        if (cursor != null && !cursor.isBlank()) {
+            PatientCursor after = PatientCursor.decode(cursor);
+            spec = spec.and(PatientSpecifications.after(after.getRegisteredDate(), after.getId()));
+        }
+        if (registeredFrom != null) {
+            spec = spec.and(PatientSpecifications.registeredOnOrAfter(registeredFrom));
+        }
+        if (registeredTo != null) {
+            spec = spec.and(PatientSpecifications.registeredOnOrBefore(registeredTo));
+        }
+        if (namePrefix != null && !namePrefix.isBlank()) {
+            spec = spec.and(PatientSpecifications.nameStartsWith(namePrefix));
+        }
+
+        // Fetch one extra row to learn whether another page exists without a count query
+        List<Patient> patientlist = patientrepository.findBy(spec,
+                query -> query.sortBy(Sort.by("registeredDate", "id")).limit(pageSize + 1).all());
+
+        String nextCursor = null;
+        if (patientlist.size() > pageSize) {
+            patientlist = patientlist.subList(0, pageSize);
+            Patient last = patientlist.get(pageSize - 1);
+            nextCursor = new PatientCursor(last.getRegisteredDate(), last.getId()).encode();
+        }
+
         List<PatientResponseDTO> patientdtolist = patientlist.stream()
                 .map(patientlistitem -> PatientMapper.toDTO(patientlistitem)).toList();
-        return patientdtolist;
+        return new PatientPageResponseDTO(patientdtolist, nextCursor);
+    }
+
+    // Search - ranked fuzzy/prefix match, capped at the same page size as the list endpoint.
+    // Keyset paged on (rank, id) like the list endpoint, so pages neither skip nor repeat
+    // hits and a deep page sorts no more rows than the first one.
+    public PatientPageResponseDTO searchPatients(String q, String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+        String term = q.trim();
+        String prefix = PatientSpecifications.likePrefix(term.toLowerCase(Locale.ROOT));
+        // pg_trgm pads words to trigrams, so shorter terms have nothing to compare fuzzily
+        boolean fuzzy = term.length() >= 3;
+        boolean fuzzyEmail = fuzzy && term.indexOf('@') >= 0;
+        PatientSearchCursor after = cursor == null || cursor.isBlank() ? null : PatientSearchCursor.decode(cursor);
+
+        List<PatientRepository.SearchHit> hits = transactionTemplate.execute(status -> {
+            patientrepository.configureSearch(similarityThreshold);
+            // One extra hit tells whether another page exists
+            return after == null
+                    ? patientrepository.search(term, prefix, fuzzy, fuzzyEmail, maxSearchCandidates, pageSize + 1)
+                    : patientrepository.searchAfter(term, prefix, fuzzy, fuzzyEmail, maxSearchCandidates,
+                            after.getRank(), after.getId(), pageSize + 1);
+        });
+
+        String nextCursor = null;
+        if (hits.size() > pageSize) {
+            hits = hits.subList(0, pageSize);
+            PatientRepository.SearchHit last = hits.get(pageSize - 1);
+            nextCursor = new PatientSearchCursor(last.getRank(), last.getId()).encode();
+        }
+
+        Map<UUID, Patient> byId = patientrepository.findAllById(hits.stream().map(PatientRepository.SearchHit::getId)
+                .toList()).stream().collect(Collectors.toMap(Patient::getId, Function.identity()));
+        // A hit deleted between the two queries is dropped rather than failing the page
+        List<PatientResponseDTO> patientdtolist = hits.stream().map(hit -> byId.get(hit.getId()))
+                .filter(patient -> patient != null).map(PatientMapper::toDTO).toList();
+        return new PatientPageResponseDTO(patientdtolist, nextCursor);
     }
 
     // Create
     public PatientResponseDTO savePatient(PatientRequestDTO patientrequestdto) {
-        if (patientrepository.existsByEmail(patientrequestdto.getEmail())) {
-            throw new EmailAlreadyExistsException(
-                    "Email already exists in the system for a patient : " + patientrequestdto.getEmail());
+        String email = patientrequestdto.getEmail();
+        // Most new emails are definite negatives in the filter and skip the existence query
+        if (patientEmailFilter.mightContain(email) && patientrepository.existsByEmail(email)) {
+            throw new EmailAlreadyExistsException("Email already exists in the system for a patient : " + email);
         }
 
-        Patient newpatient = patientrepository.save(PatientMapper.toModel(patientrequestdto));
+        // The patient row and its PATIENT_CREATED event commit together; OutboxRelay
+        // publishes the event, so Kafka is off the request path. Under the FAIL policy the
+        // billing account is created before commit too: if billing-service does not answer
+        // within the gRPC deadline the patient is rolled back and the client gets 503.
+        boolean provisionInTransaction = !billingAccountProvisioner.isEventDriven()
+                && billingAccountProvisioner.waitsForBilling();
+        Patient newpatient;
+        try {
+            newpatient = transactionTemplate.execute(status -> {
+                Patient patient = PatientMapper.toModel(patientrequestdto);
+                patient.setBillingStatus(billingAccountProvisioner.initialStatus());
+                Patient saved = patientrepository.saveAndFlush(patient);
+                patientEventOutbox.append(saved, PatientEventOutbox.PATIENT_CREATED);
+                if (provisionInTransaction) {
+                    billingAccountProvisioner.provisionNow(saved);
+                    saved.setBillingStatus(BillingStatus.ACTIVE);
+                }
+                return saved;
+            });
+        } catch (DataIntegrityViolationException e) {
+            throw translateEmailConflict(e, email);
+        }
+        patientEmailFilter.put(email);
         log.info("Patient saved to database with ID: {}", newpatient.getId());
 
-        // Temporarily disabled for our isolated Kafka test
-        billingservicegrpcclient.createBillingAccount(newpatient.getId().toString(),
-        newpatient.getName(), newpatient.getEmail());
-        log.info("gRPC call to billing-service SKIPPED.");
-
-        // Call the Kafka Producer
-        kafkaProducer.sendEvent(newpatient);
-        log.info("Kafka sendEvent method has been called.");
+        // In EVENTS mode billing-service creates the account from the PATIENT_CREATED event
+        // the outbox publishes, so the request never touches the billing client. Otherwise
+        // this runs after commit, concurrently with the outbox relay publishing the event,
+        // and the patient stays PENDING until billing-service confirms.
+        if (!billingAccountProvisioner.isEventDriven() && !provisionInTransaction) {
+            billingAccountProvisioner.provision(newpatient);
+        }
 
         return PatientMapper.toDTO(newpatient);
     }
 
+    // Read one - served from PatientCache, the database is only hit on a miss
+    public PatientResponseDTO getPatient(UUID id) {
+        PatientResponseDTO patient = patientCache.get(id,
+                key -> patientrepository.findById(key).map(PatientMapper::toDTO).orElse(null));
+        if (patient == null) {
+            throw new PatientNotFoundException("Patient not found with id : {} " + id);
+        }
+        return patient;
+    }
+
     // Update
     public PatientResponseDTO updatePatient(UUID id, PatientRequestDTO patientrequestdto) {
-        Patient patient = patientrepository.findById(id)
-                .orElseThrow(() -> new PatientNotFoundException("Patient not found with id : {} " + id));
-        patient.setName(patientrequestdto.getName());
-        patient.setEmail(patientrequestdto.getEmail());
-        patient.setAddress(patientrequestdto.getAddress());
-        patient.setDateofbirth(LocalDate.parse(patientrequestdto.getDateofbirth()));
-        if (patientrepository.existsByEmailAndIdNot(patientrequestdto.getEmail(), id)) {
-            throw new EmailAlreadyExistsException(
-                    "Email already exists in the system for a patient : " + patientrequestdto.getEmail());
+        String email = patientrequestdto.getEmail();
+        Patient updatedPatient;
+        try {
+            updatedPatient = transactionTemplate.execute(status -> {
+                Patient patient = patientrepository.findById(id)
+                        .orElseThrow(() -> new PatientNotFoundException("Patient not found with id : {} " + id));
+                // Only a changed email can collide, and only if the filter has seen it
+                boolean emailChanged = email != null && !email.equals(patient.getEmail());
+                if (emailChanged && patientEmailFilter.mightContain(email)
+                        && patientrepository.existsByEmailAndIdNot(email, id)) {
+                    throw new EmailAlreadyExistsException(
+                            "Email already exists in the system for a patient : " + email);
+                }
+                patient.setName(patientrequestdto.getName());
+                patient.setEmail(email);
+                patient.setAddress(patientrequestdto.getAddress());
+                patient.setDateofbirth(LocalDate.parse(patientrequestdto.getDateofbirth()));
+                Patient saved = patientrepository.saveAndFlush(patient);
+                patientEventOutbox.append(saved, PatientEventOutbox.PATIENT_UPDATED);
+                return saved;
+            });
+        } catch (DataIntegrityViolationException e) {
+            throw translateEmailConflict(e, email);
         }
-        Patient updatedPatient = patientrepository.save(patient);
+        patientEmailFilter.put(email);
+        // Local entry goes now, peers drop theirs when the PATIENT_UPDATED event arrives
+        patientCache.invalidate(id);
         return PatientMapper.toDTO(updatedPatient);
     }
 
     // delete
     public String deletePatient(UUID id) {
-        Patient patient = patientrepository.findById(id)
-                .orElseThrow(() -> new PatientNotFoundException("Patient not found with id : {} " + id));
-        patientrepository.delete(patient);
-        billingservicegrpcclient.processPatientDeletion(id.toString());
-        patientrepository.deleteById(id);
+        // Same rule as create: under FAIL the account is deactivated before the delete
+        // commits, and a billing failure keeps the patient
+        boolean deprovisionInTransaction = !billingAccountProvisioner.isEventDriven()
+                && billingAccountProvisioner.waitsForBilling();
+        transactionTemplate.executeWithoutResult(status -> {
+            Patient patient = patientrepository.findById(id)
+                    .orElseThrow(() -> new PatientNotFoundException("Patient not found with id : {} " + id));
+            patientrepository.delete(patient);
+            patientEventOutbox.append(patient, PatientEventOutbox.PATIENT_DELETED);
+            if (deprovisionInTransaction) {
+                billingAccountProvisioner.deprovisionNow(id);
+            } else if (!billingAccountProvisioner.isEventDriven()) {
+                // Outlives the patient row, so a deactivation that fails after commit is retried
+                billingAccountProvisioner.recordDeactivation(id);
+            }
+        });
+        patientCache.invalidate(id);
+        if (!billingAccountProvisioner.isEventDriven() && !deprovisionInTransaction) {
+            billingAccountProvisioner.deprovision(id);
+        }
         return "Patient deleted successfully with id : " + id;
     }
-}
\ No newline at end of file
+
+    // A concurrent writer can slip past the preflight check; the unique constraint
+    // still catches it and the client sees the same error as a preflight hit
+    private static RuntimeException translateEmailConflict(DataIntegrityViolationException e, String email) {
+        if (ConstraintViolations.violates(e, Patient.EMAIL_UNIQUE_CONSTRAINT)) {
+            return new EmailAlreadyExistsException("Email already exists in the system for a patient : " + email);
+        }
+        return e;
+    }
+}
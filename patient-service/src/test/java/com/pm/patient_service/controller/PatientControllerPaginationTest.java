@@ -0,0 +1,124 @@
+package com.pm.patient_service.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pm.patient_service.model.BillingStatus;
+import com.pm.patient_service.model.Patient;
+import com.pm.patient_service.repository.PatientRepository;
+
+@SpringBootTest(properties = "grpc.server.port=-1")
+@AutoConfigureMockMvc
+class PatientControllerPaginationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @BeforeEach
+    void clear() {
+        patientRepository.deleteAll();
+    }
+
+    @Test
+    void followingTheCursorVisitsEveryPatientOnceWhenRegisteredDatesTie() throws Exception {
+        LocalDate tied = LocalDate.of(2024, 3, 1);
+        for (int i = 0; i < 5; i++) {
+            patientRepository.save(patient("tied" + i + "@example.com", tied));
+        }
+        patientRepository.save(patient("early@example.com", tied.minusDays(1)));
+        patientRepository.save(patient("late@example.com", tied.plusDays(1)));
+        List<UUID> expected = patientRepository.findAll(Sort.by("registeredDate", "id")).stream()
+                .map(Patient::getId).toList();
+
+        List<UUID> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            MockHttpServletRequestBuilder request = get("/patients").param("size", "2");
+            if (cursor != null) {
+                request.param("cursor", cursor);
+            }
+            MvcResult result = mockMvc.perform(request).andExpect(status().isOk()).andReturn();
+            ids(result).forEach(seen::add);
+            cursor = result.getResponse().getHeader(PatientController.NEXT_CURSOR);
+            pages++;
+        } while (cursor != null);
+
+        // Page boundaries fall inside the run of tied dates, the id breaks the tie
+        assertEquals(expected, seen);
+        assertEquals(4, pages);
+    }
+
+    @Test
+    void nextPageIsInTheHeadersAndAbsentOnTheLastPage() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            patientRepository.save(patient("patient" + i + "@example.com", LocalDate.of(2024, 3, 1)));
+        }
+
+        // In the query string, as a client sends them, so the Link header can carry them over
+        MvcResult first = mockMvc.perform(get("/patients?size=2&name=Jane")).andExpect(status().isOk())
+                .andReturn();
+        String cursor = first.getResponse().getHeader(PatientController.NEXT_CURSOR);
+        assertNotNull(cursor);
+        String link = first.getResponse().getHeader(HttpHeaders.LINK);
+        assertNotNull(link);
+        assertTrue(link.endsWith(">; rel=\"next\""), link);
+        assertTrue(link.contains("cursor=" + cursor), link);
+        // The other query parameters are carried over to the next page
+        assertTrue(link.contains("size=2") && link.contains("name=Jane"), link);
+
+        MvcResult last = mockMvc.perform(get("/patients?size=2&name=Jane&cursor={cursor}", cursor))
+                .andExpect(status().isOk()).andReturn();
+        assertEquals(1, ids(last).size());
+        assertNull(last.getResponse().getHeader(PatientController.NEXT_CURSOR));
+        assertNull(last.getResponse().getHeader(HttpHeaders.LINK));
+    }
+
+    @Test
+    void malformedCursorIsABadRequest() throws Exception {
+        mockMvc.perform(get("/patients").param("cursor", "garbage")).andExpect(status().isBadRequest());
+    }
+
+    private List<UUID> ids(MvcResult result) throws Exception {
+        List<UUID> ids = new ArrayList<>();
+        for (JsonNode patient : objectMapper.readTree(result.getResponse().getContentAsString())) {
+            ids.add(UUID.fromString(patient.get("id").asText()));
+        }
+        return ids;
+    }
+
+    private static Patient patient(String email, LocalDate registeredDate) {
+        Patient patient = new Patient(null, "Jane Doe", email, "1 Main St", LocalDate.of(1990, 1, 1),
+                registeredDate);
+        patient.setBillingStatus(BillingStatus.ACTIVE);
+        return patient;
+    }
+}
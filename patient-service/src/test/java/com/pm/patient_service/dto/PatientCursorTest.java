@@ -0,0 +1,42 @@
+package com.pm.patient_service.dto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import com.pm.patient_service.exception.InvalidCursorException;
+
+class PatientCursorTest {
+
+    @Test
+    void decodesWhatItEncodes() {
+        UUID id = UUID.randomUUID();
+        String token = new PatientCursor(LocalDate.of(2024, 2, 29), id).encode();
+
+        PatientCursor cursor = PatientCursor.decode(token);
+
+        assertEquals(LocalDate.of(2024, 2, 29), cursor.getRegisteredDate());
+        assertEquals(id, cursor.getId());
+        // Safe to drop into a query string as it is
+        assertFalse(token.contains("=") || token.contains("+") || token.contains("/"));
+    }
+
+    @Test
+    void rejectsMalformedTokens() {
+        assertThrows(InvalidCursorException.class, () -> PatientCursor.decode("not base64!"));
+        assertThrows(InvalidCursorException.class, () -> PatientCursor.decode(encode("2024-01-01")));
+        assertThrows(InvalidCursorException.class, () -> PatientCursor.decode(encode("yesterday|" + UUID.randomUUID())));
+        assertThrows(InvalidCursorException.class, () -> PatientCursor.decode(encode("2024-01-01|not-a-uuid")));
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
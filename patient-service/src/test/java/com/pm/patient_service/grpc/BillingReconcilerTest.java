@@ -0,0 +1,139 @@
+package com.pm.patient_service.grpc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import com.google.common.util.concurrent.Futures;
+import com.pm.billingservice.grpc.BillingResponse;
+import com.pm.patient_service.model.BillingStatus;
+import com.pm.patient_service.model.Patient;
+import com.pm.patient_service.repository.BillingDeactivationRepository;
+import com.pm.patient_service.repository.PatientRepository;
+import com.pm.patient_service.service.PatientService;
+
+import io.grpc.Status;
+
+@SpringBootTest(properties = { "billing.failure-policy=PENDING", "billing.reconcile.grace-ms=0",
+        "billing.reconcile.batch-size=2", "billing.reconcile.max-attempts=2",
+        "billing.reconcile.interval-ms=3600000", "grpc.server.port=-1" })
+class BillingReconcilerTest {
+
+    @MockBean
+    private BillingServiceGrpcClient billingClient;
+
+    @Autowired
+    private BillingReconciler reconciler;
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private BillingDeactivationRepository deactivationRepository;
+
+    @BeforeEach
+    void clear() {
+        deactivationRepository.deleteAll();
+        patientRepository.deleteAll();
+        when(billingClient.createBillingAccountAsync(anyString(), any(), any()))
+                .thenReturn(Futures.immediateFailedFuture(Status.UNAVAILABLE.asRuntimeException()));
+        when(billingClient.processPatientDeletionAsync(anyString()))
+                .thenReturn(Futures.immediateFailedFuture(Status.UNAVAILABLE.asRuntimeException()));
+    }
+
+    @Test
+    void sweepsPastPatientsThatKeepFailingAndMarksThemFailed() throws Exception {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            ids.add(patientRepository.save(patient("patient" + i + "@example.com")).getId());
+        }
+        ids.sort(Comparator.naturalOrder());
+        // The sweep only takes patients created before now minus the grace period
+        Thread.sleep(5);
+
+        reconciler.reconcile();
+        verifyCreates(ids.subList(0, 2), 1);
+        verifyCreates(ids.subList(2, 4), 0);
+
+        // The first two are pushed back, so the next sweep gets to the others
+        clearInvocations(billingClient);
+        reconciler.reconcile();
+        verifyCreates(ids.subList(0, 2), 0);
+        verifyCreates(ids.subList(2, 4), 1);
+
+        clearInvocations(billingClient);
+        reconciler.reconcile();
+        verify(billingClient, never()).createBillingAccountAsync(anyString(), any(), any());
+
+        // Once due again with max-attempts used up, they are FAILED and no longer swept
+        patientRepository.scheduleBillingAttempt(ids, Instant.now().minusSeconds(1));
+        reconciler.reconcile();
+        reconciler.reconcile();
+        verify(billingClient, never()).createBillingAccountAsync(anyString(), any(), any());
+        for (UUID id : ids) {
+            Patient patient = patientRepository.findById(id).orElseThrow();
+            assertEquals(BillingStatus.FAILED, patient.getBillingStatus());
+            assertEquals(2, patient.getBillingAttempts());
+        }
+    }
+
+    @Test
+    void deactivationOfADeletedPatientIsKeptUntilConfirmed() throws Exception {
+        UUID id = patientRepository.save(patient("deleted@example.com")).getId();
+
+        patientService.deletePatient(id);
+
+        // The call after commit failed, the recorded deactivation outlives the patient row
+        verify(billingClient).processPatientDeletionAsync(id.toString());
+        assertFalse(patientRepository.existsById(id));
+        assertTrue(deactivationRepository.existsById(id));
+
+        when(billingClient.processPatientDeletionAsync(anyString()))
+                .thenReturn(Futures.immediateFuture(BillingResponse.getDefaultInstance()));
+        reconciler.reconcile();
+
+        verify(billingClient, times(2)).processPatientDeletionAsync(id.toString());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (deactivationRepository.existsById(id) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertFalse(deactivationRepository.existsById(id));
+    }
+
+    private void verifyCreates(List<UUID> ids, int times) {
+        for (UUID id : ids) {
+            verify(billingClient, times(times)).createBillingAccountAsync(eq(id.toString()), any(), any());
+        }
+    }
+
+    private static Patient patient(String email) {
+        Patient patient = new Patient(null, "Jane Doe", email, "1 Main St", LocalDate.of(1990, 1, 1),
+                LocalDate.now());
+        patient.setBillingStatus(BillingStatus.PENDING);
+        return patient;
+    }
+}
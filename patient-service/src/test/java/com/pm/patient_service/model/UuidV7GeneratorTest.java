@@ -0,0 +1,91 @@
+package com.pm.patient_service.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+class UuidV7GeneratorTest {
+
+    @Test
+    void layoutIsVersion7WithTheCurrentTimestamp() {
+        long before = System.currentTimeMillis();
+        UUID id = UuidV7Generator.next();
+        long after = System.currentTimeMillis();
+
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+        long timestamp = id.getMostSignificantBits() >>> 16;
+        // A burst of ids carries the sequence into later milliseconds, but never far
+        assertTrue(timestamp >= before && timestamp <= after + 1_000, "timestamp " + timestamp);
+    }
+
+    @Test
+    void idsAreStrictlyIncreasingAsPostgresComparesThem() {
+        UUID previous = UuidV7Generator.next();
+        // Well past the 4096 ids a millisecond's sequence holds
+        for (int i = 0; i < 100_000; i++) {
+            UUID id = UuidV7Generator.next();
+            assertTrue(compareUnsigned(previous, id) < 0, previous + " before " + id);
+            previous = id;
+        }
+    }
+
+    @Test
+    void idsAreUniqueAndOrderedPerThreadUnderContention() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<UUID>>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    List<UUID> ids = new ArrayList<>();
+                    for (int i = 0; i < 20_000; i++) {
+                        ids.add(UuidV7Generator.next());
+                    }
+                    return ids;
+                }));
+            }
+            Set<Long> prefixes = new HashSet<>();
+            for (Future<List<UUID>> future : futures) {
+                List<UUID> ids = future.get();
+                for (int i = 0; i < ids.size(); i++) {
+                    if (i > 0) {
+                        assertTrue(compareUnsigned(ids.get(i - 1), ids.get(i)) < 0);
+                    }
+                    // Timestamp and sequence alone are unique, before the random bits
+                    assertTrue(prefixes.add(ids.get(i).getMostSignificantBits()), "duplicate " + ids.get(i));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void lowerBoundSortsBeforeIdsFromThatMillisecondOn() {
+        long now = System.currentTimeMillis();
+        UUID bound = UuidV7Generator.lowerBound(now);
+        UUID id = UuidV7Generator.next();
+
+        assertEquals(7, bound.version());
+        assertEquals(2, bound.variant());
+        assertEquals(now, bound.getMostSignificantBits() >>> 16);
+        assertTrue(compareUnsigned(bound, id) <= 0);
+        assertTrue(compareUnsigned(UuidV7Generator.lowerBound(now + 60_000), id) > 0);
+    }
+
+    // Byte order, as Postgres and B-tree indexes compare uuids; UUID.compareTo is signed
+    private static int compareUnsigned(UUID a, UUID b) {
+        int msb = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return msb != 0 ? msb : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    }
+}
@@ -0,0 +1,110 @@
+package com.pm.patient_service.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.pm.patient_service.model.BillingStatus;
+import com.pm.patient_service.model.Patient;
+import com.pm.patient_service.repository.PatientRepository;
+
+@SpringBootTest(properties = { "patient.export.fetch-size=2", "grpc.server.port=-1" })
+class PatientExportServiceTest {
+
+    @Autowired
+    private PatientExportService exportService;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @BeforeEach
+    void seed() {
+        patientRepository.deleteAll();
+        for (int i = 0; i < 5; i++) {
+            Patient patient = new Patient(null, "Jane Doe", "export" + i + "@example.com", "1 Main St",
+                    LocalDate.of(1990, 1, 1), LocalDate.of(2024, 3, 1));
+            patient.setBillingStatus(BillingStatus.ACTIVE);
+            patientRepository.save(patient);
+        }
+    }
+
+    @Test
+    void gzipExportIsOneJsonObjectPerLine() throws Exception {
+        TrackingStream response = new TrackingStream(new ByteArrayOutputStream(), Integer.MAX_VALUE);
+
+        exportService.exportNdjson(response, true);
+
+        byte[] body = ((ByteArrayOutputStream) response.target()).toByteArray();
+        String ndjson;
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            ndjson = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        String[] lines = ndjson.split("\n");
+        assertEquals(5, lines.length);
+        for (String line : lines) {
+            assertTrue(line.startsWith("{\"id\":"), line);
+        }
+        assertTrue(response.closed);
+    }
+
+    @Test
+    void headerIsFlushedBeforeTheRowsAndAFailedWriteIsRethrown() {
+        // The gzip header and the sync flush block go out first, the failure hits the first chunk of rows
+        TrackingStream response = new TrackingStream(new ByteArrayOutputStream(), 2);
+
+        assertThrows(IOException.class, () -> exportService.exportNdjson(response, true));
+
+        assertTrue(response.flushedBeforeFailure);
+    }
+
+    // Fails every write after the first failAfter ones
+    private static class TrackingStream extends FilterOutputStream {
+        private final int failAfter;
+        private int writes;
+        private boolean flushedBeforeFailure;
+        private boolean closed;
+
+        TrackingStream(OutputStream target, int failAfter) {
+            super(target);
+            this.failAfter = failAfter;
+        }
+
+        OutputStream target() {
+            return out;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (++writes > failAfter) {
+                throw new IOException("client went away");
+            }
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            flushedBeforeFailure |= writes > 0 && writes <= failAfter;
+            super.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+}